@@ -0,0 +1,56 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.benchmarks;
+
+import java.util.Collections;
+import java.util.HashMap;
+
+import com.codahale.metrics.MetricRegistry;
+
+import com.linkedin.datastream.common.BrooklinEnvelope;
+import com.linkedin.datastream.common.Datastream;
+import com.linkedin.datastream.metrics.DynamicMetricsManager;
+import com.linkedin.datastream.server.DatastreamProducerRecord;
+import com.linkedin.datastream.server.DatastreamProducerRecordBuilder;
+import com.linkedin.datastream.server.DatastreamTaskImpl;
+import com.linkedin.datastream.testutil.DatastreamTestUtils;
+
+
+/**
+ * Helpers shared by the benchmarks
+ */
+final class BenchmarkUtils {
+  static final String CONNECTOR_TYPE = "benchmark";
+
+  private BenchmarkUtils() {
+  }
+
+  /**
+   * Create the metrics manager the code under benchmark reports to. Each benchmark runs in a JVM of its own fork, so
+   * the metrics of one don't leak into another.
+   */
+  static void initMetrics() {
+    DynamicMetricsManager.createInstance(new MetricRegistry());
+  }
+
+  static DatastreamTaskImpl createTask(String datastreamName, String destination, int numPartitions) {
+    Datastream datastream = DatastreamTestUtils.createDatastream(CONNECTOR_TYPE, datastreamName, "source",
+        destination, numPartitions);
+    return new DatastreamTaskImpl(Collections.singletonList(datastream));
+  }
+
+  /**
+   * Create a record with a single event whose key and value have the given sizes
+   */
+  static DatastreamProducerRecord createRecord(int partition, String checkpoint, int keySize, int valueSize) {
+    DatastreamProducerRecordBuilder builder = new DatastreamProducerRecordBuilder();
+    builder.setPartition(partition);
+    builder.setSourceCheckpoint(checkpoint);
+    builder.setEventsSourceTimestamp(System.currentTimeMillis());
+    builder.addEvent(new BrooklinEnvelope(new byte[keySize], new byte[valueSize], null, new HashMap<>()));
+    return builder.build();
+  }
+}
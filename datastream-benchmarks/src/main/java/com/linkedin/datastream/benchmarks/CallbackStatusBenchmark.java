@@ -0,0 +1,79 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.linkedin.datastream.server.callbackstatus.CallbackStatus;
+import com.linkedin.datastream.server.callbackstatus.CallbackStatusFactory;
+import com.linkedin.datastream.server.callbackstatus.CallbackStatusWithComparableOffsetsFactory;
+import com.linkedin.datastream.server.callbackstatus.CallbackStatusWithLongOffsetsFactory;
+import com.linkedin.datastream.server.callbackstatus.CallbackStatusWithNonComparableOffsetsFactory;
+
+
+/**
+ * Benchmarks of the {@link CallbackStatus} strategies, registering one offset and acking another per operation while
+ * a window of offsets stays in flight
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CallbackStatusBenchmark {
+  @Param({"long", "comparable", "nonComparable"})
+  public String impl;
+
+  @Param({"1", "64"})
+  public int window;
+
+  private CallbackStatus<Long> _callbackStatus;
+  private long _offset;
+
+  /**
+   * Create the callback status and fill the in-flight window
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+    CallbackStatusFactory<Long> factory;
+    if ("long".equals(impl)) {
+      factory = new CallbackStatusWithLongOffsetsFactory();
+    } else if ("comparable".equals(impl)) {
+      factory = new CallbackStatusWithComparableOffsetsFactory<>();
+    } else {
+      factory = new CallbackStatusWithNonComparableOffsetsFactory<>();
+    }
+    _callbackStatus = factory.createCallbackStatusStrategy();
+    for (_offset = 0; _offset < window; _offset++) {
+      _callbackStatus.register(_offset);
+    }
+  }
+
+  /**
+   * Register the next offset and ack the oldest one in flight
+   */
+  @Benchmark
+  public long registerAndAck() {
+    long offset = _offset++;
+    _callbackStatus.register(offset);
+    _callbackStatus.ack(offset - window);
+    return _callbackStatus.getInFlightCount();
+  }
+}
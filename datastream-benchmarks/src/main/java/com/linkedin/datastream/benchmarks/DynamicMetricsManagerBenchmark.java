@@ -0,0 +1,91 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.linkedin.datastream.metrics.DynamicMetricsManager;
+import com.linkedin.datastream.metrics.HistogramHandle;
+import com.linkedin.datastream.metrics.MeterHandle;
+
+
+/**
+ * Benchmarks of the per-event metric updates of {@link DynamicMetricsManager}, looking the metric up by name on every
+ * update versus through a pre-resolved handle
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class DynamicMetricsManagerBenchmark {
+  private static final String CLASS_NAME = DynamicMetricsManagerBenchmark.class.getSimpleName();
+  private static final String KEY = "benchmarkTopic";
+  private static final String METER = "eventsProcessedRate";
+  private static final String HISTOGRAM = "eventsLatencyMs";
+
+  private DynamicMetricsManager _metricsManager;
+  private MeterHandle _meterHandle;
+  private HistogramHandle _histogramHandle;
+
+  /**
+   * Create the metrics manager and resolve the handles
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+    BenchmarkUtils.initMetrics();
+    _metricsManager = DynamicMetricsManager.getInstance();
+    _meterHandle = _metricsManager.meterHandle(CLASS_NAME, KEY, METER);
+    _histogramHandle = _metricsManager.histogramHandle(CLASS_NAME, KEY, HISTOGRAM);
+  }
+
+  /**
+   * Mark the meter, looking it up by name
+   */
+  @Benchmark
+  public void meterByName() {
+    _metricsManager.createOrUpdateMeter(CLASS_NAME, KEY, METER, 1);
+  }
+
+  /**
+   * Mark the meter through its handle
+   */
+  @Benchmark
+  public void meterHandle() {
+    _meterHandle.mark();
+  }
+
+  /**
+   * Update the histogram, looking it up by name
+   */
+  @Benchmark
+  public void histogramByName() {
+    _metricsManager.createOrUpdateHistogram(CLASS_NAME, KEY, HISTOGRAM, 42);
+  }
+
+  /**
+   * Update the histogram through its handle
+   */
+  @Benchmark
+  public void histogramHandle() {
+    _histogramHandle.update(42);
+  }
+}
@@ -0,0 +1,118 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.benchmarks;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.linkedin.datastream.server.DatastreamProducerRecord;
+import com.linkedin.datastream.server.DatastreamTaskImpl;
+import com.linkedin.datastream.server.EventProducer;
+import com.linkedin.datastream.server.InMemoryTransportProvider;
+import com.linkedin.datastream.server.NoOpTransportProviderAdminFactory;
+import com.linkedin.datastream.server.api.transport.SendCallback;
+import com.linkedin.datastream.server.api.transport.TransportProvider;
+import com.linkedin.datastream.server.providers.NoOpCheckpointProvider;
+
+
+/**
+ * Benchmarks of {@link EventProducer#send} and {@link EventProducer#sendBatch}, over a transport provider which
+ * either completes each send right away (noOp) or keeps the records in memory (inMemory)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventProducerBenchmark {
+  private static final String DESTINATION = "destination";
+  private static final int NUM_PARTITIONS = 8;
+  private static final int BATCH_SIZE = 100;
+
+  @Param({"noOp", "inMemory"})
+  public String transport;
+
+  @Param({"1024"})
+  public int valueSize;
+
+  private EventProducer _eventProducer;
+  private InMemoryTransportProvider _inMemoryTransportProvider;
+  private DatastreamProducerRecord[] _records;
+  private List<DatastreamProducerRecord> _batch;
+  private int _next;
+  private long _completedSends;
+  private final SendCallback _callback = (metadata, exception) -> _completedSends++;
+
+  /**
+   * Create the event producer and the records it sends
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+    BenchmarkUtils.initMetrics();
+    DatastreamTaskImpl task = BenchmarkUtils.createTask("eventProducerBenchmark", DESTINATION, NUM_PARTITIONS);
+    TransportProvider transportProvider;
+    if ("inMemory".equals(transport)) {
+      _inMemoryTransportProvider = new InMemoryTransportProvider();
+      _inMemoryTransportProvider.addTopic(DESTINATION, NUM_PARTITIONS);
+      transportProvider = _inMemoryTransportProvider;
+    } else {
+      transportProvider = new NoOpTransportProviderAdminFactory.NoOpTransportProvider();
+    }
+    _eventProducer = new EventProducer(task, transportProvider, new NoOpCheckpointProvider(), new Properties(), false);
+
+    _records = new DatastreamProducerRecord[BATCH_SIZE];
+    for (int i = 0; i < _records.length; i++) {
+      _records[i] = BenchmarkUtils.createRecord(i % NUM_PARTITIONS, String.valueOf(i), 16, valueSize);
+    }
+    _batch = Arrays.asList(_records);
+  }
+
+  /**
+   * Drop the records kept by the in-memory transport provider, so that the heap doesn't grow across iterations
+   */
+  @Setup(Level.Iteration)
+  public void clearRecords() {
+    if (_inMemoryTransportProvider != null) {
+      _inMemoryTransportProvider.getRecordsReceived().clear();
+    }
+  }
+
+  /**
+   * Send one record at a time
+   */
+  @Benchmark
+  public void send() {
+    DatastreamProducerRecord record = _records[_next];
+    _next = (_next + 1) % _records.length;
+    _eventProducer.send(record, _callback);
+  }
+
+  /**
+   * Send {@value #BATCH_SIZE} records at a time
+   */
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void sendBatch() {
+    _eventProducer.sendBatch(_batch, _callback);
+  }
+}
@@ -0,0 +1,92 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.benchmarks;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.linkedin.datastream.server.DatastreamProducerRecord;
+import com.linkedin.datastream.server.DatastreamTaskImpl;
+import com.linkedin.datastream.server.EventProducer;
+import com.linkedin.datastream.server.FlushlessEventProducerHandler;
+import com.linkedin.datastream.server.NoOpTransportProviderAdminFactory;
+import com.linkedin.datastream.server.api.transport.SendCallback;
+import com.linkedin.datastream.server.callbackstatus.CallbackStatusWithComparableOffsetsFactory;
+import com.linkedin.datastream.server.callbackstatus.CallbackStatusWithLongOffsetsFactory;
+import com.linkedin.datastream.server.providers.NoOpCheckpointProvider;
+
+
+/**
+ * Benchmarks of {@link FlushlessEventProducerHandler#send}, i.e. the in-flight and checkpoint tracking of flushless
+ * mode, over an {@link EventProducer} whose transport completes each send right away
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FlushlessEventProducerHandlerBenchmark {
+  private static final String SOURCE = "source";
+  private static final String DESTINATION = "destination";
+  private static final int NUM_RECORDS = 128;
+
+  @Param({"long", "comparable"})
+  public String callbackStatus;
+
+  @Param({"1", "64"})
+  public int numPartitions;
+
+  private FlushlessEventProducerHandler<Long> _handler;
+  private DatastreamProducerRecord[] _records;
+  private long _offset;
+  private long _completedSends;
+  private final SendCallback _callback = (metadata, exception) -> _completedSends++;
+
+  /**
+   * Create the handler and the records it sends
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+    BenchmarkUtils.initMetrics();
+    DatastreamTaskImpl task = BenchmarkUtils.createTask("flushlessBenchmark", DESTINATION, numPartitions);
+    EventProducer eventProducer = new EventProducer(task, new NoOpTransportProviderAdminFactory.NoOpTransportProvider(),
+        new NoOpCheckpointProvider(), new Properties(), false);
+    if ("long".equals(callbackStatus)) {
+      _handler = new FlushlessEventProducerHandler<>(eventProducer, new CallbackStatusWithLongOffsetsFactory());
+    } else {
+      _handler = new FlushlessEventProducerHandler<>(eventProducer, new CallbackStatusWithComparableOffsetsFactory<>());
+    }
+
+    _records = new DatastreamProducerRecord[NUM_RECORDS];
+    for (int i = 0; i < NUM_RECORDS; i++) {
+      _records[i] = BenchmarkUtils.createRecord(i % numPartitions, String.valueOf(i), 16, 128);
+    }
+  }
+
+  /**
+   * Send the next offset of one of the source partitions
+   */
+  @Benchmark
+  public void send() {
+    long offset = _offset++;
+    DatastreamProducerRecord record = _records[(int) (offset % NUM_RECORDS)];
+    _handler.send(record, SOURCE, record.getPartition().orElse(0), offset, _callback);
+  }
+}
@@ -0,0 +1,117 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.benchmarks;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.linkedin.datastream.kafka.KafkaMirrorProducerRecord;
+import com.linkedin.datastream.kafka.KafkaTransportProviderAdmin;
+import com.linkedin.datastream.server.DatastreamProducerRecord;
+import com.linkedin.datastream.server.DatastreamTaskImpl;
+import com.linkedin.datastream.server.api.transport.SendCallback;
+import com.linkedin.datastream.server.api.transport.TransportProvider;
+
+
+/**
+ * Benchmarks of {@link com.linkedin.datastream.kafka.KafkaTransportProvider#send}, from the conversion of the record
+ * to the callback of a mocked Kafka producer which completes every send right away
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KafkaTransportProviderBenchmark {
+  private static final String DESTINATION = "kafka://localhost:9092/benchmark";
+  private static final int NUM_PARTITIONS = 8;
+  private static final int NUM_RECORDS = 128;
+
+  @Param({"1", "4"})
+  public int producersPerTask;
+
+  @Param({"1024"})
+  public int valueSize;
+
+  private KafkaTransportProviderAdmin _admin;
+  private DatastreamTaskImpl _task;
+  private TransportProvider _transportProvider;
+  private DatastreamProducerRecord[] _records;
+  private DatastreamProducerRecord[] _mirrorRecords;
+  private int _next;
+  private long _completedSends;
+  private final SendCallback _callback = (metadata, exception) -> _completedSends++;
+
+  /**
+   * Create the transport provider over mocked Kafka producers, and the records it sends
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+    BenchmarkUtils.initMetrics();
+    Properties props = new Properties();
+    props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+    props.put("kafkaProducerFactory", MockKafkaProducerFactory.class.getName());
+    props.put(KafkaTransportProviderAdmin.CONFIG_PRODUCERS_PER_TASK, String.valueOf(producersPerTask));
+    _admin = new KafkaTransportProviderAdmin("benchmark", props);
+    _task = BenchmarkUtils.createTask("kafkaTransportProviderBenchmark", DESTINATION, NUM_PARTITIONS);
+    _transportProvider = _admin.assignTransportProvider(_task);
+
+    _records = new DatastreamProducerRecord[NUM_RECORDS];
+    _mirrorRecords = new DatastreamProducerRecord[NUM_RECORDS];
+    for (int i = 0; i < NUM_RECORDS; i++) {
+      int partition = i % NUM_PARTITIONS;
+      _records[i] = BenchmarkUtils.createRecord(partition, String.valueOf(i), 16, valueSize);
+      _mirrorRecords[i] = new KafkaMirrorProducerRecord("localhost:9093", "benchmark", partition, i,
+          System.currentTimeMillis(), new byte[16], new byte[valueSize], null, DESTINATION, partition);
+    }
+  }
+
+  /**
+   * Release the mocked producers
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    _admin.unassignTransportProvider(_task);
+  }
+
+  /**
+   * Send a record built by {@link com.linkedin.datastream.server.DatastreamProducerRecordBuilder}
+   */
+  @Benchmark
+  public void send() {
+    _transportProvider.send(DESTINATION, _records[nextIndex()], _callback);
+  }
+
+  /**
+   * Send a {@link KafkaMirrorProducerRecord}, which skips the generic conversion of the record
+   */
+  @Benchmark
+  public void sendMirrorRecord() {
+    _transportProvider.send(DESTINATION, _mirrorRecords[nextIndex()], _callback);
+  }
+
+  private int nextIndex() {
+    int index = _next;
+    _next = (index + 1) % NUM_RECORDS;
+    return index;
+  }
+}
@@ -0,0 +1,144 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.linkedin.datastream.common.Datastream;
+import com.linkedin.datastream.common.DatastreamMetadataConstants;
+import com.linkedin.datastream.server.ClusterThroughputInfo;
+import com.linkedin.datastream.server.DatastreamGroup;
+import com.linkedin.datastream.server.DatastreamGroupPartitionsMetadata;
+import com.linkedin.datastream.server.DatastreamTask;
+import com.linkedin.datastream.server.DatastreamTaskImpl;
+import com.linkedin.datastream.server.PartitionThroughputInfo;
+import com.linkedin.datastream.server.assignment.LoadBasedPartitionAssigner;
+import com.linkedin.datastream.server.zk.ZkAdapter;
+import com.linkedin.datastream.testutil.DatastreamTestUtils;
+
+
+/**
+ * Benchmarks of {@link LoadBasedPartitionAssigner#assignPartitions} on a large wildcard datastream, alternating between
+ * an assignment where new partitions show up and one where they go away again. The assigner is either reused between
+ * assignments, which only applies what changed, or created for each one, which computes the assignment from scratch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LoadBasedPartitionAssignerBenchmark {
+  private static final int PARTITIONS_PER_TOPIC = 100;
+  private static final int NUM_INSTANCES = 20;
+
+  @Param({"100000"})
+  public int numPartitions;
+
+  @Param({"1000"})
+  public int numTasks;
+
+  @Param({"10", "1000"})
+  public int numChangedPartitions;
+
+  @Param({"true", "false"})
+  public boolean reuseAssigner;
+
+  private LoadBasedPartitionAssigner _assigner;
+  private ClusterThroughputInfo _throughputInfo;
+  private DatastreamGroupPartitionsMetadata _metadata;
+  private DatastreamGroupPartitionsMetadata _metadataWithNewPartitions;
+  private Set<String> _newPartitions;
+  private Map<String, Set<DatastreamTask>> _assignment;
+  private boolean _addPartitions;
+
+  /**
+   * Create the partitions, their throughput and the tasks, and compute the initial assignment
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+    BenchmarkUtils.initMetrics();
+    Datastream datastream = DatastreamTestUtils.createDatastream(BenchmarkUtils.CONNECTOR_TYPE, "benchmark",
+        "source", "destination", 0);
+    datastream.getMetadata().put(DatastreamMetadataConstants.TASK_PREFIX, DatastreamTaskImpl.getTaskPrefix(datastream));
+    DatastreamGroup datastreamGroup = new DatastreamGroup(Collections.singletonList(datastream));
+
+    Random random = new Random(0);
+    Map<String, PartitionThroughputInfo> partitionInfo = new HashMap<>();
+    List<String> partitions = new ArrayList<>();
+    List<String> partitionsWithNewPartitions = new ArrayList<>();
+    _newPartitions = new HashSet<>();
+    for (int i = 0; i < numPartitions + numChangedPartitions; i++) {
+      String partition = String.format("topic%d-%d", i / PARTITIONS_PER_TOPIC, i % PARTITIONS_PER_TOPIC);
+      partitionInfo.put(partition, new PartitionThroughputInfo(random.nextInt(1000), random.nextInt(1000), partition));
+      partitionsWithNewPartitions.add(partition);
+      if (i < numPartitions) {
+        partitions.add(partition);
+      } else {
+        _newPartitions.add(partition);
+      }
+    }
+    _throughputInfo = new ClusterThroughputInfo("source", partitionInfo);
+    _metadata = new DatastreamGroupPartitionsMetadata(datastreamGroup, partitions);
+    _metadataWithNewPartitions = new DatastreamGroupPartitionsMetadata(datastreamGroup, partitionsWithNewPartitions);
+
+    // the tasks are never actually locked, the assigner only checks that they are before replacing them
+    ZkAdapter zkAdapter = new ZkAdapter("", "benchmark", null, 0, 0, 0, 0, null) {
+      @Override
+      public boolean checkIsTaskLocked(String connectorType, String taskPrefix, String taskName) {
+        return true;
+      }
+    };
+    Map<String, Set<DatastreamTask>> assignment = new HashMap<>();
+    for (int i = 0; i < numTasks; i++) {
+      DatastreamTaskImpl task = new DatastreamTaskImpl(Collections.singletonList(datastream));
+      task.setZkAdapter(zkAdapter);
+      assignment.computeIfAbsent("instance" + i % NUM_INSTANCES, k -> new HashSet<>()).add(task);
+    }
+    _assigner = new LoadBasedPartitionAssigner(5, 5);
+    _assignment = _assigner.assignPartitions(_throughputInfo, assignment, new HashSet<>(partitions), _metadata,
+        Integer.MAX_VALUE);
+    _addPartitions = true;
+  }
+
+  /**
+   * Assign the new partitions, or remove them if they were assigned by the previous invocation
+   */
+  @Benchmark
+  public Map<String, Set<DatastreamTask>> assignChangedPartitions() {
+    LoadBasedPartitionAssigner assigner = reuseAssigner ? _assigner : new LoadBasedPartitionAssigner(5, 5);
+    if (_addPartitions) {
+      _assignment = assigner.assignPartitions(_throughputInfo, _assignment, _newPartitions,
+          _metadataWithNewPartitions, Integer.MAX_VALUE);
+    } else {
+      _assignment = assigner.assignPartitions(_throughputInfo, _assignment, Collections.emptySet(), _metadata,
+          Integer.MAX_VALUE);
+    }
+    _addPartitions = !_addPartitions;
+    return _assignment;
+  }
+}
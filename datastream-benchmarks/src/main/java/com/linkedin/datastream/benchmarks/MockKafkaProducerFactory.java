@@ -0,0 +1,43 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.benchmarks;
+
+import java.util.Properties;
+import java.util.concurrent.Future;
+
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+
+import com.linkedin.datastream.kafka.factory.KafkaProducerFactory;
+
+
+/**
+ * {@link KafkaProducerFactory} of producers which complete every send right away, without talking to any broker.
+ * Records must have a partition, since the producers know no cluster metadata to pick one.
+ */
+public class MockKafkaProducerFactory implements KafkaProducerFactory<byte[], byte[]> {
+  // the history of sent records is dropped every so often, so that it doesn't grow during the benchmark
+  private static final int HISTORY_SIZE = 1024;
+
+  @Override
+  public Producer<byte[], byte[]> createProducer(Properties transportProps) {
+    return new MockProducer<byte[], byte[]>(true, new ByteArraySerializer(), new ByteArraySerializer()) {
+      private int _sends = 0;
+
+      @Override
+      public synchronized Future<RecordMetadata> send(ProducerRecord<byte[], byte[]> record, Callback callback) {
+        if (++_sends % HISTORY_SIZE == 0) {
+          clear();
+        }
+        return super.send(record, callback);
+      }
+    };
+  }
+}
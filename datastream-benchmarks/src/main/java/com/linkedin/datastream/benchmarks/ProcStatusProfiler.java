@@ -0,0 +1,135 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.benchmarks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+
+/**
+ * JMH profiler which samples the /proc status of the benchmark JVM, on Linux only. Enable it with
+ * {@code -Pprofilers=com.linkedin.datastream.benchmarks.ProcStatusProfiler}. It reports for each iteration:
+ * <ul>
+ *   <li>{@code ctxsw.voluntary} and {@code ctxsw.involuntary}: the context switches per operation, summed over the
+ *   threads of the JVM. The switches of the threads which exit during the iteration are lost, so only the
+ *   benchmarks whose threads outlive the iterations are covered.</li>
+ *   <li>{@code rss.perTask} and {@code heap.perTask}: the growth of the resident memory and of the heap used after
+ *   a GC since the first iteration started, divided by the {@code numTasks} parameter of the benchmark. It's the
+ *   memory held by each of the threads which the benchmark keeps across iterations.</li>
+ *   <li>{@code threads}: the number of kernel threads of the JVM</li>
+ * </ul>
+ */
+public class ProcStatusProfiler implements InternalProfiler {
+  private static final Path PROC_SELF = Paths.get("/proc/self");
+  private static final String NUM_TASKS_PARAM = "numTasks";
+
+  private long _baselineRssKb = -1;
+  private long _baselineHeapBytes = -1;
+  private long _voluntarySwitches;
+  private long _involuntarySwitches;
+
+  @Override
+  public String getDescription() {
+    return "Context switches and memory per task, from /proc/self";
+  }
+
+  @Override
+  public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+    if (_baselineRssKb < 0) {
+      _baselineHeapBytes = getHeapUsedAfterGc();
+      _baselineRssKb = readStatus(PROC_SELF.resolve("status"), "VmRSS:");
+    }
+    long[] switches = readContextSwitches();
+    _voluntarySwitches = switches[0];
+    _involuntarySwitches = switches[1];
+  }
+
+  @Override
+  public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams,
+      IterationResult result) {
+    long[] switches = readContextSwitches();
+    long ops = Math.max(result.getMetadata().getAllOps(), 1);
+    Path status = PROC_SELF.resolve("status");
+
+    List<Result> results = new ArrayList<>();
+    results.add(new ScalarResult("ctxsw.voluntary", (double) (switches[0] - _voluntarySwitches) / ops,
+        "#/op", AggregationPolicy.AVG));
+    results.add(new ScalarResult("ctxsw.involuntary", (double) (switches[1] - _involuntarySwitches) / ops,
+        "#/op", AggregationPolicy.AVG));
+    results.add(new ScalarResult("threads", readStatus(status, "Threads:"), "#", AggregationPolicy.AVG));
+
+    String numTasks = benchmarkParams.getParam(NUM_TASKS_PARAM);
+    if (numTasks != null) {
+      int tasks = Integer.parseInt(numTasks);
+      results.add(new ScalarResult("rss.perTask", (double) (readStatus(status, "VmRSS:") - _baselineRssKb) / tasks,
+          "KB/task", AggregationPolicy.AVG));
+      results.add(new ScalarResult("heap.perTask", (double) (getHeapUsedAfterGc() - _baselineHeapBytes) / tasks,
+          "B/task", AggregationPolicy.AVG));
+    }
+    return results;
+  }
+
+  private static long getHeapUsedAfterGc() {
+    System.gc();
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+
+  /**
+   * Sum the voluntary and involuntary context switches of the threads which are alive
+   */
+  private static long[] readContextSwitches() {
+    long[] switches = new long[2];
+    try (DirectoryStream<Path> tasks = Files.newDirectoryStream(PROC_SELF.resolve("task"))) {
+      for (Path task : tasks) {
+        try {
+          List<String> lines = Files.readAllLines(task.resolve("status"));
+          switches[0] += getValue(lines, "voluntary_ctxt_switches:");
+          switches[1] += getValue(lines, "nonvoluntary_ctxt_switches:");
+        } catch (NoSuchFileException e) {
+          // the thread exited since the tasks were listed
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read the context switches of the threads", e);
+    }
+    return switches;
+  }
+
+  private static long readStatus(Path status, String key) {
+    try {
+      return getValue(Files.readAllLines(status), key);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read " + status, e);
+    }
+  }
+
+  // Get the value of a line like "VmRSS:    1234 kB", in the unit of the line
+  private static long getValue(List<String> lines, String key) {
+    for (String line : lines) {
+      if (line.startsWith(key)) {
+        return Long.parseLong(line.substring(key.length()).trim().split("\\s+")[0]);
+      }
+    }
+    throw new IllegalStateException("No " + key + " in the status");
+  }
+}
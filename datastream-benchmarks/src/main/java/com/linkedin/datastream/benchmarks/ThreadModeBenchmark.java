@@ -0,0 +1,141 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.linkedin.datastream.common.DatastreamThreadFactory;
+import com.linkedin.datastream.common.DatastreamThreadFactory.ThreadMode;
+
+
+/**
+ * Benchmarks of the {@link DatastreamThreadFactory} thread modes with many tasks which mostly block, like connector
+ * tasks waiting on their consumers: starting and joining short-lived threads, and waking up parked threads one
+ * message at a time. Virtual threads require running the benchmark on JDK 21 or later.
+ *
+ * The memory held by each parked thread, and the context switches of a handoff, are reported by
+ * {@link ProcStatusProfiler} on Linux:
+ * {@code ./gradlew :datastream-benchmarks:jmh -Pbenchmarks=ThreadModeBenchmark.handoff
+ * -Pprofilers=com.linkedin.datastream.benchmarks.ProcStatusProfiler}. The context switches of startAndJoin, whose
+ * threads exit, are only counted by the perfnorm profiler, which requires perf.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ThreadModeBenchmark {
+  private static final Runnable STOP = () -> { };
+
+  @Param({"platform", "virtual"})
+  public String mode;
+
+  @Param({"1000", "4000"})
+  public int numTasks;
+
+  private List<Thread> _parkedThreads;
+  private List<BlockingQueue<Runnable>> _queues;
+
+  /**
+   * Set the thread mode, and start the parked threads of {@link #handoff()}
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+    ThreadMode threadMode = ThreadMode.valueOf(mode.toUpperCase(Locale.ROOT));
+    if (threadMode == ThreadMode.VIRTUAL && !DatastreamThreadFactory.isVirtualThreadSupported()) {
+      throw new IllegalStateException("Virtual threads are not supported by this JVM");
+    }
+    DatastreamThreadFactory.setThreadMode(threadMode);
+
+    _parkedThreads = new ArrayList<>(numTasks);
+    _queues = new ArrayList<>(numTasks);
+    for (int i = 0; i < numTasks; i++) {
+      BlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+      Thread thread = DatastreamThreadFactory.newDaemonThread(() -> runParked(queue), "ThreadModeBenchmark-" + i);
+      thread.start();
+      _queues.add(queue);
+      _parkedThreads.add(thread);
+    }
+  }
+
+  /**
+   * Stop the parked threads and restore the default thread mode
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() throws InterruptedException {
+    _queues.forEach(queue -> queue.add(STOP));
+    for (Thread thread : _parkedThreads) {
+      thread.join();
+    }
+    DatastreamThreadFactory.setThreadMode(ThreadMode.PLATFORM);
+  }
+
+  private void runParked(BlockingQueue<Runnable> queue) {
+    try {
+      for (Runnable message = queue.take(); message != STOP; message = queue.take()) {
+        message.run();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Start the tasks on threads of their own, each blocking for a millisecond, and wait for all of them to finish
+   */
+  @Benchmark
+  public int startAndJoin() throws InterruptedException {
+    List<Thread> threads = new ArrayList<>(numTasks);
+    for (int i = 0; i < numTasks; i++) {
+      Thread thread = DatastreamThreadFactory.newDaemonThread(() -> {
+        try {
+          Thread.sleep(1);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }, "ThreadModeBenchmark-startAndJoin");
+      thread.start();
+      threads.add(thread);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    return threads.size();
+  }
+
+  /**
+   * Wake up every parked thread with a message, and wait for all of them to ack it
+   */
+  @Benchmark
+  public long handoff() throws InterruptedException {
+    CountDownLatch acks = new CountDownLatch(numTasks);
+    Runnable ack = acks::countDown;
+    _queues.forEach(queue -> queue.add(ack));
+    acks.await();
+    return acks.getCount();
+  }
+}
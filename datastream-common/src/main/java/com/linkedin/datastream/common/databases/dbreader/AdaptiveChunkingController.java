@@ -0,0 +1,118 @@
+/**
+ *  Copyright 2021 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.common.databases.dbreader;
+
+/**
+ * Chooses the row count limit, fetch size and statement execution delay of the chunked queries of a
+ * {@link DatabaseChunkedReader}, within the bounds of the {@link DatabaseChunkedReaderConfig}.
+ *
+ * After each query, the chunks are shrunk in proportion to the query duration exceeding its budget, and the delay
+ * doubled, to relieve the database. The chunks are grown by a quarter, and the delay halved, while queries take less
+ * than half of their budget. A producer lag above its budget doubles the delay, without changing the chunks.
+ * If adaptive chunking is not enabled, the configured values are used as is.
+ *
+ * The row count limit is written in the text of the chunked queries, which are prepared again whenever it changes.
+ * So the limit used is the chunk size rounded down to a power of two (or to the min or max limit), and only changes
+ * once the chunk size doubled or halved.
+ */
+class AdaptiveChunkingController {
+  // Delay added when backing off from no delay
+  static final long DELAY_STEP_MS = 100;
+
+  private final boolean _enabled;
+  private final long _targetQueryDurationMs;
+  private final long _minRowCountLimit;
+  private final long _maxRowCountLimit;
+  private final int _maxFetchSize;
+  private final long _minStatementExecutionDelayMs;
+  private final long _maxStatementExecutionDelayMs;
+  private final long _maxProducerLagMs;
+
+  // Chunk size the row count limit is rounded from, only accessed by the reader thread
+  private long _chunkSize;
+  // Updated by the reader thread, and read by the metrics reporters
+  private volatile long _rowCountLimit;
+  private volatile long _statementExecutionDelayMs;
+  // Updated by the producer of the rows read
+  private volatile long _producerLagMs = 0;
+
+  /**
+   * Constructor for AdaptiveChunkingController
+   * @param config configuration of the reader
+   */
+  AdaptiveChunkingController(DatabaseChunkedReaderConfig config) {
+    _enabled = config.getAdaptiveChunkingEnabled();
+    _targetQueryDurationMs = config.getTargetQueryDurationMs();
+    _minRowCountLimit = config.getMinRowCountLimit();
+    _maxRowCountLimit = config.getMaxRowCountLimit();
+    _maxFetchSize = config.getFetchSize();
+    _minStatementExecutionDelayMs = config.getStatementExecutionDelay();
+    _maxStatementExecutionDelayMs = config.getMaxStatementExecutionDelay();
+    _maxProducerLagMs = config.getMaxProducerLagMs();
+
+    if (_enabled) {
+      setChunkSize(config.getRowCountLimit());
+    } else {
+      _rowCountLimit = config.getRowCountLimit();
+    }
+    _statementExecutionDelayMs = _minStatementExecutionDelayMs;
+  }
+
+  /**
+   * Adapt the chunking to the duration of the last query
+   */
+  void onQueryExecuted(long durationMs) {
+    if (!_enabled) {
+      return;
+    }
+
+    if (_producerLagMs > _maxProducerLagMs) {
+      // the producer is falling behind, wait longer between queries regardless of the database load
+      increaseDelay();
+    } else if (durationMs > _targetQueryDurationMs) {
+      setChunkSize(_chunkSize * _targetQueryDurationMs / durationMs);
+      increaseDelay();
+    } else if (durationMs < _targetQueryDurationMs / 2) {
+      setChunkSize(_chunkSize + Math.max(1, _chunkSize / 4));
+      _statementExecutionDelayMs = Math.max(_minStatementExecutionDelayMs, _statementExecutionDelayMs / 2);
+    } else {
+      _statementExecutionDelayMs = Math.max(_minStatementExecutionDelayMs, _statementExecutionDelayMs / 2);
+    }
+  }
+
+  /**
+   * Report how far behind the producer of the rows read is, e.g. the age of the oldest row not acknowledged yet
+   */
+  void updateProducerLag(long producerLagMs) {
+    _producerLagMs = producerLagMs;
+  }
+
+  private void increaseDelay() {
+    _statementExecutionDelayMs =
+        Math.min(_maxStatementExecutionDelayMs, Math.max(_statementExecutionDelayMs * 2, DELAY_STEP_MS));
+  }
+
+  private void setChunkSize(long chunkSize) {
+    _chunkSize = Math.min(_maxRowCountLimit, Math.max(_minRowCountLimit, chunkSize));
+    _rowCountLimit = _chunkSize == _maxRowCountLimit ? _maxRowCountLimit
+        : Math.max(_minRowCountLimit, Long.highestOneBit(_chunkSize));
+  }
+
+  long getRowCountLimit() {
+    return _rowCountLimit;
+  }
+
+  /**
+   * Get the fetch size, which is capped to the row count limit as a query never returns more rows
+   */
+  int getFetchSize() {
+    return _enabled && _maxFetchSize > 0 ? (int) Math.min(_maxFetchSize, _rowCountLimit) : _maxFetchSize;
+  }
+
+  long getStatementExecutionDelayMs() {
+    return _statementExecutionDelayMs;
+  }
+}
@@ -64,15 +64,10 @@ public class DatabaseChunkedReader implements Closeable {
   private final Connection _connection;
 
   private final DatabaseChunkedReaderConfig _databaseChunkedReaderConfig;
-  // Max number of rows to fetch for each query. This will help the server limit the number of full row
-  // fetches that it has to do. For example in Oracle, a ROWNUM <= 1000 will add a stopKey constraint where the DB will
-  // only look for first 1000 matches that match the specified constraints and will do a full row fetch only for these.
-  private final long _rowCountLimit;
+  // Chooses the max number of rows to fetch for each query, the fetch size and the delay between statements.
+  private final AdaptiveChunkingController _chunkingController;
   private final List<Integer> _partitions = new ArrayList<>();
   private final int _queryTimeoutSecs;
-  // If the ResultSet is 10000 rows, with fetchSize set to 1000, it would take 10 network calls to fetch the entire
-  // ResultSet from the server.
-  private final int _fetchSize;
   private final String _sourceQuery;
   private final String _readerId;
   private final String _database;
@@ -89,13 +84,17 @@ public class DatabaseChunkedReader implements Closeable {
   private String _chunkedQuery;
   private PreparedStatement _firstStmt;
   private PreparedStatement _queryStmt;
+  // Max number of rows to fetch for each query, as in the prepared statements. This will help the server limit the
+  // number of full row fetches that it has to do. For example in Oracle, a ROWNUM <= 1000 will add a stopKey
+  // constraint where the DB will only look for first 1000 matches that match the specified constraints and will
+  // do a full row fetch only for these.
+  private long _rowCountLimit;
   private ResultSet _queryResultSet;
   private long _numRowsInResult = 0;
   private Schema _tableSchema;
 
   private DatabaseChunkedReaderMetrics _metrics;
 
-  private long _statementExecutionDelayMs;
   private long _lastStatementExecutionMs = 0;
 
   /**
@@ -120,13 +119,11 @@ public class DatabaseChunkedReader implements Closeable {
     _databaseSource = databaseSource;
     _readerId = id;
     _table = table;
-    _fetchSize = _databaseChunkedReaderConfig.getFetchSize();
     _queryTimeoutSecs = _databaseChunkedReaderConfig.getQueryTimeout();
-    _rowCountLimit = _databaseChunkedReaderConfig.getRowCountLimit();
+    _chunkingController = new AdaptiveChunkingController(_databaseChunkedReaderConfig);
     _connection = connection;
     _chunkedQueryManager = _databaseChunkedReaderConfig.getChunkedQueryManager();
     _skipBadMessagesEnabled = _databaseChunkedReaderConfig.getShouldSkipBadMessage();
-    _statementExecutionDelayMs = _databaseChunkedReaderConfig.getStatementExecutionDelay();
 
     if (StringUtils.isBlank(db)) {
       _database = _connection.getMetaData().getUserName();
@@ -164,21 +161,35 @@ public class DatabaseChunkedReader implements Closeable {
   }
 
   private void generateChunkedQueries() throws SQLException {
+    _rowCountLimit = _chunkingController.getRowCountLimit();
     String firstQuery =
         _chunkedQueryManager.generateFirstQuery(_sourceQuery, new ArrayList<>(_chunkingKeys.keySet()), _rowCountLimit,
             _numPartitions, _partitions);
     _firstStmt = _connection.prepareStatement(firstQuery);
-    _firstStmt.setFetchSize(_fetchSize);
     _firstStmt.setQueryTimeout(_queryTimeoutSecs);
 
     _chunkedQuery =
         _chunkedQueryManager.generateChunkedQuery(_sourceQuery, new ArrayList<>(_chunkingKeys.keySet()), _rowCountLimit,
             _numPartitions, _partitions);
     _queryStmt = _connection.prepareStatement(_chunkedQuery);
-    _queryStmt.setFetchSize(_fetchSize);
     _queryStmt.setQueryTimeout(_queryTimeoutSecs);
   }
 
+  /**
+   * Regenerate the chunked queries if the row count limit was changed, as it is part of the query
+   */
+  private void refreshChunkedQueries() throws SQLException {
+    if (_rowCountLimit == _chunkingController.getRowCountLimit()) {
+      return;
+    }
+
+    LOG.debug("Reader {} changing row count limit from {} to {}", _readerId, _rowCountLimit,
+        _chunkingController.getRowCountLimit());
+    closeStatement(_firstStmt);
+    closeStatement(_queryStmt);
+    generateChunkedQueries();
+  }
+
   /**
    * Fill in the key values from previous query result
    */
@@ -187,20 +198,24 @@ public class DatabaseChunkedReader implements Closeable {
   }
 
   private void executeChunkedQuery(PreparedStatement stmt) throws SQLException {
+    long statementExecutionDelayMs = _chunkingController.getStatementExecutionDelayMs();
     long executionDelayMs = System.currentTimeMillis() - _lastStatementExecutionMs;
-    if (executionDelayMs < _statementExecutionDelayMs) {
+    if (executionDelayMs < statementExecutionDelayMs) {
       try {
-        Thread.sleep(Math.max(0, _statementExecutionDelayMs - executionDelayMs));
+        Thread.sleep(Math.max(0, statementExecutionDelayMs - executionDelayMs));
       } catch (InterruptedException e) {
         throw new DatastreamRuntimeException("Failed to Thread.sleep() before next statement execution", e);
       }
     }
 
+    stmt.setFetchSize(_chunkingController.getFetchSize());
     long timeStart = System.currentTimeMillis();
     _queryResultSet = stmt.executeQuery();
     _lastStatementExecutionMs = System.currentTimeMillis();
-    _metrics.updateQueryExecutionDuration(System.currentTimeMillis() - timeStart);
+    long executionDurationMs = _lastStatementExecutionMs - timeStart;
+    _metrics.updateQueryExecutionDuration(executionDurationMs);
     _metrics.updateQueryExecutionRate();
+    _chunkingController.onQueryExecuted(executionDurationMs);
   }
 
   private void executeFirstChunkedQuery() throws SQLException {
@@ -209,11 +224,13 @@ public class DatabaseChunkedReader implements Closeable {
     if (checkpointsSaved) {
       executeNextChunkedQuery();
     } else {
+      refreshChunkedQueries();
       executeChunkedQuery(_firstStmt);
     }
   }
 
   private void executeNextChunkedQuery() throws SQLException {
+    refreshChunkedQueries();
     prepareChunkedQuery(_queryStmt, new ArrayList<>(_chunkingKeys.values()));
     executeChunkedQuery(_queryStmt);
   }
@@ -229,24 +246,21 @@ public class DatabaseChunkedReader implements Closeable {
       }
     }
 
-    if (_firstStmt != null) {
-      try {
-        _firstStmt.close();
-      } catch (SQLException e) {
-        LOG.warn("Failed to close Statement for reader {}. Might cause resource leak", _readerId, e);
-      }
-    }
+    closeStatement(_firstStmt);
+    closeStatement(_queryStmt);
 
-    if (_queryStmt != null) {
+    _metrics.deregister();
+    _initialized = false;
+  }
+
+  private void closeStatement(PreparedStatement stmt) {
+    if (stmt != null) {
       try {
-        _queryStmt.close();
+        stmt.close();
       } catch (SQLException e) {
         LOG.warn("Failed to close PreparedStatement for reader {}. Might cause resource leak", _readerId, e);
       }
     }
-
-    _metrics.deregister();
-    _initialized = false;
   }
 
   /**
@@ -264,7 +278,7 @@ public class DatabaseChunkedReader implements Closeable {
       throw new DatastreamRuntimeException("Subscribing an already subscribed reader");
     }
 
-    _metrics = new DatabaseChunkedReaderMetrics(String.join(".", _database, _table), _readerId);
+    _metrics = new DatabaseChunkedReaderMetrics(String.join(".", _database, _table), _readerId, _chunkingController);
     _partitions.addAll(partitions);
     initializeDatabaseMetadata(partitions);
     generateChunkedQueries();
@@ -358,6 +372,22 @@ public class DatabaseChunkedReader implements Closeable {
     return row;
   }
 
+  /**
+   * Get the values of the key columns of the last row polled, which can be passed to subscribe() to resume reading
+   * after this row. The values are null if no row was polled.
+   */
+  Map<String, Object> getCheckpoint() {
+    return new LinkedHashMap<>(_chunkingKeys);
+  }
+
+  /**
+   * Report how far behind the producer of the rows read is, e.g. the age of the oldest row not acknowledged yet by
+   * the destination. With adaptive chunking enabled, a lag above the configured budget slows down the queries.
+   */
+  public void updateProducerLag(long producerLagMs) {
+    _chunkingController.updateProducerLag(producerLagMs);
+  }
+
   public long getLastStatementExecutionMs() {
     return _lastStatementExecutionMs;
   }
@@ -35,12 +35,35 @@ public class DatabaseChunkedReaderConfig {
   // only look for first 1000 matches that match the specified constraints and will do a full row fetch only for these.
   public static final String ROW_COUNT_LIMIT = "chunk.rowCountLimit";
   public static final String DATABASE_QUERY_MANAGER_CLASS_NAME = "database.queryManager";
+  // Number of partitions read concurrently, each on its own connection, by the ParallelDatabaseChunkedReader.
+  public static final String PARALLELISM = "parallelism";
+  // Max number of rows read ahead by the ParallelDatabaseChunkedReader and not polled yet. The next chunk of a
+  // partition is queried while the rows of its current chunk are consumed, as long as there is room for them.
+  public static final String PREFETCH_ROW_COUNT = "prefetchRowCount";
+  // Adapts the row count limit, fetch size and statement execution delay to the query latency and producer lag,
+  // within the bounds below, starting from the configured values.
+  public static final String ADAPTIVE_CHUNKING_ENABLED = "adaptive.enabled";
+  // Query duration budget. Longer queries shrink the chunks and add delay, much shorter ones grow them.
+  public static final String TARGET_QUERY_DURATION_MS = "adaptive.targetQueryDurationMs";
+  public static final String MIN_ROW_COUNT_LIMIT = "adaptive.minRowCountLimit";
+  public static final String MAX_ROW_COUNT_LIMIT = "adaptive.maxRowCountLimit";
+  public static final String MAX_STATEMENT_EXECUTION_DELAY = "adaptive.maxStatementExecutionDelay";
+  // Producer lag above which the statement execution delay is increased to let the producer catch up.
+  public static final String MAX_PRODUCER_LAG_MS = "adaptive.maxProducerLagMs";
   private static final Logger LOG = LoggerFactory.getLogger(DatabaseChunkedReaderConfig.class);
   private static final int DEFAULT_QUERY_TIMEOUT_SECS = 0;
   private static final int DEFAULT_FETCH_SIZE = 10000;
   private static final long DEFAULT_ROW_COUNT_LIMIT = 50000;
   private static final boolean DEFAULT_SKIP_BAD_MESSAGE = false;
   private static final long DEFAULT_STATEMENT_EXECUTION_DELAY = 0;
+  private static final int DEFAULT_PARALLELISM = 4;
+  private static final int DEFAULT_PREFETCH_ROW_COUNT = 50000;
+  private static final boolean DEFAULT_ADAPTIVE_CHUNKING_ENABLED = false;
+  private static final long DEFAULT_TARGET_QUERY_DURATION_MS = 1000;
+  private static final long DEFAULT_MIN_ROW_COUNT_LIMIT = 1000;
+  private static final long DEFAULT_MAX_ROW_COUNT_LIMIT = 500000;
+  private static final long DEFAULT_MAX_STATEMENT_EXECUTION_DELAY = 10000;
+  private static final long DEFAULT_MAX_PRODUCER_LAG_MS = 10000;
 
   private final int _queryTimeout;
   private final int _fetchSize;
@@ -48,6 +71,14 @@ public class DatabaseChunkedReaderConfig {
   private ChunkedQueryManager _chunkedQueryManager;
   private final boolean _shouldSkipBadMessage;
   private final long _statementExecutionDelay;
+  private final int _parallelism;
+  private final int _prefetchRowCount;
+  private final boolean _adaptiveChunkingEnabled;
+  private final long _targetQueryDurationMs;
+  private final long _minRowCountLimit;
+  private final long _maxRowCountLimit;
+  private final long _maxStatementExecutionDelay;
+  private final long _maxProducerLagMs;
 
   /**
    * Constructor for DatabaseChunkedReaderConfig
@@ -66,6 +97,22 @@ public class DatabaseChunkedReaderConfig {
     Validate.inclusiveBetween(0, Long.MAX_VALUE, _fetchSize);
     _shouldSkipBadMessage = verifiableProperties.getBoolean(SKIP_BAD_MESSAGE, DEFAULT_SKIP_BAD_MESSAGE);
     _statementExecutionDelay = verifiableProperties.getLong(STATEMENT_EXECUTION_DELAY, DEFAULT_STATEMENT_EXECUTION_DELAY);
+    _parallelism = verifiableProperties.getInt(PARALLELISM, DEFAULT_PARALLELISM);
+    Validate.inclusiveBetween(1, Integer.MAX_VALUE, _parallelism);
+    _prefetchRowCount = verifiableProperties.getInt(PREFETCH_ROW_COUNT, DEFAULT_PREFETCH_ROW_COUNT);
+    Validate.inclusiveBetween(1, Integer.MAX_VALUE, _prefetchRowCount);
+    _adaptiveChunkingEnabled = verifiableProperties.getBoolean(ADAPTIVE_CHUNKING_ENABLED, DEFAULT_ADAPTIVE_CHUNKING_ENABLED);
+    _targetQueryDurationMs = verifiableProperties.getLong(TARGET_QUERY_DURATION_MS, DEFAULT_TARGET_QUERY_DURATION_MS);
+    Validate.inclusiveBetween(1, Long.MAX_VALUE, _targetQueryDurationMs);
+    _minRowCountLimit = verifiableProperties.getLong(MIN_ROW_COUNT_LIMIT, DEFAULT_MIN_ROW_COUNT_LIMIT);
+    Validate.inclusiveBetween(1, Long.MAX_VALUE, _minRowCountLimit);
+    _maxRowCountLimit = verifiableProperties.getLong(MAX_ROW_COUNT_LIMIT, DEFAULT_MAX_ROW_COUNT_LIMIT);
+    Validate.inclusiveBetween(_minRowCountLimit, Long.MAX_VALUE, _maxRowCountLimit);
+    _maxStatementExecutionDelay = verifiableProperties.getLong(MAX_STATEMENT_EXECUTION_DELAY,
+        Math.max(DEFAULT_MAX_STATEMENT_EXECUTION_DELAY, _statementExecutionDelay));
+    Validate.inclusiveBetween(_statementExecutionDelay, Long.MAX_VALUE, _maxStatementExecutionDelay);
+    _maxProducerLagMs = verifiableProperties.getLong(MAX_PRODUCER_LAG_MS, DEFAULT_MAX_PRODUCER_LAG_MS);
+    Validate.inclusiveBetween(0, Long.MAX_VALUE, _maxProducerLagMs);
 
     String queryManagerClass = verifiableProperties.getString(DATABASE_QUERY_MANAGER_CLASS_NAME);
     if (StringUtils.isBlank(queryManagerClass)) {
@@ -101,4 +148,36 @@ public class DatabaseChunkedReaderConfig {
   public long getStatementExecutionDelay() {
     return _statementExecutionDelay;
   }
+
+  public int getParallelism() {
+    return _parallelism;
+  }
+
+  public int getPrefetchRowCount() {
+    return _prefetchRowCount;
+  }
+
+  public boolean getAdaptiveChunkingEnabled() {
+    return _adaptiveChunkingEnabled;
+  }
+
+  public long getTargetQueryDurationMs() {
+    return _targetQueryDurationMs;
+  }
+
+  public long getMinRowCountLimit() {
+    return _minRowCountLimit;
+  }
+
+  public long getMaxRowCountLimit() {
+    return _maxRowCountLimit;
+  }
+
+  public long getMaxStatementExecutionDelay() {
+    return _maxStatementExecutionDelay;
+  }
+
+  public long getMaxProducerLagMs() {
+    return _maxProducerLagMs;
+  }
 }
@@ -12,6 +12,7 @@ import java.util.List;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 
+import com.linkedin.datastream.metrics.BrooklinGaugeInfo;
 import com.linkedin.datastream.metrics.BrooklinHistogramInfo;
 import com.linkedin.datastream.metrics.BrooklinMeterInfo;
 import com.linkedin.datastream.metrics.BrooklinMetricInfo;
@@ -33,6 +34,10 @@ class DatabaseChunkedReaderMetrics extends BrooklinMetrics {
   private static final String QUERY_EXECUTION_DURATION = "queryExecutionDurationMs";
   private static final String QUERY_EXECUTION_RATE = "queryExecutionRate";
   private static final String ERROR_RATE = "errorRate";
+  // Chunking parameters chosen by the AdaptiveChunkingController, per reader
+  private static final String ROW_COUNT_LIMIT = "rowCountLimit";
+  private static final String FETCH_SIZE = "fetchSize";
+  private static final String STATEMENT_EXECUTION_DELAY = "statementExecutionDelayMs";
 
   // Per reader metrics
   private final Histogram _readerQueryExecutionDurationMs;
@@ -51,8 +56,9 @@ class DatabaseChunkedReaderMetrics extends BrooklinMetrics {
    * Create metrics manager object.
    * @param source Aggregate metrics for source .i.e. at the Database table level
    * @param key Metrics at the reader level, identified by key
+   * @param chunkingController Controller of the chunking parameters of the reader, reported as gauges
    */
-  public DatabaseChunkedReaderMetrics(String source, String key) {
+  public DatabaseChunkedReaderMetrics(String source, String key, AdaptiveChunkingController chunkingController) {
     super(CLASS_NAME, key);
     _source = source;
 
@@ -60,6 +66,10 @@ class DatabaseChunkedReaderMetrics extends BrooklinMetrics {
     _readerQueryExecutionRate = DYNAMIC_METRICS_MANAGER.registerMetric(CLASS_NAME, key, QUERY_EXECUTION_RATE, Meter.class);
     _readerErrorRate = DYNAMIC_METRICS_MANAGER.registerMetric(CLASS_NAME, key, ERROR_RATE, Meter.class);
     _readerSkippedBadMessagesRate = DYNAMIC_METRICS_MANAGER.registerMetric(CLASS_NAME, key, SKIPPED_BAD_MESSAGES_RATE, Meter.class);
+    DYNAMIC_METRICS_MANAGER.registerGauge(CLASS_NAME, key, ROW_COUNT_LIMIT, chunkingController::getRowCountLimit);
+    DYNAMIC_METRICS_MANAGER.registerGauge(CLASS_NAME, key, FETCH_SIZE, chunkingController::getFetchSize);
+    DYNAMIC_METRICS_MANAGER.registerGauge(CLASS_NAME, key, STATEMENT_EXECUTION_DELAY,
+        chunkingController::getStatementExecutionDelayMs);
 
     _sourceQueryExecutionDurationMs = DYNAMIC_METRICS_MANAGER.registerMetric(CLASS_NAME, source,
         QUERY_EXECUTION_DURATION, Histogram.class);
@@ -75,6 +85,9 @@ class DatabaseChunkedReaderMetrics extends BrooklinMetrics {
     DYNAMIC_METRICS_MANAGER.unregisterMetric(_className, _key, QUERY_EXECUTION_RATE);
     DYNAMIC_METRICS_MANAGER.unregisterMetric(_className, _key, ERROR_RATE);
     DYNAMIC_METRICS_MANAGER.unregisterMetric(_className, _key, SKIPPED_BAD_MESSAGES_RATE);
+    DYNAMIC_METRICS_MANAGER.unregisterMetric(_className, _key, ROW_COUNT_LIMIT);
+    DYNAMIC_METRICS_MANAGER.unregisterMetric(_className, _key, FETCH_SIZE);
+    DYNAMIC_METRICS_MANAGER.unregisterMetric(_className, _key, STATEMENT_EXECUTION_DELAY);
   }
 
   @Override
@@ -91,6 +104,9 @@ class DatabaseChunkedReaderMetrics extends BrooklinMetrics {
     metrics.add(new BrooklinMeterInfo(SOURCE_METRICS_PREFIX_REGEX + QUERY_EXECUTION_RATE));
     metrics.add(new BrooklinMeterInfo(SOURCE_METRICS_PREFIX_REGEX + ERROR_RATE));
     metrics.add(new BrooklinMeterInfo(SOURCE_METRICS_PREFIX_REGEX + SKIPPED_BAD_MESSAGES_RATE));
+    metrics.add(new BrooklinGaugeInfo(SOURCE_METRICS_PREFIX_REGEX + ROW_COUNT_LIMIT));
+    metrics.add(new BrooklinGaugeInfo(SOURCE_METRICS_PREFIX_REGEX + FETCH_SIZE));
+    metrics.add(new BrooklinGaugeInfo(SOURCE_METRICS_PREFIX_REGEX + STATEMENT_EXECUTION_DELAY));
 
     return Collections.unmodifiableList(metrics);
   }
@@ -0,0 +1,278 @@
+/**
+ *  Copyright 2021 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.common.databases.dbreader;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import com.linkedin.datastream.avrogenerator.DatabaseSource;
+import com.linkedin.datastream.common.DatastreamRuntimeException;
+import com.linkedin.datastream.common.databases.DatabaseRow;
+
+
+/**
+ * Snapshot reader which reads the partitions of a table concurrently, each with a {@link DatabaseChunkedReader}
+ * on its own connection of the supplied DataSource, which should be backed by a connection pool.
+ * <pre>
+ *  try (ParallelDatabaseChunkedReader<GenericRecord> reader = new ParallelDatabaseChunkedReader<>(...)) {
+ *    reader.subscribe(checkpoints, completedPartitions);
+ *    for (GenericRecord record = reader.poll(); record != null; record = reader.poll()) {
+ *      processRecord(record);
+ *      saveCheckpoints(reader.getCheckpoints(), reader.getCompletedPartitions());
+ *    }
+ *  }
+ * </pre>
+ *
+ *  The keys of the table are split in partitions by hash, as done by the DatabaseChunkedReader, so the partitions
+ *  are evenly sized without sampling the key space. Up to {@code parallelism} partitions are read at a time, and
+ *  the rows read are converted on the reader threads and buffered up to {@code prefetchRowCount} rows, so the next
+ *  chunk of a partition is queried while the rows of the previous one are consumed.
+ *
+ *  The rows of a partition are polled in key order, but the rows of different partitions are interleaved. The
+ *  checkpoints are kept per partition, as the key values of the last row polled from it, along with the partitions
+ *  read completely. Subscribing with them resumes only the partitions not read completely.
+ *
+ * @param <T> type of the records the rows are converted to
+ */
+public class ParallelDatabaseChunkedReader<T> implements Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(ParallelDatabaseChunkedReader.class);
+  private static final long POLL_INTERVAL_MS = 100;
+  private static final long SHUTDOWN_TIMEOUT_MS = 5000;
+
+  private final Properties _props;
+  private final DataSource _dataSource;
+  private final String _sourceQuery;
+  private final String _database;
+  private final String _table;
+  private final DatabaseSource _databaseSource;
+  private final String _readerId;
+  private final Function<DatabaseRow, T> _converter;
+  private final int _parallelism;
+  private final BlockingQueue<PrefetchedRow<T>> _prefetchedRows;
+
+  // Key values of the last row polled from each partition, and partitions read completely
+  private final Map<Integer, Map<String, Object>> _checkpoints = new ConcurrentHashMap<>();
+  private final Set<Integer> _completedPartitions = ConcurrentHashMap.newKeySet();
+  private final AtomicReference<Exception> _failure = new AtomicReference<>();
+  private final Set<DatabaseChunkedReader> _activeReaders = ConcurrentHashMap.newKeySet();
+
+  private ExecutorService _executor;
+  private int _numPendingPartitions;
+  private volatile boolean _closed = false;
+
+  /**
+   * Create a ParallelDatabaseChunkedReader instance
+   * @param props Configuration, as for the DatabaseChunkedReader
+   * @param dataSource JDBC DataSource to get a connection from for each partition read
+   * @param sourceQuery Query to execute on the source in chunked mode. See {@link DatabaseChunkedReader}
+   * @param db Database that the DataSource is connected to. Only used for creating metric names.
+   * @param table table to use for getting unique key column(s) information to add the chunking predicate
+   * @param databaseSource DatabaseSource implementation to query table metadata needed for constructing the chunk query
+   * @param id Name to identify the reader instance in logs
+   * @param converter Function to convert the rows read to records, invoked on the reader threads. The rows converted
+   *                  to null are skipped.
+   */
+  public ParallelDatabaseChunkedReader(Properties props, DataSource dataSource, String sourceQuery, String db,
+      String table, DatabaseSource databaseSource, String id, Function<DatabaseRow, T> converter) {
+    DatabaseChunkedReaderConfig config = new DatabaseChunkedReaderConfig(props);
+    _props = props;
+    _dataSource = dataSource;
+    _sourceQuery = sourceQuery;
+    _database = db;
+    _table = table;
+    _databaseSource = databaseSource;
+    _readerId = id;
+    _converter = converter;
+    _parallelism = config.getParallelism();
+    _prefetchedRows = new ArrayBlockingQueue<>(config.getPrefetchRowCount());
+  }
+
+  /**
+   * Start reading the partitions of the table which are not read completely
+   * @param checkpoints Key values of the last row read from each partition, as returned by getCheckpoints(). The
+   *                    partitions without a checkpoint are read from their first row.
+   * @param completedPartitions Partitions read completely, as returned by getCompletedPartitions(), which are skipped
+   */
+  public void subscribe(Map<Integer, Map<String, Object>> checkpoints, Set<Integer> completedPartitions) {
+    if (_executor != null) {
+      throw new DatastreamRuntimeException("Subscribing an already subscribed reader");
+    }
+
+    if (checkpoints != null) {
+      _checkpoints.putAll(checkpoints);
+    }
+    if (completedPartitions != null) {
+      _completedPartitions.addAll(completedPartitions);
+    }
+
+    List<Integer> partitions = new ArrayList<>();
+    for (int partition = 0; partition < _databaseSource.getPartitionCount(); partition++) {
+      if (!_completedPartitions.contains(partition)) {
+        partitions.add(partition);
+      }
+    }
+    LOG.info("Reader {} reading partitions {} of table {}, {} at a time", _readerId, partitions, _table, _parallelism);
+
+    _numPendingPartitions = partitions.size();
+    _executor = Executors.newFixedThreadPool(_parallelism,
+        new ThreadFactoryBuilder().setNameFormat(_readerId + "-reader-%d").setDaemon(true).build());
+    partitions.forEach(partition -> _executor.execute(() -> readPartition(partition)));
+    _executor.shutdown();
+  }
+
+  private void readPartition(int partition) {
+    if (_closed || _failure.get() != null) {
+      return;
+    }
+
+    String readerId = _readerId + "_" + partition;
+    try (Connection connection = _dataSource.getConnection();
+        DatabaseChunkedReader reader = new DatabaseChunkedReader(_props, connection, _sourceQuery, _database, _table,
+            _databaseSource, readerId)) {
+      _activeReaders.add(reader);
+      try {
+        reader.subscribe(Collections.singletonList(partition), _checkpoints.get(partition));
+        for (DatabaseRow row = reader.poll(); row != null; row = reader.poll()) {
+          _prefetchedRows.put(new PrefetchedRow<>(partition, reader.getCheckpoint(), _converter.apply(row)));
+        }
+        _prefetchedRows.put(new PrefetchedRow<>(partition, null, null));
+      } finally {
+        _activeReaders.remove(reader);
+      }
+      LOG.info("Reader {} read partition {} completely", readerId, partition);
+    } catch (InterruptedException e) {
+      LOG.info("Reader {} interrupted", readerId);
+    } catch (Exception e) {
+      if (!_closed) {
+        LOG.error("Reader {} failed to read partition {}", readerId, partition, e);
+        _failure.compareAndSet(null, e);
+      }
+    }
+  }
+
+  /**
+   * Report how far behind the producer of the records polled is, to the readers of the partitions being read.
+   * See {@link DatabaseChunkedReader#updateProducerLag(long)}
+   */
+  public void updateProducerLag(long producerLagMs) {
+    _activeReaders.forEach(reader -> reader.updateProducerLag(producerLagMs));
+  }
+
+  /**
+   * Poll for the next row read from any of the partitions, converted to a record. Blocks until a row is read.
+   * Client should call subscribe before poll.
+   * @return Null if all the partitions are read completely, or the next record
+   */
+  public T poll() {
+    if (_executor == null) {
+      throw new DatastreamRuntimeException("Cannot poll on unsubscribed reader. Call subscribe() first");
+    }
+
+    try {
+      while (_numPendingPartitions > 0) {
+        Exception failure = _failure.get();
+        if (failure != null) {
+          throw new DatastreamRuntimeException("Failed to read table " + _table, failure);
+        }
+
+        PrefetchedRow<T> row = _prefetchedRows.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        if (row == null) {
+          continue;
+        }
+
+        if (row._checkpoint == null) {
+          _completedPartitions.add(row._partition);
+          _checkpoints.remove(row._partition);
+          _numPendingPartitions--;
+        } else {
+          _checkpoints.put(row._partition, row._checkpoint);
+          if (row._record != null) {
+            return row._record;
+          }
+        }
+      }
+      return null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DatastreamRuntimeException("Interrupted while polling reader " + _readerId, e);
+    }
+  }
+
+  /**
+   * Get the key values of the last row polled from each partition not read completely yet
+   */
+  public Map<Integer, Map<String, Object>> getCheckpoints() {
+    return new HashMap<>(_checkpoints);
+  }
+
+  /**
+   * Get the partitions whose rows were all polled
+   */
+  public Set<Integer> getCompletedPartitions() {
+    return new HashSet<>(_completedPartitions);
+  }
+
+  /**
+   * Stop the reader threads, and release their connections. Will swallow errors and print a log.
+   */
+  @Override
+  public void close() {
+    _closed = true;
+    if (_executor == null) {
+      return;
+    }
+
+    _executor.shutdownNow();
+    try {
+      if (!_executor.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+        LOG.warn("Reader threads of {} did not stop in {} ms. Might cause resource leak", _readerId,
+            SHUTDOWN_TIMEOUT_MS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LOG.warn("Interrupted while stopping the reader threads of {}", _readerId);
+    }
+    _prefetchedRows.clear();
+  }
+
+  /**
+   * A row read from a partition, along with the key values to checkpoint once it's polled.
+   * The end of a partition is marked by a row without checkpoint.
+   */
+  private static class PrefetchedRow<T> {
+    private final int _partition;
+    private final Map<String, Object> _checkpoint;
+    private final T _record;
+
+    PrefetchedRow(int partition, Map<String, Object> checkpoint, T record) {
+      _partition = partition;
+      _checkpoint = checkpoint;
+      _record = record;
+    }
+  }
+}
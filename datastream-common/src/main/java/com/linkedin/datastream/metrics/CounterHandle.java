@@ -0,0 +1,40 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.metrics;
+
+import com.codahale.metrics.Counter;
+
+
+/**
+ * Pre-resolved handle to a {@link Counter} managed by {@link DynamicMetricsManager}.
+ * Obtain one through {@link DynamicMetricsManager#counterHandle(String, String, String)}.
+ */
+public final class CounterHandle extends MetricHandle<Counter> {
+
+  CounterHandle(DynamicMetricsManager manager, String classSimpleName, String key, String metricName) {
+    super(manager, classSimpleName, key, metricName);
+  }
+
+  /**
+   * Increment the counter by one
+   */
+  public void inc() {
+    getMetric().inc();
+  }
+
+  /**
+   * Increment the counter by the given value. To decrement the counter, pass in a negative value.
+   * @param value amount to increment the counter by (use negative value to decrement)
+   */
+  public void inc(long value) {
+    getMetric().inc(value);
+  }
+
+  @Override
+  Counter resolve(DynamicMetricsManager manager, String classSimpleName, String key, String metricName) {
+    return manager.getOrCreateCounter(classSimpleName, key, metricName);
+  }
+}
@@ -8,6 +8,7 @@ package com.linkedin.datastream.metrics;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 import javax.annotation.Nullable;
 
@@ -48,12 +49,22 @@ public class DynamicMetricsManager {
   // Map to maintain the ref count for the registered metric. When the ref count becomes zero or if the key is not present,
   // the metric can be deregistered.
   private final ConcurrentHashMap<String, Integer> _registeredMetricRefCount;
+
+  // Pre-resolved metric handles indexed by full metric name, handed out by the *Handle APIs so that callers on hot
+  // paths can update a metric without going through the index above on every call.
+  private final ConcurrentHashMap<String, MetricHandle<?>> _metricHandles;
+
+  // Bumped whenever metrics may have been removed from the registry, which makes all the handles resolve their
+  // metrics again the next time they are used.
+  private final AtomicInteger _generation = new AtomicInteger();
+
   private MetricRegistry _metricRegistry;
 
   private DynamicMetricsManager(MetricRegistry metricRegistry) {
     _metricRegistry = metricRegistry;
     _indexedMetrics = new ConcurrentHashMap<>();
     _registeredMetricRefCount = new ConcurrentHashMap<>();
+    _metricHandles = new ConcurrentHashMap<>();
   }
 
   /**
@@ -83,6 +94,7 @@ public class DynamicMetricsManager {
         // if we swap it out behind the scene.
         _instance._metricRegistry = metricRegistry;
         _instance._indexedMetrics.clear();
+        _instance._generation.incrementAndGet();
 
         LOG.info("Returning the instance for unit test {}.", testName);
       }
@@ -243,6 +255,9 @@ public class DynamicMetricsManager {
           _indexedMetrics.get(simpleName).get(keyIndex).remove(metricName);
         }
       }
+      _metricHandles.remove(fullMetricName);
+      // Handles still held by callers must not keep updating the metric that was just removed from the index
+      _generation.incrementAndGet();
     }
   }
 
@@ -266,14 +281,16 @@ public class DynamicMetricsManager {
    */
   public void createOrUpdateCounter(String classSimpleName, String key, String metricName, long value) {
     validateArguments(classSimpleName, metricName);
+    getOrCreateCounter(classSimpleName, key, metricName).inc(value);
+  }
 
+  Counter getOrCreateCounter(String classSimpleName, String key, String metricName) {
     // create and register the metric if it does not exist
-    Counter counter = (Counter) checkCache(classSimpleName, key, metricName).orElseGet(() -> {
+    return (Counter) checkCache(classSimpleName, key, metricName).orElseGet(() -> {
       Counter newCounter = _metricRegistry.counter(MetricRegistry.name(classSimpleName, key, metricName));
       updateCache(classSimpleName, key, metricName, newCounter);
       return newCounter;
     });
-    counter.inc(value);
   }
 
   /**
@@ -296,14 +313,16 @@ public class DynamicMetricsManager {
    */
   public void createOrUpdateMeter(String classSimpleName, String key, String metricName, long value) {
     validateArguments(classSimpleName, metricName);
+    getOrCreateMeter(classSimpleName, key, metricName).mark(value);
+  }
 
+  Meter getOrCreateMeter(String classSimpleName, String key, String metricName) {
     // create and register the metric if it does not exist
-    Meter meter = (Meter) checkCache(classSimpleName, key, metricName).orElseGet(() -> {
+    return (Meter) checkCache(classSimpleName, key, metricName).orElseGet(() -> {
       Meter newMeter = _metricRegistry.meter(MetricRegistry.name(classSimpleName, key, metricName));
       updateCache(classSimpleName, key, metricName, newMeter);
       return newMeter;
     });
-    meter.mark(value);
   }
 
   /**
@@ -343,13 +362,17 @@ public class DynamicMetricsManager {
   public void createOrUpdateSlidingWindowHistogram(String classSimpleName, String key, String metricName,
       long windowTimeMs, long value) {
     validateArguments(classSimpleName, metricName);
-    Histogram histogram = (Histogram) checkCache(classSimpleName, key, metricName).orElseGet(() -> {
+    getOrCreateSlidingWindowHistogram(classSimpleName, key, metricName, windowTimeMs).update(value);
+  }
+
+  Histogram getOrCreateSlidingWindowHistogram(String classSimpleName, String key, String metricName,
+      long windowTimeMs) {
+    return (Histogram) checkCache(classSimpleName, key, metricName).orElseGet(() -> {
       Histogram newHistogram =
           registerAndGetSlidingWindowHistogram(MetricRegistry.name(classSimpleName, key, metricName), windowTimeMs);
       updateCache(classSimpleName, key, metricName, newHistogram);
       return newHistogram;
     });
-    histogram.update(value);
   }
 
   /**
@@ -361,13 +384,16 @@ public class DynamicMetricsManager {
    */
   public void createOrUpdateHistogram(String classSimpleName, String key, String metricName, long value) {
     validateArguments(classSimpleName, metricName);
+    getOrCreateHistogram(classSimpleName, key, metricName).update(value);
+  }
+
+  Histogram getOrCreateHistogram(String classSimpleName, String key, String metricName) {
     // create and register the metric if it does not exist
-    Histogram histogram = (Histogram) checkCache(classSimpleName, key, metricName).orElseGet(() -> {
+    return (Histogram) checkCache(classSimpleName, key, metricName).orElseGet(() -> {
       Histogram newHistogram = _metricRegistry.histogram(MetricRegistry.name(classSimpleName, key, metricName));
       updateCache(classSimpleName, key, metricName, newHistogram);
       return newHistogram;
     });
-    histogram.update(value);
   }
 
   /**
@@ -380,6 +406,99 @@ public class DynamicMetricsManager {
     createOrUpdateHistogram(classSimpleName, null, metricName, value);
   }
 
+  /**
+   * Get a pre-resolved handle to the counter for the specified key/metricName pair. The counter is created the first
+   * time the handle is used, exactly as with {@link #createOrUpdateCounter(String, String, String, long)}, but the
+   * handle can then be updated without looking the counter up again. Handles are cached, so callers should obtain
+   * them once (e.g. when the key is first seen) and keep them.
+   * @param classSimpleName the simple name of the underlying class
+   * @param key the key (i.e. topic or partition) for the metric
+   * @param metricName the metric name
+   * @return the handle to the counter
+   */
+  public CounterHandle counterHandle(String classSimpleName, String key, String metricName) {
+    return getOrCreateHandle(CounterHandle.class, classSimpleName, key, metricName,
+        () -> new CounterHandle(this, classSimpleName, key, metricName));
+  }
+
+  /**
+   * Get a pre-resolved handle to the counter for the specified metricName.
+   * @param classSimpleName the simple name of the underlying class
+   * @param metricName the metric name
+   * @return the handle to the counter
+   */
+  public CounterHandle counterHandle(String classSimpleName, String metricName) {
+    return counterHandle(classSimpleName, null, metricName);
+  }
+
+  /**
+   * Get a pre-resolved handle to the meter for the specified key/metricName pair. The meter is created the first time
+   * the handle is used, exactly as with {@link #createOrUpdateMeter(String, String, String, long)}.
+   * @param classSimpleName the simple name of the underlying class
+   * @param key the key (i.e. topic or partition) for the metric
+   * @param metricName the metric name
+   * @return the handle to the meter
+   */
+  public MeterHandle meterHandle(String classSimpleName, String key, String metricName) {
+    return getOrCreateHandle(MeterHandle.class, classSimpleName, key, metricName,
+        () -> new MeterHandle(this, classSimpleName, key, metricName));
+  }
+
+  /**
+   * Get a pre-resolved handle to the meter for the specified metricName.
+   * @param classSimpleName the simple name of the underlying class
+   * @param metricName the metric name
+   * @return the handle to the meter
+   */
+  public MeterHandle meterHandle(String classSimpleName, String metricName) {
+    return meterHandle(classSimpleName, null, metricName);
+  }
+
+  /**
+   * Get a pre-resolved handle to the histogram for the specified key/metricName pair. The histogram is created the
+   * first time the handle is used, exactly as with {@link #createOrUpdateHistogram(String, String, String, long)}.
+   * @param classSimpleName the simple name of the underlying class
+   * @param key the key (i.e. topic or partition) for the metric
+   * @param metricName the metric name
+   * @return the handle to the histogram
+   */
+  public HistogramHandle histogramHandle(String classSimpleName, String key, String metricName) {
+    return getOrCreateHandle(HistogramHandle.class, classSimpleName, key, metricName,
+        () -> new HistogramHandle(this, classSimpleName, key, metricName, 0));
+  }
+
+  /**
+   * Get a pre-resolved handle to the sliding window histogram for the specified key/metricName pair. The histogram is
+   * created the first time the handle is used, exactly as with
+   * {@link #createOrUpdateSlidingWindowHistogram(String, String, String, long, long)}.
+   * @param classSimpleName the simple name of the underlying class
+   * @param key the key (i.e. topic or partition) for the metric
+   * @param metricName the metric name
+   * @param windowTimeMs the length of the window time in ms
+   * @return the handle to the histogram
+   */
+  public HistogramHandle slidingWindowHistogramHandle(String classSimpleName, String key, String metricName,
+      long windowTimeMs) {
+    Validate.isTrue(windowTimeMs > 0, "windowTimeMs must be positive.");
+    return getOrCreateHandle(HistogramHandle.class, classSimpleName, key, metricName,
+        () -> new HistogramHandle(this, classSimpleName, key, metricName, windowTimeMs));
+  }
+
+  private <T extends MetricHandle<?>> T getOrCreateHandle(Class<T> handleClass, String classSimpleName, String key,
+      String metricName, Supplier<T> handleSupplier) {
+    String name = formatName(classSimpleName, key, metricName);
+    MetricHandle<?> handle = _metricHandles.computeIfAbsent(name, k -> handleSupplier.get());
+    if (!handleClass.isInstance(handle)) {
+      throw new IllegalArgumentException(
+          String.format("%s is already used by a %s", name, handle.getClass().getSimpleName()));
+    }
+    return handleClass.cast(handle);
+  }
+
+  int getGeneration() {
+    return _generation.get();
+  }
+
   /**
    * Get the metric object by name of the specified type based on return value.
    * Currently only used by test cases.
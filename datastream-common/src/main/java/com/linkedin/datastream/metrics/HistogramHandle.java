@@ -0,0 +1,40 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.metrics;
+
+import com.codahale.metrics.Histogram;
+
+
+/**
+ * Pre-resolved handle to a {@link Histogram} managed by {@link DynamicMetricsManager}.
+ * Obtain one through {@link DynamicMetricsManager#histogramHandle(String, String, String)} or
+ * {@link DynamicMetricsManager#slidingWindowHistogramHandle(String, String, String, long)}.
+ */
+public final class HistogramHandle extends MetricHandle<Histogram> {
+  // length of the sliding time window of the histogram's reservoir, or 0 for the default reservoir
+  private final long _windowTimeMs;
+
+  HistogramHandle(DynamicMetricsManager manager, String classSimpleName, String key, String metricName,
+      long windowTimeMs) {
+    super(manager, classSimpleName, key, metricName);
+    _windowTimeMs = windowTimeMs;
+  }
+
+  /**
+   * Add a recorded value to the histogram
+   * @param value the value to update on the histogram
+   */
+  public void update(long value) {
+    getMetric().update(value);
+  }
+
+  @Override
+  Histogram resolve(DynamicMetricsManager manager, String classSimpleName, String key, String metricName) {
+    return _windowTimeMs > 0 ?
+        manager.getOrCreateSlidingWindowHistogram(classSimpleName, key, metricName, _windowTimeMs) :
+        manager.getOrCreateHistogram(classSimpleName, key, metricName);
+  }
+}
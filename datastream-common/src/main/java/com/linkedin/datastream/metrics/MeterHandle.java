@@ -0,0 +1,40 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.metrics;
+
+import com.codahale.metrics.Meter;
+
+
+/**
+ * Pre-resolved handle to a {@link Meter} managed by {@link DynamicMetricsManager}.
+ * Obtain one through {@link DynamicMetricsManager#meterHandle(String, String, String)}.
+ */
+public final class MeterHandle extends MetricHandle<Meter> {
+
+  MeterHandle(DynamicMetricsManager manager, String classSimpleName, String key, String metricName) {
+    super(manager, classSimpleName, key, metricName);
+  }
+
+  /**
+   * Mark the occurrence of one event
+   */
+  public void mark() {
+    getMetric().mark();
+  }
+
+  /**
+   * Mark the occurrence of the given number of events
+   * @param value the value to mark on the meter
+   */
+  public void mark(long value) {
+    getMetric().mark(value);
+  }
+
+  @Override
+  Meter resolve(DynamicMetricsManager manager, String classSimpleName, String key, String metricName) {
+    return manager.getOrCreateMeter(classSimpleName, key, metricName);
+  }
+}
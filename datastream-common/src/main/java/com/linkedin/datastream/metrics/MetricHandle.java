@@ -0,0 +1,62 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.metrics;
+
+import com.codahale.metrics.Metric;
+
+
+/**
+ * Base class of the pre-resolved metric handles handed out by {@link DynamicMetricsManager}. A handle resolves
+ * its metric through the same index as the createOrUpdate APIs the first time it is used, and then keeps a direct
+ * reference to it. The reference is dropped and resolved again whenever the manager's generation changes, i.e.
+ * when metrics are unregistered or the registry is swapped out for a unit test, so that a handle never keeps
+ * updating a metric that is no longer part of the registry.
+ * @param <T> metric type
+ */
+abstract class MetricHandle<T extends Metric> {
+  private final DynamicMetricsManager _manager;
+  private final String _classSimpleName;
+  private final String _key;
+  private final String _metricName;
+
+  // metric and the generation it was resolved in are published together so they are always read consistently
+  private volatile Resolved<T> _resolved;
+
+  MetricHandle(DynamicMetricsManager manager, String classSimpleName, String key, String metricName) {
+    _manager = manager;
+    _classSimpleName = classSimpleName;
+    _key = key;
+    _metricName = metricName;
+  }
+
+  /**
+   * Get the metric this handle points to, creating it if it does not exist
+   */
+  T getMetric() {
+    int generation = _manager.getGeneration();
+    Resolved<T> resolved = _resolved;
+    if (resolved == null || resolved._generation != generation) {
+      resolved = new Resolved<>(resolve(_manager, _classSimpleName, _key, _metricName), generation);
+      _resolved = resolved;
+    }
+    return resolved._metric;
+  }
+
+  /**
+   * Look up the metric, creating it if it does not exist
+   */
+  abstract T resolve(DynamicMetricsManager manager, String classSimpleName, String key, String metricName);
+
+  private static final class Resolved<T> {
+    private final T _metric;
+    private final int _generation;
+
+    Resolved(T metric, int generation) {
+      _metric = metric;
+      _generation = generation;
+    }
+  }
+}
@@ -0,0 +1,111 @@
+/**
+ *  Copyright 2021 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.common.databases.dbreader;
+
+import java.util.Properties;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import static com.linkedin.datastream.common.databases.dbreader.DatabaseChunkedReaderConfig.ADAPTIVE_CHUNKING_ENABLED;
+import static com.linkedin.datastream.common.databases.dbreader.DatabaseChunkedReaderConfig.DATABASE_QUERY_MANAGER_CLASS_NAME;
+import static com.linkedin.datastream.common.databases.dbreader.DatabaseChunkedReaderConfig.DB_READER_DOMAIN_CONFIG;
+import static com.linkedin.datastream.common.databases.dbreader.DatabaseChunkedReaderConfig.FETCH_SIZE;
+import static com.linkedin.datastream.common.databases.dbreader.DatabaseChunkedReaderConfig.MAX_PRODUCER_LAG_MS;
+import static com.linkedin.datastream.common.databases.dbreader.DatabaseChunkedReaderConfig.MAX_ROW_COUNT_LIMIT;
+import static com.linkedin.datastream.common.databases.dbreader.DatabaseChunkedReaderConfig.MAX_STATEMENT_EXECUTION_DELAY;
+import static com.linkedin.datastream.common.databases.dbreader.DatabaseChunkedReaderConfig.MIN_ROW_COUNT_LIMIT;
+import static com.linkedin.datastream.common.databases.dbreader.DatabaseChunkedReaderConfig.ROW_COUNT_LIMIT;
+import static com.linkedin.datastream.common.databases.dbreader.DatabaseChunkedReaderConfig.TARGET_QUERY_DURATION_MS;
+
+
+/**
+ * Tests for {@link AdaptiveChunkingController}.
+ */
+public class TestAdaptiveChunkingController {
+
+  @Test
+  public void testDisabledKeepsConfiguredValues() {
+    AdaptiveChunkingController controller = createController(false);
+    controller.updateProducerLag(60000);
+    controller.onQueryExecuted(5000);
+    controller.onQueryExecuted(1);
+    Assert.assertEquals(controller.getRowCountLimit(), 10000);
+    Assert.assertEquals(controller.getFetchSize(), 1000);
+    Assert.assertEquals(controller.getStatementExecutionDelayMs(), 0);
+  }
+
+  @Test
+  public void testAdaptsToQueryDuration() {
+    AdaptiveChunkingController controller = createController(true);
+
+    // the limit is rounded down to a power of two
+    Assert.assertEquals(controller.getRowCountLimit(), 8192);
+
+    // slow queries shrink the chunks in proportion, down to the min, and back off
+    controller.onQueryExecuted(4000);
+    Assert.assertEquals(controller.getRowCountLimit(), 2048);
+    Assert.assertEquals(controller.getStatementExecutionDelayMs(), AdaptiveChunkingController.DELAY_STEP_MS);
+    controller.onQueryExecuted(4000);
+    Assert.assertEquals(controller.getRowCountLimit(), 512);
+    Assert.assertEquals(controller.getFetchSize(), 512);
+    Assert.assertEquals(controller.getStatementExecutionDelayMs(), 2 * AdaptiveChunkingController.DELAY_STEP_MS);
+    controller.onQueryExecuted(100000);
+    Assert.assertEquals(controller.getRowCountLimit(), 500);
+
+    // queries close to the budget keep the chunks, and reduce the delay
+    controller.onQueryExecuted(800);
+    Assert.assertEquals(controller.getRowCountLimit(), 500);
+    Assert.assertEquals(controller.getStatementExecutionDelayMs(), 2 * AdaptiveChunkingController.DELAY_STEP_MS);
+
+    // the limit only changes once the chunks doubled
+    controller.onQueryExecuted(10);
+    controller.onQueryExecuted(10);
+    Assert.assertEquals(controller.getRowCountLimit(), 512);
+    controller.onQueryExecuted(10);
+    Assert.assertEquals(controller.getRowCountLimit(), 512);
+    controller.onQueryExecuted(10);
+    Assert.assertEquals(controller.getRowCountLimit(), 1024);
+
+    // fast queries grow the chunks, up to the max, and remove the delay
+    for (int i = 0; i < 100; i++) {
+      controller.onQueryExecuted(10);
+    }
+    Assert.assertEquals(controller.getRowCountLimit(), 20000);
+    Assert.assertEquals(controller.getFetchSize(), 1000);
+    Assert.assertEquals(controller.getStatementExecutionDelayMs(), 0);
+  }
+
+  @Test
+  public void testBacksOffOnProducerLag() {
+    AdaptiveChunkingController controller = createController(true);
+    controller.updateProducerLag(6000);
+    for (int i = 0; i < 100; i++) {
+      controller.onQueryExecuted(10);
+    }
+    Assert.assertEquals(controller.getRowCountLimit(), 8192);
+    Assert.assertEquals(controller.getStatementExecutionDelayMs(), 3000);
+
+    controller.updateProducerLag(0);
+    controller.onQueryExecuted(10);
+    Assert.assertEquals(controller.getStatementExecutionDelayMs(), 1500);
+  }
+
+  private static AdaptiveChunkingController createController(boolean enabled) {
+    Properties props = new Properties();
+    props.setProperty(DB_READER_DOMAIN_CONFIG + "." + FETCH_SIZE, "1000");
+    props.setProperty(DB_READER_DOMAIN_CONFIG + "." + ROW_COUNT_LIMIT, "10000");
+    props.setProperty(DB_READER_DOMAIN_CONFIG + "." + ADAPTIVE_CHUNKING_ENABLED, String.valueOf(enabled));
+    props.setProperty(DB_READER_DOMAIN_CONFIG + "." + TARGET_QUERY_DURATION_MS, "1000");
+    props.setProperty(DB_READER_DOMAIN_CONFIG + "." + MIN_ROW_COUNT_LIMIT, "500");
+    props.setProperty(DB_READER_DOMAIN_CONFIG + "." + MAX_ROW_COUNT_LIMIT, "20000");
+    props.setProperty(DB_READER_DOMAIN_CONFIG + "." + MAX_STATEMENT_EXECUTION_DELAY, "3000");
+    props.setProperty(DB_READER_DOMAIN_CONFIG + "." + MAX_PRODUCER_LAG_MS, "5000");
+    props.setProperty(DB_READER_DOMAIN_CONFIG + "." + DATABASE_QUERY_MANAGER_CLASS_NAME,
+        MySqlChunkedQueryManager.class.getName());
+    return new AdaptiveChunkingController(new DatabaseChunkedReaderConfig(props));
+  }
+}
@@ -0,0 +1,171 @@
+/**
+ *  Copyright 2021 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.common.databases.dbreader;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.sql.DataSource;
+
+import org.apache.avro.Schema;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.MetricRegistry;
+
+import com.linkedin.datastream.avrogenerator.DatabaseSource;
+import com.linkedin.datastream.common.DatastreamRuntimeException;
+import com.linkedin.datastream.common.databases.DatabaseRow;
+import com.linkedin.datastream.common.databases.MockResultSet;
+import com.linkedin.datastream.metrics.DynamicMetricsManager;
+
+import static com.linkedin.datastream.common.databases.dbreader.DatabaseChunkedReaderConfig.DATABASE_QUERY_MANAGER_CLASS_NAME;
+import static com.linkedin.datastream.common.databases.dbreader.DatabaseChunkedReaderConfig.DB_READER_DOMAIN_CONFIG;
+import static com.linkedin.datastream.common.databases.dbreader.DatabaseChunkedReaderConfig.PARALLELISM;
+import static com.linkedin.datastream.common.databases.dbreader.DatabaseChunkedReaderConfig.PREFETCH_ROW_COUNT;
+import static com.linkedin.datastream.common.databases.dbreader.DatabaseChunkedReaderConfig.ROW_COUNT_LIMIT;
+import static org.mockito.Matchers.anyString;
+
+
+/**
+ * Tests for {@link ParallelDatabaseChunkedReader}.
+ */
+public class TestParallelDatabaseChunkedReader {
+  private static final String TEST_TABLE = "TEST_SIMPLE_SCHEMA";
+  private static final String TEST_QUERY = "SELECT * FROM " + TEST_TABLE + " ORDER BY KEY1";
+  private static final String TEST_SCHEMA_STR =
+      "{\"type\":\"record\",\"name\":\"SIMPLE_SCHEMA\",\"namespace\":\"com.linkedin.events.simpleschema\", \"fields\":["
+          + "{\"name\":\"key1\",\"type\":[\"null\",\"long\"],\"default\":null,\"meta\":\"dbFieldName=KEY1;dbFieldPosition=0;dbFieldType=NUMBER;\"}"
+          + "],\"meta\":\"dbTableName=SIMPLE_SCHEMA;pk=key1;\"}";
+  private static final Schema TEST_SCHEMA = Schema.parse(TEST_SCHEMA_STR);
+  private static final Pattern PARTITION_PATTERN = Pattern.compile("IN \\( (\\d+) \\)");
+  private static final int NUM_PARTITIONS = 3;
+  private static final int ROWS_PER_PARTITION = 3;
+
+  // Queries prepared by the readers
+  private final List<String> _queries = new CopyOnWriteArrayList<>();
+
+  @BeforeMethod
+  public void setup() {
+    DynamicMetricsManager.createInstance(new MetricRegistry());
+    _queries.clear();
+  }
+
+  @Test
+  public void testReadsAllPartitions() throws Exception {
+    List<Long> keys = new ArrayList<>();
+    Set<Long> expected = new HashSet<>();
+    try (ParallelDatabaseChunkedReader<Long> reader = createReader(-1)) {
+      reader.subscribe(null, null);
+      for (Long key = reader.poll(); key != null; key = reader.poll()) {
+        keys.add(key);
+        int partition = (int) (key / 10);
+        Assert.assertEquals(reader.getCheckpoints().get(partition), Collections.singletonMap("key1", key));
+      }
+      Assert.assertEquals(reader.getCompletedPartitions(), new HashSet<>(Arrays.asList(0, 1, 2)));
+      Assert.assertTrue(reader.getCheckpoints().isEmpty());
+    }
+
+    for (int partition = 0; partition < NUM_PARTITIONS; partition++) {
+      for (int i = 0; i < ROWS_PER_PARTITION; i++) {
+        expected.add(partition * 10L + i);
+      }
+    }
+    Assert.assertEquals(keys.size(), expected.size());
+    Assert.assertEquals(new HashSet<>(keys), expected);
+  }
+
+  @Test
+  public void testResumesUnfinishedPartitions() throws Exception {
+    List<Long> keys = new ArrayList<>();
+    try (ParallelDatabaseChunkedReader<Long> reader = createReader(-1)) {
+      reader.subscribe(Collections.singletonMap(1, Collections.<String, Object>singletonMap("key1", 10L)),
+          Collections.singleton(2));
+      for (Long key = reader.poll(); key != null; key = reader.poll()) {
+        keys.add(key);
+      }
+      Assert.assertEquals(reader.getCompletedPartitions(), new HashSet<>(Arrays.asList(0, 1, 2)));
+    }
+
+    // partition 0 is read from the start, partition 1 after its checkpoint, and partition 2 is skipped
+    Assert.assertEquals(new HashSet<>(keys), new HashSet<>(Arrays.asList(0L, 1L, 2L, 11L, 12L)));
+    Assert.assertTrue(_queries.stream().noneMatch(query -> getPartition(query) == 2));
+  }
+
+  @Test(expectedExceptions = DatastreamRuntimeException.class)
+  public void testFailedPartitionFailsPoll() throws Exception {
+    try (ParallelDatabaseChunkedReader<Long> reader = createReader(1)) {
+      reader.subscribe(null, null);
+      for (Long key = reader.poll(); key != null; key = reader.poll()) {
+        Assert.assertNotEquals((int) (key / 10), 1);
+      }
+    }
+  }
+
+  /**
+   * Create a reader of a table with keys {@code partition * 10 + i} in each partition, and which fails to query
+   * the given partition
+   */
+  private ParallelDatabaseChunkedReader<Long> createReader(int failedPartition) throws SQLException {
+    DatabaseSource mockDBSource = Mockito.mock(DatabaseSource.class);
+    Mockito.when(mockDBSource.getPrimaryKeyFields(anyString())).thenReturn(Collections.singletonList("key1"));
+    Mockito.when(mockDBSource.getTableSchema(anyString())).thenReturn(TEST_SCHEMA);
+    Mockito.when(mockDBSource.getPartitionCount()).thenReturn(NUM_PARTITIONS);
+
+    Connection mockConnection = Mockito.mock(Connection.class);
+    Mockito.when(mockConnection.prepareStatement(anyString())).thenAnswer(
+        invocation -> prepareStatement((String) invocation.getArguments()[0], failedPartition));
+    DataSource mockDs = Mockito.mock(DataSource.class);
+    Mockito.when(mockDs.getConnection()).thenReturn(mockConnection);
+
+    Properties props = new Properties();
+    props.setProperty(DB_READER_DOMAIN_CONFIG + "." + ROW_COUNT_LIMIT, "10");
+    props.setProperty(DB_READER_DOMAIN_CONFIG + "." + PARALLELISM, "2");
+    props.setProperty(DB_READER_DOMAIN_CONFIG + "." + PREFETCH_ROW_COUNT, "2");
+    props.setProperty(DB_READER_DOMAIN_CONFIG + "." + DATABASE_QUERY_MANAGER_CLASS_NAME,
+        MySqlChunkedQueryManager.class.getName());
+    return new ParallelDatabaseChunkedReader<>(props, mockDs, TEST_QUERY, "TEST_DB", TEST_TABLE, mockDBSource,
+        "testParallelReader", row -> (Long) row.getRecords().get(0).getValue());
+  }
+
+  private PreparedStatement prepareStatement(String query, int failedPartition) throws SQLException {
+    _queries.add(query);
+    int partition = getPartition(query);
+    // the first query returns all the rows of the partition, and the chunked query the rows after the first one
+    boolean isChunkedQuery = query.contains("?");
+    List<DatabaseRow> rows = new ArrayList<>();
+    for (int i = isChunkedQuery ? 1 : 0; i < ROWS_PER_PARTITION; i++) {
+      rows.add(new DatabaseRow().addField("key1", partition * 10L + i, Types.NUMERIC));
+    }
+
+    PreparedStatement mockStmt = Mockito.mock(PreparedStatement.class);
+    if (partition == failedPartition) {
+      Mockito.when(mockStmt.executeQuery()).thenThrow(new SQLException("Test failure of partition " + partition));
+    } else {
+      Mockito.when(mockStmt.executeQuery()).thenAnswer(invocation -> new MockResultSet(rows));
+    }
+    return mockStmt;
+  }
+
+  private static int getPartition(String query) {
+    Matcher matcher = PARTITION_PATTERN.matcher(query);
+    Assert.assertTrue(matcher.find(), "Query without partition predicate: " + query);
+    return Integer.parseInt(matcher.group(1));
+  }
+}
@@ -229,6 +229,61 @@ public class TestDynamicMetricsManager {
     Assert.assertTrue(_metricsManager.checkCache(CLASS_NAME, someKey, eventLatency).isPresent());
   }
 
+  @Test
+  public void testMetricHandles() {
+    String someKey = "someKey";
+    CounterHandle counterHandle = _metricsManager.counterHandle(CLASS_NAME, someKey, "numEvents");
+    MeterHandle meterHandle = _metricsManager.meterHandle(CLASS_NAME, "eventRate");
+    HistogramHandle histogramHandle = _metricsManager.histogramHandle(CLASS_NAME, someKey, "eventLatency");
+    HistogramHandle slidingHistogramHandle =
+        _metricsManager.slidingWindowHistogramHandle(CLASS_NAME, someKey, "slidingLatency", 1000);
+
+    // handles are cached
+    Assert.assertSame(_metricsManager.counterHandle(CLASS_NAME, someKey, "numEvents"), counterHandle);
+    Assert.assertSame(_metricsManager.meterHandle(CLASS_NAME, null, "eventRate"), meterHandle);
+    Assert.assertThrows(IllegalArgumentException.class,
+        () -> _metricsManager.meterHandle(CLASS_NAME, someKey, "numEvents"));
+
+    // metrics are only created when the handles are first used
+    String counterName = MetricRegistry.name(CLASS_NAME, someKey, "numEvents");
+    Assert.assertNull(_metricsManager.getMetric(counterName));
+
+    counterHandle.inc();
+    counterHandle.inc(4);
+    meterHandle.mark(3);
+    histogramHandle.update(10);
+    slidingHistogramHandle.update(20);
+
+    // handles share their metrics with the createOrUpdate APIs
+    _metricsManager.createOrUpdateCounter(CLASS_NAME, someKey, "numEvents", 1);
+    _metricsManager.createOrUpdateMeter(CLASS_NAME, "eventRate", 1);
+    Counter counter = _metricsManager.getMetric(counterName);
+    Assert.assertEquals(counter.getCount(), 6);
+    Meter meter = _metricsManager.getMetric(MetricRegistry.name(CLASS_NAME, "eventRate"));
+    Assert.assertEquals(meter.getCount(), 4);
+    Histogram histogram = _metricsManager.getMetric(MetricRegistry.name(CLASS_NAME, someKey, "eventLatency"));
+    Assert.assertEquals(histogram.getCount(), 1);
+    Histogram slidingHistogram = _metricsManager.getMetric(MetricRegistry.name(CLASS_NAME, someKey, "slidingLatency"));
+    Assert.assertEquals(slidingHistogram.getSnapshot().getMax(), 20);
+
+    // handles stop updating unregistered metrics and recreate them on next use
+    _metricsManager.unregisterMetric(CLASS_NAME, someKey, "numEvents");
+    Assert.assertNull(_metricsManager.getMetric(counterName));
+    counterHandle.inc(2);
+    Counter newCounter = _metricsManager.getMetric(counterName);
+    Assert.assertNotSame(newCounter, counter);
+    Assert.assertEquals(newCounter.getCount(), 2);
+    Assert.assertEquals(counter.getCount(), 6);
+
+    // handles follow the registry when it is replaced
+    MetricRegistry newRegistry = new MetricRegistry();
+    DynamicMetricsManager.createInstance(newRegistry, "testMetricHandles");
+    meterHandle.mark();
+    Assert.assertEquals(((Meter) newRegistry.getMetrics().get(MetricRegistry.name(CLASS_NAME, "eventRate"))).getCount(),
+        1);
+    Assert.assertEquals(meter.getCount(), 4);
+  }
+
   @Test
   public void testMetricsRegisterDeregister() {
     AtomicInteger numOutput = new AtomicInteger();
@@ -8,20 +8,27 @@ package com.linkedin.datastream.connectors.directory;
 import java.io.IOException;
 import java.nio.file.ClosedWatchServiceException;
 import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
 import java.nio.file.WatchEvent;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.time.Duration;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.sun.nio.file.SensitivityWatchEventModifier;
 
 import com.linkedin.datastream.common.BrooklinEnvelope;
@@ -37,17 +44,35 @@ import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
 
 /**
  * Encapsulates the logic for watching for change events in a source directory
- * in the file system, and propagating them to a {@link DatastreamEventProducer}.
+ * and its subdirectories in the file system, and propagating them to a {@link DatastreamEventProducer}.
+ *
+ * The change events are debounced: the events of a path which occur within the debounce window
+ * are coalesced into a single event (e.g. a file created then modified is only reported as created,
+ * and a path deleted then created again is reported as replaced), and the events of all the paths
+ * changed within the window are sent in a single record.
  */
 public class DirectoryChangeProcessor implements Runnable, AutoCloseable {
+  /**
+   * Key of the envelope metadata which holds the source directory, to which the paths of the events are relative
+   */
+  public static final String SOURCE_DIRECTORY_METADATA_KEY = "sourceDirectory";
+
   private static final Logger LOG = LoggerFactory.getLogger(DirectoryChangeProcessor.class);
   private static final Duration ACQUIRE_TIMEOUT = Duration.ofMinutes(5);
+  private static final Duration IDLE_POLL_TIMEOUT = Duration.ofMinutes(1);
 
   private final DatastreamTask _task;
   private final DatastreamEventProducer _producer;
   private final Path _dirPath;
+  private final Duration _debounceWindow;
+  private final Map<String, String> _eventMetadata;
   private final WatchService _watchService;
-  private final WatchKey _watchKey;
+  // watched directories, by watch key
+  private final Map<WatchKey, Path> _watchedDirs = new ConcurrentHashMap<>();
+  // coalesced events of the current window, by path, in the order the paths changed
+  private final Map<Path, DirectoryEvent> _pendingEvents = new LinkedHashMap<>();
+  private long _windowStartMs;
+  private WatchKey _rootWatchKey;
 
   /**
    * Directory change event types
@@ -66,7 +91,12 @@ public class DirectoryChangeProcessor implements Runnable, AutoCloseable {
     /**
      * A file or directory is deleted
      */
-    ENTRY_DELETED
+    ENTRY_DELETED,
+
+    /**
+     * A file or directory is deleted, then created again
+     */
+    ENTRY_REPLACED
   }
 
   /**
@@ -74,21 +104,25 @@ public class DirectoryChangeProcessor implements Runnable, AutoCloseable {
    * @param datastreamTask The datastream task this processor is responsible for
    * @param producer The event producer this connector uses to send change events
    *                 to the underlying {@link com.linkedin.datastream.server.api.transport.TransportProvider}.
+   * @param debounceWindow The window within which the change events are coalesced and batched
    * @throws IOException if an I/O error occurs
    */
-  public DirectoryChangeProcessor(DatastreamTask datastreamTask, DatastreamEventProducer producer) throws IOException {
+  public DirectoryChangeProcessor(DatastreamTask datastreamTask, DatastreamEventProducer producer,
+      Duration debounceWindow) throws IOException {
     Validate.notNull(datastreamTask);
     Validate.notNull(producer);
+    Validate.notNull(debounceWindow);
 
     final String path = datastreamTask.getDatastreamSource().getConnectionString();
     Validate.isTrue(isDirectory(path), "path does not refer to a valid directory");
 
     _task = datastreamTask;
     _producer = producer;
-    _dirPath = Paths.get(path);
+    _dirPath = Paths.get(path).toAbsolutePath();
+    _debounceWindow = debounceWindow;
+    _eventMetadata = Collections.singletonMap(SOURCE_DIRECTORY_METADATA_KEY, _dirPath.toString());
     _watchService = FileSystems.getDefault().newWatchService();
-    _watchKey = _dirPath.register(_watchService, new WatchEvent.Kind<?>[] {ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE},
-        SensitivityWatchEventModifier.HIGH);
+    registerTree(_dirPath);
   }
 
   /**
@@ -110,9 +144,10 @@ public class DirectoryChangeProcessor implements Runnable, AutoCloseable {
 
       LOG.info("Started watching directory {}", _dirPath);
 
-      boolean isWatchKeyValid = true;
-      for (WatchKey key = pollWatchService(); isWatchKeyValid; key = pollWatchService()) {
+      while (_rootWatchKey.isValid()) {
+        WatchKey key = pollWatchService();
         if (key != null) {
+          Path dir = _watchedDirs.get(key);
           for (WatchEvent<?> event : key.pollEvents()) {
             WatchEvent.Kind<?> kind = event.kind();
 
@@ -120,32 +155,36 @@ public class DirectoryChangeProcessor implements Runnable, AutoCloseable {
              * We may get an OVERFLOW event even though we have not registered for it.
              * https://docs.oracle.com/javase/tutorial/essential/io/notification.html#register
              */
-            if (kind != OVERFLOW) {
+            if (kind != OVERFLOW && dir != null) {
               @SuppressWarnings("unchecked")
               Path filename = ((WatchEvent<Path>) event).context();
-              Path absolutePath = _dirPath.resolve(filename).toAbsolutePath();
-
-              BrooklinEnvelope envelope = new BrooklinEnvelope(absolutePath, getCorrespondingDirectoryEvent(kind), null,
-                  Collections.emptyMap());
-
-              DatastreamProducerRecordBuilder builder = new DatastreamProducerRecordBuilder();
-              builder.addEvent(envelope);
-              builder.setEventsSourceTimestamp(System.currentTimeMillis());
-              builder.setPartition(0);
-
-              _producer.send(builder.build(), ((metadata, exception) -> {
-                if (exception == null) {
-                  LOG.info("Sending event succeeded");
-                } else {
-                  LOG.error("Sending event failed", exception);
+              Path absolutePath = dir.resolve(filename);
+              if (kind == ENTRY_CREATE && Files.isDirectory(absolutePath)) {
+                // the new subdirectory and its contents are watched too
+                try {
+                  registerTree(absolutePath);
+                } catch (IOException e) {
+                  LOG.warn(String.format("Failed to watch directory %s", absolutePath), e);
                 }
-              }));
+              }
+              addPendingEvent(absolutePath, getCorrespondingDirectoryEvent(kind));
             }
           }
-          isWatchKeyValid = key.reset();
+
+          if (!key.reset()) {
+            LOG.info("Watch key of {} no longer valid", dir);
+            _watchedDirs.remove(key);
+          }
+        }
+
+        if (!_pendingEvents.isEmpty() && System.currentTimeMillis() - _windowStartMs >= _debounceWindow.toMillis()) {
+          sendPendingEvents();
         }
       }
 
+      if (!_pendingEvents.isEmpty()) {
+        sendPendingEvents();
+      }
       LOG.warn("Watch key no longer valid. Path {} might have been altered or removed.", _dirPath);
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
@@ -160,7 +199,7 @@ public class DirectoryChangeProcessor implements Runnable, AutoCloseable {
 
   @Override
   public void close() {
-    _watchKey.cancel();
+    _watchedDirs.keySet().forEach(WatchKey::cancel);
     try {
       _watchService.close();
     } catch (IOException e) {
@@ -168,8 +207,80 @@ public class DirectoryChangeProcessor implements Runnable, AutoCloseable {
     }
   }
 
+  private void registerTree(Path root) throws IOException {
+    Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+        WatchKey key = dir.register(_watchService, new WatchEvent.Kind<?>[] {ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE},
+            SensitivityWatchEventModifier.HIGH);
+        _watchedDirs.put(key, dir);
+        if (dir.equals(_dirPath)) {
+          _rootWatchKey = key;
+        }
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
   private WatchKey pollWatchService() throws InterruptedException {
-    return _watchService.poll(1, TimeUnit.MINUTES);
+    if (_pendingEvents.isEmpty()) {
+      return _watchService.poll(IDLE_POLL_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+    }
+    long remainingMs = _windowStartMs + _debounceWindow.toMillis() - System.currentTimeMillis();
+    return _watchService.poll(Math.max(remainingMs, 0), TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Coalesce the change event of a path with its pending event, if any
+   */
+  private void addPendingEvent(Path path, DirectoryEvent event) {
+    if (_pendingEvents.isEmpty()) {
+      _windowStartMs = System.currentTimeMillis();
+    }
+
+    DirectoryEvent coalescedEvent = coalesce(_pendingEvents.remove(path), event);
+    if (coalescedEvent != null) {
+      _pendingEvents.put(path, coalescedEvent);
+    }
+  }
+
+  /**
+   * Coalesce the change event of a path with its pending event
+   * @param pendingEvent the pending event of the path, or null if none
+   * @param event the new event of the path
+   * @return the event to report for the path, or null if there is none
+   */
+  @VisibleForTesting
+  static DirectoryEvent coalesce(DirectoryEvent pendingEvent, DirectoryEvent event) {
+    if (pendingEvent == DirectoryEvent.ENTRY_CREATED) {
+      // a path created then deleted within the window is not reported at all
+      return event == DirectoryEvent.ENTRY_DELETED ? null : DirectoryEvent.ENTRY_CREATED;
+    }
+    if (pendingEvent == DirectoryEvent.ENTRY_DELETED && event == DirectoryEvent.ENTRY_CREATED) {
+      // the new path may have nothing in common with the deleted one, e.g. a directory with other entries
+      return DirectoryEvent.ENTRY_REPLACED;
+    }
+    if (pendingEvent == DirectoryEvent.ENTRY_REPLACED) {
+      return event == DirectoryEvent.ENTRY_DELETED ? DirectoryEvent.ENTRY_DELETED : DirectoryEvent.ENTRY_REPLACED;
+    }
+    return event;
+  }
+
+  private void sendPendingEvents() {
+    DatastreamProducerRecordBuilder builder = new DatastreamProducerRecordBuilder();
+    _pendingEvents.forEach((path, event) -> builder.addEvent(new BrooklinEnvelope(path, event, null, _eventMetadata)));
+    builder.setEventsSourceTimestamp(System.currentTimeMillis());
+    builder.setPartition(0);
+    int numEvents = _pendingEvents.size();
+    _pendingEvents.clear();
+
+    _producer.send(builder.build(), ((metadata, exception) -> {
+      if (exception == null) {
+        LOG.debug("Sending {} events succeeded", numEvents);
+      } else {
+        LOG.error("Sending events failed", exception);
+      }
+    }));
   }
 
   private static DirectoryEvent getCorrespondingDirectoryEvent(WatchEvent.Kind<?> kind) {
@@ -8,6 +8,7 @@ package com.linkedin.datastream.connectors.directory;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -42,17 +43,21 @@ public class DirectoryConnector implements Connector {
 
   private final ConcurrentMap<DatastreamTask, DirectoryChangeProcessor> _directoryProcessors;
   private final ExecutorService _executorService;
+  private final Duration _debounceWindow;
 
   /**
    * Constructor for DirectoryConnector
    * @param threadPoolSize Number of threads in the thread pool used
    *                       for watching and processing directory changes.
+   * @param debounceWindow The window within which the change events of the directories are coalesced and batched
    */
-  public DirectoryConnector(int threadPoolSize) {
+  public DirectoryConnector(int threadPoolSize, Duration debounceWindow) {
     Validate.isTrue(threadPoolSize > 0, "Thread pool size must be greater than zero");
+    Validate.isTrue(!debounceWindow.isNegative(), "Debounce window must not be negative");
 
     _directoryProcessors = new ConcurrentHashMap<>();
     _executorService = Executors.newFixedThreadPool(threadPoolSize);
+    _debounceWindow = debounceWindow;
   }
 
   @Override
@@ -109,7 +114,8 @@ public class DirectoryConnector implements Connector {
   private void startTaskProcessors(Iterable<DatastreamTask> datastreamTasks) {
     for (DatastreamTask datastreamTask : datastreamTasks) {
       try {
-        DirectoryChangeProcessor processor = new DirectoryChangeProcessor(datastreamTask, datastreamTask.getEventProducer());
+        DirectoryChangeProcessor processor =
+            new DirectoryChangeProcessor(datastreamTask, datastreamTask.getEventProducer(), _debounceWindow);
         _directoryProcessors.put(datastreamTask, processor);
         _executorService.submit(processor);
       } catch (IOException ex) {
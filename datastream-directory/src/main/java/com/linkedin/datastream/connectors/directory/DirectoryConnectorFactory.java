@@ -5,6 +5,7 @@
  */
 package com.linkedin.datastream.connectors.directory;
 
+import java.time.Duration;
 import java.util.Properties;
 
 import org.apache.commons.lang3.Validate;
@@ -18,6 +19,8 @@ import com.linkedin.datastream.server.api.connector.ConnectorFactory;
 public class DirectoryConnectorFactory implements ConnectorFactory<DirectoryConnector> {
   private static final String CFG_DEFAULT_MAX_POOL_SIZE = "5";
   private static final String CFG_THREAD_POOL_SIZE = "maxExecProcessors";
+  private static final String CFG_DEFAULT_DEBOUNCE_MS = "500";
+  private static final String CFG_DEBOUNCE_MS = "debounceMs";
 
   @Override
   public DirectoryConnector createConnector(String connectorName, Properties config, String clusterName) {
@@ -26,6 +29,7 @@ public class DirectoryConnectorFactory implements ConnectorFactory<DirectoryConn
     Validate.notEmpty(clusterName);
 
     return new DirectoryConnector(Integer.parseInt(config.getProperty(CFG_THREAD_POOL_SIZE,
-        CFG_DEFAULT_MAX_POOL_SIZE)));
+        CFG_DEFAULT_MAX_POOL_SIZE)),
+        Duration.ofMillis(Long.parseLong(config.getProperty(CFG_DEBOUNCE_MS, CFG_DEFAULT_DEBOUNCE_MS))));
   }
 }
@@ -5,22 +5,35 @@
  */
 package com.linkedin.datastream.server;
 
-import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import com.linkedin.datastream.common.BrooklinEnvelope;
+import com.linkedin.datastream.common.DatastreamRuntimeException;
 import com.linkedin.datastream.server.api.transport.SendCallback;
 import com.linkedin.datastream.server.api.transport.TransportProvider;
 
 import static com.linkedin.datastream.connectors.directory.DirectoryChangeProcessor.DirectoryEvent;
+import static com.linkedin.datastream.connectors.directory.DirectoryChangeProcessor.SOURCE_DIRECTORY_METADATA_KEY;
 
 
 /**
@@ -28,6 +41,12 @@ import static com.linkedin.datastream.connectors.directory.DirectoryChangeProces
  * from a source directory in the file system by reflecting them to a destination
  * directory to keep it in sync.
  *
+ * The changes are applied on a pool of I/O threads. The changes under the same top-level
+ * entry of the source directory are applied in order by the same thread, while the changes
+ * under different entries are applied in parallel. A modified file whose destination copy
+ * is a prefix of it (e.g. a log file which is appended to) only has its new bytes copied, once
+ * the whole prefix is compared, which only reads the files rather than writing the prefix again.
+ *
  * However, this does not cover copying the initial contents of the source directory
  * or wiping the initial contents of the destination directory.
  * <br/>
@@ -35,6 +54,26 @@ import static com.linkedin.datastream.connectors.directory.DirectoryChangeProces
  */
 public class DirectoryTransportProvider implements TransportProvider {
   private static final Logger LOG = LoggerFactory.getLogger(DirectoryTransportProvider.class);
+  private static final long TRANSFER_CHUNK_BYTES = 8 * 1024 * 1024;
+  // size of the chunks of the source and destination files compared to only copy the appended bytes
+  private static final int APPEND_CHECK_BYTES = 64 * 1024;
+
+  private final List<ExecutorService> _ioExecutors;
+
+  /**
+   * Constructor for DirectoryTransportProvider
+   * @param ioThreads Number of threads used to apply the changes to the destination directories
+   */
+  public DirectoryTransportProvider(int ioThreads) {
+    Validate.isTrue(ioThreads > 0, "Number of I/O threads must be greater than zero");
+
+    ThreadFactory threadFactory =
+        new ThreadFactoryBuilder().setNameFormat("directory-transport-io-%d").setDaemon(true).build();
+    _ioExecutors = new ArrayList<>(ioThreads);
+    for (int i = 0; i < ioThreads; i++) {
+      _ioExecutors.add(Executors.newSingleThreadExecutor(threadFactory));
+    }
+  }
 
   @Override
   public void send(String destination, DatastreamProducerRecord record, SendCallback onComplete) {
@@ -47,44 +86,120 @@ public class DirectoryTransportProvider implements TransportProvider {
     for (BrooklinEnvelope envelope : record.getEvents()) {
       Path sourcePath = (Path) envelope.key().get();
       DirectoryEvent changeEvent = (DirectoryEvent) envelope.value().get();
-      LOG.info("Received change event {} in path {}", changeEvent, sourcePath);
-
-      switch (changeEvent) {
-        case ENTRY_CREATED:
-          copyPathToDir(sourcePath, destinationPath);
-          break;
-        case ENTRY_MODIFIED:
-          deleteSubPath(destinationPath, sourcePath.getFileName());
-          copyPathToDir(sourcePath, destinationPath);
-          break;
-        case ENTRY_DELETED:
-          deleteSubPath(destinationPath, sourcePath.getFileName());
-          break;
-        default:
-          throw new IllegalArgumentException(String.format("Unrecognized DirectoryEvent: %s", changeEvent));
-      }
+      String sourceDirectory = envelope.getMetadata().get(SOURCE_DIRECTORY_METADATA_KEY);
+      Path relativePath =
+          sourceDirectory != null ? Paths.get(sourceDirectory).relativize(sourcePath) : sourcePath.getFileName();
+      Path targetPath = destinationPath.resolve(relativePath);
+      LOG.debug("Received change event {} in path {}", changeEvent, sourcePath);
+
+      int executorIndex = Math.abs(relativePath.getName(0).hashCode() % _ioExecutors.size());
+      _ioExecutors.get(executorIndex).execute(() -> applyChange(changeEvent, sourcePath, targetPath));
     }
 
     // Deliberately not invoking onComplete because there is no progress info to checkpoint
   }
 
-  private static void copyPathToDir(Path sourcePath, Path destinationDir) {
-    ThrowingBinFunction<File, File> copyFn = Files.isDirectory(sourcePath) ?
-        FileUtils::copyDirectoryToDirectory :
-        FileUtils::copyFileToDirectory;
+  private static void applyChange(DirectoryEvent changeEvent, Path sourcePath, Path targetPath) {
+    switch (changeEvent) {
+      case ENTRY_CREATED:
+        copyPath(sourcePath, targetPath);
+        break;
+      case ENTRY_MODIFIED:
+        // the changes of the entries of a directory are reported on their own
+        if (!Files.isDirectory(sourcePath) || !Files.exists(targetPath)) {
+          copyPath(sourcePath, targetPath);
+        }
+        break;
+      case ENTRY_DELETED:
+        deletePath(targetPath);
+        break;
+      case ENTRY_REPLACED:
+        // the target may hold the entries of a deleted directory, or the beginning of a deleted file
+        deletePath(targetPath);
+        copyPath(sourcePath, targetPath);
+        break;
+      default:
+        throw new IllegalArgumentException(String.format("Unrecognized DirectoryEvent: %s", changeEvent));
+    }
+  }
 
+  private static void copyPath(Path sourcePath, Path targetPath) {
     try {
-      copyFn.apply(sourcePath.toFile(), destinationDir.toFile());
-      LOG.info("Successfully copied {} to {}", sourcePath, destinationDir);
+      if (Files.isDirectory(sourcePath)) {
+        FileUtils.copyDirectory(sourcePath.toFile(), targetPath.toFile());
+      } else {
+        Files.createDirectories(targetPath.getParent());
+        copyFile(sourcePath, targetPath);
+      }
+      LOG.debug("Successfully copied {} to {}", sourcePath, targetPath);
     } catch (IOException e) {
-      LOG.error("Encountered an error while copying {} to {}: {}", sourcePath, destinationDir, e.getMessage());
+      LOG.error("Encountered an error while copying {} to {}: {}", sourcePath, targetPath, e.getMessage());
+    }
+  }
+
+  /**
+   * Copy a file with {@link FileChannel#transferTo}, only copying the bytes appended to the source file
+   * if the target file is a copy of its beginning
+   */
+  private static void copyFile(Path sourcePath, Path targetPath) throws IOException {
+    try (FileChannel source = FileChannel.open(sourcePath, StandardOpenOption.READ);
+        FileChannel target = FileChannel.open(targetPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      long sourceSize = source.size();
+      long position = isAppendedTo(source, target) ? target.size() : 0;
+      target.truncate(position);
+      target.position(position);
+      while (position < sourceSize) {
+        long transferred = source.transferTo(position, Math.min(TRANSFER_CHUNK_BYTES, sourceSize - position), target);
+        if (transferred <= 0) {
+          // the source file was truncated since
+          break;
+        }
+        position += transferred;
+      }
+    }
+  }
+
+  /**
+   * Check if the source file is the target file with bytes appended, by comparing the whole target file with the
+   * beginning of the source file
+   */
+  private static boolean isAppendedTo(FileChannel source, FileChannel target) throws IOException {
+    long targetSize = target.size();
+    if (targetSize == 0 || targetSize >= source.size()) {
+      return false;
+    }
+
+    ByteBuffer sourceChunk = ByteBuffer.allocate(APPEND_CHECK_BYTES);
+    ByteBuffer targetChunk = ByteBuffer.allocate(APPEND_CHECK_BYTES);
+    for (long position = 0; position < targetSize; position += APPEND_CHECK_BYTES) {
+      int length = (int) Math.min(APPEND_CHECK_BYTES, targetSize - position);
+      sourceChunk.clear();
+      sourceChunk.limit(length);
+      targetChunk.clear();
+      targetChunk.limit(length);
+      if (!readFully(source, sourceChunk, position) || !readFully(target, targetChunk, position)
+          || !sourceChunk.equals(targetChunk)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      int bytesRead = channel.read(buffer, position + buffer.position());
+      if (bytesRead < 0) {
+        return false;
+      }
     }
+    buffer.flip();
+    return true;
   }
 
-  private void deleteSubPath(Path parentPath, Path subPath) {
-    Path deletePath = parentPath.resolve(subPath);
+  private static void deletePath(Path deletePath) {
     if (FileUtils.deleteQuietly(deletePath.toFile())) {
-      LOG.info("Successfully deleted {}", deletePath);
+      LOG.debug("Successfully deleted {}", deletePath);
     } else {
       LOG.warn("Path '{}' did not exist in destination directory", deletePath);
     }
@@ -92,14 +207,23 @@ public class DirectoryTransportProvider implements TransportProvider {
 
   @Override
   public void close() {
+    // the I/O threads are shared by the tasks, which each close the transport provider
+    flush();
   }
 
   @Override
   public void flush() {
-  }
-
-  @FunctionalInterface
-  private interface ThrowingBinFunction<T, U> {
-    void apply(T t, U u) throws IOException;
+    List<Future<?>> barriers = new ArrayList<>();
+    _ioExecutors.forEach(executor -> barriers.add(executor.submit(() -> { })));
+    try {
+      for (Future<?> barrier : barriers) {
+        barrier.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DatastreamRuntimeException("Interrupted while flushing the directory changes", e);
+    } catch (ExecutionException e) {
+      throw new DatastreamRuntimeException("Failed to flush the directory changes", e);
+    }
   }
 }
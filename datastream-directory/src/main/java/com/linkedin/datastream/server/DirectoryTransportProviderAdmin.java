@@ -26,14 +26,21 @@ import com.linkedin.datastream.server.api.transport.TransportProviderAdmin;
  * A {@link TransportProviderAdmin} implementation for {@link DirectoryTransportProvider}.
  */
 public class DirectoryTransportProviderAdmin implements TransportProviderAdmin {
-  private static final DirectoryTransportProvider DIRECTORY_TRANSPORT_PROVIDER =
-      new DirectoryTransportProvider();
-
   private static final Duration DATASTREAM_RETENTION = Duration.ofDays(1);
 
+  private final DirectoryTransportProvider _directoryTransportProvider;
+
+  /**
+   * Constructor for DirectoryTransportProviderAdmin
+   * @param ioThreads Number of threads used by the transport provider to apply the changes to the destinations
+   */
+  public DirectoryTransportProviderAdmin(int ioThreads) {
+    _directoryTransportProvider = new DirectoryTransportProvider(ioThreads);
+  }
+
   @Override
   public TransportProvider assignTransportProvider(DatastreamTask task) {
-    return DIRECTORY_TRANSPORT_PROVIDER;
+    return _directoryTransportProvider;
   }
 
   @Override
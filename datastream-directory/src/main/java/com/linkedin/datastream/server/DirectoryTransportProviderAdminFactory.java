@@ -15,9 +15,13 @@ import com.linkedin.datastream.server.api.transport.TransportProviderAdminFactor
  * Factory for creating {@link DirectoryTransportProviderAdmin} instances.
  */
 public class DirectoryTransportProviderAdminFactory implements TransportProviderAdminFactory {
+  private static final String CFG_DEFAULT_IO_THREADS = "4";
+  private static final String CFG_IO_THREADS = "ioThreads";
+
   @Override
   public TransportProviderAdmin createTransportProviderAdmin(String transportProviderName,
       Properties transportProviderProperties) {
-    return new DirectoryTransportProviderAdmin();
+    return new DirectoryTransportProviderAdmin(
+        Integer.parseInt(transportProviderProperties.getProperty(CFG_IO_THREADS, CFG_DEFAULT_IO_THREADS)));
   }
 }
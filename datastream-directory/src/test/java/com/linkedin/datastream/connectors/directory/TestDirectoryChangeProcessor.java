@@ -0,0 +1,64 @@
+/**
+ *  Copyright 2021 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.connectors.directory;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.linkedin.datastream.connectors.directory.DirectoryChangeProcessor.DirectoryEvent;
+
+import static com.linkedin.datastream.connectors.directory.DirectoryChangeProcessor.DirectoryEvent.ENTRY_CREATED;
+import static com.linkedin.datastream.connectors.directory.DirectoryChangeProcessor.DirectoryEvent.ENTRY_DELETED;
+import static com.linkedin.datastream.connectors.directory.DirectoryChangeProcessor.DirectoryEvent.ENTRY_MODIFIED;
+import static com.linkedin.datastream.connectors.directory.DirectoryChangeProcessor.DirectoryEvent.ENTRY_REPLACED;
+
+
+/**
+ * Tests for {@link DirectoryChangeProcessor}
+ */
+public class TestDirectoryChangeProcessor {
+
+  @DataProvider
+  public Object[][] coalescedEvents() {
+    return new Object[][] {
+        // pending event, new event, coalesced event
+        {null, ENTRY_CREATED, ENTRY_CREATED},
+        {null, ENTRY_MODIFIED, ENTRY_MODIFIED},
+        {null, ENTRY_DELETED, ENTRY_DELETED},
+        {ENTRY_CREATED, ENTRY_MODIFIED, ENTRY_CREATED},
+        {ENTRY_CREATED, ENTRY_DELETED, null},
+        {ENTRY_MODIFIED, ENTRY_MODIFIED, ENTRY_MODIFIED},
+        {ENTRY_MODIFIED, ENTRY_DELETED, ENTRY_DELETED},
+        {ENTRY_DELETED, ENTRY_CREATED, ENTRY_REPLACED},
+        {ENTRY_DELETED, ENTRY_MODIFIED, ENTRY_MODIFIED},
+        {ENTRY_REPLACED, ENTRY_MODIFIED, ENTRY_REPLACED},
+        {ENTRY_REPLACED, ENTRY_DELETED, ENTRY_DELETED},
+    };
+  }
+
+  @Test(dataProvider = "coalescedEvents")
+  public void testCoalesce(DirectoryEvent pendingEvent, DirectoryEvent event, DirectoryEvent expected) {
+    Assert.assertEquals(DirectoryChangeProcessor.coalesce(pendingEvent, event), expected);
+  }
+
+  @Test
+  public void testCoalesceSequence() {
+    // a file created, modified, deleted and created again within the window is only reported as created
+    DirectoryEvent event = null;
+    for (DirectoryEvent next : new DirectoryEvent[] {ENTRY_CREATED, ENTRY_MODIFIED, ENTRY_DELETED, ENTRY_CREATED}) {
+      event = DirectoryChangeProcessor.coalesce(event, next);
+    }
+    Assert.assertEquals(event, ENTRY_CREATED);
+
+    // a directory deleted, created again, then modified is replaced
+    event = null;
+    for (DirectoryEvent next : new DirectoryEvent[] {ENTRY_DELETED, ENTRY_CREATED, ENTRY_MODIFIED}) {
+      event = DirectoryChangeProcessor.coalesce(event, next);
+    }
+    Assert.assertEquals(event, ENTRY_REPLACED);
+  }
+}
@@ -0,0 +1,134 @@
+/**
+ *  Copyright 2021 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.server;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.linkedin.datastream.common.BrooklinEnvelope;
+import com.linkedin.datastream.connectors.directory.DirectoryChangeProcessor.DirectoryEvent;
+
+import static com.linkedin.datastream.connectors.directory.DirectoryChangeProcessor.SOURCE_DIRECTORY_METADATA_KEY;
+
+
+/**
+ * Tests for {@link DirectoryTransportProvider}
+ */
+public class TestDirectoryTransportProvider {
+  private Path _sourceDir;
+  private Path _destinationDir;
+  private DirectoryTransportProvider _transportProvider;
+
+  @BeforeMethod
+  public void setup() throws IOException {
+    _sourceDir = Files.createTempDirectory("testDirectorySource");
+    _destinationDir = Files.createTempDirectory("testDirectoryDestination");
+    _transportProvider = new DirectoryTransportProvider(2);
+  }
+
+  @AfterMethod
+  public void cleanup() {
+    _transportProvider.close();
+    FileUtils.deleteQuietly(_sourceDir.toFile());
+    FileUtils.deleteQuietly(_destinationDir.toFile());
+  }
+
+  @Test
+  public void testCopiesCreatedFile() throws IOException {
+    write(_sourceDir.resolve("dir/file"), "content");
+    send("dir/file", DirectoryEvent.ENTRY_CREATED);
+    Assert.assertEquals(read(_destinationDir.resolve("dir/file")), "content");
+  }
+
+  @Test
+  public void testCopiesAppendedBytes() throws IOException {
+    // the target spans several compared chunks
+    String content = StringUtils.repeat('a', 100000);
+    write(_sourceDir.resolve("file"), content + "appended");
+    write(_destinationDir.resolve("file"), content);
+    send("file", DirectoryEvent.ENTRY_MODIFIED);
+    Assert.assertEquals(read(_destinationDir.resolve("file")), content + "appended");
+  }
+
+  @Test
+  public void testRewritesChangedFile() throws IOException {
+    write(_sourceDir.resolve("file"), "new content, longer");
+    write(_destinationDir.resolve("file"), "old content");
+    send("file", DirectoryEvent.ENTRY_MODIFIED);
+    Assert.assertEquals(read(_destinationDir.resolve("file")), "new content, longer");
+  }
+
+  @Test
+  public void testRewritesFileWithChangedHead() throws IOException {
+    // the tail of the target matches the source, but not its head
+    String tail = StringUtils.repeat('a', 100000);
+    write(_sourceDir.resolve("file"), "new head" + tail + "appended");
+    write(_destinationDir.resolve("file"), "old head" + tail);
+    send("file", DirectoryEvent.ENTRY_MODIFIED);
+    Assert.assertEquals(read(_destinationDir.resolve("file")), "new head" + tail + "appended");
+  }
+
+  @Test
+  public void testRewritesTruncatedFile() throws IOException {
+    write(_sourceDir.resolve("file"), "0123");
+    write(_destinationDir.resolve("file"), "0123456789");
+    send("file", DirectoryEvent.ENTRY_MODIFIED);
+    Assert.assertEquals(read(_destinationDir.resolve("file")), "0123");
+  }
+
+  @Test
+  public void testReplacesDirectory() throws IOException {
+    write(_sourceDir.resolve("dir/new"), "new");
+    write(_destinationDir.resolve("dir/old"), "old");
+
+    // the entries of a modified directory are reported on their own
+    send("dir", DirectoryEvent.ENTRY_MODIFIED);
+    Assert.assertTrue(Files.exists(_destinationDir.resolve("dir/old")));
+    Assert.assertFalse(Files.exists(_destinationDir.resolve("dir/new")));
+
+    // a replaced directory is copied in full
+    send("dir", DirectoryEvent.ENTRY_REPLACED);
+    Assert.assertFalse(Files.exists(_destinationDir.resolve("dir/old")));
+    Assert.assertEquals(read(_destinationDir.resolve("dir/new")), "new");
+  }
+
+  @Test
+  public void testDeletesPath() throws IOException {
+    write(_destinationDir.resolve("dir/file"), "content");
+    send("dir", DirectoryEvent.ENTRY_DELETED);
+    Assert.assertFalse(Files.exists(_destinationDir.resolve("dir")));
+  }
+
+  private void send(String relativePath, DirectoryEvent event) {
+    DatastreamProducerRecordBuilder builder = new DatastreamProducerRecordBuilder();
+    builder.addEvent(new BrooklinEnvelope(_sourceDir.resolve(relativePath), event, null,
+        Collections.singletonMap(SOURCE_DIRECTORY_METADATA_KEY, _sourceDir.toString())));
+    builder.setEventsSourceTimestamp(System.currentTimeMillis());
+    builder.setPartition(0);
+    _transportProvider.send(_destinationDir.toString(), builder.build(), null);
+    // wait for the change to be applied
+    _transportProvider.flush();
+  }
+
+  private static void write(Path path, String content) throws IOException {
+    Files.createDirectories(path.getParent());
+    Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String read(Path path) throws IOException {
+    return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+  }
+}
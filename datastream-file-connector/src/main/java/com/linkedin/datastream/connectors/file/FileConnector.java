@@ -6,8 +6,9 @@
 package com.linkedin.datastream.connectors.file;
 
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -25,6 +26,7 @@ import com.google.common.collect.ImmutableMap;
 
 import com.linkedin.datastream.common.Datastream;
 import com.linkedin.datastream.common.DatastreamRuntimeException;
+import com.linkedin.datastream.common.DatastreamUtils;
 import com.linkedin.datastream.common.DiagnosticsAware;
 import com.linkedin.datastream.common.JsonUtils;
 import com.linkedin.datastream.common.PollUtils;
@@ -39,20 +41,31 @@ import com.linkedin.datastream.server.providers.CheckpointProvider;
  * Connector reads the text file line by line and produces events.
  * Connector uses the simple strategy, so the datastream can go to any instance. In a distributed environment,
  *   source should be  network files. local files can be used only in a standalone environment.
- * Uses a single thread per file
+ * Uses a single thread per file, which sends each line in its own record.
+ *
+ * The source can also be a glob of the files of a directory, e.g. {@code /var/log/app/*.log}, in which case the
+ *   files are spread across the partitions of the datastream, and each partition of a task is read by its own
+ *   thread (see {@link GlobFileProcessor}). Each partition is sent to the destination partition of the same number,
+ *   so the destination must have as many partitions as the source, and cannot be user managed.
  */
 public class FileConnector implements Connector, DiagnosticsAware {
   public static final String CONNECTOR_NAME = "file";
   public static final String CFG_MAX_EXEC_PROCS = "maxExecProcessors";
   public static final String CFG_NUM_PARTITIONS = "numPartitions";
+  public static final String CFG_READ_BUFFER_SIZE = "readBufferSizeBytes";
+  public static final String CFG_MAX_LINES_PER_BATCH = "maxLinesPerBatch";
 
   private static final Logger LOG = LoggerFactory.getLogger(FileConnector.class);
   private static final String DEFAULT_MAX_EXEC_PROCS = "5";
+  private static final String DEFAULT_READ_BUFFER_SIZE = "65536";
+  private static final String DEFAULT_MAX_LINES_PER_BATCH = "1";
   private static final Duration SHUTDOWN_TIMEOUT = Duration.ofMillis(5000);
 
   private final ExecutorService _executorService;
   private final int _numPartitions;
-  private final Map<DatastreamTask, FileProcessor> _fileProcessors;
+  private final int _readBufferSize;
+  private final int _maxLinesPerBatch;
+  private final Map<DatastreamTask, List<FileTaskProcessor>> _fileProcessors;
 
   private enum DiagnosticsRequestType {
     POSITION
@@ -67,6 +80,8 @@ public class FileConnector implements Connector, DiagnosticsAware {
         Executors.newFixedThreadPool(Integer.parseInt(config.getProperty(CFG_MAX_EXEC_PROCS, DEFAULT_MAX_EXEC_PROCS)));
 
     _numPartitions = Integer.parseInt(config.getProperty(CFG_NUM_PARTITIONS, "1"));
+    _readBufferSize = Integer.parseInt(config.getProperty(CFG_READ_BUFFER_SIZE, DEFAULT_READ_BUFFER_SIZE));
+    _maxLinesPerBatch = Integer.parseInt(config.getProperty(CFG_MAX_LINES_PER_BATCH, DEFAULT_MAX_LINES_PER_BATCH));
     _fileProcessors = new ConcurrentHashMap<>();
   }
 
@@ -88,17 +103,23 @@ public class FileConnector implements Connector, DiagnosticsAware {
   private void stopProcessorForTasks(Set<DatastreamTask> unassigned) {
     // Initiate stops for all unassigned tasks
     for (DatastreamTask task : unassigned) {
-      FileProcessor processor = _fileProcessors.get(task);
-      if (!processor.isStopped()) {
-        processor.stop();
+      for (FileTaskProcessor processor : _fileProcessors.get(task)) {
+        if (!processor.isStopped()) {
+          processor.stop();
+        }
       }
     }
 
     // Ensure the processors have actually stopped
     for (DatastreamTask task : unassigned) {
-      FileProcessor processor = _fileProcessors.get(task);
-      if (!PollUtils.poll(processor::isStopped, 200, SHUTDOWN_TIMEOUT.toMillis())) {
-        throw new RuntimeException("Failed to stop processor for " + task);
+      for (FileTaskProcessor processor : _fileProcessors.get(task)) {
+        if (!PollUtils.poll(processor::isStopped, 200, SHUTDOWN_TIMEOUT.toMillis())) {
+          throw new RuntimeException("Failed to stop processor for " + task);
+        }
+      }
+      // the processors of a glob share the lock of their task, which is released once they are all stopped
+      if (GlobFileProcessor.isGlob(task.getDatastreamSource().getConnectionString())) {
+        task.release();
       }
       _fileProcessors.remove(task);
       LOG.info("Processor stopped for task: " + task);
@@ -118,27 +139,61 @@ public class FileConnector implements Connector, DiagnosticsAware {
       if (!_fileProcessors.containsKey(task)) {
         try {
           LOG.info("Creating file processor for " + task);
-          FileProcessor processor = new FileProcessor(task, task.getEventProducer());
-          _fileProcessors.put(task, processor);
-          _executorService.submit(processor);
-        } catch (FileNotFoundException e) {
+          List<FileTaskProcessor> processors = createProcessors(task);
+          _fileProcessors.put(task, processors);
+          processors.forEach(_executorService::submit);
+        } catch (IOException e) {
           throw new RuntimeException("FileProcessor threw an exception", e);
         }
       }
     }
   }
 
+  private List<FileTaskProcessor> createProcessors(DatastreamTask task) throws IOException {
+    List<FileTaskProcessor> processors = new ArrayList<>();
+    if (GlobFileProcessor.isGlob(task.getDatastreamSource().getConnectionString())) {
+      for (int partition : task.getPartitions()) {
+        processors.add(
+            new GlobFileProcessor(task, partition, task.getEventProducer(), _readBufferSize, _maxLinesPerBatch));
+      }
+    } else {
+      processors.add(new FileProcessor(task, task.getEventProducer(), _readBufferSize, _maxLinesPerBatch));
+    }
+    return processors;
+  }
+
   @Override
   public void initializeDatastream(Datastream stream, List<Datastream> allDatastreams)
       throws DatastreamValidationException {
     LOG.info("validating datastream " + stream.toString());
-    File streamFile = new File(stream.getSource().getConnectionString());
-    if (!streamFile.exists() || !streamFile.isFile()) {
-      throw new DatastreamValidationException(String.format("File %s doesn't exists", streamFile.getAbsolutePath()));
-    }
-
-    if (_numPartitions != 1) {
+    String connectionString = stream.getSource().getConnectionString();
+    if (GlobFileProcessor.isGlob(connectionString)) {
+      File directory = new File(connectionString).getAbsoluteFile().getParentFile();
+      if (!directory.isDirectory()) {
+        throw new DatastreamValidationException(
+            String.format("Directory %s of glob %s doesn't exists", directory, connectionString));
+      }
+      // the checkpoint of each source partition is saved under the destination partition of the same number
+      if (DatastreamUtils.isUserManagedDestination(stream)) {
+        throw new DatastreamValidationException(
+            String.format("Datastream %s of glob %s cannot have a user managed destination", stream.getName(),
+                connectionString));
+      }
+      if (stream.hasDestination() && stream.getDestination().hasPartitions()
+          && stream.getDestination().getPartitions() != _numPartitions) {
+        throw new DatastreamValidationException(
+            String.format("Datastream %s of glob %s must have %d destination partitions, one per source partition",
+                stream.getName(), connectionString, _numPartitions));
+      }
       stream.getSource().setPartitions(_numPartitions);
+    } else {
+      File streamFile = new File(connectionString);
+      if (!streamFile.exists() || !streamFile.isFile()) {
+        throw new DatastreamValidationException(String.format("File %s doesn't exists", streamFile.getAbsolutePath()));
+      }
+      if (_numPartitions != 1) {
+        stream.getSource().setPartitions(_numPartitions);
+      }
     }
   }
 
@@ -183,6 +238,7 @@ public class FileConnector implements Connector, DiagnosticsAware {
    */
   private String processPositionRequest() {
     final List<Object> positions = _fileProcessors.values().stream()
+        .flatMap(List::stream)
         .map(processor -> ImmutableMap.of("key", processor.getPositionKey(), "value", processor.getPositionValue()))
         .collect(Collectors.toList());
     return JsonUtils.toJson(positions);
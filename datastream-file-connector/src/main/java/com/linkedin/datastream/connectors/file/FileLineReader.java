@@ -0,0 +1,154 @@
+/**
+ *  Copyright 2021 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.connectors.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * Reads the lines of a file through a {@link FileChannel}, splitting them in the read buffer without decoding them.
+ * Keeps track of the byte offset following the last line read, so the reader of a file can be resumed in O(1).
+ */
+class FileLineReader implements Closeable {
+
+  /**
+   * Handler of the lines read
+   */
+  @FunctionalInterface
+  interface LineHandler {
+    /**
+     * Handle a line
+     * @param line the bytes of the line, without the line terminator
+     * @param lineNo the number of the line in the file, starting at 1
+     * @param nextOffset the offset in the file of the byte following the line terminator
+     */
+    void onLine(byte[] line, long lineNo, long nextOffset);
+  }
+
+  private final FileChannel _fileChannel;
+  // bytes read from the file, which are not handled yet, between the start of the buffer and its position
+  private ByteBuffer _buffer;
+  // offset in the file of the first byte of the buffer
+  private long _offset;
+  // number of the last line read
+  private volatile long _lineNo;
+
+  /**
+   * Constructor for FileLineReader
+   * @param path the path of the file to read
+   * @param readBufferSize the initial size of the read buffer, in bytes, which grows to fit the longest line
+   * @throws IOException if the file cannot be opened
+   */
+  FileLineReader(Path path, int readBufferSize) throws IOException {
+    _fileChannel = FileChannel.open(path, StandardOpenOption.READ);
+    _buffer = ByteBuffer.allocate(readBufferSize);
+  }
+
+  /**
+   * Resume reading the file after the given line, at the given byte offset
+   */
+  void seek(long lineNo, long offset) throws IOException {
+    _buffer.clear();
+    _fileChannel.position(offset);
+    _lineNo = lineNo;
+    _offset = offset;
+  }
+
+  /**
+   * Resume reading the file after the given line, by counting the lines up to it
+   */
+  void skipLines(long lineNo) throws IOException {
+    long offset = 0;
+    long linesSkipped = 0;
+    _buffer.clear();
+    _fileChannel.position(0);
+    while (linesSkipped < lineNo && _fileChannel.read(_buffer) > 0) {
+      byte[] bytes = _buffer.array();
+      int i = 0;
+      for (; i < _buffer.position() && linesSkipped < lineNo; i++) {
+        if (bytes[i] == '\n') {
+          linesSkipped++;
+        }
+      }
+      offset += i;
+      _buffer.clear();
+    }
+    seek(lineNo, offset);
+  }
+
+  /**
+   * Read the next bytes of the file, and pass all the complete lines in the buffer to the handler.
+   * The partial last line is kept until it's completed by the next reads.
+   * @return the number of bytes read, or -1 at the end of the file
+   */
+  int readLines(LineHandler handler) throws IOException {
+    if (!_buffer.hasRemaining()) {
+      // the buffer is full of a single partial line
+      ByteBuffer buffer = ByteBuffer.allocate(_buffer.capacity() * 2);
+      _buffer.flip();
+      buffer.put(_buffer);
+      _buffer = buffer;
+    }
+
+    int bytesRead = _fileChannel.read(_buffer);
+    if (bytesRead <= 0) {
+      return bytesRead;
+    }
+
+    byte[] bytes = _buffer.array();
+    int end = _buffer.position();
+    int lineStart = 0;
+    for (int i = 0; i < end; i++) {
+      if (bytes[i] != '\n') {
+        continue;
+      }
+
+      int lineEnd = i > lineStart && bytes[i - 1] == '\r' ? i - 1 : i;
+      byte[] line = new byte[lineEnd - lineStart];
+      System.arraycopy(bytes, lineStart, line, 0, line.length);
+      lineStart = i + 1;
+      handler.onLine(line, ++_lineNo, _offset + lineStart);
+    }
+
+    // keep the partial last line for the next read
+    _buffer.flip();
+    _buffer.position(lineStart);
+    _buffer.compact();
+    _offset += lineStart;
+    return bytesRead;
+  }
+
+  /**
+   * Get the number of the last line read
+   */
+  long getLineNumber() {
+    return _lineNo;
+  }
+
+  /**
+   * Get the offset in the file of the byte following the last line read
+   */
+  long getOffset() {
+    return _offset;
+  }
+
+  /**
+   * Get the current size of the file
+   */
+  long size() throws IOException {
+    return _fileChannel.size();
+  }
+
+  @Override
+  public void close() throws IOException {
+    _fileChannel.close();
+  }
+}
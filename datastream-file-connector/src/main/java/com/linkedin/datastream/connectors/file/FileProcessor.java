@@ -5,63 +5,100 @@
  */
 package com.linkedin.datastream.connectors.file;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.io.CountingInputStream;
-
 import com.linkedin.datastream.common.BrooklinEnvelope;
 import com.linkedin.datastream.common.BrooklinEnvelopeMetadataConstants;
 import com.linkedin.datastream.connectors.file.diag.FilePositionKey;
 import com.linkedin.datastream.connectors.file.diag.FilePositionValue;
 import com.linkedin.datastream.server.DatastreamEventProducer;
+import com.linkedin.datastream.server.DatastreamProducerRecord;
 import com.linkedin.datastream.server.DatastreamProducerRecordBuilder;
 import com.linkedin.datastream.server.DatastreamTask;
+import com.linkedin.datastream.server.api.transport.SendCallback;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
 
 
-class FileProcessor implements Runnable {
+/**
+ * Tails a file with a {@link FileLineReader}, which splits the lines in the read buffer without decoding them.
+ *
+ * Each line is sent in its own record, whose checkpoint is {@code <line number>:<byte offset>}, where the byte
+ * offset is the position right after the line, so a restarted processor seeks to it directly. Checkpoints made of
+ * a line number only, as written by the earlier versions, are still honored by skipping that many lines. The records
+ * of up to {@code maxLinesPerBatch} lines read at once are handed to the producer in a single batch.
+ *
+ * When the end of the file is reached, the processor waits for the file to be modified, with a
+ * {@link WatchService} on its directory, rather than sleeping for a fixed period.
+ */
+class FileProcessor implements FileTaskProcessor {
   private static final Logger LOG = LoggerFactory.getLogger(FileProcessor.class);
 
   private static final int PARTITION = 0;
-  private static final int POLL_WAIT_MS = 100;
+  // upper bound of the wait for new data, in case the file system does not report the changes (e.g. network files)
+  private static final int POLL_WAIT_MS = 1000;
   private static final Duration ACQUIRE_TIMEOUT = Duration.ofMinutes(5);
+  static final String CHECKPOINT_SEPARATOR = ":";
 
   private final DatastreamTask _task;
   private final String _fileName;
   private final DatastreamEventProducer _producer;
-  private final BufferedReader _fileReader;
-  private final CountingInputStream _inputStream;
-  private final AtomicInteger _lineNo;
+  private final FileLineReader _fileReader;
+  private final WatchService _watchService;
+  private final int _maxLinesPerBatch;
   private final FilePositionKey _positionKey;
   private final FilePositionValue _positionValue;
-  private boolean _cancelRequested;
-  private boolean _isStopped;
+  private final SendCallback _sendCallback;
+  // the records of the lines read which are not sent yet
+  private List<DatastreamProducerRecord> _batch = new ArrayList<>();
+  private volatile boolean _cancelRequested;
+  private volatile boolean _isStopped;
 
-  public FileProcessor(DatastreamTask datastreamTask, DatastreamEventProducer producer) throws FileNotFoundException {
+  /**
+   * Constructor for FileProcessor
+   * @param datastreamTask the task to process, whose source is the file to read
+   * @param producer the producer to send the lines of the file with
+   * @param readBufferSize the initial size of the read buffer, in bytes, which grows to fit the longest line
+   * @param maxLinesPerBatch the maximum number of lines sent in a single batch
+   * @throws IOException if the file cannot be opened
+   */
+  public FileProcessor(DatastreamTask datastreamTask, DatastreamEventProducer producer, int readBufferSize,
+      int maxLinesPerBatch) throws IOException {
     _task = datastreamTask;
     _fileName = datastreamTask.getDatastreamSource().getConnectionString();
     _positionKey = new FilePositionKey(_task.getTaskPrefix(), _task.getDatastreamTaskName(), Instant.now(), _fileName);
     _positionValue = new FilePositionValue();
 
-    // Set up input streams/readers
-    final File file = new File(_fileName);
-    _positionValue.setFileLengthBytes(file.length());
-    _inputStream = new CountingInputStream(new FileInputStream(file));
-    _fileReader = new BufferedReader(new InputStreamReader(_inputStream, StandardCharsets.UTF_8));
-    _lineNo = new AtomicInteger();
+    Path path = Paths.get(_fileName).toAbsolutePath();
+    _fileReader = new FileLineReader(path, readBufferSize);
+    _positionValue.setFileLengthBytes(_fileReader.size());
+    _watchService = FileSystems.getDefault().newWatchService();
+    path.getParent().register(_watchService, ENTRY_CREATE, ENTRY_MODIFY);
+    _maxLinesPerBatch = maxLinesPerBatch;
+    _sendCallback = (metadata, exception) -> {
+      if (exception == null) {
+        LOG.debug("Sending event succeeded, metadata:{}", metadata);
+      } else {
+        LOG.error(String.format("Sending event failed, metadata:{%s}", metadata), exception);
+      }
+    };
 
     _producer = producer;
     _isStopped = false;
@@ -69,26 +106,26 @@ class FileProcessor implements Runnable {
     LOG.info("Created FileProcessor for " + datastreamTask);
   }
 
-  private int loadCheckpoint() throws IOException {
-    int lineNo = 0;
+  private void loadCheckpoint() throws IOException {
     Map<Integer, String> savedCheckpoints = _task.getCheckpoints();
     String cpString = savedCheckpoints.getOrDefault(PARTITION, null);
     if (cpString != null && !cpString.isEmpty()) {
-      // Resume from last saved line number
-      lineNo = Integer.parseInt(cpString);
-
-      // Must skip line by line as we can't get the actual file position of the
-      // last newline character due to the buffering done by BufferedReader.
-      for (int i = 0; i < lineNo; i++) {
-        _fileReader.readLine();
+      int separatorIndex = cpString.indexOf(CHECKPOINT_SEPARATOR);
+      if (separatorIndex >= 0) {
+        // Resume from the byte offset following the last saved line
+        _fileReader.seek(Long.parseLong(cpString.substring(0, separatorIndex)),
+            Long.parseLong(cpString.substring(separatorIndex + CHECKPOINT_SEPARATOR.length())));
+      } else {
+        // Resume from the last saved line number, which requires to count the lines up to it
+        _fileReader.skipLines(Long.parseLong(cpString));
       }
-
-      LOG.info("Resumed from line " + lineNo);
+      LOG.info("Resumed from line {} at offset {}", _fileReader.getLineNumber(), _fileReader.getOffset());
     } else {
       LOG.info("Resumed from beginning");
     }
 
-    return lineNo + 1;
+    _positionValue.setLinesRead(_fileReader.getLineNumber());
+    _positionValue.setBytesRead(_fileReader.getOffset());
   }
 
   @Override
@@ -96,50 +133,18 @@ class FileProcessor implements Runnable {
     try {
       _task.acquire(ACQUIRE_TIMEOUT);
 
-      _lineNo.set(loadCheckpoint());
-      _positionValue.setLinesRead((long) _lineNo.intValue());
+      loadCheckpoint();
       while (!_cancelRequested) {
-        String text;
+        int bytesRead;
         try {
-          text = _fileReader.readLine();
-          _positionValue.setBytesRead(_inputStream.getCount());
+          bytesRead = readLines();
         } catch (IOException e) {
           throw new RuntimeException("Reading file failed.", e);
         }
-        if (text != null) {
-          // Using the line# as the key
-
-          HashMap<String, String> eventMetadata = new HashMap<>();
-          long currentTimeMillis = System.currentTimeMillis();
-          eventMetadata.put(BrooklinEnvelopeMetadataConstants.EVENT_TIMESTAMP, String.valueOf(currentTimeMillis));
-          BrooklinEnvelope event =
-              new BrooklinEnvelope(_lineNo.toString().getBytes(StandardCharsets.UTF_8),
-                  text.getBytes(StandardCharsets.UTF_8), null, eventMetadata);
-
-          LOG.info("sending event " + text);
-          DatastreamProducerRecordBuilder builder = new DatastreamProducerRecordBuilder();
-          builder.addEvent(event);
-          builder.setEventsSourceTimestamp(currentTimeMillis);
-          // If the destination is user managed, we will use the key to decide the partition.
-          if (!_task.isUserManagedDestination()) {
-            builder.setPartition(0);
-          } else {
-            builder.setPartitionKey(_lineNo.toString());
-          }
-
-          builder.setSourceCheckpoint(_lineNo.toString());
-          _producer.send(builder.build(), (metadata, exception) -> {
-            if (exception == null) {
-              LOG.info("Sending event:{} succeeded, metadata:{}", text, metadata);
-            } else {
-              LOG.error(String.format("Sending event:{%s} failed, metadata:{%s}", text, metadata), exception);
-            }
-          });
-          _positionValue.setLinesRead((long) _lineNo.incrementAndGet());
-        } else {
+        if (bytesRead <= 0) {
           try {
             // Wait for new data
-            Thread.sleep(POLL_WAIT_MS);
+            waitForFileChange();
           } catch (InterruptedException e) {
             LOG.info("Interrupted");
             break;
@@ -149,32 +154,106 @@ class FileProcessor implements Runnable {
 
       _task.release();
       _isStopped = true;
-      LOG.info("Stopped at line " + _lineNo + " task=" + _task);
+      LOG.info("Stopped at line " + _fileReader.getLineNumber() + " task=" + _task);
     } catch (Throwable e) {
       LOG.error("File processor is quitting with exception, task=" + _task, e);
+    } finally {
+      closeQuietly();
     }
   }
 
+  /**
+   * Read the next bytes of the file, and send all the complete lines read in batches of up to
+   * {@code _maxLinesPerBatch} lines
+   * @return the number of bytes read, or -1 at the end of the file
+   */
+  private int readLines() throws IOException {
+    int bytesRead = _fileReader.readLines(this::addLine);
+    if (!_batch.isEmpty()) {
+      sendBatch();
+    }
+
+    _positionValue.setLinesRead(_fileReader.getLineNumber());
+    _positionValue.setBytesRead(_fileReader.getOffset());
+    return bytesRead;
+  }
+
+  private void addLine(byte[] line, long lineNo, long nextOffset) {
+    long timeMillis = System.currentTimeMillis();
+    Map<String, String> metadata =
+        Collections.singletonMap(BrooklinEnvelopeMetadataConstants.EVENT_TIMESTAMP, String.valueOf(timeMillis));
+    // Using the line# as the key
+    String key = String.valueOf(lineNo);
+
+    DatastreamProducerRecordBuilder builder = new DatastreamProducerRecordBuilder();
+    builder.addEvent(new BrooklinEnvelope(key.getBytes(StandardCharsets.UTF_8), line, null, metadata));
+    builder.setEventsSourceTimestamp(timeMillis);
+    // If the destination is user managed, we will use the key of each line to decide its partition.
+    if (!_task.isUserManagedDestination()) {
+      builder.setPartition(0);
+    } else {
+      builder.setPartitionKey(key);
+    }
+    builder.setSourceCheckpoint(key + CHECKPOINT_SEPARATOR + nextOffset);
+    _batch.add(builder.build());
+
+    if (_batch.size() >= _maxLinesPerBatch) {
+      sendBatch();
+    }
+  }
+
+  private void sendBatch() {
+    List<DatastreamProducerRecord> batch = _batch;
+    _batch = new ArrayList<>();
+    if (batch.size() == 1) {
+      _producer.send(batch.get(0), _sendCallback);
+    } else {
+      _producer.sendBatch(batch, _sendCallback);
+    }
+  }
+
+  private void waitForFileChange() throws InterruptedException {
+    WatchKey key = _watchService.poll(POLL_WAIT_MS, TimeUnit.MILLISECONDS);
+    if (key != null) {
+      // the events of the other files of the directory are dropped, as the file is read again regardless
+      key.pollEvents();
+      key.reset();
+    }
+  }
+
+  private void closeQuietly() {
+    try {
+      _watchService.close();
+      _fileReader.close();
+    } catch (IOException e) {
+      LOG.warn("Failed to close file " + _fileName, e);
+    }
+  }
+
+  @Override
   public boolean isStopped() {
     return _isStopped;
   }
 
+  @Override
   public void stop() {
     _cancelRequested = true;
   }
 
-  public Integer getLineNumber() {
-    return _lineNo.get();
+  public long getLineNumber() {
+    return _fileReader.getLineNumber();
   }
 
   public String getFileName() {
     return _fileName;
   }
 
+  @Override
   public FilePositionKey getPositionKey() {
     return _positionKey;
   }
 
+  @Override
   public FilePositionValue getPositionValue() {
     return _positionValue;
   }
@@ -0,0 +1,36 @@
+/**
+ *  Copyright 2021 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.connectors.file;
+
+import com.linkedin.datastream.connectors.file.diag.FilePositionKey;
+import com.linkedin.datastream.connectors.file.diag.FilePositionValue;
+
+
+/**
+ * A processor run by the {@link FileConnector} for a datastream task
+ */
+interface FileTaskProcessor extends Runnable {
+
+  /**
+   * Check if the processor is stopped
+   */
+  boolean isStopped();
+
+  /**
+   * Request the processor to stop
+   */
+  void stop();
+
+  /**
+   * Get the key of the position data of the processor
+   */
+  FilePositionKey getPositionKey();
+
+  /**
+   * Get the position data of the processor
+   */
+  FilePositionValue getPositionValue();
+}
@@ -0,0 +1,444 @@
+/**
+ *  Copyright 2021 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.connectors.file;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import com.linkedin.datastream.common.BrooklinEnvelope;
+import com.linkedin.datastream.common.BrooklinEnvelopeMetadataConstants;
+import com.linkedin.datastream.common.JsonUtils;
+import com.linkedin.datastream.connectors.file.diag.FilePositionKey;
+import com.linkedin.datastream.connectors.file.diag.FilePositionValue;
+import com.linkedin.datastream.server.DatastreamEventProducer;
+import com.linkedin.datastream.server.DatastreamProducerRecord;
+import com.linkedin.datastream.server.DatastreamProducerRecordBuilder;
+import com.linkedin.datastream.server.DatastreamTask;
+import com.linkedin.datastream.server.api.transport.SendCallback;
+
+import static com.linkedin.datastream.connectors.file.FileProcessor.CHECKPOINT_SEPARATOR;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+
+/**
+ * Tails the files of a directory which match a glob, e.g. {@code /var/log/app/*.log}, and which belong to a
+ * partition of a datastream task. The files are spread across the partitions of the datastream by their file key
+ * (the inode on Unix), so the partitions can be assigned to different tasks and instances by the assignment
+ * strategies, and each partition is read by its own processor. The lines of a partition are sent to the destination
+ * partition of the same number, under which the checkpoint of the partition is saved.
+ *
+ * A file is tracked by its file key, so a file which is renamed by log rotation keeps being read from the same
+ * offset, and a new file created under the rotated name is read from its beginning. A file which no longer matches
+ * the glob is read to its end before it's dropped, and a file which is truncated is read again from its beginning.
+ *
+ * Each line is sent in its own record, and the lines read at once in batches of up to {@code maxLinesPerBatch}
+ * lines. The checkpoint of the partition is a JSON map of the file keys to the {@code <line number>:<byte offset>}
+ * following the last line sent from each file. The checkpoint of a record holds the position of its own line, and
+ * the positions of the other files as of their lines acknowledged so far, so a restart never skips a line which was
+ * read but not sent. The part of the checkpoint with the other files is only encoded again once one of their
+ * positions changes.
+ *
+ * The lock of the task is acquired by each processor of the task, and released by the connector once all of them
+ * are stopped.
+ */
+class GlobFileProcessor implements FileTaskProcessor {
+  private static final Logger LOG = LoggerFactory.getLogger(GlobFileProcessor.class);
+
+  // upper bound of the wait for new data, in case the file system does not report the changes (e.g. network files)
+  private static final int POLL_WAIT_MS = 1000;
+  private static final Duration ACQUIRE_TIMEOUT = Duration.ofMinutes(5);
+  private static final String GLOB_CHARACTERS = "*?[{";
+  private static final TypeReference<HashMap<String, String>> CHECKPOINT_TYPE =
+      new TypeReference<HashMap<String, String>>() { };
+
+  private final DatastreamTask _task;
+  private final int _partition;
+  private final int _numPartitions;
+  private final Path _directory;
+  private final String _glob;
+  private final DatastreamEventProducer _producer;
+  private final WatchService _watchService;
+  private final int _readBufferSize;
+  private final int _maxLinesPerBatch;
+  private final FilePositionKey _positionKey;
+  private final FilePositionValue _positionValue;
+  // files read by the processor, by file key, which are only accessed by the processor thread
+  private final Map<String, TailedFile> _files = new LinkedHashMap<>();
+  // checkpoints of the files which are not opened yet, by file key
+  private Map<String, String> _savedCheckpoints = new HashMap<>();
+  // positions following the last line acknowledged from each file, by file key, updated by the send callbacks
+  private final Map<String, String> _ackedCheckpoints = new ConcurrentHashMap<>();
+  // JSON of the acknowledged positions of the files other than _checkpointPrefixFileKey, without the closing brace,
+  // which is invalidated once the position of one of these files changes
+  private volatile String _checkpointPrefixFileKey;
+  private volatile boolean _isCheckpointPrefixValid;
+  private String _checkpointPrefix;
+  // the records of the lines read which are not sent yet, along with their files and positions
+  private List<DatastreamProducerRecord> _batch = new ArrayList<>();
+  private List<FilePosition> _batchPositions = new ArrayList<>();
+  private volatile boolean _cancelRequested;
+  private volatile boolean _isStopped;
+
+  /**
+   * Constructor for GlobFileProcessor
+   * @param datastreamTask the task to process, whose source is the glob of the files to read
+   * @param partition the partition of the task to process
+   * @param producer the producer to send the lines of the files with
+   * @param readBufferSize the initial size of the read buffer of each file, in bytes
+   * @param maxLinesPerBatch the maximum number of lines sent in a single batch
+   * @throws IOException if the directory cannot be watched
+   */
+  public GlobFileProcessor(DatastreamTask datastreamTask, int partition, DatastreamEventProducer producer,
+      int readBufferSize, int maxLinesPerBatch) throws IOException {
+    _task = datastreamTask;
+    _partition = partition;
+    _numPartitions =
+        datastreamTask.getDatastreamSource().hasPartitions() ? datastreamTask.getDatastreamSource().getPartitions() : 1;
+    String connectionString = datastreamTask.getDatastreamSource().getConnectionString();
+    Path globPath = Paths.get(connectionString).toAbsolutePath();
+    _directory = globPath.getParent();
+    _glob = globPath.getFileName().toString();
+    _positionKey = new FilePositionKey(_task.getTaskPrefix(), _task.getDatastreamTaskName(), Instant.now(),
+        connectionString + "#" + partition);
+    _positionValue = new FilePositionValue();
+
+    _watchService = FileSystems.getDefault().newWatchService();
+    _directory.register(_watchService, ENTRY_CREATE, ENTRY_MODIFY);
+    _readBufferSize = readBufferSize;
+    _maxLinesPerBatch = maxLinesPerBatch;
+
+    _producer = producer;
+    _isStopped = false;
+    _cancelRequested = false;
+    LOG.info("Created GlobFileProcessor for partition {} of {}", partition, datastreamTask);
+  }
+
+  /**
+   * Check if the connection string of a datastream source is a glob of files, rather than a single file
+   */
+  static boolean isGlob(String connectionString) {
+    return StringUtils.containsAny(connectionString, GLOB_CHARACTERS);
+  }
+
+  /**
+   * Get the partition of the file with the given file key
+   */
+  static int getPartition(String fileKey, int numPartitions) {
+    return Math.abs(fileKey.hashCode() % numPartitions);
+  }
+
+  private void loadCheckpoint() {
+    String cpString = _task.getCheckpoints().get(_partition);
+    if (cpString != null && !cpString.isEmpty()) {
+      _savedCheckpoints = JsonUtils.fromJson(cpString, CHECKPOINT_TYPE);
+      LOG.info("Resuming {} files of partition {}", _savedCheckpoints.size(), _partition);
+    } else {
+      LOG.info("Resumed partition {} from beginning", _partition);
+    }
+  }
+
+  @Override
+  public void run() {
+    try {
+      // the processors of the other partitions of the task may be acquiring the same lock
+      synchronized (_task) {
+        _task.acquire(ACQUIRE_TIMEOUT);
+      }
+
+      loadCheckpoint();
+      discoverFiles();
+      if (!_savedCheckpoints.isEmpty()) {
+        LOG.info("Dropping the checkpoints of the files {}, which no longer match {}", _savedCheckpoints.keySet(), _glob);
+        _savedCheckpoints.clear();
+      }
+      while (!_cancelRequested) {
+        long bytesRead;
+        try {
+          bytesRead = readFiles();
+        } catch (IOException e) {
+          throw new RuntimeException("Reading files failed.", e);
+        }
+        if (bytesRead <= 0 && !discoverFiles()) {
+          try {
+            // Wait for new data or new files
+            waitForDirectoryChange();
+          } catch (InterruptedException e) {
+            LOG.info("Interrupted");
+            break;
+          }
+        }
+      }
+
+      _isStopped = true;
+      LOG.info("Stopped partition {} with files {} task={}", _partition, _files.keySet(), _task);
+    } catch (Throwable e) {
+      LOG.error("Glob file processor is quitting with exception, task=" + _task, e);
+    } finally {
+      closeQuietly();
+    }
+  }
+
+  /**
+   * Look for the files of the partition which match the glob, and drop the files which no longer match it once
+   * they are fully read
+   * @return true if files were added, dropped, or truncated
+   */
+  private boolean discoverFiles() throws IOException {
+    boolean changed = false;
+    Set<String> matchedFiles = new HashSet<>();
+    try (DirectoryStream<Path> paths = Files.newDirectoryStream(_directory, _glob)) {
+      for (Path path : paths) {
+        BasicFileAttributes attributes;
+        try {
+          attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+          // the file was rotated away since it was listed
+          continue;
+        }
+        String fileKey = attributes.fileKey() != null ? attributes.fileKey().toString() : path.toString();
+        if (!attributes.isRegularFile() || getPartition(fileKey, _numPartitions) != _partition) {
+          continue;
+        }
+
+        matchedFiles.add(fileKey);
+        TailedFile file = _files.get(fileKey);
+        if (file == null) {
+          _files.put(fileKey, openFile(fileKey, path));
+          changed = true;
+        } else {
+          if (!file._path.equals(path)) {
+            LOG.info("File {} was renamed to {}", file._path, path);
+            file._path = path;
+          }
+          if (attributes.size() < file._reader.getOffset()) {
+            LOG.info("File {} was truncated, reading it from the beginning", path);
+            file._reader.seek(0, 0);
+            _ackedCheckpoints.remove(fileKey);
+            _isCheckpointPrefixValid = false;
+            changed = true;
+          }
+        }
+      }
+    }
+
+    Iterator<TailedFile> files = _files.values().iterator();
+    while (files.hasNext()) {
+      TailedFile file = files.next();
+      if (!matchedFiles.contains(file._key) && file._isFullyRead) {
+        LOG.info("Done reading file {}, which no longer matches {}", file._path, _glob);
+        file._reader.close();
+        files.remove();
+        _ackedCheckpoints.remove(file._key);
+        _isCheckpointPrefixValid = false;
+        changed = true;
+      }
+    }
+    return changed;
+  }
+
+  private TailedFile openFile(String fileKey, Path path) throws IOException {
+    TailedFile file = new TailedFile(fileKey, path, new FileLineReader(path, _readBufferSize));
+    String cpString = _savedCheckpoints.remove(fileKey);
+    if (cpString != null) {
+      long lineNo = Long.parseLong(StringUtils.substringBefore(cpString, CHECKPOINT_SEPARATOR));
+      long offset = Long.parseLong(StringUtils.substringAfter(cpString, CHECKPOINT_SEPARATOR));
+      // the file key may have been reused by a new file
+      if (offset <= file._reader.size()) {
+        file._reader.seek(lineNo, offset);
+        _ackedCheckpoints.put(fileKey, cpString);
+        _isCheckpointPrefixValid = false;
+      }
+    }
+    LOG.info("Reading file {} of partition {} from line {}", path, _partition, file._reader.getLineNumber());
+    return file;
+  }
+
+  /**
+   * Read the next bytes of each file in turn, and send the complete lines read in batches of up to
+   * {@code _maxLinesPerBatch} lines
+   * @return the number of bytes read
+   */
+  private long readFiles() throws IOException {
+    long totalBytesRead = 0;
+    long totalLinesRead = 0;
+    for (TailedFile file : _files.values()) {
+      int bytesRead = file._reader.readLines((line, lineNo, nextOffset) -> addLine(file, line, lineNo, nextOffset));
+      file._isFullyRead = bytesRead <= 0;
+      totalBytesRead += Math.max(bytesRead, 0);
+      totalLinesRead += file._reader.getLineNumber();
+    }
+    if (!_batch.isEmpty()) {
+      sendBatch();
+    }
+
+    _positionValue.setLinesRead(totalLinesRead);
+    _positionValue.setBytesRead(_files.values().stream().mapToLong(file -> file._reader.getOffset()).sum());
+    return totalBytesRead;
+  }
+
+  private void addLine(TailedFile file, byte[] line, long lineNo, long nextOffset) {
+    long timeMillis = System.currentTimeMillis();
+    Map<String, String> metadata =
+        Collections.singletonMap(BrooklinEnvelopeMetadataConstants.EVENT_TIMESTAMP, String.valueOf(timeMillis));
+    // Using the file name and the line# as the key
+    String key = file._path.getFileName() + CHECKPOINT_SEPARATOR + lineNo;
+    String checkpoint = lineNo + CHECKPOINT_SEPARATOR + nextOffset;
+
+    DatastreamProducerRecordBuilder builder = new DatastreamProducerRecordBuilder();
+    builder.addEvent(new BrooklinEnvelope(key.getBytes(StandardCharsets.UTF_8), line, null, metadata));
+    builder.setEventsSourceTimestamp(timeMillis);
+    builder.setPartition(_partition);
+    builder.setSourceCheckpoint(getCheckpoint(file, checkpoint));
+    _batch.add(builder.build());
+    _batchPositions.add(new FilePosition(file._key, checkpoint));
+
+    if (_batch.size() >= _maxLinesPerBatch) {
+      sendBatch();
+    }
+  }
+
+  private void sendBatch() {
+    List<DatastreamProducerRecord> batch = _batch;
+    List<FilePosition> positions = _batchPositions;
+    _batch = new ArrayList<>();
+    _batchPositions = new ArrayList<>();
+    SendCallback callback = (metadata, exception) -> {
+      if (exception == null) {
+        // a record sent on its own has no batch index
+        FilePosition position = positions.get(Math.max(metadata.getBatchIndex(), 0));
+        _ackedCheckpoints.put(position._fileKey, position._checkpoint);
+        if (!position._fileKey.equals(_checkpointPrefixFileKey)) {
+          _isCheckpointPrefixValid = false;
+        }
+        LOG.debug("Sending event up to checkpoint:{} succeeded, metadata:{}", position._checkpoint, metadata);
+      } else {
+        LOG.error(String.format("Sending event failed, metadata:{%s}", metadata), exception);
+      }
+    };
+    if (batch.size() == 1) {
+      _producer.send(batch.get(0), callback);
+    } else {
+      _producer.sendBatch(batch, callback);
+    }
+  }
+
+  /**
+   * Get the checkpoint of the partition, once the line of the file followed by the given position is sent
+   */
+  private String getCheckpoint(TailedFile file, String checkpoint) {
+    if (!_isCheckpointPrefixValid || !file._key.equals(_checkpointPrefixFileKey)) {
+      // set before the acknowledged positions are copied, so that the ones which change meanwhile invalidate it
+      _checkpointPrefixFileKey = file._key;
+      _isCheckpointPrefixValid = true;
+      Map<String, String> checkpoints = new HashMap<>(_ackedCheckpoints);
+      checkpoints.remove(file._key);
+      String json = JsonUtils.toJson(checkpoints);
+      _checkpointPrefix = json.substring(0, json.length() - 1) + (checkpoints.isEmpty() ? "" : ",");
+    }
+    // the position is only made of digits and the separator
+    return _checkpointPrefix + file._jsonKey + ":\"" + checkpoint + "\"}";
+  }
+
+  private void waitForDirectoryChange() throws InterruptedException {
+    WatchKey key = _watchService.poll(POLL_WAIT_MS, TimeUnit.MILLISECONDS);
+    if (key != null) {
+      // the files are all read and listed again regardless of the events
+      key.pollEvents();
+      key.reset();
+    }
+  }
+
+  private void closeQuietly() {
+    try {
+      _watchService.close();
+      for (TailedFile file : _files.values()) {
+        file._reader.close();
+      }
+    } catch (IOException e) {
+      LOG.warn("Failed to close the files of " + _directory, e);
+    }
+  }
+
+  @Override
+  public boolean isStopped() {
+    return _isStopped;
+  }
+
+  @Override
+  public void stop() {
+    _cancelRequested = true;
+  }
+
+  @Override
+  public FilePositionKey getPositionKey() {
+    return _positionKey;
+  }
+
+  @Override
+  public FilePositionValue getPositionValue() {
+    return _positionValue;
+  }
+
+  /**
+   * A file read by the processor
+   */
+  private static final class TailedFile {
+    private final String _key;
+    private final String _jsonKey;
+    private final FileLineReader _reader;
+    private Path _path;
+    private boolean _isFullyRead;
+
+    TailedFile(String key, Path path, FileLineReader reader) {
+      _key = key;
+      _jsonKey = JsonUtils.toJson(key);
+      _path = path;
+      _reader = reader;
+    }
+  }
+
+  /**
+   * The position following a line sent from a file
+   */
+  private static final class FilePosition {
+    private final String _fileKey;
+    private final String _checkpoint;
+
+    FilePosition(String fileKey, String checkpoint) {
+      _fileKey = fileKey;
+      _checkpoint = checkpoint;
+    }
+  }
+}
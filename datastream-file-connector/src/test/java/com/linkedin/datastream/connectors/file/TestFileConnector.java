@@ -0,0 +1,75 @@
+/**
+ *  Copyright 2021 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.connectors.file;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Properties;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.linkedin.datastream.common.Datastream;
+import com.linkedin.datastream.common.DatastreamMetadataConstants;
+import com.linkedin.datastream.server.api.connector.DatastreamValidationException;
+import com.linkedin.datastream.testutil.DatastreamTestUtils;
+
+
+/**
+ * Tests for {@link FileConnector}
+ */
+public class TestFileConnector {
+  private Path _directory;
+  private FileConnector _connector;
+
+  @BeforeMethod
+  public void setup() throws IOException {
+    _directory = Files.createTempDirectory("testFileConnector");
+    Properties config = new Properties();
+    config.setProperty(FileConnector.CFG_NUM_PARTITIONS, "3");
+    _connector = new FileConnector(config);
+  }
+
+  @AfterMethod
+  public void cleanup() throws IOException {
+    _connector.stop();
+    Files.delete(_directory);
+  }
+
+  @Test
+  public void testInitializesGlobDatastream() throws Exception {
+    Datastream stream = createGlobDatastream(3);
+    _connector.initializeDatastream(stream, Collections.emptyList());
+    Assert.assertEquals(stream.getSource().getPartitions().intValue(), 3);
+
+    // the destination partitions default to the source partitions
+    stream = DatastreamTestUtils.createDatastream(FileConnector.CONNECTOR_NAME, "ds",
+        _directory.resolve("*.log").toString());
+    _connector.initializeDatastream(stream, Collections.emptyList());
+    Assert.assertEquals(stream.getSource().getPartitions().intValue(), 3);
+  }
+
+  @Test(expectedExceptions = DatastreamValidationException.class)
+  public void testRejectsGlobWithOtherDestinationPartitions() throws Exception {
+    _connector.initializeDatastream(createGlobDatastream(2), Collections.emptyList());
+  }
+
+  @Test(expectedExceptions = DatastreamValidationException.class)
+  public void testRejectsGlobWithUserManagedDestination() throws Exception {
+    Datastream stream = createGlobDatastream(3);
+    stream.getMetadata().put(DatastreamMetadataConstants.IS_USER_MANAGED_DESTINATION_KEY, "true");
+    _connector.initializeDatastream(stream, Collections.emptyList());
+  }
+
+  private Datastream createGlobDatastream(int destinationPartitions) {
+    return DatastreamTestUtils.createDatastream(FileConnector.CONNECTOR_NAME, "ds",
+        _directory.resolve("*.log").toString(), "destination", destinationPartitions);
+  }
+}
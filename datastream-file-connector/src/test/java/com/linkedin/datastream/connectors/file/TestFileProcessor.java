@@ -0,0 +1,155 @@
+/**
+ *  Copyright 2021 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.connectors.file;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.linkedin.datastream.common.BrooklinEnvelope;
+import com.linkedin.datastream.common.DatastreamSource;
+import com.linkedin.datastream.common.PollUtils;
+import com.linkedin.datastream.server.DatastreamEventProducer;
+import com.linkedin.datastream.server.DatastreamProducerRecord;
+import com.linkedin.datastream.server.DatastreamTask;
+import com.linkedin.datastream.server.api.transport.SendCallback;
+
+
+/**
+ * Tests for {@link FileProcessor}
+ */
+public class TestFileProcessor {
+  private static final long WAIT_TIMEOUT_MS = 5000;
+
+  private Path _file;
+  private ExecutorService _executor;
+  private final List<DatastreamProducerRecord> _records = new CopyOnWriteArrayList<>();
+  private final List<Integer> _batchSizes = new CopyOnWriteArrayList<>();
+  private final DatastreamEventProducer _producer = new DatastreamEventProducer() {
+    @Override
+    public void send(DatastreamProducerRecord record, SendCallback callback) {
+      _records.add(record);
+    }
+
+    @Override
+    public void sendBatch(List<DatastreamProducerRecord> records, SendCallback callback) {
+      _batchSizes.add(records.size());
+      DatastreamEventProducer.super.sendBatch(records, callback);
+    }
+
+    @Override
+    public void flush() {
+    }
+  };
+
+  @BeforeMethod
+  public void setup() throws IOException {
+    _file = Files.createTempFile("testFileProcessor", "");
+    _executor = Executors.newSingleThreadExecutor();
+    _records.clear();
+    _batchSizes.clear();
+  }
+
+  @AfterMethod
+  public void cleanup() throws IOException {
+    _executor.shutdownNow();
+    Files.deleteIfExists(_file);
+  }
+
+  @Test
+  public void testBatchesLinesAndResumesFromByteOffset() throws Exception {
+    appendLines("line1", "line2\r", "line3");
+    FileProcessor processor = startProcessor(Collections.emptyMap(), 64, 2);
+    Assert.assertTrue(PollUtils.poll(() -> getLines().size() == 3, 50, WAIT_TIMEOUT_MS));
+    // the three lines are read at once, and sent in a batch of two lines and a single line, each in its own record
+    Assert.assertEquals(_records.size(), 3);
+    Assert.assertEquals(_batchSizes, Collections.singletonList(2));
+    Assert.assertEquals(getLines(), Arrays.asList("1=line1", "2=line2", "3=line3"));
+    Assert.assertEquals(_records.get(0).getCheckpoint(), "1:6");
+    Assert.assertEquals(_records.get(1).getCheckpoint(), "2:13");
+    Assert.assertEquals(_records.get(2).getCheckpoint(), "3:19");
+
+    // the lines appended later are picked up without a restart, but a partial line is held back
+    Files.write(_file, "line4\nline".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    Assert.assertTrue(PollUtils.poll(() -> getLines().size() == 4, 50, WAIT_TIMEOUT_MS));
+    stopProcessor(processor);
+    Assert.assertEquals(processor.getLineNumber(), 4L);
+    Assert.assertEquals((long) processor.getPositionValue().getBytesRead(), 25L);
+
+    // the next processor seeks to the checkpointed offset
+    String checkpoint = _records.get(_records.size() - 1).getCheckpoint();
+    _records.clear();
+    appendLines("5");
+    startProcessor(Collections.singletonMap(0, checkpoint), 64, 2);
+    Assert.assertTrue(PollUtils.poll(() -> getLines().size() == 1, 50, WAIT_TIMEOUT_MS));
+    Assert.assertEquals(getLines(), Collections.singletonList("5=line5"));
+  }
+
+  @Test
+  public void testResumesFromLineNumberCheckpoint() throws Exception {
+    appendLines("line1", "line2", "line3");
+    // the read buffer grows to fit the lines
+    startProcessor(Collections.singletonMap(0, "2"), 4, 100);
+    Assert.assertTrue(PollUtils.poll(() -> getLines().size() == 1, 50, WAIT_TIMEOUT_MS));
+    Assert.assertEquals(getLines(), Collections.singletonList("3=line3"));
+    Assert.assertEquals(_records.get(0).getCheckpoint(), "3:18");
+  }
+
+  private FileProcessor startProcessor(Map<Integer, String> checkpoints, int readBufferSize, int maxLinesPerBatch)
+      throws IOException {
+    DatastreamSource source = new DatastreamSource();
+    source.setConnectionString(_file.toString());
+    DatastreamTask task = Mockito.mock(DatastreamTask.class);
+    Mockito.when(task.getDatastreamSource()).thenReturn(source);
+    Mockito.when(task.getTaskPrefix()).thenReturn("testTaskPrefix");
+    Mockito.when(task.getDatastreamTaskName()).thenReturn("testTask");
+    Mockito.when(task.getCheckpoints()).thenReturn(checkpoints);
+
+    FileProcessor processor = new FileProcessor(task, _producer, readBufferSize, maxLinesPerBatch);
+    _executor.submit(processor);
+    return processor;
+  }
+
+  private static void stopProcessor(FileProcessor processor) {
+    processor.stop();
+    Assert.assertTrue(PollUtils.poll(processor::isStopped, 50, WAIT_TIMEOUT_MS));
+  }
+
+  private void appendLines(String... lines) throws IOException {
+    StringBuilder text = new StringBuilder();
+    for (String line : lines) {
+      text.append(line).append('\n');
+    }
+    Files.write(_file, text.toString().getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+  }
+
+  private List<String> getLines() {
+    List<String> lines = new ArrayList<>();
+    for (DatastreamProducerRecord record : _records) {
+      for (BrooklinEnvelope event : record.getEvents()) {
+        lines.add(new String((byte[]) event.getKey(), StandardCharsets.UTF_8) + "="
+            + new String((byte[]) event.getValue(), StandardCharsets.UTF_8));
+      }
+    }
+    return lines;
+  }
+}
@@ -0,0 +1,197 @@
+/**
+ *  Copyright 2021 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.connectors.file;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import com.linkedin.datastream.common.BrooklinEnvelope;
+import com.linkedin.datastream.common.DatastreamSource;
+import com.linkedin.datastream.common.JsonUtils;
+import com.linkedin.datastream.common.PollUtils;
+import com.linkedin.datastream.server.DatastreamEventProducer;
+import com.linkedin.datastream.server.DatastreamProducerRecord;
+import com.linkedin.datastream.server.DatastreamTask;
+import com.linkedin.datastream.server.api.transport.DatastreamRecordMetadata;
+import com.linkedin.datastream.server.api.transport.SendCallback;
+
+
+/**
+ * Tests for {@link GlobFileProcessor}
+ */
+public class TestGlobFileProcessor {
+  private static final long WAIT_TIMEOUT_MS = 5000;
+
+  private Path _directory;
+  private ExecutorService _executor;
+  private final List<DatastreamProducerRecord> _records = new CopyOnWriteArrayList<>();
+  // whether the records sent are acknowledged
+  private volatile boolean _ack;
+  private final DatastreamEventProducer _producer = new DatastreamEventProducer() {
+    @Override
+    public void send(DatastreamProducerRecord record, SendCallback callback) {
+      _records.add(record);
+      if (_ack) {
+        callback.onCompletion(new DatastreamRecordMetadata(record.getCheckpoint(), "testTopic", 0), null);
+      }
+    }
+
+    @Override
+    public void flush() {
+    }
+  };
+
+  @BeforeMethod
+  public void setup() throws IOException {
+    _directory = Files.createTempDirectory("testGlobFileProcessor");
+    _executor = Executors.newCachedThreadPool();
+    _records.clear();
+    _ack = true;
+  }
+
+  @AfterMethod
+  public void cleanup() throws IOException {
+    _executor.shutdownNow();
+    Files.walk(_directory).sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+  }
+
+  @Test
+  public void testReadsRotatedFilesAndResumesFromCheckpoint() throws Exception {
+    appendLines("a.log", "a1");
+    appendLines("b.log", "b1");
+    appendLines("c.txt", "c1");
+    FileTaskProcessor processor = startProcessor(0, 1, Collections.emptyMap());
+    Assert.assertTrue(PollUtils.poll(() -> getLines().size() == 2, 50, WAIT_TIMEOUT_MS));
+    Assert.assertEquals(getLines(), new HashSet<>(Arrays.asList("a1", "b1")));
+
+    // the rotated file is read to its end, and the new file from its beginning
+    Files.move(_directory.resolve("a.log"), _directory.resolve("a.log.1"));
+    appendLines("a.log.1", "a2");
+    appendLines("a.log", "new1");
+    Assert.assertTrue(PollUtils.poll(() -> getLines().size() == 4, 50, WAIT_TIMEOUT_MS));
+    Assert.assertEquals(getLines(), new HashSet<>(Arrays.asList("a1", "b1", "a2", "new1")));
+    processor.stop();
+    Assert.assertTrue(PollUtils.poll(processor::isStopped, 50, WAIT_TIMEOUT_MS));
+
+    // the next processor resumes each file from its offset
+    String checkpoint = _records.get(_records.size() - 1).getCheckpoint();
+    _records.clear();
+    appendLines("a.log", "new2");
+    appendLines("b.log", "b2");
+    startProcessor(0, 1, Collections.singletonMap(0, checkpoint));
+    Assert.assertTrue(PollUtils.poll(() -> getLines().size() == 2, 50, WAIT_TIMEOUT_MS));
+    Assert.assertEquals(getLines(), new HashSet<>(Arrays.asList("new2", "b2")));
+  }
+
+  @Test
+  public void testCheckpointsOnlyAcknowledgedLines() throws Exception {
+    _ack = false;
+    appendLines("a.log", "a1");
+    appendLines("b.log", "b1");
+    startProcessor(0, 1, Collections.emptyMap());
+    Assert.assertTrue(PollUtils.poll(() -> getLines().size() == 2, 50, WAIT_TIMEOUT_MS));
+    // nothing is acknowledged, so each line only checkpoints its own file
+    for (DatastreamProducerRecord record : _records) {
+      Assert.assertEquals(getCheckpoints(record).size(), 1);
+    }
+
+    // the line of b.log is still not acknowledged, so it's read again after a restart
+    _ack = true;
+    appendLines("a.log", "a2");
+    Assert.assertTrue(PollUtils.poll(() -> getLines().size() == 3, 50, WAIT_TIMEOUT_MS));
+    Map<String, String> checkpoints = getCheckpoints(_records.get(_records.size() - 1));
+    Assert.assertEquals(checkpoints.size(), 1);
+    Assert.assertEquals(checkpoints.get(getFileKey("a.log")), "2:6");
+
+    appendLines("b.log", "b2");
+    Assert.assertTrue(PollUtils.poll(() -> getLines().size() == 4, 50, WAIT_TIMEOUT_MS));
+    checkpoints = getCheckpoints(_records.get(_records.size() - 1));
+    Assert.assertEquals(checkpoints.get(getFileKey("a.log")), "2:6");
+    Assert.assertEquals(checkpoints.get(getFileKey("b.log")), "2:6");
+  }
+
+  @Test
+  public void testSpreadsFilesAcrossPartitions() throws Exception {
+    int numPartitions = 3;
+    for (int i = 0; i < 10; i++) {
+      appendLines(i + ".log", "line" + i);
+    }
+    for (int partition = 0; partition < numPartitions; partition++) {
+      startProcessor(partition, numPartitions, Collections.emptyMap());
+    }
+    Assert.assertTrue(PollUtils.poll(() -> getLines().size() == 10, 50, WAIT_TIMEOUT_MS));
+
+    // each file is read by a single partition, which is the destination partition of its lines
+    Thread.sleep(200);
+    Assert.assertEquals(_records.stream().mapToInt(record -> record.getEvents().size()).sum(), 10);
+    for (DatastreamProducerRecord record : _records) {
+      String key = new String((byte[]) record.getEvents().get(0).getKey(), StandardCharsets.UTF_8);
+      String fileKey = getFileKey(key.substring(0, key.indexOf(':')));
+      Assert.assertEquals((int) record.getPartition().get(), GlobFileProcessor.getPartition(fileKey, numPartitions));
+    }
+  }
+
+  private FileTaskProcessor startProcessor(int partition, int numPartitions, Map<Integer, String> checkpoints)
+      throws IOException {
+    DatastreamSource source = new DatastreamSource();
+    source.setConnectionString(_directory.resolve("*.log").toString());
+    source.setPartitions(numPartitions);
+    DatastreamTask task = Mockito.mock(DatastreamTask.class);
+    Mockito.when(task.getDatastreamSource()).thenReturn(source);
+    Mockito.when(task.getTaskPrefix()).thenReturn("testTaskPrefix");
+    Mockito.when(task.getDatastreamTaskName()).thenReturn("testTask");
+    Mockito.when(task.getCheckpoints()).thenReturn(checkpoints);
+
+    FileTaskProcessor processor = new GlobFileProcessor(task, partition, _producer, 64, 2);
+    _executor.submit(processor);
+    return processor;
+  }
+
+  private void appendLines(String fileName, String line) throws IOException {
+    Files.write(_directory.resolve(fileName), (line + "\n").getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+  }
+
+  private String getFileKey(String fileName) throws IOException {
+    return Files.readAttributes(_directory.resolve(fileName), BasicFileAttributes.class).fileKey().toString();
+  }
+
+  private static Map<String, String> getCheckpoints(DatastreamProducerRecord record) {
+    return JsonUtils.fromJson(record.getCheckpoint(), new TypeReference<Map<String, String>>() { });
+  }
+
+  private Set<String> getLines() {
+    Set<String> lines = new HashSet<>();
+    for (DatastreamProducerRecord record : _records) {
+      for (BrooklinEnvelope event : record.getEvents()) {
+        lines.add(new String((byte[]) event.getValue(), StandardCharsets.UTF_8));
+      }
+    }
+    return lines;
+  }
+}
@@ -60,6 +60,7 @@ import com.linkedin.datastream.server.DatastreamEventProducer;
 import com.linkedin.datastream.server.DatastreamProducerRecord;
 import com.linkedin.datastream.server.DatastreamTask;
 import com.linkedin.datastream.server.DatastreamTaskStatus;
+import com.linkedin.datastream.server.PartitionThroughputReport;
 import com.linkedin.datastream.server.api.transport.SendCallback;
 
 
@@ -80,6 +81,7 @@ abstract public class AbstractKafkaBasedConnectorTask implements Runnable, Consu
   public static final String CONSUMER_AUTO_OFFSET_RESET_CONFIG_NONE = "none";
 
   protected long _lastCommittedTime = System.currentTimeMillis();
+  private long _lastThroughputPublishedTime = System.currentTimeMillis();
   protected int _eventsProcessedCount = 0;
   protected static final Duration LOG_EVENTS_PROCESSED_PROGRESS_DURATION = Duration.ofMinutes(1);
   protected Instant _eventsProcessedCountLoggedTime;
@@ -102,6 +104,7 @@ abstract public class AbstractKafkaBasedConnectorTask implements Runnable, Consu
   // config
   protected DatastreamTask _datastreamTask;
   protected final long _offsetCommitInterval;
+  protected final long _partitionThroughputPublishInterval;
   protected final Duration _commitTimeout;
   protected final long _pollTimeoutMillis;
   protected final Duration _retrySleepDuration;
@@ -110,6 +113,10 @@ abstract public class AbstractKafkaBasedConnectorTask implements Runnable, Consu
   protected final Duration _pauseErrorPartitionDuration;
   protected final long _processingDelayLogThresholdMillis;
   protected final boolean _enableAdditionalMetrics;
+  protected final boolean _enableBatchSend;
+  protected final boolean _enablePipelinedProcessing;
+  private final int _pipelineParallelism;
+  private final int _pipelineQueueCapacity;
   protected final Map<Integer, Long> _startOffsets;
 
   protected volatile String _taskName;
@@ -132,6 +139,10 @@ abstract public class AbstractKafkaBasedConnectorTask implements Runnable, Consu
   protected final Map<TopicPartition, PausedSourcePartitionMetadata> _autoPausedSourcePartitions = new ConcurrentHashMap<>();
 
   protected final KafkaBasedConnectorTaskMetrics _consumerMetrics;
+  private final String _metricsPrefix;
+
+  // translates and sends the polled records on worker threads in pipelined mode, null otherwise
+  private PipelinedRecordProcessor _pipeline;
 
   private final AtomicInteger _pollAttempts;
 
@@ -167,6 +178,10 @@ abstract public class AbstractKafkaBasedConnectorTask implements Runnable, Consu
     _pausePartitionOnError = config.getPausePartitionOnError();
     _pauseErrorPartitionDuration = config.getPauseErrorPartitionDuration();
     _enableAdditionalMetrics = config.getEnableAdditionalMetrics();
+    _enableBatchSend = config.getEnableBatchSend();
+    _enablePipelinedProcessing = config.getEnablePipelinedProcessing();
+    _pipelineParallelism = config.getPipelineParallelism();
+    _pipelineQueueCapacity = config.getPipelineQueueCapacity();
 
     _startOffsets = new HashMap<>();
     String json = _datastream.getMetadata().get(DatastreamMetadataConstants.START_POSITION);
@@ -200,10 +215,12 @@ abstract public class AbstractKafkaBasedConnectorTask implements Runnable, Consu
     }
 
     _offsetCommitInterval = config.getCommitIntervalMillis();
+    _partitionThroughputPublishInterval = config.getPartitionThroughputPublishIntervalMillis();
     _pollTimeoutMillis = config.getPollTimeoutMillis();
     _retrySleepDuration = config.getRetrySleepDuration();
     _commitTimeout = config.getCommitTimeout();
     _commitRetryTimeoutMillis = COMMIT_RETRY_TIMEOUT_MILLIS;
+    _metricsPrefix = metricsPrefix;
     _consumerMetrics = createKafkaBasedConnectorTaskMetrics(metricsPrefix, _datastreamName, _logger,
         _enableAdditionalMetrics);
 
@@ -275,37 +292,110 @@ abstract public class AbstractKafkaBasedConnectorTask implements Runnable, Consu
   protected void translateAndSendBatch(ConsumerRecords<?, ?> records, Instant readTime) throws Exception {
     // iterate through each topic partition one at a time, for better isolation
     for (TopicPartition topicPartition : records.partitions()) {
-      for (ConsumerRecord<?, ?> record : records.records(topicPartition)) {
-        try {
-          boolean partitionPaused;
-          boolean sendFailure;
-          synchronized (_sendFailureTopicPartitionExceptionMap) {
-            partitionPaused = _autoPausedSourcePartitions.containsKey(topicPartition);
-            sendFailure = _sendFailureTopicPartitionExceptionMap.containsKey(topicPartition);
-          }
-          if (partitionPaused || sendFailure) {
-            _logger.warn("Abort sending for {}, auto-paused: {}, send failure: {}, rewind offset", topicPartition,
-                partitionPaused, sendFailure);
-            seekToLastCheckpoint(Collections.singleton(topicPartition));
-            break;
-          } else {
-            DatastreamProducerRecord datastreamProducerRecord = translate(record, readTime);
-            int numBytes = record.serializedKeySize() + record.serializedValueSize();
-            sendDatastreamProducerRecord(datastreamProducerRecord, topicPartition, numBytes, null);
-          }
-        } catch (Exception e) {
-          _logger.warn(String.format("Got exception while sending record %s, exception: ", record), e);
-          if (_shutdown && !(e instanceof WakeupException)) {
-            throw e;
-          }
-          rewindAndPausePartitionOnException(topicPartition, e);
-          // skip other messages for this partition, but can continue processing other partitions
+      translateAndSendPartitionRecords(topicPartition, records.records(topicPartition), readTime);
+    }
+  }
+
+  /**
+   * Translate and send the Kafka consumer records of a single topic partition, in order.
+   * @param topicPartition the source topic partition of the records
+   * @param partitionRecords the Kafka consumer records of the topic partition
+   * @param readTime the instant the records were successfully polled from the Kafka source
+   */
+  private void translateAndSendPartitionRecords(TopicPartition topicPartition,
+      List<? extends ConsumerRecord<?, ?>> partitionRecords, Instant readTime) throws Exception {
+    if (_enableBatchSend) {
+      translateAndSendPartitionBatch(topicPartition, partitionRecords, readTime);
+      return;
+    }
+    for (ConsumerRecord<?, ?> record : partitionRecords) {
+      try {
+        boolean partitionPaused;
+        boolean sendFailure;
+        synchronized (_sendFailureTopicPartitionExceptionMap) {
+          partitionPaused = _autoPausedSourcePartitions.containsKey(topicPartition);
+          sendFailure = _sendFailureTopicPartitionExceptionMap.containsKey(topicPartition);
+        }
+        if (partitionPaused || sendFailure) {
+          _logger.warn("Abort sending for {}, auto-paused: {}, send failure: {}, rewind offset", topicPartition,
+              partitionPaused, sendFailure);
+          rewindPartition(topicPartition, null);
           break;
+        } else {
+          DatastreamProducerRecord datastreamProducerRecord = translate(record, readTime);
+          int numBytes = record.serializedKeySize() + record.serializedValueSize();
+          sendDatastreamProducerRecord(datastreamProducerRecord, topicPartition, numBytes, null);
+        }
+      } catch (Exception e) {
+        _logger.warn(String.format("Got exception while sending record %s, exception: ", record), e);
+        if (_shutdown && !(e instanceof WakeupException)) {
+          throw e;
         }
+        rewindPartition(topicPartition, e);
+        // skip other messages for this partition, but can continue processing other partitions
+        break;
       }
     }
   }
 
+  /**
+   * Translate the Kafka consumer records of a topic partition and send them as a single batch, so that the per-send
+   * overhead of the event producer and transport provider is paid once per partition instead of per record.
+   * The paused and send failure checks are done once per partition batch, and a translation or send failure rewinds
+   * the whole partition to its last checkpoint.
+   * @param topicPartition the source topic partition of the records
+   * @param partitionRecords the Kafka consumer records of the topic partition
+   * @param readTime the instant the records were successfully polled from the Kafka source
+   */
+  private void translateAndSendPartitionBatch(TopicPartition topicPartition,
+      List<? extends ConsumerRecord<?, ?>> partitionRecords, Instant readTime) throws Exception {
+    boolean partitionPaused;
+    boolean sendFailure;
+    synchronized (_sendFailureTopicPartitionExceptionMap) {
+      partitionPaused = _autoPausedSourcePartitions.containsKey(topicPartition);
+      sendFailure = _sendFailureTopicPartitionExceptionMap.containsKey(topicPartition);
+    }
+    if (partitionPaused || sendFailure) {
+      _logger.warn("Abort sending for {}, auto-paused: {}, send failure: {}, rewind offset", topicPartition,
+          partitionPaused, sendFailure);
+      rewindPartition(topicPartition, null);
+      return;
+    }
+
+    List<DatastreamProducerRecord> batch = new ArrayList<>(partitionRecords.size());
+    int[] numBytes = new int[partitionRecords.size()];
+    try {
+      for (ConsumerRecord<?, ?> record : partitionRecords) {
+        numBytes[batch.size()] = record.serializedKeySize() + record.serializedValueSize();
+        batch.add(translate(record, readTime));
+      }
+      sendDatastreamProducerRecordBatch(batch, topicPartition, numBytes);
+    } catch (Exception e) {
+      _logger.warn(String.format("Got exception while sending %d records for %s, exception: ",
+          partitionRecords.size(), topicPartition), e);
+      if (_shutdown && !(e instanceof WakeupException)) {
+        throw e;
+      }
+      rewindPartition(topicPartition, e);
+    }
+  }
+
+  /**
+   * Rewind the topic partition to its last checkpoint, pausing it if the exception calls for it. On a pipeline worker
+   * the rewind is deferred to the task thread, which owns the consumer.
+   * @param topicPartition the topic partition to rewind
+   * @param ex the exception which caused the rewind, or null if the partition was paused or saw a send failure
+   */
+  private void rewindPartition(TopicPartition topicPartition, Exception ex) {
+    if (isPipelineWorkerThread()) {
+      _pipeline.requestRewind(topicPartition, ex);
+    } else if (ex == null) {
+      seekToLastCheckpoint(Collections.singleton(topicPartition));
+    } else {
+      rewindAndPausePartitionOnException(topicPartition, ex);
+    }
+  }
+
   protected void rewindAndPausePartitionOnException(TopicPartition srcTopicPartition, Exception ex) {
     _consumerMetrics.updateErrorRate(1);
     Instant start = Instant.now();
@@ -360,6 +450,12 @@ abstract public class AbstractKafkaBasedConnectorTask implements Runnable, Consu
     return false;
   }
 
+  private boolean hasSendFailures() {
+    synchronized (_sendFailureTopicPartitionExceptionMap) {
+      return !_sendFailureTopicPartitionExceptionMap.isEmpty();
+    }
+  }
+
   protected void updateSendFailureTopicPartitionExceptionMap(TopicPartition topicPartition, Exception exception) {
     synchronized (_sendFailureTopicPartitionExceptionMap) {
       _sendFailureTopicPartitionExceptionMap.put(topicPartition, exception);
@@ -384,6 +480,26 @@ abstract public class AbstractKafkaBasedConnectorTask implements Runnable, Consu
     }));
   }
 
+  /**
+   * Send the translated records of a single source topic partition as one batch.
+   * @param batch the records to send, in source order
+   * @param srcTopicPartition the source topic partition of all the records
+   * @param numBytes the serialized size of each source record, indexed like {@code batch}
+   */
+  protected void sendDatastreamProducerRecordBatch(List<DatastreamProducerRecord> batch,
+      TopicPartition srcTopicPartition, int[] numBytes) {
+    _producer.sendBatch(batch, ((metadata, exception) -> {
+      if (exception != null) {
+        String msg = String.format("Detected exception being thrown from send callback for source topic-partition: %s "
+            + "with metadata: %s, exception: ", srcTopicPartition, metadata);
+        _logger.warn(msg, exception);
+        updateSendFailureTopicPartitionExceptionMap(srcTopicPartition, exception);
+      } else if (metadata != null && metadata.getBatchIndex() >= 0) {
+        _consumerMetrics.updateBytesProcessedRate(numBytes[metadata.getBatchIndex()]);
+      }
+    }));
+  }
+
   @Override
   public void run() {
     _logger.info("Starting the Kafka-based connector task for {}", _datastreamTask);
@@ -399,12 +515,22 @@ abstract public class AbstractKafkaBasedConnectorTask implements Runnable, Consu
           _consumerProps.getProperty(ConsumerConfig.CLIENT_ID_CONFIG));
       consumerSubscribe();
 
+      if (_enablePipelinedProcessing) {
+        _logger.info("Starting pipelined processing for task {} with parallelism {} and queue capacity {}", _taskName,
+            _pipelineParallelism, _pipelineQueueCapacity);
+        _pipeline = new PipelinedRecordProcessor(_taskName, _pipelineParallelism, _pipelineQueueCapacity,
+            this::processPartitionRecords, _metricsPrefix, _datastreamName);
+      }
+
       ConsumerRecords<?, ?> records;
       while (!_shutdown) {
         // perform any pre-computations before poll()
         preConsumerPollHook();
 
         // read a batch of records
+        if (_pipeline != null) {
+          _pipeline.onPoll();
+        }
         records = pollRecords(pollInterval);
         // handle startup notification if this is the 1st poll call
         if (startingUp) {
@@ -423,6 +549,7 @@ abstract public class AbstractKafkaBasedConnectorTask implements Runnable, Consu
           recordsPolled = records.count();
         }
         maybeCommitOffsets(_consumer, false);
+        maybePublishPartitionThroughput();
         trackEventsProcessedProgress(recordsPolled);
       } // end while loop
 
@@ -442,6 +569,9 @@ abstract public class AbstractKafkaBasedConnectorTask implements Runnable, Consu
       _datastreamTask.setStatus(DatastreamTaskStatus.error(e.toString() + ExceptionUtils.getFullStackTrace(e)));
       throw new DatastreamRuntimeException(e);
     } finally {
+      if (_pipeline != null) {
+        _pipeline.close();
+      }
       if (null != _consumer) {
         try {
           _skipOnPartitionsRevoked = true;
@@ -575,6 +705,12 @@ abstract public class AbstractKafkaBasedConnectorTask implements Runnable, Consu
    */
   protected void processRecords(ConsumerRecords<?, ?> records, Instant readTime, long readTimeInNanos)
       throws Exception {
+    if (_pipeline != null) {
+      // hand the records off to the pipeline workers, which update the processing metrics once they are sent
+      _pipeline.submit(records, readTime, readTimeInNanos);
+      return;
+    }
+
     // send the batch out the other end
     translateAndSendBatch(records, readTime);
 
@@ -589,6 +725,57 @@ abstract public class AbstractKafkaBasedConnectorTask implements Runnable, Consu
     }
   }
 
+  /**
+   * Processes the Kafka consumer records of a single topic partition on a pipeline worker.
+   * @param topicPartition the source topic partition of the records
+   * @param records the Kafka consumer records of the topic partition
+   * @param readTime the time at which the records were successfully polled from Kafka
+   * @param readTimeInNanos the time at which the records were successfully polled from Kafka in nanoseconds
+   */
+  private void processPartitionRecords(TopicPartition topicPartition, List<? extends ConsumerRecord<?, ?>> records,
+      Instant readTime, long readTimeInNanos) throws Exception {
+    translateAndSendPartitionRecords(topicPartition, records, readTime);
+
+    if ((System.currentTimeMillis() - readTime.toEpochMilli()) > _processingDelayLogThresholdMillis) {
+      _consumerMetrics.updateProcessingAboveThreshold(1);
+    }
+
+    if (_enableAdditionalMetrics && !records.isEmpty()) {
+      _consumerMetrics.updatePerEventProcessingTimeNanos((System.nanoTime() - readTimeInNanos) / records.size());
+    }
+  }
+
+  /**
+   * Wait for the records handed off to the pipeline workers to be sent, then perform the partition rewinds they
+   * deferred. Must be done on the task thread before committing the consumer positions, which are ahead of the records
+   * still in the pipeline. No-op if the task is not pipelined.
+   */
+  protected void drainPipeline() {
+    if (_pipeline == null || isPipelineWorkerThread()) {
+      return;
+    }
+    try {
+      _pipeline.awaitIdle();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DatastreamRuntimeException("Interrupted while draining the pipeline of task " + _taskName, e);
+    }
+    _pipeline.drainPendingRewinds().forEach((topicPartition, ex) -> {
+      if (ex.isPresent()) {
+        rewindAndPausePartitionOnException(topicPartition, ex.get());
+      } else {
+        seekToLastCheckpoint(Collections.singleton(topicPartition));
+      }
+    });
+  }
+
+  /**
+   * Check whether the current thread is a pipeline worker, which must not use the Kafka consumer
+   */
+  protected boolean isPipelineWorkerThread() {
+    return _pipeline != null && Thread.currentThread() != _connectorTaskThread;
+  }
+
   /**
    * Handle when Kafka consumer throws OffsetOutOfRangeException. The base behavior is no-op.
    * @param e the Exception
@@ -647,6 +834,27 @@ abstract public class AbstractKafkaBasedConnectorTask implements Runnable, Consu
 
   abstract protected void maybeCommitOffsets(Consumer<?, ?> consumer, boolean force);
 
+  /**
+   * Save the bytes and messages in rates of the partitions consumed by this task in the task state, if the partition
+   * throughput publish interval has passed since they were last saved
+   */
+  protected void maybePublishPartitionThroughput() {
+    long now = System.currentTimeMillis();
+    if (_partitionThroughputPublishInterval <= 0 || now - _lastThroughputPublishedTime < _partitionThroughputPublishInterval) {
+      return;
+    }
+    _lastThroughputPublishedTime = now;
+    PartitionThroughputReport report = _kafkaTopicPartitionTracker.getThroughputReport(now);
+    if (report == null) {
+      return;
+    }
+    try {
+      _datastreamTask.saveState(PartitionThroughputReport.STATE_KEY, JsonUtils.toJson(report));
+    } catch (Exception e) {
+      _logger.warn(String.format("Failed to publish the partition throughput of task %s.", _taskName), e);
+    }
+  }
+
   /**
    * Flush the producer and commit the offsets if the configured offset commit interval has been reached, or if
    * force is set to true.
@@ -657,6 +865,8 @@ abstract public class AbstractKafkaBasedConnectorTask implements Runnable, Consu
     long now = System.currentTimeMillis();
     long timeSinceLastCommit = now - _lastCommittedTime;
     if (force || timeSinceLastCommit > _offsetCommitInterval) {
+      // the consumer positions can only be committed once the records polled before are sent
+      drainPipeline();
       _logger.info("Trying to flush the producer and commit offsets.");
       _producer.flush();
       // Flush may succeed even though some of the records received send failures. Flush only guarantees that all
@@ -852,6 +1062,12 @@ abstract public class AbstractKafkaBasedConnectorTask implements Runnable, Consu
    * new update type when there is any update to datastream task (in method checkForUpdateTask())
    */
   protected void preConsumerPollHook() {
+    // rewind the partitions the pipeline workers could not send before polling them again. The partitions which saw
+    // send failures can only be rewound once the workers are done sending them too.
+    if (_pipeline != null && (_pipeline.hasPendingRewinds() || hasSendFailures())) {
+      drainPipeline();
+    }
+
     // check if any send failures were seen on the last poll and rewind them before the next poll
     rewindAndPausePartitionsOnSendException();
 
@@ -1066,6 +1282,7 @@ abstract public class AbstractKafkaBasedConnectorTask implements Runnable, Consu
     metrics.addAll(KafkaBasedConnectorTaskMetrics.getEventPollMetrics(prefix));
     metrics.addAll(KafkaBasedConnectorTaskMetrics.getPartitionSpecificMetrics(prefix));
     metrics.addAll(KafkaBasedConnectorTaskMetrics.getKafkaBasedConnectorTaskSpecificMetrics(prefix));
+    metrics.addAll(PipelinedRecordProcessor.getMetricInfos(prefix));
     return metrics;
   }
 
@@ -28,7 +28,6 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -51,6 +50,7 @@ import com.linkedin.datastream.common.DatastreamConstants;
 import com.linkedin.datastream.common.DatastreamMetadataConstants;
 import com.linkedin.datastream.common.DatastreamRuntimeException;
 import com.linkedin.datastream.common.DatastreamSource;
+import com.linkedin.datastream.common.DatastreamThreadFactory;
 import com.linkedin.datastream.common.DatastreamUtils;
 import com.linkedin.datastream.common.DiagnosticsAware;
 import com.linkedin.datastream.common.JsonUtils;
@@ -105,18 +105,12 @@ public abstract class AbstractKafkaConnector implements Connector, DiagnosticsAw
 
   // A daemon executor to constantly check whether all tasks are running and restart them if not.
   private final ScheduledExecutorService _daemonThreadExecutorService =
-      Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
-        @Override
-        public Thread newThread(@NotNull Runnable r) {
-          Thread t = new Thread(r);
-          t.setDaemon(true);
-          t.setName(String.format("%s daemon thread", _connectorName));
-          return t;
-        }
-      });
+      Executors.newSingleThreadScheduledExecutor(
+          r -> DatastreamThreadFactory.newDaemonThread(r, String.format("%s daemon thread", _connectorName)));
 
   // An executor to spawn threads to stop tasks, and cancel them if stuck too long in onAssignmentChange().
-  private final ExecutorService _shutdownExecutorService = Executors.newCachedThreadPool();
+  private final ExecutorService _shutdownExecutorService =
+      Executors.newCachedThreadPool(DatastreamThreadFactory.builder("KafkaConnectorTaskShutdown-%d").build());
 
   enum DiagnosticsRequestType {
     DATASTREAM_STATE,
@@ -207,9 +201,7 @@ public abstract class AbstractKafkaConnector implements Connector, DiagnosticsAw
    * Create a thread to run the provided {@link AbstractKafkaBasedConnectorTask} without starting it.
    */
   public Thread createTaskThread(AbstractKafkaBasedConnectorTask task) {
-    Thread t = new Thread(task);
-    t.setDaemon(true);
-    t.setName(
+    Thread t = DatastreamThreadFactory.newDaemonThread(task,
         String.format("%s task thread %s %d", _connectorName, task.getTaskName(), _threadCounter.incrementAndGet()));
     t.setUncaughtExceptionHandler(
         (thread, e) -> _logger.error(String.format("thread %s has died due to uncaught exception.", thread.getName()),
@@ -437,6 +429,7 @@ public abstract class AbstractKafkaConnector implements Connector, DiagnosticsAw
         _config.getShutdownExecutorShutdownTimeoutMs());
     ThreadUtils.shutdownExecutor(_shutdownExecutorService,
         Duration.ofMillis(_config.getShutdownExecutorShutdownTimeoutMs()), _logger);
+    _config.getMultiplexedConsumerPool().ifPresent(MultiplexedConsumerPool::shutdown);
     _logger.info("Connector stopped.");
   }
 
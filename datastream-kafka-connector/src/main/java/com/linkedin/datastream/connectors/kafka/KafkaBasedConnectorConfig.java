@@ -6,6 +6,7 @@
 package com.linkedin.datastream.connectors.kafka;
 
 import java.time.Duration;
+import java.util.Optional;
 import java.util.Properties;
 
 import com.linkedin.datastream.common.DatastreamRuntimeException;
@@ -36,6 +37,24 @@ public class KafkaBasedConnectorConfig {
   public static final String DAEMON_THREAD_INTERVAL_SECONDS = "daemonThreadIntervalInSeconds";
   public static final String NON_GOOD_STATE_THRESHOLD_MILLIS = "nonGoodStateThresholdMs";
   public static final String PROCESSING_DELAY_LOG_THRESHOLD_MILLIS = "processingDelayLogThreshold";
+  // send the records polled for each source partition through DatastreamEventProducer.sendBatch
+  public static final String ENABLE_BATCH_SEND = "enableBatchSend";
+  // hand the polled records off to worker threads, so that the next poll overlaps with translating and sending them
+  public static final String ENABLE_PIPELINED_PROCESSING = "enablePipelinedProcessing";
+  // number of worker threads translating and sending records in pipelined mode, each owning a subset of partitions
+  public static final String PIPELINE_PARALLELISM = "pipelineParallelism";
+  // maximum number of partition batches queued for each pipeline worker before the poll thread blocks
+  public static final String PIPELINE_QUEUE_CAPACITY = "pipelineQueueCapacity";
+  // serve the tasks consuming from the same source cluster with a few shared consumers instead of one consumer per
+  // task; only supported for tasks which are assigned their partitions (see ENABLE_PARTITION_ASSIGNMENT)
+  public static final String ENABLE_MULTIPLEXED_CONSUMERS = "enableMultiplexedConsumers";
+  // number of consumers shared by the tasks consuming from the same source cluster in multiplexed mode
+  public static final String MULTIPLEXED_CONSUMERS_PER_CLUSTER = "multiplexedConsumersPerCluster";
+  // maximum number of records buffered for each task in multiplexed mode before its partitions are paused
+  public static final String MULTIPLEXED_CONSUMER_BUFFER_SIZE = "multiplexedConsumerBufferSize";
+  // how often each task saves the bytes and messages in rates of its partitions in its task state, for the leader to
+  // assign partitions by their actual throughput; 0 disables publishing
+  public static final String PARTITION_THROUGHPUT_PUBLISH_INTERVAL_MILLIS = "partitionThroughputPublishIntervalMs";
   private static final String CONFIG_CALLBACK_STATUS_STRATEGY_FACTORY_CLASS = "callbackStatusStrategyFactoryClass";
 
   // how long will the connector wait for a task to shut down before interrupting the task thread
@@ -57,6 +76,11 @@ public class KafkaBasedConnectorConfig {
   private static final boolean DEFAULT_INCLUDE_DATASTREAM_NAME_IN_CONSUMER_CLIENT_ID = Boolean.FALSE;
   private static final long DEFAULT_TASK_INTERRUPT_TIMEOUT_MS = Duration.ofSeconds(75).toMillis();
   private static final long POST_TASK_INTERRUPT_TIMEOUT_MS = Duration.ofSeconds(15).toMillis();
+  private static final int DEFAULT_PIPELINE_PARALLELISM = 1;
+  private static final int DEFAULT_PIPELINE_QUEUE_CAPACITY = 16;
+  private static final int DEFAULT_MULTIPLEXED_CONSUMERS_PER_CLUSTER = 2;
+  private static final int DEFAULT_MULTIPLEXED_CONSUMER_BUFFER_SIZE = 1000;
+  private static final long DEFAULT_PARTITION_THROUGHPUT_PUBLISH_INTERVAL_MILLIS = 0;
 
   private final Properties _consumerProps;
   private final VerifiableProperties _connectorProps;
@@ -79,6 +103,12 @@ public class KafkaBasedConnectorConfig {
   private final long _nonGoodStateThresholdMillis;
   private final boolean _enablePartitionAssignment;
   private final long _taskInterruptTimeoutMs;
+  private final boolean _enableBatchSend;
+  private final boolean _enablePipelinedProcessing;
+  private final int _pipelineParallelism;
+  private final int _pipelineQueueCapacity;
+  private final long _partitionThroughputPublishIntervalMillis;
+  private final MultiplexedConsumerPool _multiplexedConsumerPool;
 
   // Kafka based pub sub framework uses Long as their offset type, hence instantiating a Long parameterized factory
   private final CallbackStatusFactory<Long> _callbackStatusStrategyFactory;
@@ -121,6 +151,15 @@ public class KafkaBasedConnectorConfig {
         INCLUDE_DATASTREAM_NAME_IN_CONSUMER_CLIENT_ID, DEFAULT_INCLUDE_DATASTREAM_NAME_IN_CONSUMER_CLIENT_ID);
     _enablePartitionAssignment = verifiableProperties.getBoolean(ENABLE_PARTITION_ASSIGNMENT, Boolean.FALSE);
     _taskInterruptTimeoutMs = verifiableProperties.getLong(CONFIG_TASK_INTERRUPT_TIMEOUT_MS, DEFAULT_TASK_INTERRUPT_TIMEOUT_MS);
+    _enableBatchSend = verifiableProperties.getBoolean(ENABLE_BATCH_SEND, Boolean.FALSE);
+    _enablePipelinedProcessing = verifiableProperties.getBoolean(ENABLE_PIPELINED_PROCESSING, Boolean.FALSE);
+    _pipelineParallelism =
+        verifiableProperties.getIntInRange(PIPELINE_PARALLELISM, DEFAULT_PIPELINE_PARALLELISM, 1, Integer.MAX_VALUE);
+    _pipelineQueueCapacity = verifiableProperties.getIntInRange(PIPELINE_QUEUE_CAPACITY,
+        DEFAULT_PIPELINE_QUEUE_CAPACITY, 1, Integer.MAX_VALUE);
+    _partitionThroughputPublishIntervalMillis = verifiableProperties.getLongInRange(
+        PARTITION_THROUGHPUT_PUBLISH_INTERVAL_MILLIS, DEFAULT_PARTITION_THROUGHPUT_PUBLISH_INTERVAL_MILLIS, 0,
+        Long.MAX_VALUE);
 
     String callbackStatusStrategyFactoryClass = verifiableProperties.getString(CONFIG_CALLBACK_STATUS_STRATEGY_FACTORY_CLASS,
         CallbackStatusWithComparableOffsetsFactory.class.getName());
@@ -136,6 +175,16 @@ public class KafkaBasedConnectorConfig {
       throw new DatastreamRuntimeException("Unable to instantiate factory class: " + factory);
     }
 
+    if (verifiableProperties.getBoolean(ENABLE_MULTIPLEXED_CONSUMERS, Boolean.FALSE)) {
+      _multiplexedConsumerPool = new MultiplexedConsumerPool("MultiplexedConsumer", _consumerFactory,
+          verifiableProperties.getIntInRange(MULTIPLEXED_CONSUMERS_PER_CLUSTER, DEFAULT_MULTIPLEXED_CONSUMERS_PER_CLUSTER,
+              1, Integer.MAX_VALUE),
+          verifiableProperties.getIntInRange(MULTIPLEXED_CONSUMER_BUFFER_SIZE, DEFAULT_MULTIPLEXED_CONSUMER_BUFFER_SIZE,
+              1, Integer.MAX_VALUE));
+    } else {
+      _multiplexedConsumerPool = null;
+    }
+
     _consumerProps = verifiableProperties.getDomainProperties(DOMAIN_KAFKA_CONSUMER);
     _connectorProps = verifiableProperties;
   }
@@ -229,6 +278,33 @@ public class KafkaBasedConnectorConfig {
     return _taskInterruptTimeoutMs + POST_TASK_INTERRUPT_TIMEOUT_MS;
   }
 
+  public boolean getEnableBatchSend() {
+    return _enableBatchSend;
+  }
+
+  public boolean getEnablePipelinedProcessing() {
+    return _enablePipelinedProcessing;
+  }
+
+  public int getPipelineParallelism() {
+    return _pipelineParallelism;
+  }
+
+  public int getPipelineQueueCapacity() {
+    return _pipelineQueueCapacity;
+  }
+
+  public long getPartitionThroughputPublishIntervalMillis() {
+    return _partitionThroughputPublishIntervalMillis;
+  }
+
+  /**
+   * Get the pool of shared consumers, if {@value #ENABLE_MULTIPLEXED_CONSUMERS} is set
+   */
+  public Optional<MultiplexedConsumerPool> getMultiplexedConsumerPool() {
+    return Optional.ofNullable(_multiplexedConsumerPool);
+  }
+
   public CallbackStatusFactory<Long> getCallbackStatusStrategyFactory() {
     return _callbackStatusStrategyFactory;
   }
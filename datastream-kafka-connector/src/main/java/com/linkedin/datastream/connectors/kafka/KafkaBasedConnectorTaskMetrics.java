@@ -80,12 +80,13 @@ public class KafkaBasedConnectorTaskMetrics extends CommonConnectorMetrics {
   private static final Map<String, AtomicLong> NUM_AUTO_PAUSED_PARTITIONS_WAITING_SOURCE_TOPIC_ACCESS_PER_METRIC_KEY
       = new ConcurrentHashMap<>();
 
-  private final AtomicLong _numConfigPausedPartitions;
-  private final AtomicLong _numAutoPausedPartitionsOnError;
-  private final AtomicLong _numAutoPausedPartitionsOnInFlightMessages;
-  private final AtomicLong _numAutoPausedPartitionsAwaitingDestTopic;
-  private final AtomicLong _numAutoPausedPartitionsAwaitingSourceTopicAccess;
-  private final AtomicLong _numTopics;
+  // this task's values of the gauges above, along with the pre-resolved totals for its metrics key and the aggregate
+  private final TaskGaugeValue _numConfigPausedPartitions;
+  private final TaskGaugeValue _numAutoPausedPartitionsOnError;
+  private final TaskGaugeValue _numAutoPausedPartitionsOnInFlightMessages;
+  private final TaskGaugeValue _numAutoPausedPartitionsAwaitingDestTopic;
+  private final TaskGaugeValue _numAutoPausedPartitionsAwaitingSourceTopicAccess;
+  private final TaskGaugeValue _numTopics;
 
   private final Histogram _pollDurationMsMetric;
   private final Histogram _timeSpentBetweenPollsMsMetric;
@@ -96,34 +97,21 @@ public class KafkaBasedConnectorTaskMetrics extends CommonConnectorMetrics {
       boolean enableAdditionalMetrics) {
     super(className, metricsKey, errorLogger);
     _fullMetricsKey = MetricRegistry.name(_className, _key);
-    _numConfigPausedPartitions = new AtomicLong(0);
-    _numAutoPausedPartitionsOnError = new AtomicLong(0);
-    _numAutoPausedPartitionsOnInFlightMessages = new AtomicLong(0);
-    _numAutoPausedPartitionsAwaitingDestTopic = new AtomicLong(0);
-    _numAutoPausedPartitionsAwaitingSourceTopicAccess = new AtomicLong(0);
-    _numTopics = new AtomicLong(0);
-    AtomicLong numConfigPausedPartitions =
-        NUM_CONFIG_PAUSED_PARTITIONS_PER_METRIC_KEY.computeIfAbsent(_fullMetricsKey, k -> new AtomicLong(0));
-    DYNAMIC_METRICS_MANAGER.registerGauge(_className, _key, NUM_CONFIG_PAUSED_PARTITIONS,
-        numConfigPausedPartitions::get);
-    AtomicLong numAutoPausedPartitionsOnError =
-        NUM_AUTO_PAUSED_PARTITIONS_ON_ERROR_PER_METRIC_KEY.computeIfAbsent(_fullMetricsKey, k -> new AtomicLong(0));
-    DYNAMIC_METRICS_MANAGER.registerGauge(_className, _key, NUM_AUTO_PAUSED_PARTITIONS_ON_ERROR,
-        numAutoPausedPartitionsOnError::get);
-    AtomicLong numAutoPausedPartitionsOnInFlightMessages =
-        NUM_AUTO_PAUSED_PARTITIONS_ON_INFLIGHT_MESSAGES_PER_METRIC_KEY.computeIfAbsent(_fullMetricsKey, k -> new AtomicLong(0));
-    DYNAMIC_METRICS_MANAGER.registerGauge(_className, _key, NUM_AUTO_PAUSED_PARTITIONS_ON_INFLIGHT_MESSAGES,
-        numAutoPausedPartitionsOnInFlightMessages::get);
-    AtomicLong numAutoPausedPartitionsAwaitingDestTopic =
-        NUM_AUTO_PAUSED_PARTITIONS_WAITING_FOR_DEST_TOPIC_PER_METRIC_KEY.computeIfAbsent(_fullMetricsKey, k -> new AtomicLong(0));
-    DYNAMIC_METRICS_MANAGER.registerGauge(_className, _key, NUM_AUTO_PAUSED_PARTITIONS_WAITING_FOR_DEST_TOPIC,
-        numAutoPausedPartitionsAwaitingDestTopic::get);
-    AtomicLong numAutoPausedPartitionsAwaitingSourceTopicAccess =
-        NUM_AUTO_PAUSED_PARTITIONS_WAITING_SOURCE_TOPIC_ACCESS_PER_METRIC_KEY.computeIfAbsent(_fullMetricsKey, k -> new AtomicLong(0));
-    DYNAMIC_METRICS_MANAGER.registerGauge(_className, _key, NUM_AUTO_PAUSED_PARTITIONS_WAITING_SOURCE_TOPIC_ACCESS,
-        numAutoPausedPartitionsAwaitingSourceTopicAccess::get);
-    AtomicLong numTopics = NUM_TOPICS_PER_METRIC_KEY.computeIfAbsent(_fullMetricsKey, k -> new AtomicLong(0));
-    DYNAMIC_METRICS_MANAGER.registerGauge(_className, _key, NUM_TOPICS, numTopics::get);
+    _numConfigPausedPartitions = registerTaskGauge(NUM_CONFIG_PAUSED_PARTITIONS,
+        NUM_CONFIG_PAUSED_PARTITIONS_PER_METRIC_KEY, AGGREGATED_NUM_CONFIG_PAUSED_PARTITIONS);
+    _numAutoPausedPartitionsOnError = registerTaskGauge(NUM_AUTO_PAUSED_PARTITIONS_ON_ERROR,
+        NUM_AUTO_PAUSED_PARTITIONS_ON_ERROR_PER_METRIC_KEY, AGGREGATED_NUM_AUTO_PAUSED_PARTITIONS_ON_ERROR);
+    _numAutoPausedPartitionsOnInFlightMessages = registerTaskGauge(NUM_AUTO_PAUSED_PARTITIONS_ON_INFLIGHT_MESSAGES,
+        NUM_AUTO_PAUSED_PARTITIONS_ON_INFLIGHT_MESSAGES_PER_METRIC_KEY,
+        AGGREGATED_NUM_AUTO_PAUSED_PARTITIONS_ON_INFLIGHT_MESSAGES);
+    _numAutoPausedPartitionsAwaitingDestTopic = registerTaskGauge(NUM_AUTO_PAUSED_PARTITIONS_WAITING_FOR_DEST_TOPIC,
+        NUM_AUTO_PAUSED_PARTITIONS_WAITING_FOR_DEST_TOPIC_PER_METRIC_KEY,
+        AGGREGATED_NUM_AUTO_PAUSED_PARTITIONS_WAITING_FOR_DEST_TOPIC);
+    _numAutoPausedPartitionsAwaitingSourceTopicAccess =
+        registerTaskGauge(NUM_AUTO_PAUSED_PARTITIONS_WAITING_SOURCE_TOPIC_ACCESS,
+            NUM_AUTO_PAUSED_PARTITIONS_WAITING_SOURCE_TOPIC_ACCESS_PER_METRIC_KEY,
+            AGGREGATED_NUM_AUTO_PAUSED_PARTITIONS_WAITING_SOURCE_TOPIC_ACCESS);
+    _numTopics = registerTaskGauge(NUM_TOPICS, NUM_TOPICS_PER_METRIC_KEY, AGGREGATED_NUM_TOPICS);
 
     _pollDurationMsMetric = enableAdditionalMetrics ?
         DYNAMIC_METRICS_MANAGER.registerMetric(_className, _key, POLL_DURATION_MS, Histogram.class) : null;
@@ -131,29 +119,19 @@ public class KafkaBasedConnectorTaskMetrics extends CommonConnectorMetrics {
         DYNAMIC_METRICS_MANAGER.registerMetric(_className, _key, TIME_SPENT_BETWEEN_POLLS_MS, Histogram.class) : null;
     _perEventProcessingTimeNanosMetric = enableAdditionalMetrics ?
         DYNAMIC_METRICS_MANAGER.registerMetric(_className, _key, PER_EVENT_PROCESSING_TIME_NANOS, Histogram.class) : null;
+  }
 
-    AtomicLong aggNumConfigPausedPartitions =
-        AGGREGATED_NUM_CONFIG_PAUSED_PARTITIONS.computeIfAbsent(className, k -> new AtomicLong(0));
-    DYNAMIC_METRICS_MANAGER.registerGauge(_className, AGGREGATE, NUM_CONFIG_PAUSED_PARTITIONS,
-        aggNumConfigPausedPartitions::get);
-    AtomicLong aggNumAutoPausedPartitionsOnError =
-        AGGREGATED_NUM_AUTO_PAUSED_PARTITIONS_ON_ERROR.computeIfAbsent(className, k -> new AtomicLong(0));
-    DYNAMIC_METRICS_MANAGER.registerGauge(_className, AGGREGATE, NUM_AUTO_PAUSED_PARTITIONS_ON_ERROR,
-        aggNumAutoPausedPartitionsOnError::get);
-    AtomicLong aggNumAutoPausedPartitionsOnInFlightMessages =
-        AGGREGATED_NUM_AUTO_PAUSED_PARTITIONS_ON_INFLIGHT_MESSAGES.computeIfAbsent(className, k -> new AtomicLong(0));
-    DYNAMIC_METRICS_MANAGER.registerGauge(_className, AGGREGATE, NUM_AUTO_PAUSED_PARTITIONS_ON_INFLIGHT_MESSAGES,
-        aggNumAutoPausedPartitionsOnInFlightMessages::get);
-    AtomicLong aggNumAutoPausedPartitionsAwaitingDestTopic =
-        AGGREGATED_NUM_AUTO_PAUSED_PARTITIONS_WAITING_FOR_DEST_TOPIC.computeIfAbsent(className, k -> new AtomicLong(0));
-    DYNAMIC_METRICS_MANAGER.registerGauge(_className, AGGREGATE, NUM_AUTO_PAUSED_PARTITIONS_WAITING_FOR_DEST_TOPIC,
-        aggNumAutoPausedPartitionsAwaitingDestTopic::get);
-    AtomicLong aggNumAutoPausedPartitionsAwaitingSourceTopicAccess =
-        AGGREGATED_NUM_AUTO_PAUSED_PARTITIONS_WAITING_SOURCE_TOPIC_ACCESS.computeIfAbsent(className, k -> new AtomicLong(0));
-    DYNAMIC_METRICS_MANAGER.registerGauge(_className, AGGREGATE, NUM_AUTO_PAUSED_PARTITIONS_WAITING_SOURCE_TOPIC_ACCESS,
-        aggNumAutoPausedPartitionsAwaitingSourceTopicAccess::get);
-    AtomicLong aggNumTopics = AGGREGATED_NUM_TOPICS.computeIfAbsent(className, k -> new AtomicLong(0));
-    DYNAMIC_METRICS_MANAGER.registerGauge(_className, AGGREGATE, NUM_TOPICS, aggNumTopics::get);
+  /**
+   * Register the per metrics key and aggregate gauges of the given metric, and resolve the totals backing them once
+   * so that updating this task's value does not need to look them up again.
+   */
+  private TaskGaugeValue registerTaskGauge(String metricName, Map<String, AtomicLong> perMetricKeyTotals,
+      Map<String, AtomicLong> aggregatedTotals) {
+    AtomicLong keyTotal = perMetricKeyTotals.computeIfAbsent(_fullMetricsKey, k -> new AtomicLong(0));
+    DYNAMIC_METRICS_MANAGER.registerGauge(_className, _key, metricName, keyTotal::get);
+    AtomicLong aggregatedTotal = aggregatedTotals.computeIfAbsent(_className, k -> new AtomicLong(0));
+    DYNAMIC_METRICS_MANAGER.registerGauge(_className, AGGREGATE, metricName, aggregatedTotal::get);
+    return new TaskGaugeValue(keyTotal, aggregatedTotal);
   }
 
   /**
@@ -222,8 +200,7 @@ public class KafkaBasedConnectorTaskMetrics extends CommonConnectorMetrics {
    * @param val Value to set to
    */
   public void updateNumConfigPausedPartitions(long val) {
-    long delta = val - _numConfigPausedPartitions.getAndSet(val);
-    updateMetrics(delta, NUM_CONFIG_PAUSED_PARTITIONS_PER_METRIC_KEY, AGGREGATED_NUM_CONFIG_PAUSED_PARTITIONS);
+    _numConfigPausedPartitions.set(val);
   }
 
   /**
@@ -231,9 +208,7 @@ public class KafkaBasedConnectorTaskMetrics extends CommonConnectorMetrics {
    * @param val Value to set to
    */
   public void updateNumAutoPausedPartitionsOnError(long val) {
-    long delta = val - _numAutoPausedPartitionsOnError.getAndSet(val);
-    updateMetrics(delta, NUM_AUTO_PAUSED_PARTITIONS_ON_ERROR_PER_METRIC_KEY,
-        AGGREGATED_NUM_AUTO_PAUSED_PARTITIONS_ON_ERROR);
+    _numAutoPausedPartitionsOnError.set(val);
   }
 
   /**
@@ -241,9 +216,7 @@ public class KafkaBasedConnectorTaskMetrics extends CommonConnectorMetrics {
    * @param val Value to set to
    */
   public void updateNumAutoPausedPartitionsOnInFlightMessages(long val) {
-    long delta = val - _numAutoPausedPartitionsOnInFlightMessages.getAndSet(val);
-    updateMetrics(delta, NUM_AUTO_PAUSED_PARTITIONS_ON_INFLIGHT_MESSAGES_PER_METRIC_KEY,
-        AGGREGATED_NUM_AUTO_PAUSED_PARTITIONS_ON_INFLIGHT_MESSAGES);
+    _numAutoPausedPartitionsOnInFlightMessages.set(val);
   }
 
   /**
@@ -251,9 +224,7 @@ public class KafkaBasedConnectorTaskMetrics extends CommonConnectorMetrics {
    * @param val Value to set to
    */
   public void updateNumAutoPausedPartitionsAwaitingDestTopic(long val) {
-    long delta = val - _numAutoPausedPartitionsAwaitingDestTopic.getAndSet(val);
-    updateMetrics(delta, NUM_AUTO_PAUSED_PARTITIONS_WAITING_FOR_DEST_TOPIC_PER_METRIC_KEY,
-        AGGREGATED_NUM_AUTO_PAUSED_PARTITIONS_WAITING_FOR_DEST_TOPIC);
+    _numAutoPausedPartitionsAwaitingDestTopic.set(val);
   }
 
   /**
@@ -261,9 +232,7 @@ public class KafkaBasedConnectorTaskMetrics extends CommonConnectorMetrics {
    * @param val Value to set to
    */
   public void updateNumAutoPausedPartitionsAwaitingSourceTopicAccess(long val) {
-    long delta = val - _numAutoPausedPartitionsAwaitingSourceTopicAccess.getAndSet(val);
-    updateMetrics(delta, NUM_AUTO_PAUSED_PARTITIONS_WAITING_SOURCE_TOPIC_ACCESS_PER_METRIC_KEY,
-        AGGREGATED_NUM_AUTO_PAUSED_PARTITIONS_WAITING_SOURCE_TOPIC_ACCESS);
+    _numAutoPausedPartitionsAwaitingSourceTopicAccess.set(val);
   }
 
   /**
@@ -271,21 +240,7 @@ public class KafkaBasedConnectorTaskMetrics extends CommonConnectorMetrics {
    * @param val Value to set to
    */
   public void updateNumTopics(long val) {
-    long delta = val - _numTopics.getAndSet(val);
-    updateMetrics(delta, NUM_TOPICS_PER_METRIC_KEY, AGGREGATED_NUM_TOPICS);
-  }
-
-  private void updateMetrics(long val, Map<String, AtomicLong> metricsMap,
-      Map<String, AtomicLong> aggregatedMetricsMap) {
-
-    AtomicLong metric = metricsMap.get(_fullMetricsKey);
-    if (metric != null) {
-      metric.getAndAdd(val);
-    }
-    AtomicLong aggregatedMetric = aggregatedMetricsMap.get(_className);
-    if (aggregatedMetric != null) {
-      aggregatedMetric.getAndAdd(val);
-    }
+    _numTopics.set(val);
   }
 
   /**
@@ -339,4 +294,24 @@ public class KafkaBasedConnectorTaskMetrics extends CommonConnectorMetrics {
     metrics.add(new BrooklinHistogramInfo(prefix + PER_EVENT_PROCESSING_TIME_NANOS));
     return Collections.unmodifiableList(metrics);
   }
+
+  /**
+   * This task's value of a gauge, which it contributes to the totals reported for its metrics key and the aggregate
+   */
+  private static final class TaskGaugeValue {
+    private final AtomicLong _value = new AtomicLong(0);
+    private final AtomicLong _keyTotal;
+    private final AtomicLong _aggregatedTotal;
+
+    TaskGaugeValue(AtomicLong keyTotal, AtomicLong aggregatedTotal) {
+      _keyTotal = keyTotal;
+      _aggregatedTotal = aggregatedTotal;
+    }
+
+    void set(long val) {
+      long delta = val - _value.getAndSet(val);
+      _keyTotal.getAndAdd(delta);
+      _aggregatedTotal.getAndAdd(delta);
+    }
+  }
 }
@@ -22,12 +22,16 @@ import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.record.TimestampType;
 import org.jetbrains.annotations.NotNull;
 
+import com.linkedin.datastream.server.PartitionThroughputReport;
+
 
 /**
  * KafkaTopicPartitionTracker contains information about consumer groups, topic partitions and
  * their consumer offsets.
  *
- * The information stored can then be queried via the /diag endpoint for diagnostic and analytic purposes.
+ * The information stored can then be queried via the /diag endpoint for diagnostic and analytic purposes. The bytes
+ * and messages consumed from each partition are also turned into a {@link PartitionThroughputReport}, which the
+ * leader uses to assign partitions by their throughput.
  */
 
 public class KafkaTopicPartitionTracker {
@@ -39,6 +43,10 @@ public class KafkaTopicPartitionTracker {
   private final Map<String, Map<Integer, Long>> _consumedOffsets = new ConcurrentHashMap<>();
   private final Map<String, Map<Integer, Long>> _committedOffsets = new ConcurrentHashMap<>();
   private final Map<String, Map<Integer, Long>> _consumptionLag = new ConcurrentHashMap<>();
+  // bytes and messages consumed since the last throughput report
+  private final Map<String, Map<Integer, Long>> _consumedBytes = new ConcurrentHashMap<>();
+  private final Map<String, Map<Integer, Long>> _consumedMessages = new ConcurrentHashMap<>();
+  private long _throughputWindowStartMs = System.currentTimeMillis();
 
   /**
    *  Constructor for KafkaTopicPartitionTracker
@@ -92,6 +100,10 @@ public class KafkaTopicPartitionTracker {
 
     // Remove consumption lag data for partitions that have been revoked.
     cleanupTopicPartitionsFromMap(topicPartitions, _consumptionLag);
+
+    // Remove the throughput counts for partitions that have been revoked, the new owner reports them from now on.
+    cleanupTopicPartitionsFromMap(topicPartitions, _consumedBytes);
+    cleanupTopicPartitionsFromMap(topicPartitions, _consumedMessages);
   }
 
   private void cleanupTopicPartitionsFromMap(@NotNull Collection<TopicPartition> topicPartitions,
@@ -125,9 +137,44 @@ public class KafkaTopicPartitionTracker {
       Map<Integer, Long> partitionConsumptionLagMap = _consumptionLag.computeIfAbsent(topicPartition.topic(),
           k -> new ConcurrentHashMap<>());
       partitionConsumptionLagMap.put(topicPartition.partition(), calculateLag(lastRecord));
+
+      long bytes = 0;
+      for (ConsumerRecord<?, ?> record : partitionRecords) {
+        // the serialized sizes are -1 for null keys and values
+        bytes += Math.max(record.serializedKeySize(), 0) + Math.max(record.serializedValueSize(), 0);
+      }
+      _consumedBytes.computeIfAbsent(topicPartition.topic(), k -> new ConcurrentHashMap<>())
+          .merge(topicPartition.partition(), bytes, Long::sum);
+      _consumedMessages.computeIfAbsent(topicPartition.topic(), k -> new ConcurrentHashMap<>())
+          .merge(topicPartition.partition(), (long) partitionRecords.size(), Long::sum);
     });
   }
 
+  /**
+   * Computes the bytes and messages in rates of the assigned partitions since the previous report (or since the
+   * tracker was created), and starts a new reporting window. Assigned partitions which were not consumed from are
+   * reported with zero rates.
+   * @param now the current time in milliseconds
+   * @return the throughput report, or null if no time has passed since the previous report
+   */
+  public synchronized PartitionThroughputReport getThroughputReport(long now) {
+    long windowMs = now - _throughputWindowStartMs;
+    if (windowMs <= 0) {
+      return null;
+    }
+    PartitionThroughputReport report = new PartitionThroughputReport(now, windowMs);
+    _topicPartitions.forEach((topic, partitions) -> partitions.forEach(partition ->
+        report.addPartition(topic + "-" + partition, 0, 0)));
+    _consumedBytes.forEach((topic, partitions) -> partitions.forEach((partition, bytes) -> {
+      long messages = _consumedMessages.getOrDefault(topic, Collections.emptyMap()).getOrDefault(partition, 0L);
+      report.addPartition(topic + "-" + partition, bytes * 1000.0 / 1024 / windowMs, messages * 1000.0 / windowMs);
+    }));
+    _consumedBytes.clear();
+    _consumedMessages.clear();
+    _throughputWindowStartMs = now;
+    return report;
+  }
+
   private Long calculateLag(ConsumerRecord<?, ?> record) {
     if (record.timestampType().equals(TimestampType.LOG_APPEND_TIME)) {
       return Instant.now().toEpochMilli() - record.timestamp();
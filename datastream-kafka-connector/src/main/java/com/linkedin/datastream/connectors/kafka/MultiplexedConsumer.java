@@ -0,0 +1,700 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.connectors.kafka;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.NoOffsetForPartitionException;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.InterruptException;
+import org.apache.kafka.common.errors.WakeupException;
+
+
+/**
+ * The view of a {@link SharedKafkaConsumer} given to one connector task, exposed to the task as a {@link Consumer}
+ * through {@link #asConsumer()}.
+ *
+ * Records polled by the shared consumer for the partitions of the task are buffered here until the task polls them,
+ * and the partitions of the task stop being fetched while its buffer is full. Positions, pauses and seeks apply to
+ * the partitions of the task only, and offsets are committed with a consumer of the task's own group, so the task sees
+ * the same semantics as with a dedicated consumer it assigns partitions to. Group subscriptions are not supported.
+ */
+class MultiplexedConsumer {
+  private static final Map<Method, Optional<Method>> METHODS = new ConcurrentHashMap<>();
+
+  private final MultiplexedConsumerPool _pool;
+  private final String _name;
+  private final String _clusterKey;
+  private final String _groupId;
+  private final Consumer<?, ?> _committer;
+  private final Lock _committerLock;
+  private final String _offsetResetStrategy;
+  private final int _maxPollRecords;
+  private final int _maxBufferedRecords;
+
+  private volatile Set<TopicPartition> _assignment = Collections.emptySet();
+  private volatile SharedKafkaConsumer _sharedConsumer;
+
+  // The state below is guarded by _lock. Not a monitor, so that a task running on a virtual thread doesn't pin its
+  // carrier thread while waiting for records.
+  private final Lock _lock = new ReentrantLock();
+  private final Condition _recordsAvailable = _lock.newCondition();
+  private final Map<TopicPartition, ArrayDeque<ConsumerRecord<Object, Object>>> _buffers = new LinkedHashMap<>();
+  private final Map<TopicPartition, Long> _positions = new HashMap<>();
+  private final Set<TopicPartition> _paused = new HashSet<>();
+  // partitions which can't be fetched until the task seeks them or resumes them, with the error to report to the task
+  private final Set<TopicPartition> _blocked = new HashSet<>();
+  private int _numBufferedRecords;
+  private KafkaException _pollError;
+  // error reported to every poll once the shared consumer stopped, until the task is assigned partitions again
+  private KafkaException _sharedConsumerError;
+  private boolean _wakeup;
+  private boolean _closed;
+
+  /**
+   * Constructor for MultiplexedConsumer
+   * @param pool the pool the consumer belongs to
+   * @param name the name of the consumer, for logging
+   * @param clusterKey the key of the source cluster in the pool
+   * @param groupId the consumer group of the task
+   * @param committer the consumer of the task's group, shared with other tasks of that group, to commit offsets with
+   * @param committerLock the lock guarding the committer
+   * @param offsetResetStrategy the auto.offset.reset strategy of the task
+   * @param maxPollRecords maximum number of records returned by a poll
+   * @param maxBufferedRecords number of buffered records beyond which the partitions of the task are paused
+   */
+  MultiplexedConsumer(MultiplexedConsumerPool pool, String name, String clusterKey, String groupId,
+      Consumer<?, ?> committer, Lock committerLock, String offsetResetStrategy, int maxPollRecords,
+      int maxBufferedRecords) {
+    _pool = pool;
+    _name = name;
+    _clusterKey = clusterKey;
+    _groupId = groupId;
+    _committer = committer;
+    _committerLock = committerLock;
+    _offsetResetStrategy = offsetResetStrategy;
+    _maxPollRecords = maxPollRecords;
+    _maxBufferedRecords = maxBufferedRecords;
+  }
+
+  /**
+   * Get a {@link Consumer} backed by this object. Its methods are dispatched to the public methods of this class of the
+   * same signature, and the others throw {@link UnsupportedOperationException}, which keeps the view independent from
+   * the exact version of the Consumer interface.
+   */
+  Consumer<?, ?> asConsumer() {
+    return (Consumer<?, ?>) Proxy.newProxyInstance(Consumer.class.getClassLoader(), new Class<?>[]{Consumer.class},
+        (proxy, method, args) -> {
+          if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+              case "equals":
+                return proxy == args[0];
+              case "hashCode":
+                return System.identityHashCode(proxy);
+              default:
+                return toString();
+            }
+          }
+          Optional<Method> target = METHODS.computeIfAbsent(method, MultiplexedConsumer::findMethod);
+          if (!target.isPresent()) {
+            throw new UnsupportedOperationException(method.getName() + " is not supported by multiplexed consumers");
+          }
+          try {
+            return target.get().invoke(this, args);
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          }
+        });
+  }
+
+  private static Optional<Method> findMethod(Method method) {
+    try {
+      return Optional.of(MultiplexedConsumer.class.getMethod(method.getName(), method.getParameterTypes()));
+    } catch (NoSuchMethodException e) {
+      return Optional.empty();
+    }
+  }
+
+  String getClusterKey() {
+    return _clusterKey;
+  }
+
+  String getGroupId() {
+    return _groupId;
+  }
+
+  String getOffsetResetStrategy() {
+    return _offsetResetStrategy;
+  }
+
+  SharedKafkaConsumer getSharedConsumer() {
+    return _sharedConsumer;
+  }
+
+  void setSharedConsumer(SharedKafkaConsumer sharedConsumer) {
+    _lock.lock();
+    try {
+      _sharedConsumer = sharedConsumer;
+      _sharedConsumerError = null;
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  void setAssignment(Set<TopicPartition> assignment) {
+    _assignment = assignment;
+  }
+
+  // Called from the poll thread of the shared consumer
+
+  /**
+   * Buffer records polled for a partition of this consumer
+   * @return true if the buffer just became full
+   */
+  @SuppressWarnings("unchecked")
+  boolean enqueue(TopicPartition tp, List<? extends ConsumerRecord<?, ?>> records) {
+    _lock.lock();
+    try {
+      if (!_assignment.contains(tp) || _blocked.contains(tp) || !_positions.containsKey(tp)) {
+        return false;
+      }
+      boolean wasFull = isFull();
+      ArrayDeque<ConsumerRecord<Object, Object>> buffer = _buffers.computeIfAbsent(tp, k -> new ArrayDeque<>());
+      records.forEach(record -> buffer.add((ConsumerRecord<Object, Object>) record));
+      _numBufferedRecords += records.size();
+      _recordsAvailable.signalAll();
+      return !wasFull && isFull();
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  /**
+   * Set the position of a partition after the shared consumer seeks it, discarding its buffered records
+   */
+  void resetPosition(TopicPartition tp, long offset) {
+    _lock.lock();
+    try {
+      purge(tp);
+      _positions.put(tp, offset);
+      _blocked.remove(tp);
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  /**
+   * Stop delivering records of partitions until they are sought or resumed, and report an error to the next poll
+   */
+  void block(Set<TopicPartition> partitions, KafkaException error) {
+    _lock.lock();
+    try {
+      _blocked.addAll(partitions);
+      _pollError = error;
+      _recordsAvailable.signalAll();
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  void onPollError(Exception error) {
+    _lock.lock();
+    try {
+      _pollError = error instanceof KafkaException ? (KafkaException) error : new KafkaException(error);
+      _recordsAvailable.signalAll();
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  /**
+   * Fail every poll until the task is assigned partitions again, since the shared consumer stopped
+   */
+  void onSharedConsumerStopped(KafkaException error) {
+    _lock.lock();
+    try {
+      _sharedConsumerError = error;
+      _recordsAvailable.signalAll();
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  void collectPausedPartitions(Set<TopicPartition> paused) {
+    _lock.lock();
+    try {
+      if (isFull()) {
+        paused.addAll(_assignment);
+      } else {
+        paused.addAll(_paused);
+        paused.addAll(_blocked);
+      }
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  private boolean isFull() {
+    return _numBufferedRecords >= _maxBufferedRecords;
+  }
+
+  private void purge(TopicPartition tp) {
+    ArrayDeque<ConsumerRecord<Object, Object>> buffer = _buffers.remove(tp);
+    if (buffer != null) {
+      _numBufferedRecords -= buffer.size();
+    }
+  }
+
+  private void ensureOpen() {
+    _lock.lock();
+    try {
+      if (_closed) {
+        throw new IllegalStateException("This consumer has already been closed.");
+      }
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  private <T> T withCommitter(Function<Consumer<?, ?>, T> action) {
+    ensureOpen();
+    _committerLock.lock();
+    try {
+      return action.apply(_committer);
+    } finally {
+      _committerLock.unlock();
+    }
+  }
+
+  private SharedKafkaConsumer ensureAssigned() {
+    SharedKafkaConsumer sharedConsumer = _sharedConsumer;
+    if (sharedConsumer == null) {
+      throw new IllegalStateException("Consumer is not assigned any partitions");
+    }
+    return sharedConsumer;
+  }
+
+  // Methods of the Consumer interface, called from the task thread
+
+  /**
+   * @see Consumer#assignment()
+   */
+  public Set<TopicPartition> assignment() {
+    return _assignment;
+  }
+
+  /**
+   * @see Consumer#subscription()
+   */
+  public Set<String> subscription() {
+    return Collections.emptySet();
+  }
+
+  /**
+   * @see Consumer#assign(Collection)
+   */
+  public void assign(Collection<TopicPartition> partitions) {
+    ensureOpen();
+    Set<TopicPartition> assignment = Collections.unmodifiableSet(new HashSet<>(partitions));
+    Map<TopicPartition, OffsetAndMetadata> committed = new HashMap<>();
+    for (TopicPartition tp : assignment) {
+      OffsetAndMetadata offset = committed(tp);
+      if (offset != null) {
+        committed.put(tp, offset);
+      }
+    }
+    _lock.lock();
+    try {
+      for (TopicPartition tp : _assignment) {
+        if (!assignment.contains(tp)) {
+          purge(tp);
+          _positions.remove(tp);
+          _paused.remove(tp);
+          _blocked.remove(tp);
+        }
+      }
+    } finally {
+      _lock.unlock();
+    }
+    _pool.assign(this, assignment, committed);
+  }
+
+  /**
+   * @see Consumer#unsubscribe()
+   */
+  public void unsubscribe() {
+    assign(Collections.emptySet());
+  }
+
+  /**
+   * @see Consumer#poll(long)
+   */
+  public ConsumerRecords<Object, Object> poll(long timeoutMs) {
+    return poll(Duration.ofMillis(timeoutMs));
+  }
+
+  /**
+   * @see Consumer#poll(Duration)
+   */
+  public ConsumerRecords<Object, Object> poll(Duration timeout) {
+    ensureOpen();
+    if (_assignment.isEmpty()) {
+      throw new IllegalStateException("Consumer is not subscribed to any topics or assigned any partitions");
+    }
+    long deadline = System.currentTimeMillis() + timeout.toMillis();
+    _lock.lock();
+    try {
+      while (true) {
+        if (_wakeup) {
+          _wakeup = false;
+          throw new WakeupException();
+        }
+        if (_sharedConsumerError != null) {
+          throw _sharedConsumerError;
+        }
+        if (_pollError != null) {
+          KafkaException error = _pollError;
+          _pollError = null;
+          throw error;
+        }
+        Map<TopicPartition, List<ConsumerRecord<Object, Object>>> records = drain();
+        if (!records.isEmpty()) {
+          return new ConsumerRecords<>(records);
+        }
+        long remainingMs = deadline - System.currentTimeMillis();
+        if (remainingMs <= 0) {
+          return ConsumerRecords.empty();
+        }
+        _recordsAvailable.await(remainingMs, TimeUnit.MILLISECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptException(e);
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  // Take up to max.poll.records buffered records of unpaused partitions, going round the partitions in turn
+  private Map<TopicPartition, List<ConsumerRecord<Object, Object>>> drain() {
+    Map<TopicPartition, List<ConsumerRecord<Object, Object>>> records = new HashMap<>();
+    boolean wasFull = isFull();
+    int remaining = _maxPollRecords;
+    Map<TopicPartition, ArrayDeque<ConsumerRecord<Object, Object>>> drained = new LinkedHashMap<>();
+    Iterator<Map.Entry<TopicPartition, ArrayDeque<ConsumerRecord<Object, Object>>>> it = _buffers.entrySet().iterator();
+    while (it.hasNext() && remaining > 0) {
+      Map.Entry<TopicPartition, ArrayDeque<ConsumerRecord<Object, Object>>> entry = it.next();
+      TopicPartition tp = entry.getKey();
+      if (_paused.contains(tp) || _blocked.contains(tp)) {
+        continue;
+      }
+      ArrayDeque<ConsumerRecord<Object, Object>> buffer = entry.getValue();
+      List<ConsumerRecord<Object, Object>> partitionRecords = new ArrayList<>(Math.min(remaining, buffer.size()));
+      while (!buffer.isEmpty() && remaining > 0) {
+        partitionRecords.add(buffer.poll());
+        remaining--;
+      }
+      records.put(tp, partitionRecords);
+      _positions.put(tp, partitionRecords.get(partitionRecords.size() - 1).offset() + 1);
+      _numBufferedRecords -= partitionRecords.size();
+      it.remove();
+      if (!buffer.isEmpty()) {
+        drained.put(tp, buffer);
+      }
+    }
+    // partitions with records left go last, so that the next poll starts with the other partitions
+    _buffers.putAll(drained);
+    if (wasFull && !isFull() && _sharedConsumer != null) {
+      _sharedConsumer.onPausedPartitionsChanged();
+    }
+    return records;
+  }
+
+  /**
+   * @see Consumer#commitSync()
+   */
+  public void commitSync() {
+    commitSync(Duration.ofMillis(Long.MAX_VALUE));
+  }
+
+  /**
+   * @see Consumer#commitSync(Duration)
+   */
+  public void commitSync(Duration timeout) {
+    Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+    _lock.lock();
+    try {
+      _positions.forEach((tp, offset) -> offsets.put(tp, new OffsetAndMetadata(offset)));
+    } finally {
+      _lock.unlock();
+    }
+    commitSync(offsets, timeout);
+  }
+
+  /**
+   * @see Consumer#commitSync(Map)
+   */
+  public void commitSync(Map<TopicPartition, OffsetAndMetadata> offsets) {
+    commitSync(offsets, Duration.ofMillis(Long.MAX_VALUE));
+  }
+
+  /**
+   * @see Consumer#commitSync(Map, Duration)
+   */
+  public void commitSync(Map<TopicPartition, OffsetAndMetadata> offsets, Duration timeout) {
+    if (offsets.isEmpty()) {
+      return;
+    }
+    withCommitter(committer -> {
+      committer.commitSync(offsets, timeout);
+      return null;
+    });
+  }
+
+  /**
+   * @see Consumer#committed(TopicPartition)
+   */
+  public OffsetAndMetadata committed(TopicPartition tp) {
+    return withCommitter(committer -> committer.committed(tp));
+  }
+
+  /**
+   * @see Consumer#committed(TopicPartition, Duration)
+   */
+  public OffsetAndMetadata committed(TopicPartition tp, Duration timeout) {
+    return withCommitter(committer -> committer.committed(tp, timeout));
+  }
+
+  /**
+   * @see Consumer#seek(TopicPartition, long)
+   */
+  public void seek(TopicPartition tp, long offset) {
+    ensureOpen();
+    if (!_assignment.contains(tp)) {
+      throw new IllegalStateException("No current assignment for partition " + tp);
+    }
+    ensureAssigned().seek(this, tp, offset);
+  }
+
+  /**
+   * @see Consumer#seek(TopicPartition, OffsetAndMetadata)
+   */
+  public void seek(TopicPartition tp, OffsetAndMetadata offsetAndMetadata) {
+    seek(tp, offsetAndMetadata.offset());
+  }
+
+  /**
+   * @see Consumer#seekToBeginning(Collection)
+   */
+  public void seekToBeginning(Collection<TopicPartition> partitions) {
+    ensureOpen();
+    ensureAssigned().seekToBeginningOrEnd(this, partitions, true);
+  }
+
+  /**
+   * @see Consumer#seekToEnd(Collection)
+   */
+  public void seekToEnd(Collection<TopicPartition> partitions) {
+    ensureOpen();
+    ensureAssigned().seekToBeginningOrEnd(this, partitions, false);
+  }
+
+  /**
+   * @see Consumer#position(TopicPartition)
+   */
+  public long position(TopicPartition tp) {
+    ensureOpen();
+    if (!_assignment.contains(tp)) {
+      throw new IllegalStateException("You can only check the position for partitions assigned to this consumer.");
+    }
+    Long position;
+    _lock.lock();
+    try {
+      position = _positions.get(tp);
+    } finally {
+      _lock.unlock();
+    }
+    if (position == null) {
+      throw new NoOffsetForPartitionException(tp);
+    }
+    return position;
+  }
+
+  /**
+   * @see Consumer#position(TopicPartition, Duration)
+   */
+  public long position(TopicPartition tp, Duration timeout) {
+    return position(tp);
+  }
+
+  /**
+   * @see Consumer#pause(Collection)
+   */
+  public void pause(Collection<TopicPartition> partitions) {
+    ensureOpen();
+    _lock.lock();
+    try {
+      partitions.stream().filter(_assignment::contains).forEach(_paused::add);
+    } finally {
+      _lock.unlock();
+    }
+    Optional.ofNullable(_sharedConsumer).ifPresent(SharedKafkaConsumer::onPausedPartitionsChanged);
+  }
+
+  /**
+   * @see Consumer#resume(Collection)
+   */
+  public void resume(Collection<TopicPartition> partitions) {
+    ensureOpen();
+    _lock.lock();
+    try {
+      _paused.removeAll(partitions);
+      _blocked.removeAll(partitions);
+      _recordsAvailable.signalAll();
+    } finally {
+      _lock.unlock();
+    }
+    Optional.ofNullable(_sharedConsumer).ifPresent(SharedKafkaConsumer::onPausedPartitionsChanged);
+  }
+
+  /**
+   * @see Consumer#paused()
+   */
+  public Set<TopicPartition> paused() {
+    _lock.lock();
+    try {
+      return Collections.unmodifiableSet(new HashSet<>(_paused));
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  /**
+   * @see Consumer#partitionsFor(String)
+   */
+  public List<PartitionInfo> partitionsFor(String topic) {
+    return withCommitter(committer -> committer.partitionsFor(topic));
+  }
+
+  /**
+   * @see Consumer#partitionsFor(String, Duration)
+   */
+  public List<PartitionInfo> partitionsFor(String topic, Duration timeout) {
+    return withCommitter(committer -> committer.partitionsFor(topic, timeout));
+  }
+
+  /**
+   * @see Consumer#listTopics()
+   */
+  public Map<String, List<PartitionInfo>> listTopics() {
+    return withCommitter(Consumer::listTopics);
+  }
+
+  /**
+   * @see Consumer#metrics()
+   */
+  public Map<MetricName, ? extends Metric> metrics() {
+    SharedKafkaConsumer sharedConsumer = _sharedConsumer;
+    if (sharedConsumer == null) {
+      return Collections.emptyMap();
+    }
+    return sharedConsumer.getConsumer().metrics();
+  }
+
+  /**
+   * @see Consumer#subscribe(Pattern)
+   */
+  public void subscribe(Pattern pattern) {
+    throw new UnsupportedOperationException("Multiplexed consumers must be assigned their partitions");
+  }
+
+  /**
+   * @see Consumer#subscribe(Collection)
+   */
+  public void subscribe(Collection<String> topics) {
+    throw new UnsupportedOperationException("Multiplexed consumers must be assigned their partitions");
+  }
+
+  /**
+   * @see Consumer#wakeup()
+   */
+  public void wakeup() {
+    _lock.lock();
+    try {
+      _wakeup = true;
+      _recordsAvailable.signalAll();
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  /**
+   * @see Consumer#close()
+   */
+  public void close() {
+    _lock.lock();
+    try {
+      if (_closed) {
+        return;
+      }
+      _closed = true;
+      _buffers.clear();
+      _numBufferedRecords = 0;
+    } finally {
+      _lock.unlock();
+    }
+    _pool.release(this);
+  }
+
+  /**
+   * @see Consumer#close(Duration)
+   */
+  public void close(Duration timeout) {
+    close();
+  }
+
+  /**
+   * @see Consumer#close(long, TimeUnit)
+   */
+  public void close(long timeout, TimeUnit unit) {
+    close();
+  }
+
+  @Override
+  public String toString() {
+    return _name;
+  }
+}
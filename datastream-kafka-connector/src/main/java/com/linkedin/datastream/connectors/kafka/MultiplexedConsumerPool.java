@@ -0,0 +1,282 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.connectors.kafka;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.Hashing;
+
+import com.linkedin.datastream.kafka.factory.KafkaConsumerFactory;
+
+
+/**
+ * MultiplexedConsumerPool serves the tasks of a connector consuming from the same Kafka cluster with a few
+ * {@link SharedKafkaConsumer}s instead of one KafkaConsumer per task, which cuts the connections, fetch sessions and
+ * memory buffers per source cluster down from one set per task to one set per shared consumer.
+ *
+ * Tasks are given a {@link MultiplexedConsumer} view, and share a consumer with the tasks whose consumer configs only
+ * differ by group.id, client.id, auto.offset.reset and max.poll.records. A task joins the shared consumer with the
+ * fewest members whose other members don't consume any of its partitions, and offsets are committed with one consumer
+ * per consumer group, which is shared by the tasks of that group. Only tasks which assign partitions to their consumer
+ * are supported, since a consumer can only be a member of one group.
+ */
+public class MultiplexedConsumerPool {
+  private static final Logger LOG = LoggerFactory.getLogger(MultiplexedConsumerPool.class);
+
+  // consumer configs which are specific to each task, and don't prevent tasks from sharing a consumer
+  private static final List<String> TASK_CONFIGS = Arrays.asList(ConsumerConfig.GROUP_ID_CONFIG,
+      ConsumerConfig.CLIENT_ID_CONFIG, ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, ConsumerConfig.MAX_POLL_RECORDS_CONFIG,
+      ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG);
+  private static final String DEFAULT_AUTO_OFFSET_RESET = "latest";
+  private static final int DEFAULT_MAX_POLL_RECORDS = 500;
+
+  private final String _name;
+  private final KafkaConsumerFactory<?, ?> _consumerFactory;
+  private final int _consumersPerCluster;
+  private final int _maxBufferedRecordsPerTask;
+
+  // The state below is guarded by _lock, which is held while waiting for the shared consumers to assign partitions
+  private final Lock _lock = new ReentrantLock();
+  private final Map<String, List<SharedKafkaConsumer>> _sharedConsumers = new HashMap<>();
+  private final Map<String, Map<String, String>> _sharedProps = new HashMap<>();
+  private final Map<String, Committer> _committers = new HashMap<>();
+  private int _numCreatedConsumers;
+  private boolean _shutdown;
+
+  /**
+   * Constructor for MultiplexedConsumerPool
+   * @param name the name of the pool, used to name the shared consumers
+   * @param consumerFactory factory of the shared consumers and of the consumers committing offsets
+   * @param consumersPerCluster number of consumers shared by the tasks consuming from the same cluster, which is only
+   *                            exceeded to keep tasks assigned the same partitions on different consumers
+   * @param maxBufferedRecordsPerTask number of records buffered for a task beyond which its partitions are paused
+   */
+  public MultiplexedConsumerPool(String name, KafkaConsumerFactory<?, ?> consumerFactory, int consumersPerCluster,
+      int maxBufferedRecordsPerTask) {
+    Validate.isTrue(consumersPerCluster > 0, "consumersPerCluster must be positive");
+    Validate.isTrue(maxBufferedRecordsPerTask > 0, "maxBufferedRecordsPerTask must be positive");
+    _name = name;
+    _consumerFactory = consumerFactory;
+    _consumersPerCluster = consumersPerCluster;
+    _maxBufferedRecordsPerTask = maxBufferedRecordsPerTask;
+  }
+
+  /**
+   * Create a consumer for a task. The consumer doesn't support subscriptions, and consumes from a shared consumer once
+   * it is assigned partitions.
+   * @param consumerProps the consumer configs of the task, which must include group.id
+   */
+  public Consumer<?, ?> createConsumer(Properties consumerProps) {
+    String groupId = consumerProps.getProperty(ConsumerConfig.GROUP_ID_CONFIG);
+    Validate.isTrue(StringUtils.isNotBlank(groupId), "Multiplexed consumers require a group.id");
+    Map<String, String> sharedProps = getSharedProps(consumerProps);
+    String clusterKey = getClusterKey(sharedProps);
+
+    _lock.lock();
+    try {
+      Validate.isTrue(!_shutdown, "MultiplexedConsumerPool is shut down");
+      _sharedProps.putIfAbsent(clusterKey, sharedProps);
+      Committer committer = _committers.computeIfAbsent(clusterKey + "/" + groupId, key -> {
+        Properties committerProps = new Properties();
+        committerProps.putAll(consumerProps);
+        committerProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, Boolean.FALSE.toString());
+        return new Committer(_consumerFactory.createConsumer(committerProps));
+      });
+      committer._refCount++;
+
+      String name = String.format("%s-%s-%s", _name, groupId,
+          consumerProps.getProperty(ConsumerConfig.CLIENT_ID_CONFIG, ""));
+      MultiplexedConsumer consumer = new MultiplexedConsumer(this, name, clusterKey, groupId, committer._consumer,
+          committer._lock, consumerProps.getProperty(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, DEFAULT_AUTO_OFFSET_RESET),
+          Integer.parseInt(consumerProps.getProperty(ConsumerConfig.MAX_POLL_RECORDS_CONFIG,
+              String.valueOf(DEFAULT_MAX_POLL_RECORDS))), _maxBufferedRecordsPerTask);
+      return consumer.asConsumer();
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  /**
+   * Move a consumer to a shared consumer none of whose other members is assigned any of the partitions, if its current
+   * one doesn't qualify, and assign it the partitions
+   */
+  void assign(MultiplexedConsumer consumer, Set<TopicPartition> partitions,
+      Map<TopicPartition, OffsetAndMetadata> committed) {
+    _lock.lock();
+    try {
+      Validate.isTrue(!_shutdown, "MultiplexedConsumerPool is shut down");
+      SharedKafkaConsumer current = consumer.getSharedConsumer();
+      SharedKafkaConsumer target = current;
+      if (current == null || current.isShutdown() || current.overlaps(partitions, consumer)) {
+        target = chooseSharedConsumer(consumer, partitions);
+      }
+      if (target != current) {
+        if (current != null) {
+          removeMember(current, consumer);
+        }
+        LOG.info("Consumer {} joins shared consumer {}", consumer, target);
+        target.addMember(consumer);
+        consumer.setSharedConsumer(target);
+      }
+      consumer.setAssignment(partitions);
+      target.assign(consumer, partitions, committed);
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  /**
+   * Release the shared consumer and the committing consumer of a closed consumer
+   */
+  void release(MultiplexedConsumer consumer) {
+    _lock.lock();
+    try {
+      SharedKafkaConsumer sharedConsumer = consumer.getSharedConsumer();
+      if (sharedConsumer != null) {
+        removeMember(sharedConsumer, consumer);
+        consumer.setSharedConsumer(null);
+      }
+      String committerKey = consumer.getClusterKey() + "/" + consumer.getGroupId();
+      Committer committer = _committers.get(committerKey);
+      if (committer != null && --committer._refCount == 0) {
+        _committers.remove(committerKey);
+        closeCommitter(committer);
+      }
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  /**
+   * Shut down all the shared consumers and close the committing consumers
+   */
+  public void shutdown() {
+    _lock.lock();
+    try {
+      _shutdown = true;
+      _sharedConsumers.values().forEach(sharedConsumers -> sharedConsumers.forEach(SharedKafkaConsumer::shutdown));
+      _sharedConsumers.clear();
+      _committers.values().forEach(this::closeCommitter);
+      _committers.clear();
+    } finally {
+      _lock.unlock();
+    }
+    LOG.info("MultiplexedConsumerPool {} shut down", _name);
+  }
+
+  /**
+   * Get the number of shared consumers of all clusters
+   */
+  public int getNumSharedConsumers() {
+    _lock.lock();
+    try {
+      return _sharedConsumers.values().stream().mapToInt(List::size).sum();
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  private SharedKafkaConsumer chooseSharedConsumer(MultiplexedConsumer consumer, Set<TopicPartition> partitions) {
+    List<SharedKafkaConsumer> sharedConsumers =
+        _sharedConsumers.computeIfAbsent(consumer.getClusterKey(), k -> new ArrayList<>());
+    // the consumers whose poll thread died have failed their members, which join other consumers
+    sharedConsumers.removeIf(SharedKafkaConsumer::isShutdown);
+    Optional<SharedKafkaConsumer> leastLoaded = sharedConsumers.stream()
+        .filter(sharedConsumer -> !sharedConsumer.overlaps(partitions, consumer))
+        .min(Comparator.comparingInt(SharedKafkaConsumer::getNumMembers));
+    if (leastLoaded.isPresent()
+        && (leastLoaded.get().getNumMembers() == 0 || sharedConsumers.size() >= _consumersPerCluster)) {
+      return leastLoaded.get();
+    }
+    if (sharedConsumers.size() >= _consumersPerCluster) {
+      LOG.info("All shared consumers of {} consume some of the partitions of {}, creating another one",
+          consumer.getClusterKey(), consumer);
+    }
+
+    Properties sharedProps = new Properties();
+    sharedProps.putAll(_sharedProps.get(consumer.getClusterKey()));
+    String name = String.format("%s-%d", _name, _numCreatedConsumers++);
+    sharedProps.put(ConsumerConfig.CLIENT_ID_CONFIG, name);
+    // offsets are committed by the tasks' groups, and reset according to each task's own strategy
+    sharedProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, Boolean.FALSE.toString());
+    sharedProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "none");
+    SharedKafkaConsumer sharedConsumer = new SharedKafkaConsumer(name, _consumerFactory.createConsumer(sharedProps));
+    sharedConsumer.start();
+    sharedConsumers.add(sharedConsumer);
+    return sharedConsumer;
+  }
+
+  private void removeMember(SharedKafkaConsumer sharedConsumer, MultiplexedConsumer consumer) {
+    LOG.info("Consumer {} leaves shared consumer {}", consumer, sharedConsumer);
+    sharedConsumer.removeMember(consumer);
+    if (sharedConsumer.getNumMembers() == 0) {
+      _sharedConsumers.computeIfPresent(consumer.getClusterKey(), (clusterKey, sharedConsumers) -> {
+        sharedConsumers.remove(sharedConsumer);
+        return sharedConsumers.isEmpty() ? null : sharedConsumers;
+      });
+      sharedConsumer.shutdown();
+    }
+  }
+
+  private void closeCommitter(Committer committer) {
+    committer._lock.lock();
+    try {
+      committer._consumer.close();
+    } finally {
+      committer._lock.unlock();
+    }
+  }
+
+  // The configs of a task which shared consumers are created with. Sorted, so that they can be compared as a string.
+  private static Map<String, String> getSharedProps(Properties consumerProps) {
+    Map<String, String> sharedProps = new TreeMap<>();
+    consumerProps.stringPropertyNames().stream()
+        .filter(key -> !TASK_CONFIGS.contains(key))
+        .forEach(key -> sharedProps.put(key, consumerProps.getProperty(key)));
+    return sharedProps;
+  }
+
+  // The key of the cluster in the pool: the bootstrap servers and a digest of the other shared configs, since these
+  // can include credentials which must not be logged
+  private static String getClusterKey(Map<String, String> sharedProps) {
+    return sharedProps.getOrDefault(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, "") + "#"
+        + Hashing.sha256().hashString(sharedProps.toString(), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * A consumer committing the offsets of the tasks of one consumer group, used by one task at a time
+   */
+  private static class Committer {
+    private final Consumer<?, ?> _consumer;
+    private final Lock _lock = new ReentrantLock();
+    private int _refCount;
+
+    private Committer(Consumer<?, ?> consumer) {
+      _consumer = consumer;
+    }
+  }
+}
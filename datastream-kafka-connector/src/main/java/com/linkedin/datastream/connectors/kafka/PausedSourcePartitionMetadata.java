@@ -26,7 +26,7 @@ public class PausedSourcePartitionMetadata {
    * Enum representing reason for which a partition is paused.
    */
   public enum Reason {
-    EXCEEDED_MAX_IN_FLIGHT_MSG_THRESHOLD("Number of in-flight messages for partition exceeded threshold"),
+    EXCEEDED_MAX_IN_FLIGHT_MSG_THRESHOLD("Number of in-flight messages or bytes for partition exceeded threshold"),
     SEND_ERROR("Failed to produce messages from this partition"),
     TOPIC_NOT_AUTHORIZED("Topic not authorized for consume"),
     TOPIC_NOT_CREATED("Topic not created on the destination side");
@@ -0,0 +1,322 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.connectors.kafka;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.lang.Validate;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.datastream.common.DatastreamRuntimeException;
+import com.linkedin.datastream.common.DatastreamThreadFactory;
+import com.linkedin.datastream.metrics.BrooklinGaugeInfo;
+import com.linkedin.datastream.metrics.BrooklinHistogramInfo;
+import com.linkedin.datastream.metrics.BrooklinMeterInfo;
+import com.linkedin.datastream.metrics.BrooklinMetricInfo;
+import com.linkedin.datastream.metrics.DynamicMetricsManager;
+import com.linkedin.datastream.metrics.HistogramHandle;
+import com.linkedin.datastream.metrics.MeterHandle;
+
+
+/**
+ * Hands the records polled by an {@link AbstractKafkaBasedConnectorTask} off to worker threads which translate and
+ * send them, so that the task thread can go back to polling while the previous records are being processed.
+ *
+ * Each source partition is pinned to one worker (lane), whose bounded queue keeps the partition batches in the order
+ * they were polled, so per-partition ordering is preserved while different partitions are processed in parallel. The
+ * task thread blocks handing a batch off once the queue of its lane is full.
+ *
+ * The Kafka consumer is not thread-safe, so the workers never touch it: partitions which need to be rewound (because
+ * they were paused or a send failed) are recorded with {@link #requestRewind}, and their records are dropped until
+ * the task thread has drained the pipeline with {@link #awaitIdle} and performed the rewinds it got from
+ * {@link #drainPendingRewinds}. The same drain must happen before the consumer positions are committed, since they
+ * are ahead of the records still in the pipeline.
+ */
+class PipelinedRecordProcessor {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PipelinedRecordProcessor.class);
+
+  static final String PIPELINE_OVERLAPPED_POLL_RATE = "pipelineOverlappedPollRate";
+  static final String PIPELINE_HANDOFF_BLOCKED_MS = "pipelineHandoffBlockedMs";
+  static final String PIPELINE_QUEUED_BATCHES = "pipelineQueuedBatches";
+
+  private static final long WAIT_INTERVAL_MS = 100;
+
+  /**
+   * Translates and sends the records of a single source partition
+   */
+  @FunctionalInterface
+  interface PartitionBatchHandler {
+    /**
+     * Process the records of a source partition, in order
+     * @param topicPartition the source partition of the records
+     * @param records the records
+     * @param readTime the instant the records were polled
+     * @param readTimeInNanos the time at which the records were polled in nanoseconds, for elapsed time calculations
+     */
+    void process(TopicPartition topicPartition, List<? extends ConsumerRecord<?, ?>> records, Instant readTime,
+        long readTimeInNanos) throws Exception;
+  }
+
+  private final PartitionBatchHandler _handler;
+  private final List<BlockingQueue<PartitionBatch>> _queues;
+  private final List<Thread> _workers;
+  // number of batches queued or being processed
+  private final AtomicInteger _outstandingBatches = new AtomicInteger();
+  private final Lock _idleLock = new ReentrantLock();
+  private final Condition _idle = _idleLock.newCondition();
+  // partitions to rewind, with the exception which caused it if any
+  private final Map<TopicPartition, Optional<Exception>> _pendingRewinds = new ConcurrentHashMap<>();
+  private final AtomicReference<Exception> _failure = new AtomicReference<>();
+  private volatile boolean _closed = false;
+
+  private final String _metricsPrefix;
+  private final String _metricsKey;
+  private final MeterHandle _overlappedPollRate;
+  private final HistogramHandle _handOffBlockedMs;
+
+  /**
+   * Constructor for PipelinedRecordProcessor
+   * @param taskName name of the task, used to name the worker threads
+   * @param parallelism number of worker threads
+   * @param queueCapacity maximum number of partition batches queued for each worker
+   * @param handler the handler translating and sending the records of a partition
+   * @param metricsPrefix prefix of the metrics of the task
+   * @param metricsKey key of the metrics of the task
+   */
+  PipelinedRecordProcessor(String taskName, int parallelism, int queueCapacity, PartitionBatchHandler handler,
+      String metricsPrefix, String metricsKey) {
+    Validate.isTrue(parallelism > 0, "pipeline parallelism must be positive");
+    Validate.isTrue(queueCapacity > 0, "pipeline queue capacity must be positive");
+    _handler = handler;
+    _metricsPrefix = metricsPrefix;
+    _metricsKey = metricsKey;
+
+    DynamicMetricsManager dynamicMetricsManager = DynamicMetricsManager.getInstance();
+    _overlappedPollRate = dynamicMetricsManager.meterHandle(metricsPrefix, metricsKey, PIPELINE_OVERLAPPED_POLL_RATE);
+    _handOffBlockedMs = dynamicMetricsManager.histogramHandle(metricsPrefix, metricsKey, PIPELINE_HANDOFF_BLOCKED_MS);
+    dynamicMetricsManager.registerGauge(metricsPrefix, metricsKey, PIPELINE_QUEUED_BATCHES,
+        () -> _outstandingBatches.get());
+
+    ThreadFactory threadFactory = DatastreamThreadFactory.builder("PipelinedRecordProcessor-" + taskName + "-%d")
+        .setDaemon(true)
+        .setUncaughtExceptionHandler((t, e) -> LOG.error("Pipeline worker {} died", t.getName(), e))
+        .build();
+    _queues = new ArrayList<>(parallelism);
+    _workers = new ArrayList<>(parallelism);
+    for (int i = 0; i < parallelism; i++) {
+      BlockingQueue<PartitionBatch> queue = new ArrayBlockingQueue<>(queueCapacity);
+      _queues.add(queue);
+      _workers.add(threadFactory.newThread(() -> runWorker(queue)));
+    }
+    _workers.forEach(Thread::start);
+  }
+
+  /**
+   * Record a poll of the consumer, counting it as overlapped if records were still being processed
+   */
+  void onPoll() {
+    if (_outstandingBatches.get() > 0) {
+      _overlappedPollRate.mark();
+    }
+  }
+
+  /**
+   * Hand the records off to the workers, blocking while the queue of the lane of a partition is full. The records of
+   * partitions awaiting a rewind are dropped, since the consumer will be rewound before they are polled again.
+   * @throws DatastreamRuntimeException if a worker failed
+   */
+  void submit(ConsumerRecords<?, ?> records, Instant readTime, long readTimeInNanos) throws InterruptedException {
+    checkFailure();
+    long blockedMs = 0;
+    for (TopicPartition topicPartition : records.partitions()) {
+      if (_pendingRewinds.containsKey(topicPartition)) {
+        LOG.info("Dropping the polled records of {} until it is rewound", topicPartition);
+        continue;
+      }
+      PartitionBatch batch =
+          new PartitionBatch(topicPartition, records.records(topicPartition), readTime, readTimeInNanos);
+      BlockingQueue<PartitionBatch> queue = _queues.get(Math.floorMod(topicPartition.hashCode(), _queues.size()));
+      _outstandingBatches.incrementAndGet();
+      if (!queue.offer(batch)) {
+        long start = System.currentTimeMillis();
+        while (!queue.offer(batch, WAIT_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+          if (_closed || _failure.get() != null) {
+            batchDone();
+            checkFailure();
+            return;
+          }
+        }
+        blockedMs += System.currentTimeMillis() - start;
+      }
+    }
+    _handOffBlockedMs.update(blockedMs);
+  }
+
+  /**
+   * Record that the partition must be rewound to its last checkpoint, and drop its records until it is. Called by the
+   * workers, which cannot use the consumer themselves.
+   * @param topicPartition the partition to rewind
+   * @param exception the exception which caused the rewind, or null if the partition was paused
+   */
+  void requestRewind(TopicPartition topicPartition, Exception exception) {
+    _pendingRewinds.merge(topicPartition, Optional.ofNullable(exception),
+        (previous, current) -> previous.isPresent() ? previous : current);
+  }
+
+  /**
+   * Check whether any partition is waiting to be rewound
+   */
+  boolean hasPendingRewinds() {
+    return !_pendingRewinds.isEmpty();
+  }
+
+  /**
+   * Get and clear the partitions to rewind. Must only be called once the pipeline is idle, and the rewinds performed
+   * before handing more records off.
+   * @return the partitions to rewind, with the exception which caused the rewind if any
+   */
+  Map<TopicPartition, Optional<Exception>> drainPendingRewinds() {
+    Map<TopicPartition, Optional<Exception>> rewinds = new HashMap<>(_pendingRewinds);
+    _pendingRewinds.keySet().removeAll(rewinds.keySet());
+    return Collections.unmodifiableMap(rewinds);
+  }
+
+  /**
+   * Wait until all the records handed off have been processed
+   * @throws DatastreamRuntimeException if a worker failed
+   */
+  void awaitIdle() throws InterruptedException {
+    _idleLock.lock();
+    try {
+      while (_outstandingBatches.get() > 0 && !_closed) {
+        _idle.await(WAIT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+      }
+    } finally {
+      _idleLock.unlock();
+    }
+    checkFailure();
+  }
+
+  /**
+   * Get the number of partition batches queued or being processed
+   */
+  int getOutstandingBatches() {
+    return _outstandingBatches.get();
+  }
+
+  /**
+   * Stop the workers, dropping the batches not processed yet, and unregister the metrics
+   */
+  void close() {
+    _closed = true;
+    _workers.forEach(Thread::interrupt);
+    for (Thread worker : _workers) {
+      try {
+        worker.join(WAIT_INTERVAL_MS * 10);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+    signalIdle();
+    DynamicMetricsManager.getInstance().unregisterMetric(_metricsPrefix, _metricsKey, PIPELINE_QUEUED_BATCHES);
+  }
+
+  private void runWorker(BlockingQueue<PartitionBatch> queue) {
+    while (!_closed) {
+      PartitionBatch batch;
+      try {
+        batch = queue.poll(WAIT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        break;
+      }
+      if (batch == null) {
+        continue;
+      }
+      try {
+        // once a rewind is requested for the partition its later records must not be sent, to keep them in order
+        if (_failure.get() == null && !_pendingRewinds.containsKey(batch._topicPartition)) {
+          _handler.process(batch._topicPartition, batch._records, batch._readTime, batch._readTimeInNanos);
+        }
+      } catch (Exception e) {
+        LOG.error("Pipeline worker failed processing the records of {}", batch._topicPartition, e);
+        _failure.compareAndSet(null, e);
+      } finally {
+        batchDone();
+      }
+    }
+  }
+
+  private void batchDone() {
+    if (_outstandingBatches.decrementAndGet() == 0) {
+      signalIdle();
+    }
+  }
+
+  private void signalIdle() {
+    _idleLock.lock();
+    try {
+      _idle.signalAll();
+    } finally {
+      _idleLock.unlock();
+    }
+  }
+
+  private void checkFailure() {
+    Exception failure = _failure.get();
+    if (failure != null) {
+      throw new DatastreamRuntimeException("Pipeline worker failed", failure);
+    }
+  }
+
+  /**
+   * Get the metrics of the pipeline
+   * @param prefix prefix of the metrics of the task, including its key regex
+   */
+  static List<BrooklinMetricInfo> getMetricInfos(String prefix) {
+    List<BrooklinMetricInfo> metrics = new ArrayList<>();
+    metrics.add(new BrooklinMeterInfo(prefix + PIPELINE_OVERLAPPED_POLL_RATE));
+    metrics.add(new BrooklinHistogramInfo(prefix + PIPELINE_HANDOFF_BLOCKED_MS));
+    metrics.add(new BrooklinGaugeInfo(prefix + PIPELINE_QUEUED_BATCHES));
+    return metrics;
+  }
+
+  private static final class PartitionBatch {
+    private final TopicPartition _topicPartition;
+    private final List<? extends ConsumerRecord<?, ?>> _records;
+    private final Instant _readTime;
+    private final long _readTimeInNanos;
+
+    PartitionBatch(TopicPartition topicPartition, List<? extends ConsumerRecord<?, ?>> records, Instant readTime,
+        long readTimeInNanos) {
+      _topicPartition = topicPartition;
+      _records = records;
+      _readTime = readTime;
+      _readTimeInNanos = readTimeInNanos;
+    }
+  }
+}
@@ -0,0 +1,395 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.connectors.kafka;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.NoOffsetForPartitionException;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetOutOfRangeException;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.InterruptException;
+import org.apache.kafka.common.errors.TopicAuthorizationException;
+import org.apache.kafka.common.errors.WakeupException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.datastream.common.DatastreamThreadFactory;
+
+
+/**
+ * A Kafka consumer polled by its own thread on behalf of the {@link MultiplexedConsumer}s of several connector tasks
+ * consuming from the same cluster. Its assignment is the union of the (disjoint) assignments of its members, and the
+ * records it polls are handed to the member owning their partition.
+ *
+ * KafkaConsumer is not thread-safe, so every operation a member needs on the consumer (assign, seek) is queued as a
+ * command and run by the poll thread between two polls. The partitions paused on the consumer are the union of the
+ * partitions paused by the members, the partitions blocked on an error, and all the partitions of the members whose
+ * buffer is full.
+ */
+class SharedKafkaConsumer {
+  private static final Logger LOG = LoggerFactory.getLogger(SharedKafkaConsumer.class);
+  private static final Duration POLL_TIMEOUT = Duration.ofMillis(100);
+  private static final long POLL_ERROR_BACKOFF_MS = 100;
+
+  private final String _name;
+  private final Consumer<?, ?> _consumer;
+  private final Thread _pollThread;
+  private final BlockingQueue<FutureTask<?>> _commands = new LinkedBlockingQueue<>();
+  private final Set<MultiplexedConsumer> _members = ConcurrentHashMap.newKeySet();
+  private final AtomicBoolean _pausedPartitionsChanged = new AtomicBoolean();
+  private volatile boolean _shutdown;
+
+  // The member owning each partition of the consumer assignment. It's only accessed from the poll thread.
+  private final Map<TopicPartition, MultiplexedConsumer> _owners = new HashMap<>();
+
+  /**
+   * Constructor for SharedKafkaConsumer
+   * @param name the name of the consumer, also used for its poll thread
+   * @param consumer the consumer, which must not belong to a consumer group
+   */
+  SharedKafkaConsumer(String name, Consumer<?, ?> consumer) {
+    _name = name;
+    _consumer = consumer;
+    _pollThread = DatastreamThreadFactory.newDaemonThread(this::run, name);
+  }
+
+  /**
+   * Start the poll thread
+   */
+  void start() {
+    _pollThread.start();
+  }
+
+  /**
+   * Stop the poll thread and close the consumer. Pending commands fail.
+   */
+  void shutdown() {
+    _shutdown = true;
+    _consumer.wakeup();
+    LOG.info("SharedKafkaConsumer shutdown called for {}", _name);
+  }
+
+  String getName() {
+    return _name;
+  }
+
+  /**
+   * Check if the poll thread is stopped or stopping, in which case members can't be assigned partitions anymore
+   */
+  boolean isShutdown() {
+    return _shutdown;
+  }
+
+  Consumer<?, ?> getConsumer() {
+    return _consumer;
+  }
+
+  void addMember(MultiplexedConsumer member) {
+    _members.add(member);
+  }
+
+  int getNumMembers() {
+    return _members.size();
+  }
+
+  /**
+   * Check if any member other than {@code member} is assigned any of {@code partitions}
+   */
+  boolean overlaps(Collection<TopicPartition> partitions, MultiplexedConsumer member) {
+    return _members.stream()
+        .filter(other -> other != member)
+        .anyMatch(other -> partitions.stream().anyMatch(other.assignment()::contains));
+  }
+
+  /**
+   * Assign partitions to a member, in place of the partitions it was assigned so far
+   * @param member the member, which must have been added to this consumer
+   * @param partitions the partitions of the member, which no other member of this consumer is assigned
+   * @param committed the committed offsets of the member's partitions, to start its new partitions from
+   */
+  void assign(MultiplexedConsumer member, Set<TopicPartition> partitions, Map<TopicPartition, OffsetAndMetadata> committed) {
+    execute(() -> {
+      _owners.values().removeIf(owner -> owner == member);
+      Set<TopicPartition> added = new HashSet<>(partitions);
+      added.removeAll(_consumer.assignment());
+      partitions.forEach(tp -> _owners.put(tp, member));
+      _consumer.assign(new HashSet<>(_owners.keySet()));
+
+      Set<TopicPartition> withoutOffset = new HashSet<>();
+      for (TopicPartition tp : added) {
+        OffsetAndMetadata offset = committed.get(tp);
+        if (offset != null) {
+          _consumer.seek(tp, offset.offset());
+          member.resetPosition(tp, offset.offset());
+        } else {
+          withoutOffset.add(tp);
+        }
+      }
+      if (!withoutOffset.isEmpty()) {
+        resetPositions(withoutOffset, new NoOffsetForPartitionException(withoutOffset));
+      }
+      _pausedPartitionsChanged.set(true);
+      return null;
+    });
+  }
+
+  /**
+   * Remove a member and unassign its partitions
+   */
+  void removeMember(MultiplexedConsumer member) {
+    _members.remove(member);
+    if (!_shutdown) {
+      execute(() -> {
+        if (_owners.values().removeIf(owner -> owner == member)) {
+          _consumer.assign(new HashSet<>(_owners.keySet()));
+        }
+        return null;
+      });
+    }
+  }
+
+  /**
+   * Seek a partition of a member to an offset
+   */
+  void seek(MultiplexedConsumer member, TopicPartition tp, long offset) {
+    execute(() -> {
+      if (_owners.get(tp) == member) {
+        _consumer.seek(tp, offset);
+        member.resetPosition(tp, offset);
+      }
+      return null;
+    });
+  }
+
+  /**
+   * Seek partitions of a member to their beginning or end offsets
+   */
+  void seekToBeginningOrEnd(MultiplexedConsumer member, Collection<TopicPartition> partitions, boolean toBeginning) {
+    execute(() -> {
+      Set<TopicPartition> owned = new HashSet<>(partitions);
+      owned.removeIf(tp -> _owners.get(tp) != member);
+      if (toBeginning) {
+        _consumer.seekToBeginning(owned);
+      } else {
+        _consumer.seekToEnd(owned);
+      }
+      owned.forEach(tp -> member.resetPosition(tp, _consumer.position(tp)));
+      return null;
+    });
+  }
+
+  /**
+   * Have the poll thread re-compute the partitions paused on the consumer before its next poll
+   */
+  void onPausedPartitionsChanged() {
+    _pausedPartitionsChanged.set(true);
+  }
+
+  private <T> T execute(Callable<T> command) {
+    if (Thread.currentThread() == _pollThread) {
+      try {
+        return command.call();
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new KafkaException(e);
+      }
+    }
+    if (_shutdown) {
+      throw new KafkaException("Shared consumer " + _name + " is shut down");
+    }
+
+    // The command runs at the latest once the current poll times out. The consumer is not woken up, since a wakeup
+    // would also abort whatever blocking call the poll thread makes next, including other commands.
+    FutureTask<T> task = new FutureTask<>(command);
+    _commands.add(task);
+    if (_shutdown) {
+      // the poll thread may have exited, and cancelled the pending commands, before the task was queued
+      task.cancel(false);
+    }
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptException(e);
+    } catch (CancellationException e) {
+      throw new KafkaException("Shared consumer " + _name + " is shut down");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new KafkaException(e.getCause());
+    }
+  }
+
+  private void run() {
+    LOG.info("SharedKafkaConsumer {} started", _name);
+    Throwable cause = null;
+    try {
+      while (!_shutdown) {
+        try {
+          runOnce();
+        } catch (InterruptedException e) {
+          throw e;
+        } catch (Exception e) {
+          if (_shutdown) {
+            break;
+          }
+          // Let the tasks handle the error like they would for a dedicated consumer, and retry
+          LOG.warn("SharedKafkaConsumer " + _name + " failed to poll", e);
+          _members.forEach(member -> member.onPollError(e));
+          Thread.sleep(POLL_ERROR_BACKOFF_MS);
+        }
+      }
+    } catch (InterruptedException e) {
+      LOG.info("SharedKafkaConsumer {} interrupted", _name);
+      cause = e;
+    } catch (Throwable e) {
+      LOG.error("SharedKafkaConsumer " + _name + " failed", e);
+      cause = e;
+      throw e;
+    } finally {
+      _shutdown = true;
+      _commands.forEach(command -> command.cancel(false));
+      _commands.clear();
+      try {
+        _consumer.close();
+      } catch (Exception e) {
+        LOG.warn("SharedKafkaConsumer " + _name + " failed to close its consumer", e);
+      }
+      // Fail the tasks still consuming from this consumer, so that they restart on another one
+      KafkaException stopped = new KafkaException("Shared consumer " + _name + " stopped", cause);
+      _members.forEach(member -> member.onSharedConsumerStopped(stopped));
+      LOG.info("SharedKafkaConsumer {} stopped", _name);
+    }
+  }
+
+  private void runOnce() throws InterruptedException {
+    FutureTask<?> command;
+    while ((command = _commands.poll()) != null) {
+      command.run();
+    }
+    if (_pausedPartitionsChanged.getAndSet(false)) {
+      updatePausedPartitions();
+    }
+    if (_owners.isEmpty()) {
+      // Kafka rejects a poll if there is empty assignment
+      command = _commands.poll(POLL_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+      if (command != null) {
+        command.run();
+      }
+    } else {
+      poll();
+    }
+  }
+
+  /**
+   * Poll the consumer and hand the records to their owners. The errors which only concern some of the partitions are
+   * reported to their owners, and the others are thrown.
+   */
+  private void poll() {
+    try {
+      ConsumerRecords<?, ?> records = _consumer.poll(POLL_TIMEOUT);
+      for (TopicPartition tp : records.partitions()) {
+        MultiplexedConsumer owner = _owners.get(tp);
+        if (owner != null && owner.enqueue(tp, records.records(tp))) {
+          // the owner's buffer just filled up, so stop fetching its partitions until it drains
+          _pausedPartitionsChanged.set(true);
+        }
+      }
+    } catch (WakeupException e) {
+      LOG.info("SharedKafkaConsumer {} woken up", _name);
+    } catch (NoOffsetForPartitionException e) {
+      resetPositions(e.partitions(), e);
+    } catch (OffsetOutOfRangeException e) {
+      resetPositions(e.offsetOutOfRangePartitions().keySet(), e);
+    } catch (TopicAuthorizationException e) {
+      // Block the partitions of the unauthorized topics, so that the other members keep consuming, and let their owners
+      // handle the error like a dedicated consumer would
+      Set<TopicPartition> unauthorized = new HashSet<>();
+      _owners.keySet().stream().filter(tp -> e.unauthorizedTopics().contains(tp.topic())).forEach(unauthorized::add);
+      groupByOwner(unauthorized).forEach((owner, partitions) -> owner.block(partitions, e));
+      _pausedPartitionsChanged.set(true);
+    }
+  }
+
+  /**
+   * Reset the positions of partitions without a valid offset according to the auto.offset.reset strategy of their
+   * owner, since the consumer itself is created without one.
+   */
+  private void resetPositions(Collection<TopicPartition> partitions, KafkaException cause) {
+    groupByOwner(partitions).forEach((owner, ownedPartitions) -> {
+      String strategy = owner.getOffsetResetStrategy();
+      if (strategy.equalsIgnoreCase("earliest") || strategy.equalsIgnoreCase("latest")) {
+        LOG.info("Resetting partitions {} of {} to their {} offsets", ownedPartitions, owner, strategy);
+        if (strategy.equalsIgnoreCase("earliest")) {
+          _consumer.seekToBeginning(ownedPartitions);
+        } else {
+          _consumer.seekToEnd(ownedPartitions);
+        }
+        ownedPartitions.forEach(tp -> owner.resetPosition(tp, _consumer.position(tp)));
+      } else if (cause instanceof OffsetOutOfRangeException) {
+        Map<TopicPartition, Long> offsets = new HashMap<>(((OffsetOutOfRangeException) cause).offsetOutOfRangePartitions());
+        offsets.keySet().retainAll(ownedPartitions);
+        owner.block(ownedPartitions, new OffsetOutOfRangeException(offsets));
+      } else {
+        owner.block(ownedPartitions, new NoOffsetForPartitionException(ownedPartitions));
+      }
+    });
+    _pausedPartitionsChanged.set(true);
+  }
+
+  private Map<MultiplexedConsumer, Set<TopicPartition>> groupByOwner(Collection<TopicPartition> partitions) {
+    Map<MultiplexedConsumer, Set<TopicPartition>> partitionsByOwner = new HashMap<>();
+    for (TopicPartition tp : partitions) {
+      MultiplexedConsumer owner = _owners.get(tp);
+      if (owner != null) {
+        partitionsByOwner.computeIfAbsent(owner, k -> new HashSet<>()).add(tp);
+      }
+    }
+    return partitionsByOwner;
+  }
+
+  private void updatePausedPartitions() {
+    Set<TopicPartition> paused = new HashSet<>();
+    _members.forEach(member -> member.collectPausedPartitions(paused));
+    paused.retainAll(_owners.keySet());
+
+    Set<TopicPartition> currentPaused = _consumer.paused();
+    Set<TopicPartition> toResume = new HashSet<>(currentPaused);
+    toResume.removeAll(paused);
+    paused.removeAll(currentPaused);
+    if (!toResume.isEmpty()) {
+      _consumer.resume(toResume);
+    }
+    if (!paused.isEmpty()) {
+      _consumer.pause(paused);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return _name;
+  }
+}
@@ -0,0 +1,234 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.connectors.kafka.mirrormaker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.datastream.common.DatastreamThreadFactory;
+
+
+/**
+ * KafkaClusterMetadataCache periodically fetches the topic partitions of one Kafka cluster, with a single consumer,
+ * and matches them against the topic patterns of all its subscribers. Subscribers are only notified when the
+ * partitions matching their pattern change, and patterns are only evaluated again when the partitions of the cluster
+ * change, so the cost of partition discovery grows with the number of source clusters rather than the number of
+ * datastreams mirroring from them.
+ */
+class KafkaClusterMetadataCache {
+  private static final Logger LOG = LoggerFactory.getLogger(KafkaClusterMetadataCache.class);
+
+  /**
+   * Subscriber to the partitions of a cluster matching a topic pattern
+   */
+  interface Subscriber {
+    /**
+     * The pattern the topics of interest to this subscriber must match
+     */
+    Pattern getTopicPattern();
+
+    /**
+     * Called from the fetch thread of the cache whenever the partitions matching the topic pattern change
+     * @param partitions the sorted partitions, formatted as in {@link TopicPartition#toString()}
+     */
+    void onPartitionsChanged(List<String> partitions);
+
+    /**
+     * Called from the fetch thread of the cache when the partitions of the cluster could not be fetched
+     */
+    void onFetchError(Throwable t);
+  }
+
+  private final String _bootstrapServers;
+  private final Supplier<Consumer<?, ?>> _consumerSupplier;
+  private final long _fetchIntervalMs;
+  private final Map<String, SubscriberState> _subscribers = new ConcurrentHashMap<>();
+  private final Lock _lock = new ReentrantLock();
+  private final Condition _wakeUp = _lock.newCondition();
+  private final Thread _fetchThread;
+
+  // Partition ids by topic, as of the last successful fetch. It's replaced only when the partitions change, so that
+  // subscribers can tell if they have seen it already by its identity.
+  private volatile Map<String, List<Integer>> _snapshot;
+  private volatile boolean _shutdown;
+
+  // Set, under _lock, when a subscriber is added, to have the fetch thread notify it without waiting for the next fetch
+  private boolean _hasNewSubscribers;
+
+  /**
+   * Constructor for KafkaClusterMetadataCache
+   * @param bootstrapServers the brokers of the cluster
+   * @param consumerSupplier supplier of the consumer used to fetch the partitions of the cluster
+   * @param fetchIntervalMs how often the partitions are fetched
+   */
+  KafkaClusterMetadataCache(String bootstrapServers, Supplier<Consumer<?, ?>> consumerSupplier, long fetchIntervalMs) {
+    _bootstrapServers = bootstrapServers;
+    _consumerSupplier = consumerSupplier;
+    _fetchIntervalMs = fetchIntervalMs;
+    _fetchThread = DatastreamThreadFactory.newDaemonThread(this::run, "KafkaClusterMetadataCache-" + bootstrapServers);
+  }
+
+  /**
+   * Start fetching the partitions of the cluster
+   */
+  void start() {
+    _fetchThread.start();
+  }
+
+  /**
+   * Stop fetching the partitions of the cluster. Subscribers are not notified anymore.
+   */
+  void shutdown() {
+    _shutdown = true;
+    _fetchThread.interrupt();
+    LOG.info("KafkaClusterMetadataCache shutdown called for {}", _bootstrapServers);
+  }
+
+  /**
+   * Add a subscriber, which is notified of its partitions right away if they have been fetched already
+   * @param name the unique name of the subscriber
+   * @param subscriber the subscriber
+   */
+  void subscribe(String name, Subscriber subscriber) {
+    _subscribers.put(name, new SubscriberState(subscriber));
+    _lock.lock();
+    try {
+      _hasNewSubscribers = true;
+      _wakeUp.signalAll();
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  /**
+   * Remove a subscriber
+   * @param name the name the subscriber was added with
+   * @return true if there are no subscribers left
+   */
+  boolean unsubscribe(String name) {
+    _subscribers.remove(name);
+    return _subscribers.isEmpty();
+  }
+
+  private void run() {
+    LOG.info("KafkaClusterMetadataCache for {} started", _bootstrapServers);
+    Consumer<?, ?> consumer = _consumerSupplier.get();
+    try {
+      long nextFetchMs = 0;
+      while (!_shutdown) {
+        try {
+          if (System.currentTimeMillis() >= nextFetchMs) {
+            nextFetchMs = System.currentTimeMillis() + _fetchIntervalMs;
+            fetchPartitions(consumer);
+          }
+          notifySubscribers();
+        } catch (Throwable t) {
+          if (_shutdown) {
+            break;
+          }
+          // If the broker goes down, the consumer will receive an exception. However, there is no need to
+          // re-initiate the consumer when the broker comes back. Kafka consumer will automatically reconnect.
+          LOG.warn("Failed to fetch the partitions of " + _bootstrapServers, t);
+          _subscribers.values().forEach(state -> state._subscriber.onFetchError(t));
+        }
+        awaitNextFetch(nextFetchMs);
+      }
+    } catch (InterruptedException e) {
+      LOG.info("KafkaClusterMetadataCache for {} interrupted", _bootstrapServers);
+    } finally {
+      consumer.close();
+    }
+    LOG.info("KafkaClusterMetadataCache for {} stopped", _bootstrapServers);
+  }
+
+  private void awaitNextFetch(long nextFetchMs) throws InterruptedException {
+    _lock.lock();
+    try {
+      long waitMs = nextFetchMs - System.currentTimeMillis();
+      while (!_hasNewSubscribers && !_shutdown && waitMs > 0) {
+        _wakeUp.await(waitMs, TimeUnit.MILLISECONDS);
+        waitMs = nextFetchMs - System.currentTimeMillis();
+      }
+      _hasNewSubscribers = false;
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  private void fetchPartitions(Consumer<?, ?> consumer) {
+    // By default, Kafka applies default.api.timeout = 60s to listTopics()
+    Map<String, List<PartitionInfo>> topics = consumer.listTopics();
+    Map<String, List<Integer>> snapshot = new HashMap<>();
+    topics.forEach((topic, partitionInfos) -> {
+      List<Integer> partitions = new ArrayList<>(partitionInfos.size());
+      partitionInfos.forEach(partitionInfo -> partitions.add(partitionInfo.partition()));
+      Collections.sort(partitions);
+      snapshot.put(topic, partitions);
+    });
+
+    if (!snapshot.equals(_snapshot)) {
+      LOG.debug("Partitions of {} changed, topics: {}", _bootstrapServers, snapshot.keySet());
+      _snapshot = snapshot;
+    }
+  }
+
+  private void notifySubscribers() {
+    Map<String, List<Integer>> snapshot = _snapshot;
+    if (snapshot != null) {
+      _subscribers.values().forEach(state -> state.update(snapshot));
+    }
+  }
+
+  /**
+   * The partitions a subscriber was last notified of. It's only accessed from the fetch thread.
+   */
+  private static class SubscriberState {
+    private final Subscriber _subscriber;
+    private Map<String, List<Integer>> _lastSnapshot;
+    private List<String> _partitions = Collections.emptyList();
+
+    private SubscriberState(Subscriber subscriber) {
+      _subscriber = subscriber;
+    }
+
+    private void update(Map<String, List<Integer>> snapshot) {
+      if (snapshot == _lastSnapshot) {
+        return;
+      }
+      _lastSnapshot = snapshot;
+
+      Pattern topicPattern = _subscriber.getTopicPattern();
+      List<String> partitions = new ArrayList<>();
+      snapshot.forEach((topic, partitionIds) -> {
+        if (topicPattern.matcher(topic).matches()) {
+          partitionIds.forEach(partition -> partitions.add(new TopicPartition(topic, partition).toString()));
+        }
+      });
+      Collections.sort(partitions);
+
+      if (!partitions.equals(_partitions)) {
+        _partitions = partitions;
+        _subscriber.onPartitionsChanged(partitions);
+      }
+    }
+  }
+}
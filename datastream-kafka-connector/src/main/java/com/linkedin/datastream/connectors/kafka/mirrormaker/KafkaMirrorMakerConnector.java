@@ -20,11 +20,8 @@ import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 import java.util.stream.Collectors;
 
-import org.apache.commons.collections.ListUtils;
 import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
-import org.apache.kafka.common.PartitionInfo;
-import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,7 +34,6 @@ import com.linkedin.datastream.common.VerifiableProperties;
 import com.linkedin.datastream.connectors.kafka.AbstractKafkaBasedConnectorTask;
 import com.linkedin.datastream.connectors.kafka.AbstractKafkaConnector;
 import com.linkedin.datastream.connectors.kafka.KafkaBasedConnectorConfig;
-import com.linkedin.datastream.connectors.kafka.KafkaBrokerAddress;
 import com.linkedin.datastream.connectors.kafka.KafkaConnectionString;
 import com.linkedin.datastream.kafka.factory.KafkaConsumerFactory;
 import com.linkedin.datastream.kafka.factory.KafkaConsumerFactoryImpl;
@@ -75,13 +71,15 @@ public class KafkaMirrorMakerConnector extends AbstractKafkaConnector {
 
   private final long _partitionFetchIntervalMs;
   private final KafkaConsumerFactory<?, ?> _listenerConsumerFactory;
-  private final Map<String, PartitionDiscoveryThread> _partitionDiscoveryThreadMap = new ConcurrentHashMap<>();
+  // Partition discovery of each datastream group, by datastream group name
+  private final Map<String, PartitionDiscovery> _partitionDiscoveryMap = new ConcurrentHashMap<>();
+  // Metadata caches shared by the datastream groups mirroring from the same source cluster, by source broker list
+  private final Map<String, KafkaClusterMetadataCache> _clusterMetadataCaches = new ConcurrentHashMap<>();
   private final Properties _consumerProperties;
 
   private final boolean _enablePartitionAssignment;
 
   private java.util.function.Consumer<DatastreamGroup> _partitionChangeCallback;
-  private volatile boolean _shutdown;
 
   /**
    * Constructor for KafkaMirrorMakerConnector.
@@ -101,7 +99,6 @@ public class KafkaMirrorMakerConnector extends AbstractKafkaConnector {
     _consumerProperties = verifiableProperties.getDomainProperties(KafkaBasedConnectorConfig.DOMAIN_KAFKA_CONSUMER);
     _listenerConsumerFactory = new KafkaConsumerFactoryImpl();
     _enablePartitionAssignment = _config.getEnablePartitionAssignment();
-    _shutdown = false;
     if (_enablePartitionAssignment) {
       LOG.info("PartitionAssignment enabled for KafkaMirrorConnector");
     }
@@ -176,8 +173,9 @@ public class KafkaMirrorMakerConnector extends AbstractKafkaConnector {
   @Override
   public void stop() {
     super.stop();
-    _shutdown = true;
-    _partitionDiscoveryThreadMap.values().forEach(PartitionDiscoveryThread::shutdown);
+    _partitionDiscoveryMap.values().forEach(PartitionDiscovery::shutdown);
+    _clusterMetadataCaches.values().forEach(KafkaClusterMetadataCache::shutdown);
+    _clusterMetadataCaches.clear();
   }
 
   /**
@@ -188,10 +186,10 @@ public class KafkaMirrorMakerConnector extends AbstractKafkaConnector {
   @Override
   public Map<String, Optional<DatastreamGroupPartitionsMetadata>> getDatastreamPartitions() {
     Map<String, Optional<DatastreamGroupPartitionsMetadata>> datastreams = new HashMap<>();
-    _partitionDiscoveryThreadMap.forEach((s, partitionDiscoveryThread) -> {
-      if (partitionDiscoveryThread.isInitialized()) {
-        datastreams.put(s, Optional.of(new DatastreamGroupPartitionsMetadata(partitionDiscoveryThread.getDatastreamGroup(),
-            partitionDiscoveryThread.getSubscribedPartitions())));
+    _partitionDiscoveryMap.forEach((s, partitionDiscovery) -> {
+      if (partitionDiscovery.isInitialized()) {
+        datastreams.put(s, Optional.of(new DatastreamGroupPartitionsMetadata(partitionDiscovery.getDatastreamGroup(),
+            partitionDiscovery.getSubscribedPartitions())));
       } else {
         datastreams.put(s, Optional.empty());
       }
@@ -218,27 +216,27 @@ public class KafkaMirrorMakerConnector extends AbstractKafkaConnector {
     }
 
     LOG.info("handleDatastream: original datastream groups: {}, received datastream group {}",
-        _partitionDiscoveryThreadMap.keySet(), datastreamGroups);
+        _partitionDiscoveryMap.keySet(), datastreamGroups);
 
     List<String> dgNames = datastreamGroups.stream().map(DatastreamGroup::getName).collect(Collectors.toList());
-    List<String> obsoleteDgs = new ArrayList<>(_partitionDiscoveryThreadMap.keySet());
+    List<String> obsoleteDgs = new ArrayList<>(_partitionDiscoveryMap.keySet());
     obsoleteDgs.removeAll(dgNames);
     for (String name : obsoleteDgs) {
-      Optional.ofNullable(_partitionDiscoveryThreadMap.remove(name)).ifPresent(PartitionDiscoveryThread::shutdown);
+      Optional.ofNullable(_partitionDiscoveryMap.remove(name)).ifPresent(PartitionDiscovery::shutdown);
     }
 
     datastreamGroups.forEach(datastreamGroup -> {
       String datastreamGroupName = datastreamGroup.getName();
-      PartitionDiscoveryThread partitionDiscoveryThread;
-      if (!_partitionDiscoveryThreadMap.containsKey(datastreamGroupName)) {
-        partitionDiscoveryThread = new PartitionDiscoveryThread(datastreamGroup);
-        partitionDiscoveryThread.start();
-        _partitionDiscoveryThreadMap.put(datastreamGroupName, partitionDiscoveryThread);
-        LOG.info("PartitionDiscoveryThread for {} registered", datastreamGroupName);
+      PartitionDiscovery partitionDiscovery;
+      if (!_partitionDiscoveryMap.containsKey(datastreamGroupName)) {
+        partitionDiscovery = new PartitionDiscovery(datastreamGroup);
+        partitionDiscovery.start();
+        _partitionDiscoveryMap.put(datastreamGroupName, partitionDiscovery);
+        LOG.info("PartitionDiscovery for {} registered", datastreamGroupName);
       }
     });
 
-    LOG.info("handleDatastream: new datastream groups: {}", _partitionDiscoveryThreadMap.keySet());
+    LOG.info("handleDatastream: new datastream groups: {}", _partitionDiscoveryMap.keySet());
   }
 
   @Override
@@ -264,12 +262,58 @@ public class KafkaMirrorMakerConnector extends AbstractKafkaConnector {
     }
   }
 
+  private void subscribeToClusterMetadata(PartitionDiscovery partitionDiscovery) {
+    Datastream datastream = partitionDiscovery.getDatastreamGroup().getDatastreams().get(0);
+    String bootstrapServers = partitionDiscovery.getBootstrapServers();
+    // Subscribing within compute(), like unsubscribing within computeIfPresent(), keeps the last unsubscribe from
+    // shutting down the cache while it is being subscribed to
+    _clusterMetadataCaches.compute(bootstrapServers, (servers, cache) -> {
+      if (cache == null) {
+        // The consumer only lists topics, so it uses the group id of the datastream the cache is first created for
+        String groupId = _groupIdConstructor.constructGroupId(datastream) + DEST_CONSUMER_GROUP_ID_SUFFIX;
+        cache = new KafkaClusterMetadataCache(servers,
+            () -> createConsumer(_consumerProperties, servers, groupId), _partitionFetchIntervalMs);
+        cache.start();
+        LOG.info("KafkaClusterMetadataCache for {} created", servers);
+      }
+      cache.subscribe(partitionDiscovery.getDatastreamGroup().getName(), partitionDiscovery);
+      return cache;
+    });
+  }
+
+  private void unsubscribeFromClusterMetadata(PartitionDiscovery partitionDiscovery) {
+    String datastreamGroupName = partitionDiscovery.getDatastreamGroup().getName();
+    _clusterMetadataCaches.computeIfPresent(partitionDiscovery.getBootstrapServers(), (servers, cache) -> {
+      if (cache.unsubscribe(datastreamGroupName)) {
+        // no datastream group mirrors from this cluster anymore
+        cache.shutdown();
+        LOG.info("KafkaClusterMetadataCache for {} removed", servers);
+        return null;
+      }
+      return cache;
+    });
+  }
+
+  private Consumer<?, ?> createConsumer(Properties consumerProps, String bootstrapServers, String groupId) {
+    Properties properties = new Properties();
+    properties.putAll(consumerProps);
+    properties.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+    properties.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+    properties.putIfAbsent(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG,
+        ByteArrayDeserializer.class.getCanonicalName());
+    properties.putIfAbsent(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG,
+        ByteArrayDeserializer.class.getCanonicalName());
+    properties.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, CONSUMER_AUTO_OFFSET_RESET_CONFIG_LATEST);
+    return _listenerConsumerFactory.createConsumer(properties);
+  }
+
   /**
-   *  PartitionDiscoveryThread listens to Kafka partitions periodically using the _consumer.listTopic()
-   *  to fetch the latest subscribed partitions for a given datastreamGroup
+   *  PartitionDiscovery keeps track of the latest subscribed partitions for a given datastreamGroup. The partitions
+   *  are fetched by the {@link KafkaClusterMetadataCache} of the source cluster, which is shared by all the datastream
+   *  groups mirroring from that cluster.
    */
-  class PartitionDiscoveryThread extends Thread {
-    // The datastream group that this partitionDiscoveryThread is responsible to handle
+  class PartitionDiscovery implements KafkaClusterMetadataCache.Subscriber {
+    // The datastream group that this partitionDiscovery is responsible to handle
     private final DatastreamGroup _datastreamGroup;
 
     // The topic regex which covers the topics that belong to this datastream group
@@ -278,100 +322,68 @@ public class KafkaMirrorMakerConnector extends AbstractKafkaConnector {
     // The partitions covered by this datastresm group, fetched from Kafka
     private volatile List<String> _subscribedPartitions = Collections.emptyList();
 
-    // Indicates if this thread has already fetched the partitions info from Kafka
+    // Indicates if the partitions info has already been fetched from Kafka
     private volatile boolean _initialized;
 
-    private PartitionDiscoveryThread(DatastreamGroup datastreamGroup) {
+    // The brokers of the source cluster, which identify the metadata cache this partitionDiscovery subscribes to
+    private final String _bootstrapServers;
+
+    private PartitionDiscovery(DatastreamGroup datastreamGroup) {
       _datastreamGroup = datastreamGroup;
+      KafkaConnectionString connectionString =
+          KafkaConnectionString.valueOf(_datastreamGroup.getDatastreams().get(0).getSource().getConnectionString());
       // Compile topic pattern so that it contains the topic regex from source KafkaConnectionString
       // Example: source string:  kafka://HOST:9092/^test.*$, topic pattern: ^test.*$
-      _topicPattern = Pattern.compile(
-          KafkaConnectionString.valueOf(_datastreamGroup.getDatastreams().get(0).getSource().getConnectionString()).getTopicName());
+      _topicPattern = Pattern.compile(connectionString.getTopicName());
+      _bootstrapServers = connectionString.getBrokerListString();
       _initialized = false;
     }
 
-    private List<String> getPartitionsInfo(Consumer<?, ?> consumer) {
-      // By default, Kafka applied default.api.timeout = 60s to this _consumer.listTopics()
-      Map<String, List<PartitionInfo>> sourceTopics = consumer.listTopics();
-      List<TopicPartition> topicPartitions = sourceTopics.keySet().stream()
-          .filter(t1 -> _topicPattern.matcher(t1).matches())
-          .flatMap(t2 ->
-              sourceTopics.get(t2).stream().map(partitionInfo ->
-                  new TopicPartition(partitionInfo.topic(), partitionInfo.partition()))).collect(Collectors.toList());
-
-      return topicPartitions.stream().map(TopicPartition::toString).sorted().collect(Collectors.toList());
+    @Override
+    public Pattern getTopicPattern() {
+      return _topicPattern;
     }
 
-    private Consumer<?, ?> createConsumer(Properties consumerProps, String bootstrapServers, String groupId) {
-      Properties properties = new Properties();
-      properties.putAll(consumerProps);
-      properties.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-      properties.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
-      properties.putIfAbsent(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG,
-          ByteArrayDeserializer.class.getCanonicalName());
-      properties.putIfAbsent(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG,
-          ByteArrayDeserializer.class.getCanonicalName());
-      properties.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, CONSUMER_AUTO_OFFSET_RESET_CONFIG_LATEST);
-      return _listenerConsumerFactory.createConsumer(properties);
+    @Override
+    public void onPartitionsChanged(List<String> newPartitionInfo) {
+      String datastreamName = _datastreamGroup.getDatastreams().get(0).getName();
+      LOG.info("Get updated Partitions Info for {}, old Partitions Info: {}, new Partitions Info: {}",
+          datastreamName, _subscribedPartitions, newPartitionInfo);
+
+      Set<String> addedTopicPartitions = new HashSet<>(newPartitionInfo);
+      Set<String> removedTopicPartitions = new HashSet<>(_subscribedPartitions);
+      Set<String> topicPartitionIntersection = new HashSet<>(newPartitionInfo);
+      topicPartitionIntersection.retainAll(removedTopicPartitions);
+      addedTopicPartitions.removeAll(topicPartitionIntersection);
+      removedTopicPartitions.removeAll(topicPartitionIntersection);
+
+      LOG.info("TopicPartitions for {} that are to be added: {}", datastreamName, addedTopicPartitions);
+      LOG.info("TopicPartitions for {} that are to be removed: {}", datastreamName, removedTopicPartitions);
+
+      _subscribedPartitions = Collections.unmodifiableList(newPartitionInfo);
+      _initialized = true;
+      _partitionChangeCallback.accept(_datastreamGroup);
     }
 
     @Override
-    public void run() {
-      Datastream datastream = _datastreamGroup.getDatastreams().get(0);
-      String bootstrapValue = KafkaConnectionString.valueOf(datastream.getSource().getConnectionString())
-          .getBrokers().stream()
-          .map(KafkaBrokerAddress::toString)
-          .collect(Collectors.joining(KafkaConnectionString.BROKER_LIST_DELIMITER));
-      Consumer<?, ?> consumer = createConsumer(_consumerProperties, bootstrapValue,
-          _groupIdConstructor.constructGroupId(datastream) + DEST_CONSUMER_GROUP_ID_SUFFIX);
-
-      LOG.info("PartitionDiscoveryThread for {} started", _datastreamGroup.getName());
-      while (!isInterrupted() && !_shutdown) {
-        try {
-          List<String> newPartitionInfo = getPartitionsInfo(consumer);
-          LOG.debug("Fetch Partitions Info for {}, old Partitions Info: {}, new Partitions Info: {}",
-              datastream.getName(), _subscribedPartitions, newPartitionInfo);
-
-          if (!ListUtils.isEqualList(newPartitionInfo, _subscribedPartitions)) {
-            LOG.info("Get updated Partitions Info for {}, old Partitions Info: {}, new Partitions Info: {}",
-                datastream.getName(), _subscribedPartitions, newPartitionInfo);
-
-            Set<String> addedTopicPartitions = new HashSet<>(newPartitionInfo);
-            Set<String> removedTopicPartitions = new HashSet<>(_subscribedPartitions);
-            Set<String> topicPartitionIntersection = new HashSet<>(newPartitionInfo);
-            topicPartitionIntersection.retainAll(removedTopicPartitions);
-            addedTopicPartitions.removeAll(topicPartitionIntersection);
-            removedTopicPartitions.removeAll(topicPartitionIntersection);
-
-            LOG.info("TopicPartitions for {} that are to be added: {}", datastream.getName(), addedTopicPartitions);
-            LOG.info("TopicPartitions for {} that are to be removed: {}", datastream.getName(), removedTopicPartitions);
-
-            _subscribedPartitions = Collections.synchronizedList(newPartitionInfo);
-            _initialized = true;
-            _partitionChangeCallback.accept(_datastreamGroup);
-          }
-          Thread.sleep(_partitionFetchIntervalMs);
-        } catch (Throwable t) {
-          // If the Broker goes down, the consumer will receive an exception. However, there is no need to
-          // re-initiate the consumer when the Broker comes back. Kafka consumer will automatic reconnect
-          LOG.warn("Detected error for PartitionDiscoveryThread " + _datastreamGroup.getName() + ", ex: ", t);
-          _dynamicMetricsManager.createOrUpdateMeter(MODULE, _datastreamGroup.getName(), NUM_PARTITION_FETCH_ERRORS, 1);
-        }
-      }
-
-      if (consumer != null) {
-        consumer.close();
-      }
+    public void onFetchError(Throwable t) {
+      _dynamicMetricsManager.createOrUpdateMeter(MODULE, _datastreamGroup.getName(), NUM_PARTITION_FETCH_ERRORS, 1);
+    }
 
-      LOG.info("PartitionDiscoveryThread for {} stopped", _datastreamGroup.getName());
+    /**
+     * Start receiving the partitions of the source cluster
+     */
+    public void start() {
+      subscribeToClusterMetadata(this);
+      LOG.info("PartitionDiscovery for {} started", _datastreamGroup.getName());
     }
 
     /**
-     * Shutdown the PartitionDiscoveryThread
+     * Stop receiving the partitions of the source cluster
      */
     public void shutdown() {
-      this.interrupt();
-      LOG.info("PartitionDiscoveryThread Shutdown called for datastreamGroup {}", _datastreamGroup.getName());
+      unsubscribeFromClusterMetadata(this);
+      LOG.info("PartitionDiscovery Shutdown called for datastreamGroup {}", _datastreamGroup.getName());
     }
 
     public List<String> getSubscribedPartitions() {
@@ -385,5 +397,9 @@ public class KafkaMirrorMakerConnector extends AbstractKafkaConnector {
     public DatastreamGroup getDatastreamGroup() {
       return _datastreamGroup;
     }
+
+    String getBootstrapServers() {
+      return _bootstrapServers;
+    }
   }
 }
@@ -16,6 +16,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -33,8 +34,6 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.annotations.VisibleForTesting;
 
-import com.linkedin.datastream.common.BrooklinEnvelope;
-import com.linkedin.datastream.common.BrooklinEnvelopeMetadataConstants;
 import com.linkedin.datastream.common.DatastreamConstants;
 import com.linkedin.datastream.common.DatastreamMetadataConstants;
 import com.linkedin.datastream.common.DatastreamRuntimeException;
@@ -47,7 +46,9 @@ import com.linkedin.datastream.connectors.kafka.KafkaBasedConnectorConfig;
 import com.linkedin.datastream.connectors.kafka.KafkaBrokerAddress;
 import com.linkedin.datastream.connectors.kafka.KafkaConnectionString;
 import com.linkedin.datastream.connectors.kafka.KafkaDatastreamStatesResponse;
+import com.linkedin.datastream.connectors.kafka.MultiplexedConsumerPool;
 import com.linkedin.datastream.connectors.kafka.PausedSourcePartitionMetadata;
+import com.linkedin.datastream.kafka.KafkaMirrorProducerRecord;
 import com.linkedin.datastream.kafka.factory.KafkaConsumerFactory;
 import com.linkedin.datastream.metrics.BrooklinCounterInfo;
 import com.linkedin.datastream.metrics.BrooklinGaugeInfo;
@@ -56,10 +57,10 @@ import com.linkedin.datastream.metrics.BrooklinMetricInfo;
 import com.linkedin.datastream.metrics.DynamicMetricsManager;
 import com.linkedin.datastream.metrics.MetricsAware;
 import com.linkedin.datastream.server.DatastreamProducerRecord;
-import com.linkedin.datastream.server.DatastreamProducerRecordBuilder;
 import com.linkedin.datastream.server.DatastreamTask;
 import com.linkedin.datastream.server.FlushlessEventProducerHandler;
 import com.linkedin.datastream.server.NoOpTransportProviderAdminFactory;
+import com.linkedin.datastream.server.api.transport.DatastreamRecordMetadata;
 import com.linkedin.datastream.server.api.transport.SendCallback;
 
 
@@ -81,10 +82,6 @@ public class KafkaMirrorMakerConnectorTask extends AbstractKafkaBasedConnectorTa
   private static final Logger LOG = LoggerFactory.getLogger(KafkaMirrorMakerConnectorTask.class.getName());
   private static final String CLASS_NAME = KafkaMirrorMakerConnectorTask.class.getSimpleName();
 
-  private static final String KAFKA_ORIGIN_CLUSTER = "kafka-origin-cluster";
-  private static final String KAFKA_ORIGIN_TOPIC = "kafka-origin-topic";
-  private static final String KAFKA_ORIGIN_PARTITION = "kafka-origin-partition";
-  private static final String KAFKA_ORIGIN_OFFSET = "kafka-origin-offset";
   private static final Duration LOCK_ACQUIRE_TIMEOUT = Duration.ofMinutes(3);
   private static final String TASK_LOCK_ACQUIRE_ERROR_RATE = "taskLockAcquireErrorRate";
   private static final String DATASTREAM_NAME_BASED_CLIENT_ID_FORMAT = "%s-%s";
@@ -109,6 +106,8 @@ public class KafkaMirrorMakerConnectorTask extends AbstractKafkaBasedConnectorTa
   protected final String _connectorName;
 
   private final KafkaConsumerFactory<?, ?> _consumerFactory;
+  // pool of consumers shared with the other tasks of the connector, only used with partition assignment
+  private final MultiplexedConsumerPool _multiplexedConsumerPool;
   private final KafkaConnectionString _mirrorMakerSource;
 
   // Topic manager can be used to handle topic related tasks that mirror maker connector needs to do.
@@ -124,10 +123,13 @@ public class KafkaMirrorMakerConnectorTask extends AbstractKafkaBasedConnectorTa
   // among Kafka consumer client metrics for different datastreams.
   private final boolean _includeDatastreamNameInConsumerClientId;
   private final String _destinationTopicPrefix;
+  private final String _sourceBrokerList;
+  private final boolean _isNoOpTransportProvider;
+  // destination of each source topic; translate may run on the pipeline workers
+  private final Map<String, String> _destinationByTopic = new ConcurrentHashMap<>();
   private FlushlessEventProducerHandler<Long> _flushlessProducer = null;
   private boolean _flowControlEnabled = false;
-  private long _maxInFlightMessagesThreshold;
-  private long _minInFlightMessagesThreshold;
+  private PartitionFlowController _flowController = null;
   private int _flowControlTriggerCount = 0;
   private int _errorOnSendCallbackDuringShutdownCount = 0;
 
@@ -150,9 +152,16 @@ public class KafkaMirrorMakerConnectorTask extends AbstractKafkaBasedConnectorTa
     _connectorName = connectorName;
     _isIdentityMirroringEnabled = KafkaMirrorMakerDatastreamMetadata.isIdentityPartitioningEnabled(_datastream);
     _enablePartitionAssignment = config.getEnablePartitionAssignment();
+    if (config.getMultiplexedConsumerPool().isPresent() && !_enablePartitionAssignment) {
+      LOG.warn("Multiplexed consumers require partition assignment, task {} uses a dedicated consumer", task);
+    }
+    _multiplexedConsumerPool = _enablePartitionAssignment ? config.getMultiplexedConsumerPool().orElse(null) : null;
     _includeDatastreamNameInConsumerClientId = config.getIncludeDatastreamNameInConsumerClientId();
     _destinationTopicPrefix = task.getDatastreams().get(0).getMetadata()
         .getOrDefault(DatastreamMetadataConstants.DESTINATION_TOPIC_PREFIX, DEFAULT_DESTINATION_TOPIC_PREFIX);
+    _sourceBrokerList = _mirrorMakerSource.getBrokerListString();
+    _isNoOpTransportProvider = NoOpTransportProviderAdminFactory.NoOpTransportProvider.NAME
+        .equalsIgnoreCase(_datastreamTask.getTransportProviderName());
     _dynamicMetricsManager = DynamicMetricsManager.getInstance();
 
     if (_enablePartitionAssignment) {
@@ -165,13 +174,17 @@ public class KafkaMirrorMakerConnectorTask extends AbstractKafkaBasedConnectorTa
       _flushlessProducer = new FlushlessEventProducerHandler<Long>(_producer,
           config.getCallbackStatusStrategyFactory());
       _flowControlEnabled = config.getConnectorProps().getBoolean(CONFIG_FLOW_CONTROL_ENABLED, false);
-      _maxInFlightMessagesThreshold =
+      long maxInFlightMessagesThreshold =
           config.getConnectorProps().getLong(CONFIG_MAX_IN_FLIGHT_MSGS_THRESHOLD, DEFAULT_MAX_IN_FLIGHT_MSGS_THRESHOLD);
-      _minInFlightMessagesThreshold =
+      long minInFlightMessagesThreshold =
           config.getConnectorProps().getLong(CONFIG_MIN_IN_FLIGHT_MSGS_THRESHOLD, DEFAULT_MIN_IN_FLIGHT_MSGS_THRESHOLD);
+      if (_flowControlEnabled) {
+        _flowController = new PartitionFlowController(config.getConnectorProps(), maxInFlightMessagesThreshold,
+            minInFlightMessagesThreshold, generateMetricsPrefix(connectorName, CLASS_NAME), _datastreamName);
+      }
       LOG.info("Flushless mode is enabled for task: {}, with flowControlEnabled={}, minInFlightMessagesThreshold={}, "
               + "maxInFlightMessagesThreshold={}", task.getDatastreamTaskName(), _flowControlEnabled,
-          _minInFlightMessagesThreshold, _maxInFlightMessagesThreshold);
+          minInFlightMessagesThreshold, maxInFlightMessagesThreshold);
     }
 
     // create topic manager
@@ -212,6 +225,10 @@ public class KafkaMirrorMakerConnectorTask extends AbstractKafkaBasedConnectorTa
       properties.put(ConsumerConfig.CLIENT_ID_CONFIG,
           String.format(DATASTREAM_NAME_BASED_CLIENT_ID_FORMAT, clientId, _datastreamName));
     }
+    if (_multiplexedConsumerPool != null) {
+      LOG.info("Creating multiplexed Kafka consumer for task {} with properties {}", _datastreamTask, properties);
+      return _multiplexedConsumerPool.createConsumer(properties);
+    }
     LOG.info("Creating Kafka consumer for task {} with properties {}, include datastream name in client.id: {}",
         _datastreamTask, properties, _includeDatastreamNameInConsumerClientId);
     return _consumerFactory.createConsumer(properties);
@@ -243,36 +260,21 @@ public class KafkaMirrorMakerConnectorTask extends AbstractKafkaBasedConnectorTa
   protected DatastreamProducerRecord translate(ConsumerRecord<?, ?> fromKafka, Instant readTime) {
     long eventsSourceTimestamp =
         fromKafka.timestampType() == TimestampType.LOG_APPEND_TIME ? fromKafka.timestamp() : readTime.toEpochMilli();
-    HashMap<String, String> metadata = new HashMap<>();
-    metadata.put(KAFKA_ORIGIN_CLUSTER, _mirrorMakerSource.getBrokerListString());
     String topic = fromKafka.topic();
-    metadata.put(KAFKA_ORIGIN_TOPIC, topic);
     int partition = fromKafka.partition();
-    String partitionStr = String.valueOf(partition);
-    metadata.put(KAFKA_ORIGIN_PARTITION, partitionStr);
-    long offset = fromKafka.offset();
-    String offsetStr = String.valueOf(offset);
-    metadata.put(KAFKA_ORIGIN_OFFSET, offsetStr);
-    metadata.put(BrooklinEnvelopeMetadataConstants.EVENT_TIMESTAMP, String.valueOf(eventsSourceTimestamp));
-    metadata.put(BrooklinEnvelopeMetadataConstants.SOURCE_PARTITION, partitionStr);
-    BrooklinEnvelope envelope = new BrooklinEnvelope(fromKafka.key(), fromKafka.value(), null,
-        fromKafka.headers(), metadata);
-    DatastreamProducerRecordBuilder builder = new DatastreamProducerRecordBuilder();
-    builder.addEvent(envelope);
-    builder.setEventsSourceTimestamp(eventsSourceTimestamp);
-    builder.setSourceCheckpoint(new KafkaMirrorMakerCheckpoint(topic, partition, offset).toString());
-
-    if (!_datastreamTask.getTransportProviderName().
-        equalsIgnoreCase(NoOpTransportProviderAdminFactory.NoOpTransportProvider.NAME)) {
-      builder.setDestination(_datastreamTask.getDatastreamDestination()
-          .getConnectionString()
-          .replace(KafkaMirrorMakerConnector.MM_TOPIC_PLACEHOLDER,
-              StringUtils.isBlank(_destinationTopicPrefix) ? topic : _destinationTopicPrefix + topic));
-    }
-    if (_isIdentityMirroringEnabled) {
-      builder.setPartition(partition);
+    return new KafkaMirrorProducerRecord(_sourceBrokerList, topic, partition, fromKafka.offset(),
+        eventsSourceTimestamp, fromKafka.key(), fromKafka.value(), fromKafka.headers(), getDestination(topic),
+        _isIdentityMirroringEnabled ? partition : -1);
+  }
+
+  private String getDestination(String topic) {
+    if (_isNoOpTransportProvider) {
+      return null;
     }
-    return builder.build();
+    return _destinationByTopic.computeIfAbsent(topic, t -> _datastreamTask.getDatastreamDestination()
+        .getConnectionString()
+        .replace(KafkaMirrorMakerConnector.MM_TOPIC_PLACEHOLDER,
+            StringUtils.isBlank(_destinationTopicPrefix) ? t : _destinationTopicPrefix + t));
   }
 
   @Override
@@ -280,56 +282,114 @@ public class KafkaMirrorMakerConnectorTask extends AbstractKafkaBasedConnectorTa
       TopicPartition srcTopicPartition, int numBytes, SendCallback sendCallback) {
     if (_isFlushlessModeEnabled) {
       // The topic/partition from checkpoint is the same as srcTopicPartition
-      KafkaMirrorMakerCheckpoint sourceCheckpoint =
-          new KafkaMirrorMakerCheckpoint(datastreamProducerRecord.getCheckpoint());
-      String topic = sourceCheckpoint.getTopic();
-      int partition = sourceCheckpoint.getPartition();
+      String topic = srcTopicPartition.topic();
+      int partition = srcTopicPartition.partition();
+      long offset = getSourceOffset(datastreamProducerRecord);
+      PartitionFlowController.PartitionState flowControlState =
+          _flowControlEnabled ? _flowController.onSend(srcTopicPartition, numBytes) : null;
+      long sendTimeMs = System.currentTimeMillis();
       try {
-        _flushlessProducer.send(datastreamProducerRecord, topic, partition, sourceCheckpoint.getOffset(), ((metadata, exception) -> {
-          if (exception != null) {
-            String msg = String.format("Detected exception being thrown from flushless send callback for source "
-                + "topic-partition: %s with metadata: %s, exception: %s", srcTopicPartition, metadata, exception);
-            if (_shutdown) {
-              if (_errorOnSendCallbackDuringShutdownCount == 0) {
-                LOG.warn(msg);
-              } else {
-                LOG.debug(msg);
-              }
-              _errorOnSendCallbackDuringShutdownCount++;
-            } else {
-              LOG.warn(msg);
-            }
-            updateSendFailureTopicPartitionExceptionMap(srcTopicPartition, exception);
-          } else {
-            _consumerMetrics.updateBytesProcessedRate(numBytes);
+        _flushlessProducer.send(datastreamProducerRecord, topic, partition, offset, ((metadata, exception) -> {
+          if (flowControlState != null) {
+            _flowController.onCompletion(flowControlState, sendTimeMs, numBytes, exception);
           }
+          onFlushlessSendCompletion(srcTopicPartition, metadata, exception, numBytes);
           if (sendCallback != null) {
             sendCallback.onCompletion(metadata, exception);
           }
         }));
       } catch (Exception e) {
-        LOG.warn("Hit Exception while sending records for {}-{}, total inFlightMessageCount: {}, ackMessagesPastCheckpoint: {}",
-            topic, partition, _flushlessProducer.getInFlightMessagesCounts(), _flushlessProducer.getAckMessagesPastCheckpointCounts());
-        maybeCommitOffsets(_consumer, true);
+        onFlushlessSendException(topic, partition);
         throw e;
       }
-      if (_flowControlEnabled) {
-        TopicPartition tp = new TopicPartition(topic, partition);
-        long inFlightMessageCount = _flushlessProducer.getInFlightCount(topic, partition);
-        if (inFlightMessageCount > _maxInFlightMessagesThreshold) {
-          // add the partition to the pause list
-          LOG.warn(
-              "In-flight message count of {} for topic partition {} exceeded maxInFlightMessagesThreshold of {}. Will pause partition.",
-              inFlightMessageCount, tp, _maxInFlightMessagesThreshold);
-          _autoPausedSourcePartitions.put(tp, new PausedSourcePartitionMetadata(
-              () -> _flushlessProducer.getInFlightCount(topic, partition) <= _minInFlightMessagesThreshold,
-              PausedSourcePartitionMetadata.Reason.EXCEEDED_MAX_IN_FLIGHT_MSG_THRESHOLD));
-          _taskUpdates.add(DatastreamConstants.UpdateType.PAUSE_RESUME_PARTITIONS);
-          _flowControlTriggerCount++;
+      maybeFlowControlPartition(topic, partition);
+    } else {
+      super.sendDatastreamProducerRecord(datastreamProducerRecord, srcTopicPartition, numBytes, sendCallback);
+    }
+  }
+
+  @Override
+  protected void sendDatastreamProducerRecordBatch(List<DatastreamProducerRecord> batch,
+      TopicPartition srcTopicPartition, int[] numBytes) {
+    if (_isFlushlessModeEnabled) {
+      // The topic/partition from checkpoints is the same as srcTopicPartition
+      String topic = srcTopicPartition.topic();
+      int partition = srcTopicPartition.partition();
+      List<Long> sourceCheckpoints = new ArrayList<>(batch.size());
+      for (DatastreamProducerRecord record : batch) {
+        sourceCheckpoints.add(getSourceOffset(record));
+      }
+      PartitionFlowController.PartitionState flowControlState = _flowControlEnabled
+          ? _flowController.onSend(srcTopicPartition, PartitionFlowController.totalBytes(numBytes)) : null;
+      long sendTimeMs = System.currentTimeMillis();
+      try {
+        _flushlessProducer.sendBatch(batch, topic, partition, sourceCheckpoints, ((metadata, exception) -> {
+          int recordBytes = metadata != null && metadata.getBatchIndex() >= 0 ? numBytes[metadata.getBatchIndex()] : 0;
+          if (flowControlState != null) {
+            _flowController.onCompletion(flowControlState, sendTimeMs, recordBytes, exception);
+          }
+          onFlushlessSendCompletion(srcTopicPartition, metadata, exception, recordBytes);
+        }));
+      } catch (Exception e) {
+        onFlushlessSendException(topic, partition);
+        throw e;
+      }
+      maybeFlowControlPartition(topic, partition);
+    } else {
+      super.sendDatastreamProducerRecordBatch(batch, srcTopicPartition, numBytes);
+    }
+  }
+
+  private static long getSourceOffset(DatastreamProducerRecord record) {
+    return record instanceof KafkaMirrorProducerRecord ? ((KafkaMirrorProducerRecord) record).getSourceOffset()
+        : new KafkaMirrorMakerCheckpoint(record.getCheckpoint()).getOffset();
+  }
+
+  private void onFlushlessSendCompletion(TopicPartition srcTopicPartition, DatastreamRecordMetadata metadata,
+      Exception exception, int numBytes) {
+    if (exception != null) {
+      String msg = String.format("Detected exception being thrown from flushless send callback for source "
+          + "topic-partition: %s with metadata: %s, exception: %s", srcTopicPartition, metadata, exception);
+      if (_shutdown) {
+        if (_errorOnSendCallbackDuringShutdownCount == 0) {
+          LOG.warn(msg);
+        } else {
+          LOG.debug(msg);
         }
+        _errorOnSendCallbackDuringShutdownCount++;
+      } else {
+        LOG.warn(msg);
       }
+      updateSendFailureTopicPartitionExceptionMap(srcTopicPartition, exception);
     } else {
-      super.sendDatastreamProducerRecord(datastreamProducerRecord, srcTopicPartition, numBytes, sendCallback);
+      _consumerMetrics.updateBytesProcessedRate(numBytes);
+    }
+  }
+
+  private void onFlushlessSendException(String topic, int partition) {
+    LOG.warn("Hit Exception while sending records for {}-{}, total inFlightMessageCount: {}, ackMessagesPastCheckpoint: {}",
+        topic, partition, _flushlessProducer.getInFlightMessagesCounts(), _flushlessProducer.getAckMessagesPastCheckpointCounts());
+    // pipeline workers cannot use the consumer, the partition is rewound to its acked checkpoint by the task thread
+    if (!isPipelineWorkerThread()) {
+      maybeCommitOffsets(_consumer, true);
+    }
+  }
+
+  private void maybeFlowControlPartition(String topic, int partition) {
+    if (_flowControlEnabled) {
+      TopicPartition tp = new TopicPartition(topic, partition);
+      long inFlightMessageCount = _flushlessProducer.getInFlightCount(topic, partition);
+      if (_flowController.shouldPause(tp, inFlightMessageCount)) {
+        // add the partition to the pause list
+        LOG.warn("In-flight message count of {} ({} bytes) for topic partition {} exceeded its threshold of {} "
+                + "messages. Will pause partition.", inFlightMessageCount, _flowController.getInFlightBytes(tp), tp,
+            _flowController.getMaxInFlightMessages(tp));
+        _autoPausedSourcePartitions.put(tp, new PausedSourcePartitionMetadata(
+            () -> _flowController.shouldResume(tp, _flushlessProducer.getInFlightCount(topic, partition)),
+            PausedSourcePartitionMetadata.Reason.EXCEEDED_MAX_IN_FLIGHT_MSG_THRESHOLD));
+        _taskUpdates.add(DatastreamConstants.UpdateType.PAUSE_RESUME_PARTITIONS);
+        _flowControlTriggerCount++;
+      }
     }
   }
 
@@ -385,6 +445,9 @@ public class KafkaMirrorMakerConnectorTask extends AbstractKafkaBasedConnectorTa
     }
     super.onPartitionsRevoked(partitions);
     _topicManager.onPartitionsRevoked(partitions);
+    if (_flowControlEnabled) {
+      _flowController.remove(partitions);
+    }
   }
 
   private void commitSafeOffsets(Consumer<?, ?> consumer) {
@@ -404,6 +467,7 @@ public class KafkaMirrorMakerConnectorTask extends AbstractKafkaBasedConnectorTa
     boolean isTimeToCommit = System.currentTimeMillis() - _lastCommittedTime > _offsetCommitInterval;
     if (_isFlushlessModeEnabled) {
       if (hardCommit) { // hard commit (flush and commit checkpoints)
+        drainPipeline();
         LOG.info("Calling flush on the producer.");
         try {
           _datastreamTask.getEventProducer().flush();
@@ -414,6 +478,9 @@ public class KafkaMirrorMakerConnectorTask extends AbstractKafkaBasedConnectorTa
         }
         // clear the flushless producer state after flushing all messages and checkpointing
         _flushlessProducer.clear();
+        if (_flowControlEnabled) {
+          _flowController.reset();
+        }
       } else if (isTimeToCommit) { // soft commit (no flush, just commit checkpoints)
         commitSafeOffsets(consumer);
       }
@@ -435,6 +502,9 @@ public class KafkaMirrorMakerConnectorTask extends AbstractKafkaBasedConnectorTa
   @Override
   protected void postShutdownHook() {
     LOG.info("Total send callback errors during shutdown: {}", _errorOnSendCallbackDuringShutdownCount);
+    if (_flowControlEnabled) {
+      _flowController.close();
+    }
     if (_enablePartitionAssignment) {
       boolean resetInterrupted = false;
       try {
@@ -472,6 +542,7 @@ public class KafkaMirrorMakerConnectorTask extends AbstractKafkaBasedConnectorTa
         generateMetricsPrefix(connectorName, CLASS_NAME) + MetricsAware.KEY_REGEX));
     metrics.add(new BrooklinMeterInfo(generateMetricsPrefix(connectorName, CLASS_NAME) + MetricsAware.KEY_REGEX
         + TASK_LOCK_ACQUIRE_ERROR_RATE));
+    metrics.addAll(PartitionFlowController.getMetricInfos(generateMetricsPrefix(connectorName, CLASS_NAME)));
     // As topic manager is plugged in as part of task creation, one can't know
     // what topic manager is being used (and hence metrics topic manager emits), until task is initiated.
     // Hack is all topic managers should use same prefix for metrics they emit (TOPIC_MANAGER_METRICS_PREFIX)
@@ -524,6 +595,9 @@ public class KafkaMirrorMakerConnectorTask extends AbstractKafkaBasedConnectorTa
     } finally {
       if (_isFlushlessModeEnabled) {
         topicPartitions.forEach(topicPartition -> _flushlessProducer.clear(topicPartition.topic(), topicPartition.partition()));
+        if (_flowControlEnabled) {
+          _flowController.reset(topicPartitions);
+        }
       }
     }
   }
@@ -549,6 +623,11 @@ public class KafkaMirrorMakerConnectorTask extends AbstractKafkaBasedConnectorTa
     return _isFlushlessModeEnabled ? _flushlessProducer.getInFlightCount(source, partition) : 0;
   }
 
+  @VisibleForTesting
+  long getInFlightBytes(String source, int partition) {
+    return _flowControlEnabled ? _flowController.getInFlightBytes(new TopicPartition(source, partition)) : 0;
+  }
+
   @VisibleForTesting
   int getFlowControlTriggerCount() {
     return _flowControlTriggerCount;
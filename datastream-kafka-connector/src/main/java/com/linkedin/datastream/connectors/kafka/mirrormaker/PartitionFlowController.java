@@ -0,0 +1,309 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.connectors.kafka.mirrormaker;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.Validate;
+import org.apache.kafka.common.TopicPartition;
+
+import com.linkedin.datastream.common.VerifiableProperties;
+import com.linkedin.datastream.metrics.BrooklinGaugeInfo;
+import com.linkedin.datastream.metrics.BrooklinMeterInfo;
+import com.linkedin.datastream.metrics.BrooklinMetricInfo;
+import com.linkedin.datastream.metrics.DynamicMetricsManager;
+import com.linkedin.datastream.metrics.MeterHandle;
+import com.linkedin.datastream.metrics.MetricsAware;
+
+
+/**
+ * Decides when the source partitions of a flushless {@link KafkaMirrorMakerConnectorTask} should be paused because
+ * too much of their data is in flight, and when they can be resumed.
+ *
+ * A partition is paused once its in-flight message count exceeds the max in-flight messages threshold, or its
+ * in-flight bytes exceed the max in-flight bytes threshold (if set), and resumed once both are back under their
+ * respective min thresholds.
+ *
+ * With adaptive flow control, the thresholds of each partition are scaled by a limit factor that is adjusted with
+ * AIMD from the producer acks of the partition: it grows additively, by {@value #ADDITIVE_INCREASE} per window of
+ * acks received within the target ack latency, and is halved (at most once per target latency) when the smoothed ack
+ * latency exceeds the target or a send fails, which is how the producer buffer filling up or the destination slowing
+ * down shows up. Fast partitions can thus use more than the configured thresholds, while slow ones are throttled
+ * before they take over the producer buffer.
+ *
+ * {@link #onSend} and {@link #shouldPause} are called from the thread sending the partition (the task thread, or the
+ * pipeline worker owning the partition in pipelined mode), {@link #onCompletion} from the producer
+ * callback threads.
+ */
+class PartitionFlowController {
+
+  static final String CONFIG_ADAPTIVE_FLOW_CONTROL_ENABLED = "adaptiveFlowControlEnabled";
+  static final String CONFIG_MAX_IN_FLIGHT_BYTES_THRESHOLD = "maxInFlightBytesThreshold";
+  static final String CONFIG_MIN_IN_FLIGHT_BYTES_THRESHOLD = "minInFlightBytesThreshold";
+  static final String CONFIG_FLOW_CONTROL_TARGET_ACK_LATENCY_MS = "flowControlTargetAckLatencyMs";
+  static final String CONFIG_FLOW_CONTROL_MAX_LIMIT_FACTOR = "flowControlMaxLimitFactor";
+  static final String CONFIG_FLOW_CONTROL_MIN_LIMIT_FACTOR = "flowControlMinLimitFactor";
+
+  static final String IN_FLIGHT_BYTES = "inFlightBytes";
+  static final String FLOW_CONTROL_PAUSE_RATE = "flowControlPauseRate";
+  static final String FLOW_CONTROL_RESUME_RATE = "flowControlResumeRate";
+
+  private static final long DEFAULT_TARGET_ACK_LATENCY_MS = 1000;
+  private static final double DEFAULT_MAX_LIMIT_FACTOR = 4.0;
+  private static final double DEFAULT_MIN_LIMIT_FACTOR = 0.1;
+  private static final double ADDITIVE_INCREASE = 0.1;
+  private static final double MULTIPLICATIVE_DECREASE = 0.5;
+  private static final double LATENCY_SMOOTHING = 0.2;
+
+  private final String _metricsPrefix;
+  private final String _datastreamName;
+  private final DynamicMetricsManager _dynamicMetricsManager;
+  private final long _maxInFlightMessages;
+  private final long _minInFlightMessages;
+  private final long _maxInFlightBytes;
+  private final long _minInFlightBytes;
+  private final boolean _adaptive;
+  private final long _targetAckLatencyMs;
+  private final double _maxLimitFactor;
+  private final double _minLimitFactor;
+  private final MeterHandle _pauseRate;
+  private final MeterHandle _resumeRate;
+
+  private final Map<TopicPartition, PartitionState> _partitions = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor for PartitionFlowController
+   * @param connectorProps the connector properties holding the flow control configs
+   * @param maxInFlightMessages in-flight message count above which a partition is paused
+   * @param minInFlightMessages in-flight message count under which a paused partition is resumed
+   * @param metricsPrefix prefix of the metrics of the task
+   * @param datastreamName name of the datastream of the task
+   */
+  PartitionFlowController(VerifiableProperties connectorProps, long maxInFlightMessages, long minInFlightMessages,
+      String metricsPrefix, String datastreamName) {
+    _maxInFlightMessages = maxInFlightMessages;
+    _minInFlightMessages = minInFlightMessages;
+    _maxInFlightBytes = connectorProps.getLong(CONFIG_MAX_IN_FLIGHT_BYTES_THRESHOLD, 0);
+    _minInFlightBytes = connectorProps.getLong(CONFIG_MIN_IN_FLIGHT_BYTES_THRESHOLD,
+        _maxInFlightMessages > 0 ? _maxInFlightBytes * _minInFlightMessages / _maxInFlightMessages : 0);
+    _adaptive = connectorProps.getBoolean(CONFIG_ADAPTIVE_FLOW_CONTROL_ENABLED, false);
+    _targetAckLatencyMs = connectorProps.getLong(CONFIG_FLOW_CONTROL_TARGET_ACK_LATENCY_MS, DEFAULT_TARGET_ACK_LATENCY_MS);
+    _maxLimitFactor = connectorProps.getDouble(CONFIG_FLOW_CONTROL_MAX_LIMIT_FACTOR, DEFAULT_MAX_LIMIT_FACTOR);
+    _minLimitFactor = connectorProps.getDouble(CONFIG_FLOW_CONTROL_MIN_LIMIT_FACTOR, DEFAULT_MIN_LIMIT_FACTOR);
+    Validate.isTrue(_minInFlightMessages <= _maxInFlightMessages,
+        "minInFlightMessagesThreshold must not exceed maxInFlightMessagesThreshold");
+    Validate.isTrue(_minInFlightBytes <= _maxInFlightBytes || _maxInFlightBytes == 0,
+        "minInFlightBytesThreshold must not exceed maxInFlightBytesThreshold");
+    Validate.isTrue(_minLimitFactor > 0 && _minLimitFactor <= 1.0 && _maxLimitFactor >= 1.0,
+        "flowControlMinLimitFactor must be in (0, 1] and flowControlMaxLimitFactor at least 1");
+    Validate.isTrue(_targetAckLatencyMs > 0, "flowControlTargetAckLatencyMs must be positive");
+
+    _metricsPrefix = metricsPrefix;
+    _datastreamName = datastreamName;
+    _dynamicMetricsManager = DynamicMetricsManager.getInstance();
+    _pauseRate = _dynamicMetricsManager.meterHandle(metricsPrefix, datastreamName, FLOW_CONTROL_PAUSE_RATE);
+    _resumeRate = _dynamicMetricsManager.meterHandle(metricsPrefix, datastreamName, FLOW_CONTROL_RESUME_RATE);
+  }
+
+  /**
+   * Account for records of the partition being sent
+   * @return the state of the partition, to be passed to {@link #onCompletion} for each of the records
+   */
+  PartitionState onSend(TopicPartition tp, long numBytes) {
+    PartitionState state = _partitions.computeIfAbsent(tp, this::createState);
+    state._inFlightBytes.addAndGet(numBytes);
+    return state;
+  }
+
+  /**
+   * Account for the completion of the send of a record
+   * @param state the state returned by {@link #onSend} when the record was sent
+   * @param sendTimeMs when the record was sent
+   * @param numBytes the size of the record
+   * @param exception the send failure, or null if the record was acked
+   */
+  void onCompletion(PartitionState state, long sendTimeMs, long numBytes, Exception exception) {
+    state._inFlightBytes.addAndGet(-numBytes);
+    if (_adaptive) {
+      state.adjustLimitFactor(System.currentTimeMillis() - sendTimeMs, exception != null);
+    }
+  }
+
+  /**
+   * Check whether the partition should be paused given its in-flight message count. If so, the partition is recorded
+   * as paused until {@link #shouldResume} first returns true for it.
+   */
+  boolean shouldPause(TopicPartition tp, long inFlightMessages) {
+    PartitionState state = _partitions.get(tp);
+    if (state == null) {
+      return false;
+    }
+    double factor = state._limitFactor;
+    boolean pause = inFlightMessages > _maxInFlightMessages * factor
+        || (_maxInFlightBytes > 0 && state._inFlightBytes.get() > _maxInFlightBytes * factor);
+    if (pause && !state._paused) {
+      state._paused = true;
+      _pauseRate.mark();
+    }
+    return pause;
+  }
+
+  /**
+   * Check whether a partition paused by {@link #shouldPause} can be resumed given its in-flight message count
+   */
+  boolean shouldResume(TopicPartition tp, long inFlightMessages) {
+    PartitionState state = _partitions.get(tp);
+    if (state == null) {
+      return true;
+    }
+    double factor = state._limitFactor;
+    boolean resume = inFlightMessages <= _minInFlightMessages * factor
+        && (_maxInFlightBytes == 0 || state._inFlightBytes.get() <= _minInFlightBytes * factor);
+    if (resume && state._paused) {
+      state._paused = false;
+      _resumeRate.mark();
+    }
+    return resume;
+  }
+
+  /**
+   * Get the message count above which the partition is currently paused
+   */
+  long getMaxInFlightMessages(TopicPartition tp) {
+    return (long) (_maxInFlightMessages * getLimitFactor(tp));
+  }
+
+  /**
+   * Get the limit factor currently applied to the thresholds of the partition
+   */
+  double getLimitFactor(TopicPartition tp) {
+    PartitionState state = _partitions.get(tp);
+    return state == null ? 1.0 : state._limitFactor;
+  }
+
+  /**
+   * Get the number of bytes of the partition that are in flight
+   */
+  long getInFlightBytes(TopicPartition tp) {
+    PartitionState state = _partitions.get(tp);
+    return state == null ? 0 : state._inFlightBytes.get();
+  }
+
+  /**
+   * Forget the in-flight bytes of the partitions, e.g. after their in-flight messages are cleared on a rewind. Their
+   * limit factors are kept.
+   */
+  void reset(Collection<TopicPartition> partitions) {
+    for (TopicPartition tp : partitions) {
+      // completions of the records sent before the reset keep updating the previous state, which is discarded
+      _partitions.computeIfPresent(tp, (k, state) -> state.copyLimits());
+    }
+  }
+
+  /**
+   * Forget the in-flight bytes of all the partitions
+   */
+  void reset() {
+    reset(new ArrayList<>(_partitions.keySet()));
+  }
+
+  /**
+   * Drop the state and metrics of the partitions, e.g. when they are revoked from the task
+   */
+  void remove(Collection<TopicPartition> partitions) {
+    for (TopicPartition tp : partitions) {
+      if (_partitions.remove(tp) != null) {
+        _dynamicMetricsManager.unregisterMetric(_metricsPrefix, getMetricsKey(tp), IN_FLIGHT_BYTES);
+      }
+    }
+  }
+
+  /**
+   * Drop the state and metrics of all the partitions
+   */
+  void close() {
+    remove(new ArrayList<>(_partitions.keySet()));
+  }
+
+  /**
+   * Get the total size of a batch of records
+   */
+  static long totalBytes(int[] numBytes) {
+    long total = 0;
+    for (int n : numBytes) {
+      total += n;
+    }
+    return total;
+  }
+
+  private PartitionState createState(TopicPartition tp) {
+    PartitionState state = new PartitionState(1.0);
+    _dynamicMetricsManager.registerGauge(_metricsPrefix, getMetricsKey(tp), IN_FLIGHT_BYTES,
+        () -> getInFlightBytes(tp));
+    return state;
+  }
+
+  private String getMetricsKey(TopicPartition tp) {
+    return _datastreamName + "." + tp;
+  }
+
+  /**
+   * Get the metrics info for the flow control metrics under the given prefix
+   */
+  static List<BrooklinMetricInfo> getMetricInfos(String metricsPrefix) {
+    List<BrooklinMetricInfo> metrics = new ArrayList<>();
+    metrics.add(new BrooklinGaugeInfo(metricsPrefix + MetricsAware.KEY_REGEX + IN_FLIGHT_BYTES));
+    metrics.add(new BrooklinMeterInfo(metricsPrefix + MetricsAware.KEY_REGEX + FLOW_CONTROL_PAUSE_RATE));
+    metrics.add(new BrooklinMeterInfo(metricsPrefix + MetricsAware.KEY_REGEX + FLOW_CONTROL_RESUME_RATE));
+    return metrics;
+  }
+
+  /**
+   * Flow control state of a partition
+   */
+  final class PartitionState {
+    private final AtomicLong _inFlightBytes = new AtomicLong();
+    private volatile double _limitFactor;
+    private volatile boolean _paused = false;
+    // guarded by this
+    private double _smoothedLatencyMs = -1;
+    private long _lastDecreaseMs = 0;
+
+    private PartitionState(double limitFactor) {
+      _limitFactor = limitFactor;
+    }
+
+    private synchronized PartitionState copyLimits() {
+      PartitionState state = new PartitionState(_limitFactor);
+      state._paused = _paused;
+      state._smoothedLatencyMs = _smoothedLatencyMs;
+      state._lastDecreaseMs = _lastDecreaseMs;
+      return state;
+    }
+
+    private synchronized void adjustLimitFactor(long latencyMs, boolean failed) {
+      _smoothedLatencyMs = _smoothedLatencyMs < 0 ? latencyMs
+          : LATENCY_SMOOTHING * latencyMs + (1 - LATENCY_SMOOTHING) * _smoothedLatencyMs;
+      if (failed || _smoothedLatencyMs > _targetAckLatencyMs) {
+        long now = System.currentTimeMillis();
+        // decrease once per target latency, so that the acks of the records sent before a decrease don't compound it
+        if (now - _lastDecreaseMs >= _targetAckLatencyMs) {
+          _limitFactor = Math.max(_minLimitFactor, _limitFactor * MULTIPLICATIVE_DECREASE);
+          _lastDecreaseMs = now;
+        }
+      } else {
+        // spread the increase over a window of acks, i.e. the number of messages currently allowed in flight
+        double window = Math.max(1.0, _maxInFlightMessages * _limitFactor);
+        _limitFactor = Math.min(_maxLimitFactor, _limitFactor + ADDITIVE_INCREASE / window);
+      }
+    }
+  }
+}
@@ -0,0 +1,61 @@
+/**
+ *  Copyright 2021 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.connectors.kafka;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.record.TimestampType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.datastream.server.PartitionThroughputReport;
+
+
+/**
+ * Tests for {@link KafkaTopicPartitionTracker}
+ */
+public class TestKafkaTopicPartitionTracker {
+
+  @Test
+  public void testThroughputReport() {
+    KafkaTopicPartitionTracker tracker = new KafkaTopicPartitionTracker("group", "datastream");
+    TopicPartition busyPartition = new TopicPartition("topic", 0);
+    TopicPartition idlePartition = new TopicPartition("topic", 1);
+    tracker.onPartitionsAssigned(Arrays.asList(busyPartition, idlePartition));
+
+    // 10 records of 1KB each, half of them with a null key
+    List<ConsumerRecord<byte[], byte[]>> records = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      int keySize = i % 2 == 0 ? 24 : -1;
+      int valueSize = 1024 - Math.max(keySize, 0);
+      records.add(new ConsumerRecord<>("topic", 0, i, 0, TimestampType.CREATE_TIME, 0L, keySize, valueSize, null, null));
+    }
+    tracker.onPartitionsPolled(new ConsumerRecords<>(Collections.singletonMap(busyPartition, records)));
+
+    long now = System.currentTimeMillis() + 1000;
+    PartitionThroughputReport report = tracker.getThroughputReport(now);
+    Assert.assertNotNull(report);
+    Assert.assertEquals(report.getTimeStamp(), now);
+    double seconds = report.getWindowMs() / 1000.0;
+    Assert.assertEquals(report.getBytesInKBRates().get("topic-0"), 10 / seconds, 0.001);
+    Assert.assertEquals(report.getMessagesInRates().get("topic-0"), 10 / seconds, 0.001);
+    Assert.assertEquals(report.getBytesInKBRates().get("topic-1"), 0.0);
+    Assert.assertEquals(report.getMessagesInRates().get("topic-1"), 0.0);
+
+    // the counts start over with each report, and revoked partitions are no longer reported
+    tracker.onPartitionsRevoked(Collections.singletonList(idlePartition));
+    report = tracker.getThroughputReport(now + 1000);
+    Assert.assertEquals(report.getWindowMs(), 1000);
+    Assert.assertEquals(report.getBytesInKBRates(), Collections.singletonMap("topic-0", 0.0));
+    Assert.assertNull(tracker.getThroughputReport(now + 1000));
+  }
+}
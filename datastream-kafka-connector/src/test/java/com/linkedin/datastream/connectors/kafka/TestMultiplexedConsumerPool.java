@@ -0,0 +1,198 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.connectors.kafka;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.linkedin.datastream.kafka.factory.KafkaConsumerFactoryImpl;
+import com.linkedin.datastream.testutil.BaseKafkaZkTest;
+
+
+/**
+ * Tests for {@link MultiplexedConsumerPool}
+ */
+public class TestMultiplexedConsumerPool extends BaseKafkaZkTest {
+  private static final String TOPIC = "MultiplexedTopic";
+  private static final long POLL_TIMEOUT_MS = 30000;
+
+  private final TopicPartition _partition0 = new TopicPartition(TOPIC, 0);
+  private final TopicPartition _partition1 = new TopicPartition(TOPIC, 1);
+  private MultiplexedConsumerPool _pool;
+
+  @BeforeMethod
+  public void setup() {
+    createTopic(_adminClient, TOPIC, 2);
+    _pool = new MultiplexedConsumerPool("TestMultiplexedConsumer", new KafkaConsumerFactoryImpl(), 1, 100);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    _pool.shutdown();
+  }
+
+  private Consumer<?, ?> createConsumer(String groupId) {
+    Properties props = new Properties();
+    props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, _broker);
+    props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+    props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+    return _pool.createConsumer(props);
+  }
+
+  private void produceEvents(TopicPartition tp, int numEvents) {
+    Properties props = new Properties();
+    props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, _broker);
+    props.put(ProducerConfig.ACKS_CONFIG, "all");
+    props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getCanonicalName());
+    props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getCanonicalName());
+    try (Producer<byte[], byte[]> producer = new KafkaProducer<>(props)) {
+      for (int i = 0; i < numEvents; i++) {
+        producer.send(new ProducerRecord<>(tp.topic(), tp.partition(), null, ("value-" + i).getBytes(StandardCharsets.UTF_8)));
+      }
+      producer.flush();
+    }
+  }
+
+  private static List<ConsumerRecord<?, ?>> pollRecords(Consumer<?, ?> consumer, int numRecords) {
+    List<ConsumerRecord<?, ?>> records = new ArrayList<>();
+    long deadline = System.currentTimeMillis() + POLL_TIMEOUT_MS;
+    while (records.size() < numRecords && System.currentTimeMillis() < deadline) {
+      consumer.poll(Duration.ofMillis(100)).forEach(records::add);
+    }
+    return records;
+  }
+
+  @Test
+  public void testTasksShareConsumer() {
+    produceEvents(_partition0, 10);
+    produceEvents(_partition1, 20);
+
+    Consumer<?, ?> consumerA = createConsumer("groupA");
+    Consumer<?, ?> consumerB = createConsumer("groupB");
+    consumerA.assign(Collections.singleton(_partition0));
+    consumerB.assign(Collections.singleton(_partition1));
+    Assert.assertEquals(_pool.getNumSharedConsumers(), 1);
+
+    // each consumer only receives the records of its own partitions
+    List<ConsumerRecord<?, ?>> recordsA = pollRecords(consumerA, 10);
+    List<ConsumerRecord<?, ?>> recordsB = pollRecords(consumerB, 20);
+    Assert.assertEquals(recordsA.size(), 10);
+    Assert.assertEquals(recordsB.size(), 20);
+    Assert.assertTrue(recordsA.stream().allMatch(record -> record.partition() == 0));
+    Assert.assertTrue(recordsB.stream().allMatch(record -> record.partition() == 1));
+    Assert.assertEquals(consumerA.position(_partition0), 10);
+
+    // offsets are committed to the group of each consumer
+    consumerA.commitSync();
+    Assert.assertEquals(consumerA.committed(_partition0).offset(), 10);
+    Assert.assertNull(consumerB.committed(_partition0));
+
+    // rewinding a consumer doesn't affect the other one
+    consumerA.seek(_partition0, 5);
+    recordsA = pollRecords(consumerA, 5);
+    Assert.assertEquals(recordsA.size(), 5);
+    Assert.assertEquals(recordsA.get(0).offset(), 5);
+
+    // paused partitions are not delivered until resumed
+    consumerA.pause(Collections.singleton(_partition0));
+    produceEvents(_partition0, 5);
+    produceEvents(_partition1, 5);
+    Assert.assertEquals(pollRecords(consumerB, 5).size(), 5);
+    Assert.assertTrue(consumerA.poll(Duration.ofMillis(500)).isEmpty());
+    consumerA.resume(Collections.singleton(_partition0));
+    Assert.assertEquals(pollRecords(consumerA, 5).size(), 5);
+
+    consumerA.close();
+    Assert.assertEquals(_pool.getNumSharedConsumers(), 1);
+    consumerB.close();
+    Assert.assertEquals(_pool.getNumSharedConsumers(), 0);
+  }
+
+  @Test
+  public void testOverlappingAssignments() {
+    produceEvents(_partition0, 10);
+
+    // two consumers assigned the same partition can't share a consumer
+    Consumer<?, ?> consumerA = createConsumer("groupA");
+    Consumer<?, ?> consumerB = createConsumer("groupB");
+    consumerA.assign(Collections.singleton(_partition0));
+    consumerB.assign(Collections.singleton(_partition0));
+    Assert.assertEquals(_pool.getNumSharedConsumers(), 2);
+    Assert.assertEquals(pollRecords(consumerA, 10).size(), 10);
+    Assert.assertEquals(pollRecords(consumerB, 10).size(), 10);
+
+    // a consumer keeps its shared consumer as long as its partitions don't overlap with the other members'
+    consumerB.assign(Collections.singleton(_partition1));
+    Assert.assertEquals(_pool.getNumSharedConsumers(), 2);
+    consumerA.close();
+    Assert.assertEquals(_pool.getNumSharedConsumers(), 1);
+    consumerB.close();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testTasksFailWhenSharedConsumerDies() {
+    Consumer<byte[], byte[]> kafkaConsumer = Mockito.mock(Consumer.class);
+    Mockito.when(kafkaConsumer.poll(Mockito.any(Duration.class))).thenThrow(new AssertionError("test failure"));
+    MultiplexedConsumerPool pool = new MultiplexedConsumerPool("TestFailingConsumer", props -> kafkaConsumer, 1, 100);
+    try {
+      Properties props = new Properties();
+      props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, _broker);
+      props.put(ConsumerConfig.GROUP_ID_CONFIG, "groupA");
+      props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+      Consumer<?, ?> consumer = pool.createConsumer(props);
+      consumer.assign(Collections.singleton(_partition0));
+
+      // once the poll thread dies, every poll of its members fails
+      long deadline = System.currentTimeMillis() + POLL_TIMEOUT_MS;
+      boolean failed = false;
+      while (!failed && System.currentTimeMillis() < deadline) {
+        try {
+          consumer.poll(Duration.ofMillis(100));
+        } catch (KafkaException e) {
+          failed = true;
+        }
+      }
+      Assert.assertTrue(failed);
+      Assert.expectThrows(KafkaException.class, () -> consumer.poll(Duration.ofMillis(100)));
+
+      // assigning the partitions again moves the consumer to a new shared consumer
+      Mockito.doReturn(ConsumerRecords.empty()).when(kafkaConsumer).poll(Mockito.any(Duration.class));
+      consumer.assign(Collections.singleton(_partition0));
+      Assert.assertEquals(pool.getNumSharedConsumers(), 1);
+      Assert.assertTrue(consumer.poll(Duration.ofMillis(100)).isEmpty());
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test(expectedExceptions = UnsupportedOperationException.class)
+  public void testSubscribeUnsupported() {
+    createConsumer("groupA").subscribe(Pattern.compile(TOPIC));
+  }
+}
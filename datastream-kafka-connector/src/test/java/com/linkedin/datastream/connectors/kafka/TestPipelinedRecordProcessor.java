@@ -0,0 +1,172 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.connectors.kafka;
+
+import java.lang.reflect.Method;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+import com.linkedin.datastream.common.DatastreamRuntimeException;
+import com.linkedin.datastream.metrics.DynamicMetricsManager;
+
+
+/**
+ * Tests for {@link PipelinedRecordProcessor}
+ */
+public class TestPipelinedRecordProcessor {
+
+  private static final String METRICS_PREFIX = "TestPipelinedRecordProcessor";
+  private static final String METRICS_KEY = "datastream";
+
+  @BeforeMethod
+  public void setup(Method method) {
+    DynamicMetricsManager.createInstance(new MetricRegistry(), method.getName());
+  }
+
+  private static ConsumerRecords<byte[], byte[]> createRecords(int numPartitions, int numRecords, long startOffset) {
+    Map<TopicPartition, List<ConsumerRecord<byte[], byte[]>>> records = new HashMap<>();
+    for (int partition = 0; partition < numPartitions; partition++) {
+      List<ConsumerRecord<byte[], byte[]>> partitionRecords = new ArrayList<>();
+      for (long offset = startOffset; offset < startOffset + numRecords; offset++) {
+        partitionRecords.add(new ConsumerRecord<>("topic", partition, offset, null, null));
+      }
+      records.put(new TopicPartition("topic", partition), partitionRecords);
+    }
+    return new ConsumerRecords<>(records);
+  }
+
+  @Test
+  public void testPerPartitionOrderingAcrossLanes() throws Exception {
+    Map<TopicPartition, List<Long>> processed = new ConcurrentHashMap<>();
+    PipelinedRecordProcessor pipeline = new PipelinedRecordProcessor("task", 4, 2,
+        (tp, records, readTime, readTimeInNanos) -> {
+          List<Long> offsets = processed.computeIfAbsent(tp, k -> Collections.synchronizedList(new ArrayList<>()));
+          records.forEach(record -> offsets.add(record.offset()));
+        }, METRICS_PREFIX, METRICS_KEY);
+
+    for (int i = 0; i < 20; i++) {
+      pipeline.submit(createRecords(10, 5, i * 5), Instant.now(), System.nanoTime());
+    }
+    pipeline.awaitIdle();
+    Assert.assertEquals(pipeline.getOutstandingBatches(), 0);
+
+    Assert.assertEquals(processed.size(), 10);
+    for (List<Long> offsets : processed.values()) {
+      Assert.assertEquals(offsets.size(), 100);
+      for (int i = 0; i < offsets.size(); i++) {
+        Assert.assertEquals(offsets.get(i).longValue(), i);
+      }
+    }
+    pipeline.close();
+  }
+
+  @Test
+  public void testPendingRewindDropsRecords() throws Exception {
+    TopicPartition failing = new TopicPartition("topic", 0);
+    Map<TopicPartition, List<Long>> processed = new ConcurrentHashMap<>();
+    PipelinedRecordProcessor[] pipeline = new PipelinedRecordProcessor[1];
+    pipeline[0] = new PipelinedRecordProcessor("task", 2, 10, (tp, records, readTime, readTimeInNanos) -> {
+      if (tp.equals(failing) && records.get(0).offset() == 5) {
+        pipeline[0].requestRewind(tp, new IllegalStateException("send failed"));
+        return;
+      }
+      List<Long> offsets = processed.computeIfAbsent(tp, k -> Collections.synchronizedList(new ArrayList<>()));
+      records.forEach(record -> offsets.add(record.offset()));
+    }, METRICS_PREFIX, METRICS_KEY);
+
+    for (int i = 0; i < 4; i++) {
+      pipeline[0].submit(createRecords(2, 5, i * 5), Instant.now(), System.nanoTime());
+    }
+    pipeline[0].awaitIdle();
+
+    // the records of the failing partition after the failure are not processed until it is rewound
+    Assert.assertEquals(processed.get(failing).size(), 5);
+    Assert.assertEquals(processed.get(new TopicPartition("topic", 1)).size(), 20);
+    Assert.assertTrue(pipeline[0].hasPendingRewinds());
+    Map<TopicPartition, Optional<Exception>> rewinds = pipeline[0].drainPendingRewinds();
+    Assert.assertEquals(rewinds.keySet(), Collections.singleton(failing));
+    Assert.assertTrue(rewinds.get(failing).isPresent());
+    Assert.assertFalse(pipeline[0].hasPendingRewinds());
+
+    // once rewound, the partition is processed again
+    pipeline[0].submit(createRecords(1, 5, 20), Instant.now(), System.nanoTime());
+    pipeline[0].awaitIdle();
+    Assert.assertEquals(processed.get(failing).size(), 10);
+    pipeline[0].close();
+  }
+
+  @Test
+  public void testWorkerFailureIsPropagated() throws Exception {
+    PipelinedRecordProcessor pipeline = new PipelinedRecordProcessor("task", 1, 1,
+        (tp, records, readTime, readTimeInNanos) -> {
+          throw new IllegalStateException("translation failed");
+        }, METRICS_PREFIX, METRICS_KEY);
+    pipeline.submit(createRecords(1, 1, 0), Instant.now(), System.nanoTime());
+    Assert.assertThrows(DatastreamRuntimeException.class, pipeline::awaitIdle);
+    Assert.assertThrows(DatastreamRuntimeException.class,
+        () -> pipeline.submit(createRecords(1, 1, 1), Instant.now(), System.nanoTime()));
+    pipeline.close();
+  }
+
+  @Test
+  public void testOverlapMetrics() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    PipelinedRecordProcessor pipeline = new PipelinedRecordProcessor("task", 1, 1,
+        (tp, records, readTime, readTimeInNanos) -> release.await(), METRICS_PREFIX, METRICS_KEY);
+
+    pipeline.onPoll();
+    pipeline.submit(createRecords(1, 1, 0), Instant.now(), System.nanoTime());
+    pipeline.onPoll();
+    Thread releaser = new Thread(() -> {
+      try {
+        Thread.sleep(200);
+      } catch (InterruptedException e) {
+        return;
+      }
+      release.countDown();
+    });
+    releaser.start();
+    // the queue holds one batch besides the one being processed, the third one blocks the hand-off until released
+    pipeline.submit(createRecords(1, 1, 1), Instant.now(), System.nanoTime());
+    pipeline.submit(createRecords(1, 1, 2), Instant.now(), System.nanoTime());
+    pipeline.awaitIdle();
+    releaser.join(TimeUnit.SECONDS.toMillis(5));
+
+    DynamicMetricsManager metricsManager = DynamicMetricsManager.getInstance();
+    Meter overlappedPolls = metricsManager.getMetric(
+        MetricRegistry.name(METRICS_PREFIX, METRICS_KEY, PipelinedRecordProcessor.PIPELINE_OVERLAPPED_POLL_RATE));
+    Assert.assertEquals(overlappedPolls.getCount(), 1);
+    Histogram blockedMs = metricsManager.getMetric(
+        MetricRegistry.name(METRICS_PREFIX, METRICS_KEY, PipelinedRecordProcessor.PIPELINE_HANDOFF_BLOCKED_MS));
+    Assert.assertEquals(blockedMs.getCount(), 3);
+    Assert.assertTrue(blockedMs.getSnapshot().getMax() > 0);
+    Assert.assertNotNull(metricsManager.getMetric(
+        MetricRegistry.name(METRICS_PREFIX, METRICS_KEY, PipelinedRecordProcessor.PIPELINE_QUEUED_BATCHES)));
+
+    pipeline.close();
+    Assert.assertNull(metricsManager.getMetric(
+        MetricRegistry.name(METRICS_PREFIX, METRICS_KEY, PipelinedRecordProcessor.PIPELINE_QUEUED_BATCHES)));
+  }
+}
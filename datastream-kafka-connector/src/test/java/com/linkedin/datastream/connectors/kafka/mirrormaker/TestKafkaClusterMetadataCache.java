@@ -0,0 +1,156 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.connectors.kafka.mirrormaker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.linkedin.datastream.common.PollUtils;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+/**
+ * Tests for {@link KafkaClusterMetadataCache}
+ */
+public class TestKafkaClusterMetadataCache {
+  private static final long FETCH_INTERVAL_MS = 100;
+  private static final long POLL_PERIOD_MS = 10;
+  private static final long POLL_TIMEOUT_MS = 5000;
+
+  private Map<String, List<PartitionInfo>> _topics;
+  private AtomicInteger _numFetches;
+  private Consumer<?, ?> _consumer;
+  private KafkaClusterMetadataCache _cache;
+
+  @BeforeMethod
+  public void setup() {
+    _topics = new HashMap<>();
+    _numFetches = new AtomicInteger();
+    _consumer = mock(Consumer.class);
+    when(_consumer.listTopics()).thenAnswer(invocation -> {
+      _numFetches.incrementAndGet();
+      synchronized (_topics) {
+        return new HashMap<>(_topics);
+      }
+    });
+    _cache = new KafkaClusterMetadataCache("localhost:9092", () -> _consumer, FETCH_INTERVAL_MS);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    _cache.shutdown();
+  }
+
+  private void addTopic(String topic, int numPartitions) {
+    List<PartitionInfo> partitionInfos = new ArrayList<>();
+    for (int i = 0; i < numPartitions; i++) {
+      partitionInfos.add(new PartitionInfo(topic, i, null, null, null));
+    }
+    synchronized (_topics) {
+      _topics.put(topic, partitionInfos);
+    }
+  }
+
+  @Test
+  public void testSubscribersShareFetches() throws Exception {
+    addTopic("YummyPizza", 1);
+    addTopic("HealthySalad", 2);
+    TestSubscriber pizzaSubscriber = new TestSubscriber("\\w+Pizza");
+    TestSubscriber saladSubscriber = new TestSubscriber("\\w+Salad");
+    _cache.subscribe("pizza", pizzaSubscriber);
+    _cache.subscribe("salad", saladSubscriber);
+    _cache.start();
+
+    Assert.assertTrue(PollUtils.poll(() -> pizzaSubscriber._updates.size() == 1 && saladSubscriber._updates.size() == 1,
+        POLL_PERIOD_MS, POLL_TIMEOUT_MS));
+    Assert.assertEquals(pizzaSubscriber._updates.get(0), Arrays.asList("YummyPizza-0"));
+    Assert.assertEquals(saladSubscriber._updates.get(0), Arrays.asList("HealthySalad-0", "HealthySalad-1"));
+
+    // only the subscriber whose partitions changed is notified
+    addTopic("SaltyPizza", 2);
+    Assert.assertTrue(PollUtils.poll(() -> pizzaSubscriber._updates.size() == 2, POLL_PERIOD_MS, POLL_TIMEOUT_MS));
+    Assert.assertEquals(pizzaSubscriber._updates.get(1),
+        Arrays.asList("SaltyPizza-0", "SaltyPizza-1", "YummyPizza-0"));
+
+    // a new subscriber is notified from the cached partitions
+    TestSubscriber allSubscriber = new TestSubscriber(".*");
+    _cache.subscribe("all", allSubscriber);
+    Assert.assertTrue(PollUtils.poll(() -> allSubscriber._updates.size() == 1, POLL_PERIOD_MS, POLL_TIMEOUT_MS));
+
+    // a few more fetches of the same partitions don't notify anyone
+    int numFetches = _numFetches.get();
+    Assert.assertTrue(PollUtils.poll(() -> _numFetches.get() >= numFetches + 3, POLL_PERIOD_MS, POLL_TIMEOUT_MS));
+    Assert.assertEquals(pizzaSubscriber._updates.size(), 2);
+    Assert.assertEquals(saladSubscriber._updates.size(), 1);
+    Assert.assertEquals(allSubscriber._updates.size(), 1);
+
+    Assert.assertFalse(_cache.unsubscribe("pizza"));
+    Assert.assertFalse(_cache.unsubscribe("salad"));
+    Assert.assertTrue(_cache.unsubscribe("all"));
+  }
+
+  @Test
+  public void testFetchErrors() throws Exception {
+    when(_consumer.listTopics()).thenThrow(new RuntimeException("broker down"));
+    TestSubscriber subscriber = new TestSubscriber(".*");
+    _cache.subscribe("subscriber", subscriber);
+    _cache.start();
+
+    Assert.assertTrue(PollUtils.poll(() -> subscriber._numErrors.get() >= 2, POLL_PERIOD_MS, POLL_TIMEOUT_MS));
+    Assert.assertTrue(subscriber._updates.isEmpty());
+
+    _cache.shutdown();
+    Assert.assertTrue(PollUtils.poll(() -> {
+      try {
+        verify(_consumer).close();
+        return true;
+      } catch (Throwable t) {
+        return false;
+      }
+    }, POLL_PERIOD_MS, POLL_TIMEOUT_MS));
+  }
+
+  private static class TestSubscriber implements KafkaClusterMetadataCache.Subscriber {
+    private final Pattern _topicPattern;
+    private final List<List<String>> _updates = new CopyOnWriteArrayList<>();
+    private final AtomicInteger _numErrors = new AtomicInteger();
+
+    TestSubscriber(String topicRegex) {
+      _topicPattern = Pattern.compile(topicRegex);
+    }
+
+    @Override
+    public Pattern getTopicPattern() {
+      return _topicPattern;
+    }
+
+    @Override
+    public void onPartitionsChanged(List<String> partitions) {
+      _updates.add(partitions);
+    }
+
+    @Override
+    public void onFetchError(Throwable t) {
+      _numErrors.incrementAndGet();
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.connectors.kafka.mirrormaker;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Properties;
+
+import org.apache.kafka.common.TopicPartition;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+import com.linkedin.datastream.common.VerifiableProperties;
+import com.linkedin.datastream.metrics.DynamicMetricsManager;
+
+
+/**
+ * Tests for {@link PartitionFlowController}
+ */
+public class TestPartitionFlowController {
+
+  private static final String METRICS_PREFIX = "TestPartitionFlowController";
+  private static final String DATASTREAM = "datastream";
+  private static final TopicPartition TP = new TopicPartition("topic", 0);
+
+  @BeforeMethod
+  public void setup(Method method) {
+    DynamicMetricsManager.createInstance(new MetricRegistry(), method.getName());
+  }
+
+  private static PartitionFlowController createController(boolean adaptive, long maxBytes, long targetLatencyMs) {
+    Properties props = new Properties();
+    props.put(PartitionFlowController.CONFIG_ADAPTIVE_FLOW_CONTROL_ENABLED, String.valueOf(adaptive));
+    props.put(PartitionFlowController.CONFIG_MAX_IN_FLIGHT_BYTES_THRESHOLD, String.valueOf(maxBytes));
+    props.put(PartitionFlowController.CONFIG_FLOW_CONTROL_TARGET_ACK_LATENCY_MS, String.valueOf(targetLatencyMs));
+    return new PartitionFlowController(new VerifiableProperties(props), 100, 20, METRICS_PREFIX, DATASTREAM);
+  }
+
+  @Test
+  public void testFixedThresholds() {
+    PartitionFlowController controller = createController(false, 0, 1000);
+    controller.onSend(TP, 10);
+    Assert.assertFalse(controller.shouldPause(TP, 100));
+    Assert.assertTrue(controller.shouldPause(TP, 101));
+    Assert.assertFalse(controller.shouldResume(TP, 21));
+    Assert.assertTrue(controller.shouldResume(TP, 20));
+
+    MetricRegistry registry = DynamicMetricsManager.getInstance().getMetricRegistry();
+    String key = MetricRegistry.name(METRICS_PREFIX, DATASTREAM);
+    Assert.assertEquals(((Meter) registry.getMetrics().get(
+        MetricRegistry.name(key, PartitionFlowController.FLOW_CONTROL_PAUSE_RATE))).getCount(), 1);
+    Assert.assertEquals(((Meter) registry.getMetrics().get(
+        MetricRegistry.name(key, PartitionFlowController.FLOW_CONTROL_RESUME_RATE))).getCount(), 1);
+  }
+
+  @Test
+  public void testByteThresholds() {
+    PartitionFlowController controller = createController(false, 1000, 1000);
+    PartitionFlowController.PartitionState state = controller.onSend(TP, 600);
+    Assert.assertFalse(controller.shouldPause(TP, 1));
+    controller.onSend(TP, 600);
+    Assert.assertEquals(controller.getInFlightBytes(TP), 1200);
+    Assert.assertTrue(controller.shouldPause(TP, 2));
+    Assert.assertNotNull(DynamicMetricsManager.getInstance()
+        .getMetric(MetricRegistry.name(METRICS_PREFIX, DATASTREAM + "." + TP, PartitionFlowController.IN_FLIGHT_BYTES)));
+
+    // the resume threshold defaults to the same ratio as the message thresholds, i.e. 200 bytes
+    controller.onCompletion(state, System.currentTimeMillis(), 600, null);
+    Assert.assertFalse(controller.shouldResume(TP, 1));
+    controller.onCompletion(state, System.currentTimeMillis(), 500, null);
+    Assert.assertTrue(controller.shouldResume(TP, 1));
+
+    controller.remove(Collections.singletonList(TP));
+    Assert.assertEquals(controller.getInFlightBytes(TP), 0);
+    Assert.assertNull(DynamicMetricsManager.getInstance()
+        .getMetric(MetricRegistry.name(METRICS_PREFIX, DATASTREAM + "." + TP, PartitionFlowController.IN_FLIGHT_BYTES)));
+  }
+
+  @Test
+  public void testAdaptiveLimits() {
+    PartitionFlowController controller = createController(true, 0, 1000);
+    PartitionFlowController.PartitionState state = controller.onSend(TP, 0);
+    long now = System.currentTimeMillis();
+
+    // fast acks grow the limit additively
+    for (int i = 0; i < 1000; i++) {
+      controller.onCompletion(state, now, 0, null);
+    }
+    double grownFactor = controller.getLimitFactor(TP);
+    Assert.assertTrue(grownFactor > 1.5, "limit factor should have grown: " + grownFactor);
+    Assert.assertFalse(controller.shouldPause(TP, 120));
+
+    // slow acks shrink it multiplicatively, once per target latency
+    controller.onCompletion(state, now - 10_000, 0, null);
+    controller.onCompletion(state, now - 10_000, 0, null);
+    Assert.assertEquals(controller.getLimitFactor(TP), grownFactor / 2, 0.01);
+    Assert.assertTrue(controller.shouldPause(TP, controller.getMaxInFlightMessages(TP) + 1));
+
+    // the limits survive a reset of the in-flight state
+    controller.reset(Collections.singletonList(TP));
+    Assert.assertEquals(controller.getLimitFactor(TP), grownFactor / 2, 0.01);
+  }
+}
@@ -0,0 +1,153 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.kafka;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.apache.commons.lang3.Validate;
+
+import com.linkedin.datastream.common.BrooklinEnvelope;
+import com.linkedin.datastream.common.BrooklinEnvelopeMetadataConstants;
+import com.linkedin.datastream.server.DatastreamProducerRecord;
+
+
+/**
+ * {@link DatastreamProducerRecord} of a Kafka record which is mirrored as it is. It carries the source topic,
+ * partition, offset and timestamp as primitives, and the key, value and headers of the consumer record untouched, so
+ * that {@link KafkaTransportProvider} can produce it without translating it. The metadata of its event, which holds
+ * the same source information as strings, is only built if something asks for it.
+ *
+ * The checkpoint of the record is formatted as topic/partition/offset.
+ */
+public class KafkaMirrorProducerRecord extends DatastreamProducerRecord {
+
+  public static final String KAFKA_ORIGIN_CLUSTER = "kafka-origin-cluster";
+  public static final String KAFKA_ORIGIN_TOPIC = "kafka-origin-topic";
+  public static final String KAFKA_ORIGIN_PARTITION = "kafka-origin-partition";
+  public static final String KAFKA_ORIGIN_OFFSET = "kafka-origin-offset";
+
+  private static final String CHECKPOINT_DELIMITER = "/";
+
+  private final String _sourceTopic;
+  private final int _sourcePartition;
+  private final long _sourceOffset;
+  private final int _destinationPartition;
+
+  /**
+   * Construct a KafkaMirrorProducerRecord
+   * @param sourceCluster broker list of the source cluster
+   * @param sourceTopic source topic of the record
+   * @param sourcePartition source partition of the record
+   * @param sourceOffset offset of the record in its source partition
+   * @param eventsSourceTimestamp timestamp of the record in the source
+   * @param key key of the record, as consumed
+   * @param value value of the record, as consumed
+   * @param headers headers of the record, as consumed
+   * @param destination destination to produce the record to, or null for the destination of the datastream
+   * @param destinationPartition destination partition to produce the record to, or -1 to let the producer pick it
+   */
+  public KafkaMirrorProducerRecord(String sourceCluster, String sourceTopic, int sourcePartition, long sourceOffset,
+      long eventsSourceTimestamp, Object key, Object value, Object headers, String destination,
+      int destinationPartition) {
+    super(Collections.singletonList(
+        new MirrorEnvelope(key, value, headers, sourceCluster, sourceTopic, sourcePartition, sourceOffset,
+            eventsSourceTimestamp)),
+        destinationPartition >= 0 ? Optional.of(destinationPartition) : Optional.empty(), Optional.empty(),
+        Optional.ofNullable(destination),
+        sourceTopic + CHECKPOINT_DELIMITER + sourcePartition + CHECKPOINT_DELIMITER + sourceOffset,
+        eventsSourceTimestamp, false);
+    Validate.notNull(sourceTopic, "null source topic");
+    _sourceTopic = sourceTopic;
+    _sourcePartition = sourcePartition;
+    _sourceOffset = sourceOffset;
+    _destinationPartition = destinationPartition;
+  }
+
+  public String getSourceTopic() {
+    return _sourceTopic;
+  }
+
+  public int getSourcePartition() {
+    return _sourcePartition;
+  }
+
+  public long getSourceOffset() {
+    return _sourceOffset;
+  }
+
+  /**
+   * Get the destination partition, or -1 if the producer should pick it
+   */
+  public int getDestinationPartition() {
+    return _destinationPartition;
+  }
+
+  /**
+   * Event of a mirrored record, whose metadata is built from the source information on first use
+   */
+  private static final class MirrorEnvelope extends BrooklinEnvelope {
+    // placeholder for the metadata until it is built; compared by identity
+    private static final Map<String, String> LAZY_METADATA = Collections.unmodifiableMap(new HashMap<>());
+
+    private final String _sourceCluster;
+    private final String _sourceTopic;
+    private final int _sourcePartition;
+    private final long _sourceOffset;
+    private final long _eventTimestamp;
+
+    MirrorEnvelope(Object key, Object value, Object headers, String sourceCluster, String sourceTopic,
+        int sourcePartition, long sourceOffset, long eventTimestamp) {
+      super(key, value, null, headers, LAZY_METADATA);
+      _sourceCluster = sourceCluster;
+      _sourceTopic = sourceTopic;
+      _sourcePartition = sourcePartition;
+      _sourceOffset = sourceOffset;
+      _eventTimestamp = eventTimestamp;
+    }
+
+    @Override
+    public Map<String, String> getMetadata() {
+      Map<String, String> metadata = super.getMetadata();
+      if (metadata == LAZY_METADATA) {
+        String partition = String.valueOf(_sourcePartition);
+        metadata = new HashMap<>();
+        metadata.put(KAFKA_ORIGIN_CLUSTER, _sourceCluster);
+        metadata.put(KAFKA_ORIGIN_TOPIC, _sourceTopic);
+        metadata.put(KAFKA_ORIGIN_PARTITION, partition);
+        metadata.put(KAFKA_ORIGIN_OFFSET, String.valueOf(_sourceOffset));
+        metadata.put(BrooklinEnvelopeMetadataConstants.EVENT_TIMESTAMP, String.valueOf(_eventTimestamp));
+        metadata.put(BrooklinEnvelopeMetadataConstants.SOURCE_PARTITION, partition);
+        setMetadata(metadata);
+      }
+      return metadata;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      // the base class compares the metadata fields, which have to be built on both sides first
+      if (o instanceof MirrorEnvelope) {
+        ((MirrorEnvelope) o).getMetadata();
+      }
+      getMetadata();
+      return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+      getMetadata();
+      return super.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      getMetadata();
+      return super.toString();
+    }
+  }
+}
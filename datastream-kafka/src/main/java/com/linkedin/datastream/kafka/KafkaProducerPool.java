@@ -0,0 +1,135 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.kafka;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.datastream.metrics.BrooklinGaugeInfo;
+import com.linkedin.datastream.metrics.BrooklinMetricInfo;
+import com.linkedin.datastream.metrics.DynamicMetricsManager;
+import com.linkedin.datastream.metrics.MetricsAware;
+import com.linkedin.datastream.server.DatastreamTask;
+
+
+/**
+ * The Kafka producers shared by the tasks of a connector that write to the same destination cluster.
+ *
+ * Tasks are given the least loaded producers of the pool, by number of assigned tasks first and by bytes in flight
+ * next. Whenever tasks come and go, the transport providers of the remaining tasks are told to rebalance, so that
+ * they move their destination partitions to their least loaded producers as those partitions become idle.
+ *
+ * The pool reports the utilization of each of its producers, so that the pool size can be chosen from data.
+ */
+class KafkaProducerPool {
+  private static final Logger LOG = LoggerFactory.getLogger(KafkaProducerPool.class);
+  private static final String CLASS_NAME = KafkaProducerPool.class.getSimpleName();
+
+  static final String IN_FLIGHT_RECORDS = "inFlightRecords";
+  static final String IN_FLIGHT_BYTES = "inFlightBytes";
+  static final String ASSIGNED_TASKS = "assignedTasks";
+  static final String BUFFER_AVAILABLE_BYTES = "bufferAvailableBytes";
+
+  private static final String PRODUCER_METRICS_GROUP = "producer-metrics";
+  private static final String PRODUCER_BUFFER_AVAILABLE_BYTES = "buffer-available-bytes";
+
+  private static final Comparator<KafkaProducerWrapper<byte[], byte[]>> BY_LOAD =
+      Comparator.<KafkaProducerWrapper<byte[], byte[]>>comparingInt(KafkaProducerWrapper::getTasksSize)
+          .thenComparingLong(KafkaProducerWrapper::getInFlightBytes);
+
+  private final List<KafkaProducerWrapper<byte[], byte[]>> _producers;
+  private final Set<KafkaTransportProvider> _transportProviders = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Create the producers of a pool and register their utilization metrics
+   * @param name name of the pool, unique among the pools of the transport provider admin
+   * @param numProducers number of producers in the pool
+   * @param props producer configuration
+   * @param metricsNamesPrefix the prefix to use when emitting metrics
+   */
+  KafkaProducerPool(String name, int numProducers, Properties props, String metricsNamesPrefix) {
+    List<KafkaProducerWrapper<byte[], byte[]>> producers = new ArrayList<>(numProducers);
+    String metricsClass = metricsNamesPrefix == null ? CLASS_NAME : metricsNamesPrefix + CLASS_NAME;
+    DynamicMetricsManager metricsManager = DynamicMetricsManager.getInstance();
+    for (int i = 0; i < numProducers; i++) {
+      KafkaProducerWrapper<byte[], byte[]> producer =
+          new KafkaProducerWrapper<>(String.format("%s:%s", name, i), props, metricsNamesPrefix);
+      producers.add(producer);
+
+      String key = name + "-" + i;
+      registerGauge(metricsManager, metricsClass, key, IN_FLIGHT_RECORDS, producer::getInFlightRecords);
+      registerGauge(metricsManager, metricsClass, key, IN_FLIGHT_BYTES, producer::getInFlightBytes);
+      registerGauge(metricsManager, metricsClass, key, ASSIGNED_TASKS, producer::getTasksSize);
+      registerGauge(metricsManager, metricsClass, key, BUFFER_AVAILABLE_BYTES,
+          () -> producer.getProducerMetricValue(PRODUCER_BUFFER_AVAILABLE_BYTES, PRODUCER_METRICS_GROUP).orElse(-1.0));
+    }
+    _producers = Collections.unmodifiableList(producers);
+  }
+
+  // a pool re-created under the same name, e.g. by a new admin, takes over the gauges of the previous one
+  private static <T> void registerGauge(DynamicMetricsManager metricsManager, String metricsClass, String key,
+      String metricName, Supplier<T> supplier) {
+    metricsManager.setGauge(metricsManager.registerGauge(metricsClass, key, metricName, supplier), supplier);
+  }
+
+  /**
+   * Pick the least loaded producers of the pool for a new task
+   * @param count number of producers to pick; capped at the size of the pool
+   */
+  List<KafkaProducerWrapper<byte[], byte[]>> getLeastLoadedProducers(int count) {
+    return _producers.stream().sorted(BY_LOAD).limit(count).collect(Collectors.toList());
+  }
+
+  /**
+   * Track the transport provider of a task which was given producers of this pool, and rebalance the others
+   */
+  void onTaskAssigned(DatastreamTask task, KafkaTransportProvider transportProvider) {
+    transportProvider.getProducers().forEach(p -> p.assignTask(task));
+    rebalance();
+    _transportProviders.add(transportProvider);
+  }
+
+  /**
+   * Stop tracking the transport provider of an unassigned task, and rebalance the remaining ones
+   */
+  void onTaskUnassigned(KafkaTransportProvider transportProvider) {
+    if (_transportProviders.remove(transportProvider)) {
+      rebalance();
+    }
+  }
+
+  private void rebalance() {
+    LOG.debug("Rebalancing the producers of {} transport providers", _transportProviders.size());
+    _transportProviders.forEach(KafkaTransportProvider::rebalanceProducers);
+  }
+
+  /**
+   * Get the metrics info for a given metrics name prefix.
+   * @param metricsNamesPrefix metrics name prefix to look up metrics info for.
+   * @return the list of {@link BrooklinMetricInfo} found for the metrics name prefix
+   */
+  static List<BrooklinMetricInfo> getMetricInfos(String metricsNamesPrefix) {
+    String prefix = metricsNamesPrefix == null ? CLASS_NAME + MetricsAware.KEY_REGEX
+        : metricsNamesPrefix + CLASS_NAME + MetricsAware.KEY_REGEX;
+
+    List<BrooklinMetricInfo> metrics = new ArrayList<>();
+    metrics.add(new BrooklinGaugeInfo(prefix + IN_FLIGHT_RECORDS));
+    metrics.add(new BrooklinGaugeInfo(prefix + IN_FLIGHT_BYTES));
+    metrics.add(new BrooklinGaugeInfo(prefix + ASSIGNED_TASKS));
+    metrics.add(new BrooklinGaugeInfo(prefix + BUFFER_AVAILABLE_BYTES));
+    return Collections.unmodifiableList(metrics);
+  }
+}
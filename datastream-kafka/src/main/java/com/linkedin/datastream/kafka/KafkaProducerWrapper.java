@@ -17,6 +17,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -36,9 +37,9 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.RateLimiter;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import com.linkedin.datastream.common.DatastreamRuntimeException;
+import com.linkedin.datastream.common.DatastreamThreadFactory;
 import com.linkedin.datastream.common.DatastreamTransientException;
 import com.linkedin.datastream.common.ReflectionUtils;
 import com.linkedin.datastream.common.VerifiableProperties;
@@ -101,6 +102,10 @@ class KafkaProducerWrapper<K, V> {
   // Set of datastream tasks assigned to the producer
   private final Set<DatastreamTask> _tasks = ConcurrentHashMap.newKeySet();
 
+  // Load of the producer, used to spread partitions across the producers of a task
+  private final AtomicLong _inFlightRecords = new AtomicLong();
+  private final AtomicLong _inFlightBytes = new AtomicLong();
+
   // Producer is lazily initialized during the first send call.
   // Also, can be nullified in case of exceptions, and recreated by subsequent send calls.
   // Mark as volatile as it is mutable and used by different threads
@@ -127,7 +132,7 @@ class KafkaProducerWrapper<K, V> {
 
   // An executor to spawn threads to close the producer.
   private final ExecutorService _producerCloseExecutorService = Executors.newSingleThreadExecutor(
-      new ThreadFactoryBuilder().setNameFormat("KafkaProducerWrapperClose-%d").build());
+      DatastreamThreadFactory.builder("KafkaProducerWrapperClose-%d").build());
 
   KafkaProducerWrapper(String logSuffix, Properties props) {
     this(logSuffix, props, null);
@@ -223,6 +228,20 @@ class KafkaProducerWrapper<K, V> {
     return _tasks.size();
   }
 
+  /**
+   * Get the number of records handed to this producer whose send has not completed yet
+   */
+  long getInFlightRecords() {
+    return _inFlightRecords.get();
+  }
+
+  /**
+   * Get the number of key and value bytes handed to this producer whose send has not completed yet
+   */
+  long getInFlightBytes() {
+    return _inFlightBytes.get();
+  }
+
   private Producer<K, V> initializeProducer() throws InterruptedException {
     // Must be protected by a lock to avoid creating duplicate producers when multiple concurrent
     // sends are in-flight and _kafkaProducer has been set to null as a result of previous
@@ -256,6 +275,36 @@ class KafkaProducerWrapper<K, V> {
 
   void send(DatastreamTask task, ProducerRecord<K, V> producerRecord, Callback onComplete)
       throws InterruptedException {
+    send(task, producerRecord, 0, onComplete);
+  }
+
+  /**
+   * Send a record, accounting its bytes as in flight on this producer until its send completes
+   */
+  void send(DatastreamTask task, ProducerRecord<K, V> producerRecord, int numBytes, Callback onComplete)
+      throws InterruptedException {
+    _inFlightRecords.incrementAndGet();
+    _inFlightBytes.addAndGet(numBytes);
+    boolean handedOff = false;
+    try {
+      doSend(task, producerRecord, (metadata, exception) -> {
+        _inFlightRecords.decrementAndGet();
+        _inFlightBytes.addAndGet(-numBytes);
+        if (onComplete != null) {
+          onComplete.onCompletion(metadata, exception);
+        }
+      });
+      handedOff = true;
+    } finally {
+      if (!handedOff) {
+        _inFlightRecords.decrementAndGet();
+        _inFlightBytes.addAndGet(-numBytes);
+      }
+    }
+  }
+
+  private void doSend(DatastreamTask task, ProducerRecord<K, V> producerRecord, Callback onComplete)
+      throws InterruptedException {
     // There are two known cases that lead to IllegalStateException and we should retry:
     //  1) number of brokers is less than minISR
     //  2) producer is closed in generateSendFailure by another thread
@@ -456,6 +505,23 @@ class KafkaProducerWrapper<K, V> {
     return _clientId;
   }
 
+  /**
+   * Get the value of a metric of the producer by its name and group, e.g. to read the buffer availability without
+   * knowing the client ID Kafka tags the metric with
+   */
+  Optional<Double> getProducerMetricValue(String name, String group) {
+    Producer<K, V> producer = _kafkaProducer;
+    if (producer == null) {
+      return Optional.empty();
+    }
+    return producer.metrics().entrySet().stream()
+        .filter(e -> e.getKey().name().equals(name) && e.getKey().group().equals(group))
+        .findFirst()
+        .map(e -> e.getValue().metricValue())
+        .filter(Number.class::isInstance)
+        .map(v -> ((Number) v).doubleValue());
+  }
+
   /**
    * Get the metrics value from producer for monitoring
    */
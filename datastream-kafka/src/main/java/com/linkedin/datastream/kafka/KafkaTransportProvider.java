@@ -7,11 +7,15 @@ package com.linkedin.datastream.kafka;
 
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import org.apache.commons.lang3.Validate;
 import org.apache.kafka.clients.producer.ProducerConfig;
@@ -30,6 +34,7 @@ import com.linkedin.datastream.common.ErrorLogger;
 import com.linkedin.datastream.metrics.BrooklinMeterInfo;
 import com.linkedin.datastream.metrics.BrooklinMetricInfo;
 import com.linkedin.datastream.metrics.DynamicMetricsManager;
+import com.linkedin.datastream.metrics.MeterHandle;
 import com.linkedin.datastream.metrics.MetricsAware;
 import com.linkedin.datastream.server.DatastreamProducerRecord;
 import com.linkedin.datastream.server.DatastreamProducerRecordBuilder;
@@ -51,6 +56,11 @@ public class KafkaTransportProvider implements TransportProvider {
   static final String EVENT_WRITE_RATE = "eventWriteRate";
   static final String EVENT_BYTE_WRITE_RATE = "eventByteWriteRate";
   static final String EVENT_TRANSPORT_ERROR_RATE = "eventTransportErrorRate";
+  static final String PARTITION_MOVE_RATE = "partitionProducerMoveRate";
+
+  // a partition moves off its producer when it has more than twice the bytes in flight of the least loaded one
+  private static final long OVERLOAD_FACTOR = 2;
+  private static final long OVERLOAD_MIN_IMBALANCE_BYTES = 1024 * 1024;
 
   private final DatastreamTask _datastreamTask;
   private final List<KafkaProducerWrapper<byte[], byte[]>> _producers;
@@ -60,9 +70,19 @@ public class KafkaTransportProvider implements TransportProvider {
   private final Meter _eventWriteRate;
   private final Meter _eventByteWriteRate;
   private final Meter _eventTransportErrorRate;
+  // pre-resolved handles of the per-topic and aggregate metrics reported on every send
+  private final Map<String, TopicMetrics> _topicMetrics = new ConcurrentHashMap<>();
+  private final MeterHandle _aggregateEventWriteRate;
+  private final MeterHandle _aggregateEventByteWriteRate;
 
   private final Properties _transportProviderProperties;
 
+  // producer affinity of the destination partitions, only tracked if the task has more than one producer
+  private final Map<String, TopicProducerSlots> _topicProducerSlots = new ConcurrentHashMap<>();
+  private final AtomicIntegerArray _slotsPerProducer;
+  private final AtomicInteger _producerGeneration = new AtomicInteger();
+  private final MeterHandle _partitionMoveRate;
+
   private boolean _isUnassigned;
 
   /**
@@ -96,6 +116,11 @@ public class KafkaTransportProvider implements TransportProvider {
     _eventWriteRate = new Meter();
     _eventByteWriteRate = new Meter();
     _eventTransportErrorRate = new Meter();
+    _aggregateEventWriteRate = _dynamicMetricsManager.meterHandle(_metricsNamesPrefix, AGGREGATE, EVENT_WRITE_RATE);
+    _aggregateEventByteWriteRate =
+        _dynamicMetricsManager.meterHandle(_metricsNamesPrefix, AGGREGATE, EVENT_BYTE_WRITE_RATE);
+    _partitionMoveRate = _dynamicMetricsManager.meterHandle(_metricsNamesPrefix, AGGREGATE, PARTITION_MOVE_RATE);
+    _slotsPerProducer = new AtomicIntegerArray(producers.size());
   }
 
   public List<KafkaProducerWrapper<byte[], byte[]>> getProducers() {
@@ -105,6 +130,10 @@ public class KafkaTransportProvider implements TransportProvider {
   private ProducerRecord<byte[], byte[]> convertToProducerRecord(String topicName,
       DatastreamProducerRecord record, Object event) {
 
+    if (record instanceof KafkaMirrorProducerRecord) {
+      return convertMirrorRecord(topicName, (KafkaMirrorProducerRecord) record, (BrooklinEnvelope) event);
+    }
+
     Optional<Integer> partition = record.getPartition();
 
     byte[] keyValue = null;
@@ -143,6 +172,24 @@ public class KafkaTransportProvider implements TransportProvider {
     }
   }
 
+  // Mirrored records carry the consumed key, value and headers as they are, so they are passed through without
+  // going through the optionals and partition key handling of the generic path.
+  private ProducerRecord<byte[], byte[]> convertMirrorRecord(String topicName, KafkaMirrorProducerRecord record,
+      BrooklinEnvelope event) {
+    Object headers = event.getHeaders();
+    if (headers != null && !(headers instanceof Headers)) {
+      throw new DatastreamRuntimeException(
+          String.format("Unsupported header encountered %s in kafka transport provider for record %s", headers,
+              record));
+    }
+    Object key = event.getKey();
+    Object value = event.getValue();
+    int partition = record.getDestinationPartition();
+    return new ProducerRecord<>(topicName, partition >= 0 ? partition : null,
+        key instanceof byte[] ? (byte[]) key : null, value instanceof byte[] ? (byte[]) value : new byte[0],
+        (Headers) headers);
+  }
+
   private int getSourcePartitionFromEvent(BrooklinEnvelope event) {
     return Integer.parseInt(
         event.getMetadata().getOrDefault(BrooklinEnvelopeMetadataConstants.SOURCE_PARTITION, "-1"));
@@ -192,62 +239,206 @@ public class KafkaTransportProvider implements TransportProvider {
       Validate.notNull(record.getEvents(), "null datastream events.");
 
       // if the transport provider is already unassigned, the send should fail.
-      if (_isUnassigned) {
-        _eventTransportErrorRate.mark();
-        _dynamicMetricsManager.createOrUpdateMeter(_metricsNamesPrefix, topicName, EVENT_TRANSPORT_ERROR_RATE, 1);
-        String msg = String.format(
-            "Sending DatastreamRecord (%s) to topic %s, partition %s, Kafka cluster %s failed. Transport Provider already unassigned.", record,
-            topicName, record.getPartition().orElse(-1), destinationUri);
-        ErrorLogger.logAndThrowDatastreamRuntimeException(LOG, msg);
-      }
+      checkAssigned(destinationUri, topicName, record);
 
       LOG.debug("Sending Datastream event record: {}", record);
 
       for (int i = 0; i < record.getEvents().size(); ++i) {
-        BrooklinEnvelope event = record.getEvents().get(i);
-        ProducerRecord<byte[], byte[]> outgoing = convertToProducerRecord(topicName, record, event);
+        int numBytes = sendEvent(topicName, record, i, -1, onSendComplete);
+        reportWriteMetrics(topicName, 1, numBytes);
+      }
+    } catch (Exception e) {
+      onSendException(destinationUri, topicName, record, e);
+    }
 
-        // Update topic-specific metrics and aggregate metrics
-        int numBytes = (outgoing.key() != null ? outgoing.key().length : 0) + outgoing.value().length;
+    LOG.debug("Done sending Datastream event record: {}", record);
+  }
 
-        _eventWriteRate.mark();
-        _eventByteWriteRate.mark(numBytes);
+  /**
+   * Send a batch of records to the same destination. The records are validated and handed to the producers one
+   * by one, but the unassigned check and the write rate metrics are done once for the whole batch.
+   */
+  @Override
+  public void sendBatch(String destinationUri, List<DatastreamProducerRecord> records, SendCallback onSendComplete) {
+    String topicName = KafkaTransportProviderUtils.getTopicName(destinationUri);
+    int batchIndex = 0;
+    int numEvents = 0;
+    long numBytes = 0;
+    try {
+      Validate.notNull(records, "null event records.");
+      if (records.isEmpty()) {
+        return;
+      }
 
-        KafkaProducerWrapper<byte[], byte[]> producer =
-            _producers.get(Math.abs(Objects.hash(outgoing.topic(), outgoing.partition())) % _producers.size());
+      // if the transport provider is already unassigned, the send should fail.
+      checkAssigned(destinationUri, topicName, records.get(0));
 
-        final int eventIndex = i;
-        final int sourcePartition = getSourcePartitionFromEvent(event);
-        producer.send(_datastreamTask, outgoing, (metadata, exception) -> {
-          int partition = metadata != null ? metadata.partition() : -1;
-          if (exception != null) {
-            String msg = String.format("Sending a message with source checkpoint %s to topic %s partition %d for datastream task %s "
-                + "threw an exception.", record.getCheckpoint(), topicName, partition, _datastreamTask.getDatastreamTaskName());
-            if (_isUnassigned) {
-              LOG.debug(msg, exception);
-            } else {
-              LOG.error(msg, exception);
-            }
-          }
-          doOnSendCallback(record, onSendComplete, metadata, exception, eventIndex, sourcePartition);
-        });
+      LOG.debug("Sending batch of {} Datastream event records", records.size());
 
-        _dynamicMetricsManager.createOrUpdateMeter(_metricsNamesPrefix, topicName, EVENT_WRITE_RATE, 1);
-        _dynamicMetricsManager.createOrUpdateMeter(_metricsNamesPrefix, topicName, EVENT_BYTE_WRITE_RATE, numBytes);
-        _dynamicMetricsManager.createOrUpdateMeter(_metricsNamesPrefix, AGGREGATE, EVENT_WRITE_RATE, 1);
-        _dynamicMetricsManager.createOrUpdateMeter(_metricsNamesPrefix, AGGREGATE, EVENT_BYTE_WRITE_RATE, numBytes);
+      for (; batchIndex < records.size(); batchIndex++) {
+        DatastreamProducerRecord record = records.get(batchIndex);
+        Validate.notNull(record, "null event record.");
+        Validate.notNull(record.getEvents(), "null datastream events.");
+        for (int i = 0; i < record.getEvents().size(); ++i) {
+          numBytes += sendEvent(topicName, record, i, batchIndex, onSendComplete);
+          numEvents++;
+        }
       }
     } catch (Exception e) {
-      _eventTransportErrorRate.mark();
-      _dynamicMetricsManager.createOrUpdateMeter(_metricsNamesPrefix, topicName, EVENT_TRANSPORT_ERROR_RATE, 1);
-      String errorMessage = String.format(
-          "Sending DatastreamRecord (%s) to topic %s, partition %s, Kafka cluster %s failed with exception.", record,
+      reportWriteMetrics(topicName, numEvents, numBytes);
+      onSendException(destinationUri, topicName, batchIndex < records.size() ? records.get(batchIndex) : null, e);
+    }
+    reportWriteMetrics(topicName, numEvents, numBytes);
+
+    LOG.debug("Done sending batch of {} Datastream event records", records.size());
+  }
+
+  // The error metrics are marked by onSendException, which handles the exception thrown here
+  private void checkAssigned(String destinationUri, String topicName, DatastreamProducerRecord record) {
+    if (_isUnassigned) {
+      String msg = String.format(
+          "Sending DatastreamRecord (%s) to topic %s, partition %s, Kafka cluster %s failed. Transport Provider already unassigned.", record,
           topicName, record.getPartition().orElse(-1), destinationUri);
+      ErrorLogger.logAndThrowDatastreamRuntimeException(LOG, msg);
+    }
+  }
+
+  /**
+   * Hand a single event of the record to one of the producers.
+   * @return the number of key and value bytes sent
+   */
+  private int sendEvent(String topicName, DatastreamProducerRecord record, int eventIndex, int batchIndex,
+      SendCallback onSendComplete) throws InterruptedException {
+    BrooklinEnvelope event = record.getEvents().get(eventIndex);
+    ProducerRecord<byte[], byte[]> outgoing = convertToProducerRecord(topicName, record, event);
+
+    int numBytes = (outgoing.key() != null ? outgoing.key().length : 0) + outgoing.value().length;
 
-      ErrorLogger.logAndThrowDatastreamRuntimeException(LOG, errorMessage, e);
+    // with a single producer there is no affinity to keep track of
+    ProducerSlot slot = _producers.size() > 1 ? getProducerSlot(topicName, outgoing.partition()) : null;
+    KafkaProducerWrapper<byte[], byte[]> producer = slot != null ? acquireProducer(slot) : _producers.get(0);
+
+    final int sourcePartition = record instanceof KafkaMirrorProducerRecord
+        ? ((KafkaMirrorProducerRecord) record).getSourcePartition() : getSourcePartitionFromEvent(event);
+    boolean handedOff = false;
+    try {
+      producer.send(_datastreamTask, outgoing, numBytes, (metadata, exception) -> {
+        if (slot != null) {
+          slot._inFlight.decrementAndGet();
+        }
+        int partition = metadata != null ? metadata.partition() : -1;
+        if (exception != null) {
+          String msg = String.format("Sending a message with source checkpoint %s to topic %s partition %d for datastream task %s "
+              + "threw an exception.", record.getCheckpoint(), topicName, partition, _datastreamTask.getDatastreamTaskName());
+          if (_isUnassigned) {
+            LOG.debug(msg, exception);
+          } else {
+            LOG.error(msg, exception);
+          }
+        }
+        doOnSendCallback(record, onSendComplete, metadata, exception, eventIndex, sourcePartition, batchIndex);
+      });
+      handedOff = true;
+    } finally {
+      if (slot != null && !handedOff) {
+        slot._inFlight.decrementAndGet();
+      }
     }
+    return numBytes;
+  }
 
-    LOG.debug("Done sending Datastream event record: {}", record);
+  private ProducerSlot getProducerSlot(String topicName, Integer partition) {
+    TopicProducerSlots topicSlots = _topicProducerSlots.get(topicName);
+    if (topicSlots == null) {
+      topicSlots = _topicProducerSlots.computeIfAbsent(topicName, t -> new TopicProducerSlots());
+    }
+    // records without a partition share the slot of the topic, as the partition is only picked by the producer
+    return topicSlots.getSlot(partition == null ? 0 : partition + 1);
+  }
+
+  /**
+   * Get the producer of a destination partition for a send, and account the send as in flight. A partition stays
+   * on its producer while it has sends in flight, so that its records are produced in order. Once idle, it moves to
+   * the least loaded producer of the task if its own producer is overloaded, or if the producers were rebalanced.
+   */
+  private KafkaProducerWrapper<byte[], byte[]> acquireProducer(ProducerSlot slot) {
+    synchronized (slot) {
+      if (slot._inFlight.get() == 0) {
+        int generation = _producerGeneration.get();
+        int leastLoaded = getLeastLoadedProducerIndex();
+        int current = slot._producerIndex;
+        if (current < 0) {
+          slot._producerIndex = leastLoaded;
+          _slotsPerProducer.incrementAndGet(leastLoaded);
+        } else if (current != leastLoaded && (isOverloaded(current, leastLoaded)
+            || (slot._generation != generation && _slotsPerProducer.get(current) > _slotsPerProducer.get(leastLoaded) + 1))) {
+          slot._producerIndex = leastLoaded;
+          _slotsPerProducer.decrementAndGet(current);
+          _slotsPerProducer.incrementAndGet(leastLoaded);
+          _partitionMoveRate.mark();
+        }
+        slot._generation = generation;
+      }
+      slot._inFlight.incrementAndGet();
+      return _producers.get(slot._producerIndex);
+    }
+  }
+
+  // The producers are shared with other tasks, so their load is measured in bytes in flight across all of them.
+  // Ties are broken by the number of partitions of this task already on each producer to spread idle partitions.
+  private int getLeastLoadedProducerIndex() {
+    int leastLoaded = 0;
+    for (int i = 1; i < _producers.size(); i++) {
+      long inFlightBytes = _producers.get(i).getInFlightBytes();
+      long leastInFlightBytes = _producers.get(leastLoaded).getInFlightBytes();
+      if (inFlightBytes < leastInFlightBytes
+          || (inFlightBytes == leastInFlightBytes && _slotsPerProducer.get(i) < _slotsPerProducer.get(leastLoaded))) {
+        leastLoaded = i;
+      }
+    }
+    return leastLoaded;
+  }
+
+  private boolean isOverloaded(int producerIndex, int leastLoadedIndex) {
+    return _producers.get(producerIndex).getInFlightBytes()
+        > OVERLOAD_FACTOR * _producers.get(leastLoadedIndex).getInFlightBytes() + OVERLOAD_MIN_IMBALANCE_BYTES;
+  }
+
+  /**
+   * Re-evaluate the producer of each destination partition the next time it is idle, e.g. after the tasks sharing
+   * the producers changed
+   */
+  void rebalanceProducers() {
+    _producerGeneration.incrementAndGet();
+  }
+
+  // Update topic-specific metrics and aggregate metrics
+  private void reportWriteMetrics(String topicName, int numEvents, long numBytes) {
+    if (numEvents == 0) {
+      return;
+    }
+    _eventWriteRate.mark(numEvents);
+    _eventByteWriteRate.mark(numBytes);
+    TopicMetrics topicMetrics = getTopicMetrics(topicName);
+    topicMetrics._eventWriteRate.mark(numEvents);
+    topicMetrics._eventByteWriteRate.mark(numBytes);
+    _aggregateEventWriteRate.mark(numEvents);
+    _aggregateEventByteWriteRate.mark(numBytes);
+  }
+
+  private TopicMetrics getTopicMetrics(String topicName) {
+    return _topicMetrics.computeIfAbsent(topicName, TopicMetrics::new);
+  }
+
+  private void onSendException(String destinationUri, String topicName, DatastreamProducerRecord record,
+      Exception e) {
+    _eventTransportErrorRate.mark();
+    getTopicMetrics(topicName)._eventTransportErrorRate.mark();
+    String errorMessage = String.format(
+        "Sending DatastreamRecord (%s) to topic %s, partition %s, Kafka cluster %s failed with exception.", record,
+        topicName, record != null ? record.getPartition().orElse(-1) : -1, destinationUri);
+
+    ErrorLogger.logAndThrowDatastreamRuntimeException(LOG, errorMessage, e);
   }
 
   @Override
@@ -265,11 +456,11 @@ public class KafkaTransportProvider implements TransportProvider {
   }
 
   private void doOnSendCallback(DatastreamProducerRecord record, SendCallback onComplete, RecordMetadata metadata,
-      Exception exception, int eventIndex, int sourcePartition) {
+      Exception exception, int eventIndex, int sourcePartition, int batchIndex) {
     if (onComplete != null) {
       onComplete.onCompletion(
           metadata != null ? new DatastreamRecordMetadata(record.getCheckpoint(), metadata.topic(),
-              metadata.partition(), eventIndex, sourcePartition) : null, exception);
+              metadata.partition(), eventIndex, sourcePartition, batchIndex) : null, exception);
     }
   }
 
@@ -286,7 +477,57 @@ public class KafkaTransportProvider implements TransportProvider {
     metrics.add(new BrooklinMeterInfo(prefix + EVENT_WRITE_RATE));
     metrics.add(new BrooklinMeterInfo(prefix + EVENT_BYTE_WRITE_RATE));
     metrics.add(new BrooklinMeterInfo(prefix + EVENT_TRANSPORT_ERROR_RATE));
+    metrics.add(new BrooklinMeterInfo(prefix + PARTITION_MOVE_RATE));
 
     return Collections.unmodifiableList(metrics);
   }
+
+  /**
+   * Handles of the metrics reported per destination topic
+   */
+  private final class TopicMetrics {
+    private final MeterHandle _eventWriteRate;
+    private final MeterHandle _eventByteWriteRate;
+    private final MeterHandle _eventTransportErrorRate;
+
+    TopicMetrics(String topicName) {
+      _eventWriteRate = _dynamicMetricsManager.meterHandle(_metricsNamesPrefix, topicName, EVENT_WRITE_RATE);
+      _eventByteWriteRate = _dynamicMetricsManager.meterHandle(_metricsNamesPrefix, topicName, EVENT_BYTE_WRITE_RATE);
+      _eventTransportErrorRate =
+          _dynamicMetricsManager.meterHandle(_metricsNamesPrefix, topicName, EVENT_TRANSPORT_ERROR_RATE);
+    }
+  }
+
+  /**
+   * Producer affinity of a destination partition, guarded by the slot itself
+   */
+  private static final class ProducerSlot {
+    private final AtomicInteger _inFlight = new AtomicInteger();
+    private int _producerIndex = -1;
+    private int _generation;
+  }
+
+  /**
+   * Producer slots of the partitions of a destination topic, indexed by partition + 1. The array is copied on
+   * write, so that lookups of existing slots don't need to lock.
+   */
+  private static final class TopicProducerSlots {
+    private volatile ProducerSlot[] _slots = new ProducerSlot[0];
+
+    ProducerSlot getSlot(int index) {
+      ProducerSlot[] slots = _slots;
+      if (index < slots.length && slots[index] != null) {
+        return slots[index];
+      }
+      synchronized (this) {
+        slots = _slots;
+        if (index >= slots.length || slots[index] == null) {
+          slots = Arrays.copyOf(slots, Math.max(index + 1, slots.length));
+          slots[index] = new ProducerSlot();
+          _slots = slots;
+        }
+        return slots[index];
+      }
+    }
+  }
 }
@@ -8,7 +8,6 @@ package com.linkedin.datastream.kafka;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -19,7 +18,6 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 import org.apache.commons.lang.Validate;
 import org.apache.kafka.clients.admin.AdminClient;
@@ -86,10 +84,11 @@ public class KafkaTransportProviderAdmin implements TransportProviderAdmin {
 
   private final Map<DatastreamTask, KafkaTransportProvider> _transportProviders = new HashMap<>();
 
-  // List of Kafka producers per connector-destination (broker address) pair.
+  // Pool of Kafka producers per connector-destination (broker address) pair.
   // The numProducersPerConnector config is actually the number of producers per connector-destination pair, if the
   // transport provider handles multiple destination brokers.
-  private final Map<String, Map<String, List<KafkaProducerWrapper<byte[], byte[]>>>> _kafkaProducers = new HashMap<>();
+  private final Map<String, Map<String, KafkaProducerPool>> _kafkaProducerPools = new HashMap<>();
+  private final Map<DatastreamTask, KafkaProducerPool> _taskProducerPools = new HashMap<>();
 
   /**
    * Constructor for KafkaTransportProviderAdmin.
@@ -131,18 +130,18 @@ public class KafkaTransportProviderAdmin implements TransportProviderAdmin {
     if (!_transportProviders.containsKey(task)) {
       String connectorType = task.getConnectorType();
       String destinationBrokers = getDestinationBrokers(task.getDatastreams().get(0));
-      if (!_kafkaProducers.containsKey(connectorType) || !_kafkaProducers.get(connectorType).containsKey(destinationBrokers)) {
-        initializeKafkaProducersForConnectorDestination(connectorType, destinationBrokers);
-      }
+      KafkaProducerPool producerPool = getOrCreateProducerPool(connectorType, destinationBrokers);
       List<KafkaProducerWrapper<byte[], byte[]>> producers =
-          getNextKafkaProducers(connectorType, destinationBrokers, numProducersPerTask(task));
+          producerPool.getLeastLoadedProducers(numProducersPerTask(task));
 
       Properties transportProviderProperties = new Properties();
       transportProviderProperties.putAll(_transportProviderProperties);
       transportProviderProperties.putIfAbsent(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, destinationBrokers);
-      _transportProviders.put(task,
-          new KafkaTransportProvider(task, producers, transportProviderProperties, _transportProviderMetricsNamesPrefix));
-      producers.forEach(p -> p.assignTask(task));
+      KafkaTransportProvider transportProvider =
+          new KafkaTransportProvider(task, producers, transportProviderProperties, _transportProviderMetricsNamesPrefix);
+      _transportProviders.put(task, transportProvider);
+      _taskProducerPools.put(task, producerPool);
+      producerPool.onTaskAssigned(task, transportProvider);
     } else {
       LOG.warn("Trying to assign transport provider to task {} which is already assigned.", task);
     }
@@ -150,17 +149,20 @@ public class KafkaTransportProviderAdmin implements TransportProviderAdmin {
     return _transportProviders.get(task);
   }
 
-  private void initializeKafkaProducersForConnectorDestination(String connectorType, String destinationBrokers) {
-    Properties transportProviderProperties = new Properties();
-    transportProviderProperties.putAll(_transportProviderProperties);
-    transportProviderProperties.putIfAbsent(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, destinationBrokers);
-    List<KafkaProducerWrapper<byte[], byte[]>> producers = IntStream.range(0, _numProducersPerConnector)
-        .mapToObj(x -> new KafkaProducerWrapper<byte[], byte[]>(String.format("%s:%s", connectorType, x), transportProviderProperties,
-            _transportProviderMetricsNamesPrefix))
-        .collect(Collectors.toList());
-    _kafkaProducers.putIfAbsent(connectorType, new HashMap<>());
-    _kafkaProducers.get(connectorType).putIfAbsent(destinationBrokers, new ArrayList<>());
-    _kafkaProducers.get(connectorType).get(destinationBrokers).addAll(producers);
+  private KafkaProducerPool getOrCreateProducerPool(String connectorType, String destinationBrokers) {
+    Map<String, KafkaProducerPool> connectorPools = _kafkaProducerPools.computeIfAbsent(connectorType, c -> new HashMap<>());
+    KafkaProducerPool producerPool = connectorPools.get(destinationBrokers);
+    if (producerPool == null) {
+      Properties transportProviderProperties = new Properties();
+      transportProviderProperties.putAll(_transportProviderProperties);
+      transportProviderProperties.putIfAbsent(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, destinationBrokers);
+      // the first pool of a connector keeps the plain connector name in the producer names
+      String poolName = connectorPools.isEmpty() ? connectorType : connectorType + "-" + connectorPools.size();
+      producerPool = new KafkaProducerPool(poolName, _numProducersPerConnector, transportProviderProperties,
+          _transportProviderMetricsNamesPrefix);
+      connectorPools.put(destinationBrokers, producerPool);
+    }
+    return producerPool;
   }
 
   @Override
@@ -170,6 +172,7 @@ public class KafkaTransportProviderAdmin implements TransportProviderAdmin {
       KafkaTransportProvider transportProvider = _transportProviders.remove(task);
       transportProvider.setUnassigned();
       transportProvider.getProducers().forEach(p -> p.unassignTask(task));
+      _taskProducerPools.remove(task).onTaskUnassigned(transportProvider);
     } else {
       LOG.warn("Trying to unassign already unassigned transport provider.");
     }
@@ -179,17 +182,20 @@ public class KafkaTransportProviderAdmin implements TransportProviderAdmin {
   public void unassignTransportProvider(List<DatastreamTask> taskList) {
     Validate.notNull(taskList, "null task list");
     Set<KafkaProducerWrapper<byte[], byte[]>> producers = new HashSet<>();
+    Map<KafkaTransportProvider, KafkaProducerPool> unassigned = new HashMap<>();
     for (DatastreamTask task : taskList) {
       if (_transportProviders.containsKey(task)) {
         KafkaTransportProvider transportProvider = _transportProviders.remove(task);
         transportProvider.setUnassigned();
         producers.addAll(transportProvider.getProducers());
+        unassigned.put(transportProvider, _taskProducerPools.remove(task));
       } else {
         LOG.warn("Trying to unassign already unassigned transport provider for task {}.", task);
       }
     }
 
     producers.forEach(p -> p.unassignTasks(taskList));
+    unassigned.forEach((transportProvider, producerPool) -> producerPool.onTaskUnassigned(transportProvider));
   }
 
   @Override
@@ -354,16 +360,6 @@ public class KafkaTransportProviderAdmin implements TransportProviderAdmin {
     }
   }
 
-  private List<KafkaProducerWrapper<byte[], byte[]>> getNextKafkaProducers(String connectorType, String destinationBrokers, int count) {
-    // Return the least used Kafka producers.
-    return _kafkaProducers.get(connectorType)
-        .get(destinationBrokers)
-        .stream()
-        .sorted(Comparator.comparingInt(KafkaProducerWrapper::getTasksSize))
-        .limit(count)
-        .collect(Collectors.toList());
-  }
-
   private int numProducersPerTask(DatastreamTask task) {
     Set<Integer> values = task.getDatastreams()
         .stream()
@@ -381,6 +377,7 @@ public class KafkaTransportProviderAdmin implements TransportProviderAdmin {
     List<BrooklinMetricInfo> metrics = new ArrayList<>();
     metrics.addAll(KafkaTransportProvider.getMetricInfos(_transportProviderMetricsNamesPrefix));
     metrics.addAll(KafkaProducerWrapper.getMetricDetails(_transportProviderMetricsNamesPrefix));
+    metrics.addAll(KafkaProducerPool.getMetricInfos(_transportProviderMetricsNamesPrefix));
     return Collections.unmodifiableList(metrics);
   }
 
@@ -0,0 +1,90 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.kafka;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.datastream.common.BrooklinEnvelope;
+import com.linkedin.datastream.common.BrooklinEnvelopeMetadataConstants;
+
+
+/**
+ * Tests for {@link KafkaMirrorProducerRecord}.
+ */
+public class TestKafkaMirrorProducerRecord {
+
+  private static KafkaMirrorProducerRecord createRecord(byte[] key, byte[] value, int destinationPartition) {
+    RecordHeaders headers = new RecordHeaders();
+    headers.add("header", "value".getBytes(StandardCharsets.UTF_8));
+    return new KafkaMirrorProducerRecord("broker:9092", "topic", 3, 42L, 1000L, key, value, headers,
+        "kafka://broker:9092/topic", destinationPartition);
+  }
+
+  @Test
+  public void testSourceAndDestination() {
+    KafkaMirrorProducerRecord record = createRecord(null, new byte[1], 5);
+    Assert.assertEquals(record.getCheckpoint(), "topic/3/42");
+    Assert.assertEquals(record.getSourceTopic(), "topic");
+    Assert.assertEquals(record.getSourcePartition(), 3);
+    Assert.assertEquals(record.getSourceOffset(), 42L);
+    Assert.assertEquals(record.getEventsSourceTimestamp(), 1000L);
+    Assert.assertEquals(record.getDestination(), Optional.of("kafka://broker:9092/topic"));
+    Assert.assertEquals(record.getPartition(), Optional.of(5));
+    Assert.assertEquals(record.getDestinationPartition(), 5);
+    Assert.assertFalse(record.getPartitionKey().isPresent());
+
+    record = createRecord(null, new byte[1], -1);
+    Assert.assertFalse(record.getPartition().isPresent());
+    Assert.assertEquals(record.getDestinationPartition(), -1);
+  }
+
+  @Test
+  public void testEventPassThrough() {
+    byte[] key = "key".getBytes(StandardCharsets.UTF_8);
+    byte[] value = "value".getBytes(StandardCharsets.UTF_8);
+    KafkaMirrorProducerRecord record = createRecord(key, value, -1);
+
+    Assert.assertEquals(record.getEvents().size(), 1);
+    BrooklinEnvelope event = record.getEvents().get(0);
+    Assert.assertSame(event.key().orElse(null), key);
+    Assert.assertSame(event.value().orElse(null), value);
+    Assert.assertTrue(event.getHeaders() instanceof RecordHeaders);
+    Assert.assertFalse(event.getPreviousValue().isPresent());
+  }
+
+  @Test
+  public void testLazyMetadata() {
+    KafkaMirrorProducerRecord record = createRecord(null, new byte[1], -1);
+    Map<String, String> metadata = record.getEvents().get(0).getMetadata();
+    Assert.assertEquals(metadata.get(KafkaMirrorProducerRecord.KAFKA_ORIGIN_CLUSTER), "broker:9092");
+    Assert.assertEquals(metadata.get(KafkaMirrorProducerRecord.KAFKA_ORIGIN_TOPIC), "topic");
+    Assert.assertEquals(metadata.get(KafkaMirrorProducerRecord.KAFKA_ORIGIN_PARTITION), "3");
+    Assert.assertEquals(metadata.get(KafkaMirrorProducerRecord.KAFKA_ORIGIN_OFFSET), "42");
+    Assert.assertEquals(metadata.get(BrooklinEnvelopeMetadataConstants.EVENT_TIMESTAMP), "1000");
+    Assert.assertEquals(metadata.get(BrooklinEnvelopeMetadataConstants.SOURCE_PARTITION), "3");
+
+    // the metadata is built once and can be modified like the metadata of any other event
+    Assert.assertSame(record.getEvents().get(0).getMetadata(), metadata);
+    metadata.put("extra", "value");
+    Assert.assertEquals(record.getEvents().get(0).getMetadata().get("extra"), "value");
+  }
+
+  @Test
+  public void testEquality() {
+    byte[] value = new byte[1];
+    KafkaMirrorProducerRecord record = createRecord(null, value, 1);
+    KafkaMirrorProducerRecord other = createRecord(null, value, 1);
+    Assert.assertEquals(record, other);
+    Assert.assertEquals(record.hashCode(), other.hashCode());
+    Assert.assertNotEquals(record, createRecord(null, value, 2));
+  }
+}
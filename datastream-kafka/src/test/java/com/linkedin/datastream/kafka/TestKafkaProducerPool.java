@@ -0,0 +1,132 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.kafka;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+import com.linkedin.datastream.common.BrooklinEnvelope;
+import com.linkedin.datastream.metrics.DynamicMetricsManager;
+import com.linkedin.datastream.server.DatastreamProducerRecord;
+import com.linkedin.datastream.server.DatastreamProducerRecordBuilder;
+import com.linkedin.datastream.server.DatastreamTask;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+/**
+ * Tests for {@link KafkaProducerPool} and the producer affinity of {@link KafkaTransportProvider}
+ */
+public class TestKafkaProducerPool {
+
+  private static final String DESTINATION = "kafka://localhost:1234/topic";
+
+  @BeforeMethod
+  public void setup(Method method) {
+    DynamicMetricsManager.createInstance(new MetricRegistry(), method.getName());
+  }
+
+  private static Properties createProperties() {
+    Properties props = new Properties();
+    props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:1234");
+    return props;
+  }
+
+  @Test
+  public void testLeastLoadedProducers() {
+    KafkaProducerPool pool = new KafkaProducerPool("connector", 3, createProperties(), null);
+    List<KafkaProducerWrapper<byte[], byte[]>> first = pool.getLeastLoadedProducers(2);
+    Assert.assertEquals(first.size(), 2);
+
+    DatastreamTask task = mock(DatastreamTask.class);
+    KafkaTransportProvider transportProvider = new KafkaTransportProvider(task, first, createProperties(), null);
+    pool.onTaskAssigned(task, transportProvider);
+    first.forEach(p -> Assert.assertEquals(p.getTasksSize(), 1));
+
+    // the producer without any task comes first, and asking for more producers than the pool has is capped
+    List<KafkaProducerWrapper<byte[], byte[]>> second = pool.getLeastLoadedProducers(5);
+    Assert.assertEquals(second.size(), 3);
+    Assert.assertFalse(first.contains(second.get(0)));
+
+    Gauge<?> assignedTasks = DynamicMetricsManager.getInstance().getMetric(
+        MetricRegistry.name(KafkaProducerPool.class.getSimpleName(), "connector-0", KafkaProducerPool.ASSIGNED_TASKS));
+    Assert.assertNotNull(assignedTasks);
+    Gauge<?> bufferAvailableBytes = DynamicMetricsManager.getInstance().getMetric(
+        MetricRegistry.name(KafkaProducerPool.class.getSimpleName(), "connector-2",
+            KafkaProducerPool.BUFFER_AVAILABLE_BYTES));
+    // no Kafka producer has been created yet
+    Assert.assertEquals(bufferAvailableBytes.getValue(), -1.0);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static KafkaProducerWrapper<byte[], byte[]> mockProducer(List<Callback> callbacks) throws Exception {
+    KafkaProducerWrapper<byte[], byte[]> producer = mock(KafkaProducerWrapper.class);
+    doAnswer(invocation -> {
+      callbacks.add((Callback) invocation.getArguments()[3]);
+      return null;
+    }).when(producer).send(any(DatastreamTask.class), any(), anyInt(), any(Callback.class));
+    return producer;
+  }
+
+  private static DatastreamProducerRecord createRecord(int partition) {
+    DatastreamProducerRecordBuilder builder = new DatastreamProducerRecordBuilder();
+    builder.addEvent(new BrooklinEnvelope(null, new byte[10], null, new HashMap<>()));
+    builder.setPartition(partition);
+    builder.setEventsSourceTimestamp(System.currentTimeMillis());
+    return builder.build();
+  }
+
+  @Test
+  public void testPartitionAffinity() throws Exception {
+    List<Callback> callbacks0 = new ArrayList<>();
+    List<Callback> callbacks1 = new ArrayList<>();
+    KafkaProducerWrapper<byte[], byte[]> producer0 = mockProducer(callbacks0);
+    KafkaProducerWrapper<byte[], byte[]> producer1 = mockProducer(callbacks1);
+    KafkaTransportProvider transportProvider = new KafkaTransportProvider(mock(DatastreamTask.class),
+        Arrays.asList(producer0, producer1), createProperties(), null);
+
+    // idle producers get the same number of partitions
+    for (int partition = 0; partition < 4; partition++) {
+      transportProvider.send(DESTINATION, createRecord(partition), null);
+    }
+    Assert.assertEquals(callbacks0.size(), 2);
+    Assert.assertEquals(callbacks1.size(), 2);
+
+    // a partition with a send in flight stays on its producer, even if that producer is overloaded
+    when(producer0.getInFlightBytes()).thenReturn(10L * 1024 * 1024);
+    transportProvider.send(DESTINATION, createRecord(0), null);
+    Assert.assertEquals(callbacks0.size(), 3);
+
+    // once idle, it moves to the least loaded producer
+    callbacks0.forEach(callback -> callback.onCompletion(null, null));
+    transportProvider.send(DESTINATION, createRecord(0), null);
+    Assert.assertEquals(callbacks0.size(), 3);
+    Assert.assertEquals(callbacks1.size(), 3);
+
+    Meter moveRate = DynamicMetricsManager.getInstance().getMetric(MetricRegistry.name(
+        KafkaTransportProvider.class.getSimpleName(), KafkaTransportProvider.AGGREGATE,
+        KafkaTransportProvider.PARTITION_MOVE_RATE));
+    Assert.assertEquals(moveRate.getCount(), 1);
+  }
+}
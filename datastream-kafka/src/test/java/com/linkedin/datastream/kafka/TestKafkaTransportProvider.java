@@ -15,6 +15,7 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
@@ -27,11 +28,13 @@ import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 
 import com.linkedin.datastream.common.BrooklinEnvelope;
 import com.linkedin.datastream.common.Datastream;
 import com.linkedin.datastream.common.DatastreamDestination;
+import com.linkedin.datastream.common.DatastreamRuntimeException;
 import com.linkedin.datastream.common.DatastreamSource;
 import com.linkedin.datastream.common.PollUtils;
 import com.linkedin.datastream.metrics.BrooklinMetricInfo;
@@ -280,6 +283,73 @@ public class TestKafkaTransportProvider extends BaseKafkaZkTest {
     Assert.assertNotNull(DynamicMetricsManager.getInstance().getMetric(producerCountMetricName));
   }
 
+  @Test
+  public void testUnassignedSendMarksErrorOnce() {
+    String topicName = getUniqueTopicName();
+    String destinationUri = "kafka://goodLocation:1234/" + topicName;
+    Datastream ds = DatastreamTestUtils.createDatastream("test", "ds1", "source", destinationUri, 1);
+    DatastreamTask task = new DatastreamTaskImpl(Collections.singletonList(ds));
+    @SuppressWarnings("unchecked")
+    KafkaProducerWrapper<byte[], byte[]> producer = mock(KafkaProducerWrapper.class);
+    KafkaTransportProvider transportProvider = new KafkaTransportProvider(task, Collections.singletonList(producer),
+        _transportProviderProperties, null);
+    transportProvider.setUnassigned();
+
+    Assert.assertThrows(DatastreamRuntimeException.class, () -> transportProvider.send(destinationUri,
+        createEvents(topicName, 0, 1, true, true).get(0), null));
+
+    String errorRateMetricName = new StringJoiner(".").add(KafkaTransportProvider.class.getSimpleName())
+        .add(topicName)
+        .add(KafkaTransportProvider.EVENT_TRANSPORT_ERROR_RATE)
+        .toString();
+    Meter errorRate = DynamicMetricsManager.getInstance().getMetric(errorRateMetricName);
+    Assert.assertEquals(errorRate.getCount(), 1);
+  }
+
+  @Test
+  public void testSendBatch() throws Exception {
+    final int numberOfRecords = 10;
+    String topicName = getUniqueTopicName();
+
+    KafkaTransportProviderAdmin provider = new KafkaTransportProviderAdmin("test", _transportProviderProperties);
+
+    String destinationUri = provider.getDestination(null, topicName);
+
+    Datastream ds = DatastreamTestUtils.createDatastream("test", "ds1", "source", destinationUri, 1);
+
+    DatastreamTask task = new DatastreamTaskImpl(Collections.singletonList(ds));
+    TransportProvider transportProvider = provider.assignTransportProvider(task);
+    provider.createTopic(destinationUri, 1, new Properties(), ds);
+
+    List<DatastreamProducerRecord> records = createEvents(topicName, 0, numberOfRecords, true, true);
+
+    LOG.info(String.format("Trying to send a batch of %d records to topic %s", records.size(), topicName));
+
+    List<Integer> batchIndexList = Collections.synchronizedList(new ArrayList<>());
+    Map<Integer, String> checkpoints = new ConcurrentHashMap<>();
+    transportProvider.sendBatch(destinationUri, records, ((metadata, exception) -> {
+      batchIndexList.add(metadata.getBatchIndex());
+      checkpoints.put(metadata.getBatchIndex(), metadata.getCheckpoint());
+    }));
+
+    // wait until all messages were acked, to ensure all events were successfully sent to the topic
+    Assert.assertTrue(PollUtils.poll(() -> batchIndexList.size() == numberOfRecords, 1000, 10000),
+        "Send callback was not called; likely topic was not created in time");
+
+    Collections.sort(batchIndexList);
+    for (int i = 0; i < numberOfRecords; ++i) {
+      Assert.assertEquals(i, batchIndexList.get(i).intValue());
+      Assert.assertEquals(checkpoints.get(i), records.get(i).getCheckpoint());
+    }
+
+    Map<String, String> events = new HashMap<>();
+    KafkaTestUtils.readTopic(topicName, 0, _kafkaCluster.getBrokers(), (key, value) -> {
+      events.put(new String(key), new String(value));
+      return events.size() < numberOfRecords;
+    });
+    Assert.assertEquals(events.size(), numberOfRecords);
+  }
+
   @Test
   public void testBroadcastHappyPath() throws Exception {
     testEventSendOrBroadcast(1, 3, -1, true, true, "broadcast", true);
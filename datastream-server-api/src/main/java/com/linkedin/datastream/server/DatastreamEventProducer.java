@@ -5,6 +5,8 @@
  */
 package com.linkedin.datastream.server;
 
+import java.util.List;
+
 import com.linkedin.datastream.server.api.transport.DatastreamRecordMetadata;
 import com.linkedin.datastream.server.api.transport.SendCallback;
 
@@ -35,6 +37,26 @@ public interface DatastreamEventProducer {
    */
   void send(DatastreamProducerRecord event, SendCallback callback);
 
+  /**
+   * Send a batch of events onto the transport, paying the per-send overhead once for the whole batch.
+   *
+   * <p>
+   * The callback is shared by all the events in the batch and is invoked once for each of them, with
+   * {@link DatastreamRecordMetadata#getBatchIndex()} identifying the event within {@code events} when the metadata
+   * is available. The same threading caveats as {@link #send} apply. The default implementation falls back to
+   * calling {@link #send} for each event.
+   *
+   * @param events events to send, in order
+   * @param callback call back that needs to called when the send of each event completes.
+   */
+  default void sendBatch(List<DatastreamProducerRecord> events, SendCallback callback) {
+    for (int i = 0; i < events.size(); i++) {
+      final int batchIndex = i;
+      send(events.get(i), callback == null ? null : (metadata, exception) -> callback.onCompletion(
+          metadata != null ? metadata.withBatchIndex(batchIndex) : null, exception));
+    }
+  }
+
   /**
    * Flush the transport for the pending events. This can be a slow and heavy operation.
    * As such, it is not efficient to be invoked very frequently.
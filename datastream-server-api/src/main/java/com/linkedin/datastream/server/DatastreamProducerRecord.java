@@ -45,8 +45,13 @@ public class DatastreamProducerRecord {
     this(events, partition, partitionKey, destination, checkpoint, eventsSourceTimestamp, false);
   }
 
-  DatastreamProducerRecord(List<BrooklinEnvelope> events, Optional<Integer> partition, Optional<String> partitionKey,
-      Optional<String> destination, String checkpoint, long eventsSourceTimestamp, boolean isBroadcastRecord) {
+  /**
+   * Constructor for subclasses carrying the events of a particular source or transport in a more specific form. Other
+   * records should be created through {@link DatastreamProducerRecordBuilder}.
+   */
+  protected DatastreamProducerRecord(List<BrooklinEnvelope> events, Optional<Integer> partition,
+      Optional<String> partitionKey, Optional<String> destination, String checkpoint, long eventsSourceTimestamp,
+      boolean isBroadcastRecord) {
     Validate.notNull(events, "null event");
     events.forEach((e) -> Validate.notNull(e, "null event"));
     Validate.isTrue(eventsSourceTimestamp > 0, "events source timestamp is invalid");
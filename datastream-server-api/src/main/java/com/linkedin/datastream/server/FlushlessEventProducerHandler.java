@@ -6,6 +6,7 @@
 package com.linkedin.datastream.server;
 
 import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
@@ -92,6 +93,34 @@ public class FlushlessEventProducerHandler<T extends Comparable<T>> {
     }));
   }
 
+  /**
+   * Sends a batch of events from the same source partition to the transport with a single shared callback.
+   *
+   * NOTE: The checkpoints should be monotonically increasing, both within the batch and across calls for a given
+   * source and sourcePartition.
+   * @param records the events to send
+   * @param sourceCheckpoints the sourceCheckpoint associated with each event, indexed like {@code records}
+   * @param callback invoked once for each event, see {@link DatastreamEventProducer#sendBatch}
+   */
+  public void sendBatch(List<DatastreamProducerRecord> records, String source, int sourcePartition,
+      List<T> sourceCheckpoints, SendCallback callback) {
+    SourcePartition sp = new SourcePartition(source, sourcePartition);
+    CallbackStatus<T> status = _callbackStatusMap.computeIfAbsent(sp, d -> createCallbackStatusInstance());
+    for (T sourceCheckpoint : sourceCheckpoints) {
+      status.register(sourceCheckpoint);
+    }
+    _eventProducer.sendBatch(records, ((metadata, exception) -> {
+      if (exception != null) {
+        LOG.debug("Failed to send datastream record: " + metadata, exception);
+      } else if (metadata != null && metadata.getBatchIndex() >= 0) {
+        status.ack(sourceCheckpoints.get(metadata.getBatchIndex()));
+      }
+      if (callback != null) {
+        callback.onCompletion(metadata, exception);
+      }
+    }));
+  }
+
   /**
    * Get the latest safe checkpoint acknowledged by a sourcePartition, or an empty optional if no event has been
    * acknowledged.
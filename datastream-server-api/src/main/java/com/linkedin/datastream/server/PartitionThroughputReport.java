@@ -0,0 +1,120 @@
+/**
+ *  Copyright 2021 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.server;
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * The per-partition bytes and messages in rates measured by a datastream task over its last reporting window.
+ * Connectors save it in the task state under {@link #STATE_KEY}, from where the leader aggregates the reports of all
+ * the tasks of a datastream group into its throughput info.
+ */
+public class PartitionThroughputReport {
+  /**
+   * The datastream task state key under which the report is saved
+   */
+  public static final String STATE_KEY = "PARTITION_THROUGHPUT";
+
+  private long _timeStamp;
+  private long _windowMs;
+  private Map<String, Double> _bytesInKBRates = new HashMap<>();
+  private Map<String, Double> _messagesInRates = new HashMap<>();
+
+  /**
+   * Constructor for PartitionThroughputReport (needed for JSON deserialization)
+   */
+  public PartitionThroughputReport() {
+  }
+
+  /**
+   * Construct an instance of PartitionThroughputReport
+   * @param timeStamp the time at which the reporting window ended
+   * @param windowMs the length of the reporting window in milliseconds
+   */
+  public PartitionThroughputReport(long timeStamp, long windowMs) {
+    _timeStamp = timeStamp;
+    _windowMs = windowMs;
+  }
+
+  /**
+   * Record the rates of a partition
+   * @param partition the partition name, e.g. "topic-0"
+   * @param bytesInKBRate bytes in rate (in KB/sec)
+   * @param messagesInRate messages in rate (per sec)
+   */
+  public void addPartition(String partition, double bytesInKBRate, double messagesInRate) {
+    _bytesInKBRates.put(partition, bytesInKBRate);
+    _messagesInRates.put(partition, messagesInRate);
+  }
+
+  /**
+   * Get the time at which the reporting window ended
+   */
+  public long getTimeStamp() {
+    return _timeStamp;
+  }
+
+  /**
+   * Set the timestamp. Needed for JsonUtils.
+   * @param timeStamp timestamp
+   */
+  public void setTimeStamp(long timeStamp) {
+    _timeStamp = timeStamp;
+  }
+
+  /**
+   * Get the length of the reporting window in milliseconds
+   */
+  public long getWindowMs() {
+    return _windowMs;
+  }
+
+  /**
+   * Set the length of the reporting window. Needed for JsonUtils.
+   * @param windowMs window length in milliseconds
+   */
+  public void setWindowMs(long windowMs) {
+    _windowMs = windowMs;
+  }
+
+  /**
+   * Get the bytes in rates (in KB/sec) by partition name
+   */
+  public Map<String, Double> getBytesInKBRates() {
+    return _bytesInKBRates;
+  }
+
+  /**
+   * Set the bytes in rates. Needed for JsonUtils.
+   * @param bytesInKBRates bytes in rates (in KB/sec) by partition name
+   */
+  public void setBytesInKBRates(Map<String, Double> bytesInKBRates) {
+    _bytesInKBRates = bytesInKBRates;
+  }
+
+  /**
+   * Get the messages in rates (per sec) by partition name
+   */
+  public Map<String, Double> getMessagesInRates() {
+    return _messagesInRates;
+  }
+
+  /**
+   * Set the messages in rates. Needed for JsonUtils.
+   * @param messagesInRates messages in rates (per sec) by partition name
+   */
+  public void setMessagesInRates(Map<String, Double> messagesInRates) {
+    _messagesInRates = messagesInRates;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("PartitionThroughputReport: Timestamp=%d, windowMs=%d, partitions=%d", _timeStamp, _windowMs,
+        _bytesInKBRates.size());
+  }
+}
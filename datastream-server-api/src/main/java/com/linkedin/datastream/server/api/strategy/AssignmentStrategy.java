@@ -91,6 +91,32 @@ public interface AssignmentStrategy {
     throw new NotImplementedException("movePartitions are not implemented");
   }
 
+  /**
+   * Plan the partition moves which rebalance the load of a datastream group across its tasks and instances, in the
+   * target assignment format of {@link #movePartitions}. It is called periodically by the Brooklin Coordinator leader
+   * if partition rebalancing is enabled, and the moves are then applied with {@link #movePartitions}.
+   *
+   * @param currentAssignment the current assignment, it is a mapping from instance name -> datastream task. The mapping
+   *                          covers all datastream groups across all instances
+   * @param partitionsMetadata the subscribed partitions metadata received from connector
+   * @return the target assignment, it is a mapping from instance name -> topicPartition; empty if no move is needed
+   */
+  default Map<String, Set<String>> planPartitionRebalance(Map<String, Set<DatastreamTask>> currentAssignment,
+      DatastreamGroupPartitionsMetadata partitionsMetadata) {
+    return Collections.emptyMap();
+  }
+
+  /**
+   * Notify that the moves planned by {@link #planPartitionRebalance} were applied, and the new assignment was
+   * published to Zookeeper. It is not called for the plans whose assignment failed to be published.
+   *
+   * @param targetAssignment the target assignment returned by {@link #planPartitionRebalance}
+   * @param partitionsMetadata the subscribed partitions metadata received from connector
+   */
+  default void onPartitionRebalanceApplied(Map<String, Set<String>> targetAssignment,
+      DatastreamGroupPartitionsMetadata partitionsMetadata) {
+  }
+
   /**
    * Validate the current assignment and return the list of DatastreamTask per instance to be cleaned up.
    *
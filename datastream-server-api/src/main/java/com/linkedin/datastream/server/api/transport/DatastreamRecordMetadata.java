@@ -18,6 +18,7 @@ public class DatastreamRecordMetadata {
   private final String _checkpoint;
   private final int _eventIndex;
   private final int _sourcePartition;
+  private final int _batchIndex;
 
   // Broadcast record metadata.
   private final boolean _isBroadcastRecord;
@@ -41,6 +42,7 @@ public class DatastreamRecordMetadata {
     _sentToPartitions = null;
     _partitionCount = -1;
     _isMessageSerializationError = false;
+    _batchIndex = -1;
   }
 
   /**
@@ -61,6 +63,30 @@ public class DatastreamRecordMetadata {
     _sentToPartitions = null;
     _partitionCount = -1;
     _isMessageSerializationError = false;
+    _batchIndex = -1;
+  }
+
+  /**
+   * Construct an instance of DatastreamRecordMetadata for a record sent as part of a batch.
+   * @param checkpoint checkpoint string
+   * @param topic Kafka topic name
+   * @param partition Destination Kafka topic partition
+   * @param eventIndex Index of event within {@link com.linkedin.datastream.server.DatastreamProducerRecord}
+   * @param sourcePartition Source Kafka topic partition
+   * @param batchIndex Index of the {@link com.linkedin.datastream.server.DatastreamProducerRecord} within the batch
+   */
+  public DatastreamRecordMetadata(String checkpoint, String topic, int partition, int eventIndex, int sourcePartition,
+      int batchIndex) {
+    _checkpoint = checkpoint;
+    _topic = topic;
+    _partition = partition;
+    _eventIndex = eventIndex;
+    _sourcePartition = sourcePartition;
+    _isBroadcastRecord = false;
+    _sentToPartitions = null;
+    _partitionCount = -1;
+    _isMessageSerializationError = false;
+    _batchIndex = batchIndex;
   }
 
   /**
@@ -83,6 +109,7 @@ public class DatastreamRecordMetadata {
     _partition = -1;
     _partitionCount = partitionCount;
     _isMessageSerializationError = false;
+    _batchIndex = -1;
   }
 
   /**
@@ -100,6 +127,7 @@ public class DatastreamRecordMetadata {
     _partition = -1;
     _partitionCount = -1;
     _isMessageSerializationError = isMessageSerializationError;
+    _batchIndex = -1;
   }
 
   /**
@@ -138,6 +166,22 @@ public class DatastreamRecordMetadata {
     return _sourcePartition;
   }
 
+  /**
+   * Index of the {@link com.linkedin.datastream.server.DatastreamProducerRecord} within the list passed to
+   * {@code sendBatch}, or -1 if the record was not sent as part of a batch.
+   */
+  public int getBatchIndex() {
+    return _batchIndex;
+  }
+
+  /**
+   * Copy of this metadata tagged with the given batch index.
+   * @param batchIndex Index of the {@link com.linkedin.datastream.server.DatastreamProducerRecord} within the batch
+   */
+  public DatastreamRecordMetadata withBatchIndex(int batchIndex) {
+    return new DatastreamRecordMetadata(_checkpoint, _topic, _partition, _eventIndex, _sourcePartition, batchIndex);
+  }
+
   @Override
   public String toString() {
     return String.format("Checkpoint: %s, Topic: %s, Destination Partition: %d, Event Index: %d, Source Partition: %d",
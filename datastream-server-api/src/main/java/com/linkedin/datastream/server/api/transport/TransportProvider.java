@@ -5,6 +5,8 @@
  */
 package com.linkedin.datastream.server.api.transport;
 
+import java.util.List;
+
 import com.linkedin.datastream.server.DatastreamProducerRecord;
 
 
@@ -29,6 +31,27 @@ public interface TransportProvider {
    */
   void send(String destination, DatastreamProducerRecord record, SendCallback onComplete);
 
+  /**
+   * Send a batch of DatastreamEvents to the topic, paying the per-send overhead (validation, metrics, etc.) once
+   * for the whole batch instead of once per record.
+   *
+   * <p>
+   * The same callback is shared by all the records in the batch. It is invoked once for each event of each record,
+   * and {@link DatastreamRecordMetadata#getBatchIndex()} identifies the record within {@code records} when the
+   * metadata is available. The default implementation falls back to calling {@link #send} for each record.
+   *
+   * @param destination the destination topic to which the records should be sent.
+   * @param records DatastreamEvents that need to be sent to the stream, in order.
+   * @param onComplete call back that needs to called when the send of each event completes.
+   */
+  default void sendBatch(String destination, List<DatastreamProducerRecord> records, SendCallback onComplete) {
+    for (int i = 0; i < records.size(); i++) {
+      final int batchIndex = i;
+      send(destination, records.get(i), onComplete == null ? null : (metadata, exception) -> onComplete.onCompletion(
+          metadata != null ? metadata.withBatchIndex(batchIndex) : null, exception));
+    }
+  }
+
   /**
    * Closes the transport provider and its corresponding producer.
    */
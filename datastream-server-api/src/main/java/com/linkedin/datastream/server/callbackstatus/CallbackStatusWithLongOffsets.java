@@ -0,0 +1,321 @@
+/**
+ *  Copyright 2021 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.server.callbackstatus;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Helper class to store the callback status of the inflight events with primitive {@code long} offsets
+ * (e.g. Kafka offsets). It returns the same ack checkpoints as {@link CallbackStatusWithComparableOffsets},
+ * but keeps the in-flight offsets in a primitive ring buffer instead of collections of boxed values, and
+ * takes no locks on either the register or the ack path.
+ *
+ * Registered offsets are appended to the ring in registration order, which is expected to be strictly
+ * increasing. An ack locates its slot (directly for contiguous offsets, by binary search otherwise) and
+ * marks it with its sequence number. The ack checkpoint is then advanced over the run of acked slots at
+ * the head of the ring by a single draining thread at a time. The ring doubles in size when full, so it
+ * only allocates while the in-flight window is growing.
+ *
+ * {@link #register(Long)} must be called from a single thread at a time (the connector task thread),
+ * while {@link #ack(Long)} may be called concurrently from any number of producer callback threads.
+ */
+public class CallbackStatusWithLongOffsets extends CallbackStatus<Long> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CallbackStatusWithLongOffsets.class);
+
+  static final int DEFAULT_INITIAL_CAPACITY = 1024;
+
+  private static final long NO_CHECKPOINT = Long.MIN_VALUE;
+
+  // ring of registered offsets, replaced only by the registering thread when full
+  private volatile Ring _ring;
+
+  // sequence number of the oldest registered offset that is not yet covered by the ack checkpoint
+  private volatile long _head = 0;
+
+  // sequence number that will be given to the next registered offset
+  private volatile long _tail = 0;
+
+  // number of offsets acked past the current checkpoint
+  private final AtomicLong _ackedPastCheckpoint = new AtomicLong();
+
+  // work-in-progress counter guaranteeing that only one thread advances the checkpoint at a time
+  private final AtomicInteger _drainWip = new AtomicInteger();
+
+  // sequence number of the last offset registered out of order. Acks fall back to a linear scan until the head
+  // passes it, since the offsets of the ring are only sorted from there on.
+  private volatile long _unorderedSeq = 0;
+
+  // the last checkpoint-ed record's offset, or NO_CHECKPOINT if nothing has been acked yet
+  private volatile long _currentCheckpoint = NO_CHECKPOINT;
+
+  /**
+   * Constructor for CallbackStatusWithLongOffsets
+   */
+  public CallbackStatusWithLongOffsets() {
+    this(DEFAULT_INITIAL_CAPACITY);
+  }
+
+  /**
+   * Constructor for CallbackStatusWithLongOffsets
+   * @param initialCapacity initial number of in-flight offsets the ring can hold; rounded up to a power of two
+   */
+  public CallbackStatusWithLongOffsets(int initialCapacity) {
+    if (initialCapacity <= 0) {
+      throw new IllegalArgumentException("initialCapacity must be positive: " + initialCapacity);
+    }
+    int capacity = Integer.highestOneBit(initialCapacity);
+    _ring = new Ring(capacity < initialCapacity ? capacity << 1 : capacity);
+  }
+
+  /**
+   * Get the latest checkpoint to be acked
+   * @return the latest safe offset, or null if no offset has been acked yet
+   */
+  @Override
+  public Long getAckCheckpoint() {
+    long checkpoint = _currentCheckpoint;
+    return checkpoint == NO_CHECKPOINT ? null : checkpoint;
+  }
+
+  /**
+   * Get the count of the records which are in flight
+   */
+  @Override
+  public long getInFlightCount() {
+    // read the acked count first; it is decremented before _head is advanced, so the result is never negative
+    long acked = _ackedPastCheckpoint.get();
+    long head = _head;
+    return Math.max(0, _tail - head - acked);
+  }
+
+  /**
+   * Get the count of the records which are all acked from the producer
+   */
+  @Override
+  public long getAckMessagesPastCheckpointCount() {
+    return _ackedPastCheckpoint.get();
+  }
+
+  /**
+   * Registers the given checkpoint by appending it to the ring of in-flight offsets.
+   * @param checkpoint is the latest record acked by the producer of the underlying pub sub framework
+   */
+  @Override
+  public void register(Long checkpoint) {
+    long offset = checkpoint;
+    long tail = _tail;
+    Ring ring = _ring;
+    if (tail > _head && offset <= ring.offsetAt(tail - 1)) {
+      LOG.error("Internal state error; checkpoint {} registered after {}", checkpoint, ring.offsetAt(tail - 1));
+      // published along with the new tail
+      _unorderedSeq = tail;
+    }
+    if (tail - _head >= ring.capacity()) {
+      ring = grow(ring, tail);
+    }
+    ring._offsets[ring.slot(tail)] = offset;
+    // publishing the new tail makes the offset visible to the ack and drain paths
+    _tail = tail + 1;
+  }
+
+  /**
+   * The checkpoint acknowledgement can be received out of order. The acked slot is marked, and the ackCheckpoint
+   * only moves forward once all the offsets registered before it have been acked as well.
+   */
+  @Override
+  public void ack(Long checkpoint) {
+    long seq = locate(checkpoint);
+    if (seq < 0) {
+      LOG.error("Internal state error; could not remove checkpoint {}", checkpoint);
+      return;
+    }
+    // counted before the slot is marked, so that a drain retiring the slot never makes the count negative
+    _ackedPastCheckpoint.incrementAndGet();
+
+    // The ring may be replaced while we mark the slot; re-mark on the new ring until we have marked the current one.
+    Ring ring = _ring;
+    if (!ring.markAcked(seq)) {
+      _ackedPastCheckpoint.decrementAndGet();
+      LOG.error("Internal state error; checkpoint {} acked more than once", checkpoint);
+      return;
+    }
+    Ring current;
+    while ((current = _ring) != ring) {
+      ring = current;
+      ring.markAcked(seq);
+    }
+    drain();
+  }
+
+  /**
+   * Find the sequence number of a registered offset that is not yet covered by the checkpoint, or -1 if none.
+   */
+  private long locate(long offset) {
+    while (true) {
+      // read the tail first so that the ring read afterwards is guaranteed to contain every sequence below it
+      long tail = _tail;
+      Ring ring = _ring;
+      long head = _head;
+      long seq = head < _unorderedSeq ? scan(ring, head, tail, offset) : search(ring, head, tail, offset);
+      if (seq >= 0) {
+        return seq;
+      }
+      // slots below a moving head may be reused by newer offsets during the search, so retry until it is stable
+      if (head == _head && ring == _ring) {
+        return -1;
+      }
+    }
+  }
+
+  private static long search(Ring ring, long head, long tail, long offset) {
+    if (head >= tail) {
+      return -1;
+    }
+    // offsets are usually contiguous, in which case the slot can be computed directly
+    long guess = head + (offset - ring.offsetAt(head));
+    if (guess >= head && guess < tail && ring.offsetAt(guess) == offset) {
+      return guess;
+    }
+    long lo = head;
+    long hi = tail - 1;
+    while (lo <= hi) {
+      long mid = (lo + hi) >>> 1;
+      long value = ring.offsetAt(mid);
+      if (value < offset) {
+        lo = mid + 1;
+      } else if (value > offset) {
+        hi = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  private static long scan(Ring ring, long head, long tail, long offset) {
+    for (long seq = head; seq < tail; seq++) {
+      if (ring.offsetAt(seq) == offset && !ring.isAcked(seq)) {
+        return seq;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Advance the checkpoint over the acked slots at the head of the ring. Threads arriving while another thread is
+   * draining only bump the work-in-progress counter, which makes the draining thread go around once more.
+   */
+  private void drain() {
+    if (_drainWip.getAndIncrement() != 0) {
+      return;
+    }
+    int missed = 1;
+    do {
+      long tail = _tail;
+      Ring ring = _ring;
+      long head = _head;
+      long retired = 0;
+      long last = NO_CHECKPOINT;
+      while (head < tail && ring.isAcked(head)) {
+        last = ring.offsetAt(head);
+        head++;
+        retired++;
+      }
+      if (retired > 0) {
+        long current = _currentCheckpoint;
+        if (current != NO_CHECKPOINT && last < current) {
+          // last is less than current checkpoint, should not happen
+          LOG.error(
+              "Internal error: checkpoints should progress in increasing order. Resolved checkpoint as {} which is "
+                  + "less than current checkpoint of {}", last, current);
+        }
+        _currentCheckpoint = last;
+        _ackedPastCheckpoint.addAndGet(-retired);
+        _head = head;
+      }
+      missed = _drainWip.addAndGet(-missed);
+    } while (missed != 0);
+  }
+
+  /**
+   * Double the ring. The new ring is published before the ack marks are copied over, so an ack racing with the copy
+   * either lands on the old ring before its marks are read, or observes the new ring and marks it as well.
+   */
+  private Ring grow(Ring old, long tail) {
+    Ring ring = new Ring(old.capacity() << 1);
+    long head = _head;
+    for (long seq = head; seq < tail; seq++) {
+      ring._offsets[ring.slot(seq)] = old.offsetAt(seq);
+    }
+    _ring = ring;
+    for (long seq = head; seq < tail; seq++) {
+      if (old.isAcked(seq)) {
+        ring.markAcked(seq);
+      }
+    }
+    LOG.debug("Grew in-flight offset ring to {} slots", ring.capacity());
+    // acks copied above may have been missed by a concurrent drain of the old ring
+    drain();
+    return ring;
+  }
+
+  /**
+   * Fixed-size, power-of-two ring of registered offsets and their ack marks. A slot's ack mark holds the sequence
+   * number it was acked for plus one, so stale marks left over from a previous lap of the ring are never mistaken
+   * for an ack of the sequence currently occupying the slot.
+   */
+  private static final class Ring {
+    private final long[] _offsets;
+    private final AtomicLongArray _ackMarks;
+    private final int _mask;
+
+    Ring(int capacity) {
+      _offsets = new long[capacity];
+      _ackMarks = new AtomicLongArray(capacity);
+      _mask = capacity - 1;
+    }
+
+    int capacity() {
+      return _offsets.length;
+    }
+
+    int slot(long seq) {
+      return (int) seq & _mask;
+    }
+
+    long offsetAt(long seq) {
+      return _offsets[slot(seq)];
+    }
+
+    boolean isAcked(long seq) {
+      return _ackMarks.get(slot(seq)) == seq + 1;
+    }
+
+    /**
+     * Mark the slot of a sequence as acked
+     * @return false if the sequence was already marked
+     */
+    boolean markAcked(long seq) {
+      int slot = slot(seq);
+      long mark = seq + 1;
+      long current;
+      // marks only move forward, so a late mark for an older sequence never overwrites a newer one
+      while ((current = _ackMarks.get(slot)) < mark) {
+        if (_ackMarks.compareAndSet(slot, current, mark)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
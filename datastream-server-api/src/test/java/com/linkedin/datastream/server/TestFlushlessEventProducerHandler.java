@@ -23,6 +23,7 @@ import com.linkedin.datastream.server.api.transport.DatastreamRecordMetadata;
 import com.linkedin.datastream.server.api.transport.SendCallback;
 import com.linkedin.datastream.server.callbackstatus.CallbackStatusFactory;
 import com.linkedin.datastream.server.callbackstatus.CallbackStatusWithComparableOffsetsFactory;
+import com.linkedin.datastream.server.callbackstatus.CallbackStatusWithLongOffsetsFactory;
 import com.linkedin.datastream.server.callbackstatus.CallbackStatusWithNonComparableOffsetsFactory;
 
 import static com.linkedin.datastream.server.FlushlessEventProducerHandler.SourcePartition;
@@ -42,6 +43,9 @@ public class TestFlushlessEventProducerHandler {
   private static final CallbackStatusFactory<Long> OFFSET_CHECKPOINT_TRACKING_STRATEGY_WITH_COMPARABLE_OFFSETS =
       ReflectionUtils.createInstance(CallbackStatusWithComparableOffsetsFactory.class.getName());
 
+  private static final CallbackStatusFactory<Long> OFFSET_CHECKPOINT_TRACKING_STRATEGY_WITH_LONG_OFFSETS =
+      ReflectionUtils.createInstance(CallbackStatusWithLongOffsetsFactory.class.getName());
+
   /**
    * Helper function to test the scenario of sending single record for both comparable and non comparable offsets
    * @param eventProducer is the interface for Connectors to send events to the designated destination
@@ -80,12 +84,37 @@ public class TestFlushlessEventProducerHandler {
     testSingleRecordWithGivenHandler(eventProducer, handler);
   }
 
+  @Test
+  public void testSingleRecordWithLongOffsets() {
+    RandomEventProducer eventProducer = new RandomEventProducer();
+    FlushlessEventProducerHandler<Long> handler =
+        new FlushlessEventProducerHandler<>(eventProducer, OFFSET_CHECKPOINT_TRACKING_STRATEGY_WITH_LONG_OFFSETS);
+    testSingleRecordWithGivenHandler(eventProducer, handler);
+  }
+
   @Test
   public void testMultipleSendsWithComparableOffsets() {
     RandomEventProducer eventProducer = new RandomEventProducer();
     FlushlessEventProducerHandler<Long> handler =
         new FlushlessEventProducerHandler<>(eventProducer, OFFSET_CHECKPOINT_TRACKING_STRATEGY_WITH_COMPARABLE_OFFSETS);
+    testMultipleSendsWithGivenHandler(eventProducer, handler);
+  }
 
+  @Test
+  public void testMultipleSendsWithLongOffsets() {
+    RandomEventProducer eventProducer = new RandomEventProducer();
+    FlushlessEventProducerHandler<Long> handler =
+        new FlushlessEventProducerHandler<>(eventProducer, OFFSET_CHECKPOINT_TRACKING_STRATEGY_WITH_LONG_OFFSETS);
+    testMultipleSendsWithGivenHandler(eventProducer, handler);
+  }
+
+  /**
+   * Helper function to test that the safe checkpoint never passes a pending message while acks arrive in random order
+   * @param eventProducer is the interface for Connectors to send events to the designated destination
+   * @param handler is the flushless producer handler that does offset checkpoint management
+   */
+  private void testMultipleSendsWithGivenHandler(RandomEventProducer eventProducer,
+      FlushlessEventProducerHandler<Long> handler) {
     // Send 1000 messages to 10 partitions
     for (int i = 0; i < 10; i++) {
       SourcePartition tp = new SourcePartition(TOPIC, i);
@@ -223,6 +252,14 @@ public class TestFlushlessEventProducerHandler {
     testOutOfOrderAckForGivenHandler(eventProducer, handler);
   }
 
+  @Test
+  public void testOutOfOrderAckForLongOffsets() {
+    RandomEventProducer eventProducer = new RandomEventProducer();
+    FlushlessEventProducerHandler<Long> handler =
+        new FlushlessEventProducerHandler<>(eventProducer, OFFSET_CHECKPOINT_TRACKING_STRATEGY_WITH_LONG_OFFSETS);
+    testOutOfOrderAckForGivenHandler(eventProducer, handler);
+  }
+
   @Test
   public void testOutOfOrderAckForNonComparableOffsets() {
     RandomEventProducer eventProducer = new RandomEventProducer();
@@ -268,6 +305,14 @@ public class TestFlushlessEventProducerHandler {
     testBackwardsOrderAckWithGivenHandler(eventProducer, handler);
   }
 
+  @Test
+  public void testBackwardsOrderAckWithLongOffsets() {
+    RandomEventProducer eventProducer = new RandomEventProducer();
+    FlushlessEventProducerHandler<Long> handler =
+        new FlushlessEventProducerHandler<>(eventProducer, OFFSET_CHECKPOINT_TRACKING_STRATEGY_WITH_LONG_OFFSETS);
+    testBackwardsOrderAckWithGivenHandler(eventProducer, handler);
+  }
+
   @Test
   public void testBackwardsOrderAckWithNonComparableOffsets() {
     RandomEventProducer eventProducer = new RandomEventProducer();
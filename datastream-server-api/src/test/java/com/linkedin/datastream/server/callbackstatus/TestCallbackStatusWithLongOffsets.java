@@ -0,0 +1,135 @@
+/**
+ *  Copyright 2021 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.server.callbackstatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+/**
+ * Tests for {@link CallbackStatusWithLongOffsets}
+ */
+public class TestCallbackStatusWithLongOffsets {
+  private static final Random RANDOM = new Random();
+
+  @Test
+  public void testMatchesComparableOffsetsWithGapsAndGrowth() {
+    // a tiny initial ring forces several resizes, and non-contiguous offsets exercise the binary search
+    CallbackStatus<Long> status = new CallbackStatusWithLongOffsets(4);
+    CallbackStatus<Long> expected = new CallbackStatusWithComparableOffsets<>();
+
+    List<Long> pending = new ArrayList<>();
+    long offset = 0;
+    for (int round = 0; round < 50; round++) {
+      int toRegister = RANDOM.nextInt(40);
+      for (int i = 0; i < toRegister; i++) {
+        offset += 1 + RANDOM.nextInt(3);
+        status.register(offset);
+        expected.register(offset);
+        pending.add(offset);
+      }
+      Collections.shuffle(pending, RANDOM);
+      int toAck = pending.isEmpty() ? 0 : RANDOM.nextInt(pending.size() + 1);
+      for (int i = 0; i < toAck; i++) {
+        Long checkpoint = pending.remove(pending.size() - 1);
+        status.ack(checkpoint);
+        expected.ack(checkpoint);
+        Assert.assertEquals(status.getAckCheckpoint(), expected.getAckCheckpoint());
+        Assert.assertEquals(status.getInFlightCount(), expected.getInFlightCount());
+        Assert.assertEquals(status.getAckMessagesPastCheckpointCount(), expected.getAckMessagesPastCheckpointCount());
+      }
+    }
+  }
+
+  @Test
+  public void testConcurrentAcks() throws Exception {
+    int numAckers = 4;
+    int numOffsets = 100_000;
+    CallbackStatusWithLongOffsets status = new CallbackStatusWithLongOffsets(16);
+    for (long i = 0; i < numOffsets; i++) {
+      status.register(i);
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(numAckers);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < numAckers; t++) {
+        int acker = t;
+        futures.add(executor.submit(() -> {
+          for (long i = acker; i < numOffsets; i += numAckers) {
+            status.ack(i);
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    Assert.assertEquals(status.getAckCheckpoint(), Long.valueOf(numOffsets - 1));
+    Assert.assertEquals(status.getInFlightCount(), 0);
+    Assert.assertEquals(status.getAckMessagesPastCheckpointCount(), 0);
+  }
+
+  @Test
+  public void testUnknownAckDoesNotMoveCheckpoint() {
+    CallbackStatus<Long> status = new CallbackStatusWithLongOffsets();
+    status.register(10L);
+    status.register(11L);
+    status.ack(12L);
+    Assert.assertNull(status.getAckCheckpoint());
+    Assert.assertEquals(status.getInFlightCount(), 2);
+    status.ack(10L);
+    Assert.assertEquals(status.getAckCheckpoint(), Long.valueOf(10));
+  }
+
+  @Test
+  public void testDuplicateAckIsCountedOnce() {
+    CallbackStatus<Long> status = new CallbackStatusWithLongOffsets();
+    status.register(10L);
+    status.register(11L);
+    status.register(12L);
+    status.ack(11L);
+    status.ack(11L);
+    Assert.assertEquals(status.getAckMessagesPastCheckpointCount(), 1);
+    Assert.assertEquals(status.getInFlightCount(), 2);
+    status.ack(10L);
+    Assert.assertEquals(status.getAckCheckpoint(), Long.valueOf(11));
+    Assert.assertEquals(status.getAckMessagesPastCheckpointCount(), 0);
+    Assert.assertEquals(status.getInFlightCount(), 1);
+  }
+
+  @Test
+  public void testAcksAfterOutOfOrderRegistration() {
+    CallbackStatus<Long> status = new CallbackStatusWithLongOffsets();
+    status.register(10L);
+    status.register(5L);
+    status.register(20L);
+    status.register(21L);
+    status.ack(5L);
+    status.ack(10L);
+    Assert.assertEquals(status.getAckCheckpoint(), Long.valueOf(5));
+
+    // the out of order offsets are drained, and the offsets registered since are found again
+    status.register(30L);
+    status.ack(30L);
+    status.ack(21L);
+    Assert.assertEquals(status.getAckMessagesPastCheckpointCount(), 2);
+    status.ack(20L);
+    Assert.assertEquals(status.getAckCheckpoint(), Long.valueOf(30));
+    Assert.assertEquals(status.getInFlightCount(), 0);
+  }
+}
@@ -32,6 +32,8 @@ import com.codahale.metrics.jmx.JmxReporter;
 
 import com.linkedin.datastream.common.DatastreamException;
 import com.linkedin.datastream.common.DatastreamRuntimeException;
+import com.linkedin.datastream.common.DatastreamThreadFactory;
+import com.linkedin.datastream.common.DatastreamThreadFactory.ThreadMode;
 import com.linkedin.datastream.common.ErrorLogger;
 import com.linkedin.datastream.common.ReflectionUtils;
 import com.linkedin.datastream.common.ThreadTerminationMonitor;
@@ -71,6 +73,7 @@ import static com.linkedin.datastream.server.DatastreamServerConfigurationConsta
 import static com.linkedin.datastream.server.DatastreamServerConfigurationConstants.CONFIG_HTTP_PORT;
 import static com.linkedin.datastream.server.DatastreamServerConfigurationConstants.CONFIG_SERDE_NAMES;
 import static com.linkedin.datastream.server.DatastreamServerConfigurationConstants.CONFIG_SERDE_PREFIX;
+import static com.linkedin.datastream.server.DatastreamServerConfigurationConstants.CONFIG_THREAD_MODE;
 import static com.linkedin.datastream.server.DatastreamServerConfigurationConstants.CONFIG_TRANSPORT_PROVIDER_NAMES;
 import static com.linkedin.datastream.server.DatastreamServerConfigurationConstants.CONFIG_TRANSPORT_PROVIDER_PREFIX;
 import static com.linkedin.datastream.server.DatastreamServerConfigurationConstants.DEFAULT_DEDUPER_FACTORY;
@@ -134,6 +137,10 @@ public class DatastreamServer {
     _properties = properties;
     VerifiableProperties verifiableProperties = new VerifiableProperties(_properties);
 
+    // set before any connector or executor creates its threads
+    String threadMode = verifiableProperties.getString(CONFIG_THREAD_MODE, ThreadMode.PLATFORM.name());
+    DatastreamThreadFactory.setThreadMode(ThreadMode.valueOf(threadMode.toUpperCase(Locale.ROOT)));
+
     HashSet<String> connectorTypes = new HashSet<>(verifiableProperties.getStringList(CONFIG_CONNECTOR_NAMES,
         Collections.emptyList()));
     if (connectorTypes.size() == 0) {
@@ -156,7 +163,8 @@ public class DatastreamServer {
     ZkClient zkClient = new ZkClient(coordinatorConfig.getZkAddress(), coordinatorConfig.getZkSessionTimeout(),
         coordinatorConfig.getZkConnectionTimeout());
 
-    CachedDatastreamReader datastreamCache = new CachedDatastreamReader(zkClient, coordinatorConfig.getCluster());
+    CachedDatastreamReader datastreamCache = new CachedDatastreamReader(zkClient, coordinatorConfig.getCluster(),
+        DynamicMetricsManager.getInstance());
     _coordinator = new Coordinator(datastreamCache, coordinatorConfig);
     LOG.info("Loading connectors {}", connectorTypes);
     _bootstrapConnectors = new HashMap<>();
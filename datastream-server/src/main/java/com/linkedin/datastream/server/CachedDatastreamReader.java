@@ -6,8 +6,11 @@
 package com.linkedin.datastream.server;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -15,7 +18,10 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
+import org.apache.commons.lang3.Validate;
+import org.apache.helix.zookeeper.zkclient.IZkDataListener;
 import org.apache.helix.zookeeper.zkclient.exception.ZkNoNodeException;
+import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,6 +30,13 @@ import com.google.common.annotations.VisibleForTesting;
 import com.linkedin.datastream.common.Datastream;
 import com.linkedin.datastream.common.DatastreamUtils;
 import com.linkedin.datastream.common.zk.ZkClient;
+import com.linkedin.datastream.metrics.BrooklinHistogramInfo;
+import com.linkedin.datastream.metrics.BrooklinMeterInfo;
+import com.linkedin.datastream.metrics.BrooklinMetricInfo;
+import com.linkedin.datastream.metrics.DynamicMetricsManager;
+import com.linkedin.datastream.metrics.HistogramHandle;
+import com.linkedin.datastream.metrics.MeterHandle;
+import com.linkedin.datastream.metrics.MetricsAware;
 import com.linkedin.datastream.server.zk.KeyBuilder;
 
 
@@ -32,19 +45,38 @@ import com.linkedin.datastream.server.zk.KeyBuilder;
  *
  * List of all the datastream names are always kept up-to date (barring ZK watcher delay).
  * But the complete datastream objects are lazily read from ZooKeeper when they are
- * requested.
+ * requested. Each cached datastream is watched, and only re-read from ZooKeeper once
+ * its znode changes. The datastream groups are indexed by task prefix as the datastreams
+ * are cached, and a group is only rebuilt once one of its datastreams changes.
  *
  * Note: Caller of this class is expected to call invalidateAllCache for any datastream
- * update events such that any future datastream accesses will update the cached copies.
+ * update events such that any future datastream accesses will check that the cached copies
+ * are up-to-date, since the update may be observed before the watch notification.
  */
-public class CachedDatastreamReader {
+public class CachedDatastreamReader implements MetricsAware {
   private static final Logger LOG = LoggerFactory.getLogger(CachedDatastreamReader.class);
+  private static final String CLASS_NAME = CachedDatastreamReader.class.getSimpleName();
+
+  static final String CACHE_HITS = "cacheHits";
+  static final String CACHE_MISSES = "cacheMisses";
+  static final String REFRESH_LATENCY_MS = "refreshLatencyMs";
 
   private final String _cluster;
   private final ZkClient _zkclient;
+  private final IZkDataListener _datastreamListener = new DatastreamListener();
+
+  // null if the metrics are not enabled
+  private final MeterHandle _cacheHits;
+  private final MeterHandle _cacheMisses;
+  private final HistogramHandle _refreshLatencyMs;
 
   private List<String> _datastreamNames;
-  private final Map<String, Datastream> _datastreams = new ConcurrentHashMap<>();
+  private final Map<String, CachedDatastream> _datastreams = new ConcurrentHashMap<>();
+  // datastreams whose znode may have changed since they were last read
+  private final Set<String> _staleDatastreams = ConcurrentHashMap.newKeySet();
+  // datastreams by task prefix, and the groups built from them
+  private final Map<String, Map<String, Datastream>> _datastreamsByTaskPrefix = new HashMap<>();
+  private final Map<String, DatastreamGroup> _datastreamGroups = new HashMap<>();
 
   /**
    * Constructor for CachedDatastreamReader
@@ -52,9 +84,29 @@ public class CachedDatastreamReader {
    * @param cluster Brooklin cluster name
    */
   public CachedDatastreamReader(ZkClient zkclient, String cluster) {
+    this(zkclient, cluster, null);
+  }
+
+  /**
+   * Constructor for CachedDatastreamReader which reports the cache metrics
+   * @param zkclient ZooKeeper client to use
+   * @param cluster Brooklin cluster name
+   * @param dynamicMetricsManager metrics manager to report the cache metrics to; if null, they are not reported
+   */
+  public CachedDatastreamReader(ZkClient zkclient, String cluster, DynamicMetricsManager dynamicMetricsManager) {
     _zkclient = zkclient;
     _cluster = cluster;
 
+    if (dynamicMetricsManager != null) {
+      _cacheHits = dynamicMetricsManager.meterHandle(CLASS_NAME, CACHE_HITS);
+      _cacheMisses = dynamicMetricsManager.meterHandle(CLASS_NAME, CACHE_MISSES);
+      _refreshLatencyMs = dynamicMetricsManager.histogramHandle(CLASS_NAME, null, REFRESH_LATENCY_MS);
+    } else {
+      _cacheHits = null;
+      _cacheMisses = null;
+      _refreshLatencyMs = null;
+    }
+
     // Get the initial datastream list.
     _datastreamNames = fetchAllDatastreamNamesFromZk();
 
@@ -68,13 +120,8 @@ public class CachedDatastreamReader {
         LOG.debug(
             String.format("Received datastream add or delete notification. parentPath %s, children %s", parentPath,
                 currentChildren));
-        _datastreamNames = new ArrayList<>(currentChildren);
-        Set<String> datastreamsRemoved = new HashSet<>(_datastreams.keySet());
-        datastreamsRemoved.removeAll(_datastreamNames);
-        if (!datastreamsRemoved.isEmpty()) {
-          LOG.info("Removing the deleted datastreams {} from cache", datastreamsRemoved);
-          _datastreams.keySet().removeAll(datastreamsRemoved);
-        }
+        _datastreamNames = currentChildren == null ? new ArrayList<>() : new ArrayList<>(currentChildren);
+        evictDeletedDatastreams();
 
         LOG.debug("New datastream list in the cache: {}", _datastreamNames);
       }
@@ -82,18 +129,16 @@ public class CachedDatastreamReader {
   }
 
   /**
-   * Get the current datastream groups in the cache (no calls to ZK).
+   * Get the current datastream groups in the cache (no calls to ZK for the datastreams which did not change).
    */
   public synchronized List<DatastreamGroup> getDatastreamGroups() {
-    List<Datastream> allStreams = getAllDatastreams(false);
-
-    Map<String, List<Datastream>> streamsByTaskPrefix = allStreams.stream()
-        .filter(DatastreamUtils::containsTaskPrefix)
-        .collect(Collectors.groupingBy(DatastreamUtils::getTaskPrefix, Collectors.toList()));
+    // make sure every datastream is cached and up-to-date
+    getAllDatastreams(false);
 
-    return streamsByTaskPrefix.keySet()
+    return _datastreamsByTaskPrefix.keySet()
         .stream()
-        .map(x -> new DatastreamGroup(streamsByTaskPrefix.get(x)))
+        .map(taskPrefix -> _datastreamGroups.computeIfAbsent(taskPrefix,
+            x -> new DatastreamGroup(new ArrayList<>(_datastreamsByTaskPrefix.get(x).values()))))
         .collect(Collectors.toList());
   }
 
@@ -105,7 +150,7 @@ public class CachedDatastreamReader {
   }
 
   /**
-   * Get the current list of datastreams in the cache (no calls to ZK).
+   * Get the current list of datastreams in the cache (no calls to ZK for the datastreams which did not change).
    */
   public synchronized List<Datastream> getAllDatastreams() {
     return getAllDatastreams(false);
@@ -120,6 +165,7 @@ public class CachedDatastreamReader {
   public synchronized List<Datastream> getAllDatastreams(boolean flushCache) {
     if (flushCache) {
       _datastreamNames = fetchAllDatastreamNamesFromZk();
+      evictDeletedDatastreams();
     }
 
     return _datastreamNames.stream()
@@ -129,59 +175,142 @@ public class CachedDatastreamReader {
   }
 
   /**
-   * Invalidate all cache entries to force the reader to get fresh copy of the data from zk.
-   * While the list of datastreams is mostly up-to-date (zk watcher delay), there is no guarantee
+   * Invalidate all cache entries to force the reader to check that the data is up-to-date in zk.
+   * While the cached datastreams are mostly up-to-date (zk watcher delay), there is no guarantee
    * that the CacheDatastreamReader is keeping a fresh copy of the actual content. Calling this
    * function would effectively make sure any following getDatastream calls get a newer copy of data.
+   * The datastreams whose znode version did not change are not parsed nor regrouped again.
    */
   public synchronized void invalidateAllCache() {
     LOG.info("About to invalidate all cache entries...");
-    _datastreams.clear();
+    _staleDatastreams.addAll(_datastreams.keySet());
   }
 
   /**
    * Lookup the cached datastream based on its name with the option to access ZK for latest copy.
    * @param datastreamName name of the datastream
-   * @param flushCache whether zk should be accessed regardless of cache hits
+   * @param flushCache whether zk should be accessed and the datastream parsed again regardless of cache hits. The
+   *                   cached datastream is handed out to the callers, which may have modified it without writing it
+   *                   to ZK, so it is not reused even if its znode did not change.
    * @return the datastream object if exists; or null not exists in either cache or ZK
    */
   @VisibleForTesting
-  Datastream getDatastream(String datastreamName, boolean flushCache) {
-    Datastream ds = _datastreams.get(datastreamName);
-    if (ds == null || flushCache) {
-      ds = getDatastreamFromZk(datastreamName);
-
-      if (ds == null) {
-        LOG.info("Datastream {} does not exist in cache/ZK.", datastreamName);
-      } else if (!DatastreamUtils.hasValidDestination(ds)) {
-        LOG.info("Datastream {} does not have a valid destination yet and is not ready for use.", datastreamName);
-      } else {
-        _datastreams.put(datastreamName, ds);
-      }
+  synchronized Datastream getDatastream(String datastreamName, boolean flushCache) {
+    CachedDatastream cached = _datastreams.get(datastreamName);
+    if (cached != null && cached.isReady() && !flushCache && !_staleDatastreams.contains(datastreamName)) {
+      markMeter(_cacheHits);
+      return cached.getDatastream();
     }
-    return ds;
+
+    markMeter(_cacheMisses);
+    // a change notified from now on is picked up by the next access
+    _staleDatastreams.remove(datastreamName);
+    long startTime = System.currentTimeMillis();
+    CachedDatastream latest = getDatastreamFromZk(datastreamName, flushCache ? null : cached);
+    if (_refreshLatencyMs != null) {
+      _refreshLatencyMs.update(System.currentTimeMillis() - startTime);
+    }
+
+    if (latest == null) {
+      LOG.info("Datastream {} does not exist in cache/ZK.", datastreamName);
+      evictDatastream(datastreamName);
+      return null;
+    }
+
+    if (!latest.isReady()) {
+      // it is read from ZK again on the next access
+      LOG.info("Datastream {} does not have a valid destination yet and is not ready for use.", datastreamName);
+    }
+    if (latest != cached) {
+      cacheDatastream(datastreamName, latest, cached);
+    }
+    return latest.getDatastream();
   }
 
   /**
    * Lookup the datastream based on its name from ZK.
    * @param datastreamName name of the datastream
-   * @return the datastream object if exists; or null not exists in ZK
+   * @param cached the cached copy of the datastream to reuse, if any
+   * @return the cached copy if the datastream znode did not change, the datastream read from ZK otherwise;
+   *         or null not exists in ZK
    */
-  private Datastream getDatastreamFromZk(String datastreamName) {
+  private CachedDatastream getDatastreamFromZk(String datastreamName, CachedDatastream cached) {
     String path = KeyBuilder.datastream(_cluster, datastreamName);
-    if (_zkclient.exists(path)) {
-      try {
-        String content = _zkclient.ensureReadData(path);
-        if (content != null) {
-          return DatastreamUtils.fromJSON(content);
-        }
-      } catch (ZkNoNodeException e) {
-        // This can happen when the path still exists but later deleted
-        // during ensureReadData
-        LOG.warn("Datastream {} is just deleted from ZK.", datastreamName);
+    try {
+      Stat stat = new Stat();
+      String content = _zkclient.readData(path, stat);
+      if (content == null) {
+        // The znode can be in an inconsistent state, e.g. being written to by a different process
+        _zkclient.ensureReadData(path);
+        content = _zkclient.readData(path, stat);
+      }
+      if (content == null) {
+        return null;
+      }
+      if (cached != null && cached.getVersion() == stat.getVersion()) {
+        return cached;
       }
+      return new CachedDatastream(DatastreamUtils.fromJSON(content), stat.getVersion());
+    } catch (ZkNoNodeException e) {
+      // This can happen when the path is deleted before or during the read
+      LOG.warn("Datastream {} is just deleted from ZK.", datastreamName);
+      return null;
+    }
+  }
+
+  private void cacheDatastream(String datastreamName, CachedDatastream latest, CachedDatastream cached) {
+    if (cached == null) {
+      _zkclient.subscribeDataChanges(KeyBuilder.datastream(_cluster, datastreamName), _datastreamListener);
+    } else {
+      removeFromGroup(datastreamName, cached.getDatastream());
+    }
+    _datastreams.put(datastreamName, latest);
+
+    Datastream datastream = latest.getDatastream();
+    if (DatastreamUtils.containsTaskPrefix(datastream)) {
+      String taskPrefix = DatastreamUtils.getTaskPrefix(datastream);
+      _datastreamsByTaskPrefix.computeIfAbsent(taskPrefix, x -> new LinkedHashMap<>()).put(datastreamName, datastream);
+      _datastreamGroups.remove(taskPrefix);
+    }
+  }
+
+  private void evictDatastream(String datastreamName) {
+    _staleDatastreams.remove(datastreamName);
+    CachedDatastream cached = _datastreams.remove(datastreamName);
+    if (cached != null) {
+      _zkclient.unsubscribeDataChanges(KeyBuilder.datastream(_cluster, datastreamName), _datastreamListener);
+      removeFromGroup(datastreamName, cached.getDatastream());
+    }
+  }
+
+  private void evictDeletedDatastreams() {
+    Set<String> datastreamsRemoved = new HashSet<>(_datastreams.keySet());
+    datastreamsRemoved.removeAll(_datastreamNames);
+    if (!datastreamsRemoved.isEmpty()) {
+      LOG.info("Removing the deleted datastreams {} from cache", datastreamsRemoved);
+      datastreamsRemoved.forEach(this::evictDatastream);
+    }
+  }
+
+  private void removeFromGroup(String datastreamName, Datastream datastream) {
+    if (!DatastreamUtils.containsTaskPrefix(datastream)) {
+      return;
+    }
+    String taskPrefix = DatastreamUtils.getTaskPrefix(datastream);
+    Map<String, Datastream> datastreams = _datastreamsByTaskPrefix.get(taskPrefix);
+    if (datastreams != null) {
+      datastreams.remove(datastreamName);
+      if (datastreams.isEmpty()) {
+        _datastreamsByTaskPrefix.remove(taskPrefix);
+      }
+    }
+    _datastreamGroups.remove(taskPrefix);
+  }
+
+  private static void markMeter(MeterHandle meter) {
+    if (meter != null) {
+      meter.mark();
     }
-    return null;
   }
 
   private List<String> fetchAllDatastreamNamesFromZk() {
@@ -194,8 +323,70 @@ public class CachedDatastreamReader {
     }
   }
 
+  @Override
+  public List<BrooklinMetricInfo> getMetricInfos() {
+    if (_cacheHits == null) {
+      return Collections.emptyList();
+    }
+    return Arrays.asList(new BrooklinMeterInfo(buildMetricName(CLASS_NAME, CACHE_HITS)),
+        new BrooklinMeterInfo(buildMetricName(CLASS_NAME, CACHE_MISSES)),
+        new BrooklinHistogramInfo(buildMetricName(CLASS_NAME, REFRESH_LATENCY_MS)));
+  }
+
   @VisibleForTesting
   ZkClient getZkclient() {
     return _zkclient;
   }
+
+  /**
+   * Marks the cached datastreams whose znode changed as stale, so that they are read again on their next access
+   */
+  private class DatastreamListener implements IZkDataListener {
+    @Override
+    public void handleDataChange(String dataPath, Object data) {
+      markStale(dataPath);
+    }
+
+    @Override
+    public void handleDataDeleted(String dataPath) {
+      // the datastream is evicted once it is removed from the datastream list
+      markStale(dataPath);
+    }
+
+    private void markStale(String dataPath) {
+      String datastreamName = dataPath.substring(dataPath.lastIndexOf(ZkClient.ZK_PATH_SEPARATOR) + 1);
+      if (_datastreams.containsKey(datastreamName)) {
+        LOG.debug("Datastream {} changed in ZK", datastreamName);
+        _staleDatastreams.add(datastreamName);
+      }
+    }
+  }
+
+  /**
+   * A datastream read from ZK, with the version of its znode
+   */
+  private static final class CachedDatastream {
+    private final Datastream _datastream;
+    private final int _version;
+    private final boolean _isReady;
+
+    CachedDatastream(Datastream datastream, int version) {
+      Validate.notNull(datastream, "null datastream");
+      _datastream = datastream;
+      _version = version;
+      _isReady = DatastreamUtils.hasValidDestination(datastream);
+    }
+
+    Datastream getDatastream() {
+      return _datastream;
+    }
+
+    int getVersion() {
+      return _version;
+    }
+
+    boolean isReady() {
+      return _isReady;
+    }
+  }
 }
@@ -48,7 +48,6 @@ import org.slf4j.LoggerFactory;
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import com.linkedin.datastream.common.Datastream;
 import com.linkedin.datastream.common.DatastreamAlreadyExistsException;
@@ -58,13 +57,16 @@ import com.linkedin.datastream.common.DatastreamException;
 import com.linkedin.datastream.common.DatastreamMetadataConstants;
 import com.linkedin.datastream.common.DatastreamRuntimeException;
 import com.linkedin.datastream.common.DatastreamStatus;
+import com.linkedin.datastream.common.DatastreamThreadFactory;
 import com.linkedin.datastream.common.DatastreamTransientException;
 import com.linkedin.datastream.common.DatastreamUtils;
 import com.linkedin.datastream.common.ErrorLogger;
 import com.linkedin.datastream.common.PollUtils;
 import com.linkedin.datastream.common.VerifiableProperties;
+import com.linkedin.datastream.common.zk.ZkClient;
 import com.linkedin.datastream.metrics.BrooklinCounterInfo;
 import com.linkedin.datastream.metrics.BrooklinGaugeInfo;
+import com.linkedin.datastream.metrics.BrooklinHistogramInfo;
 import com.linkedin.datastream.metrics.BrooklinMeterInfo;
 import com.linkedin.datastream.metrics.BrooklinMetricInfo;
 import com.linkedin.datastream.metrics.DynamicMetricsManager;
@@ -80,7 +82,9 @@ import com.linkedin.datastream.server.api.serde.SerdeAdmin;
 import com.linkedin.datastream.server.api.strategy.AssignmentStrategy;
 import com.linkedin.datastream.server.api.transport.TransportProvider;
 import com.linkedin.datastream.server.api.transport.TransportProviderAdmin;
+import com.linkedin.datastream.server.providers.BinaryCheckpointCodec;
 import com.linkedin.datastream.server.providers.CheckpointProvider;
+import com.linkedin.datastream.server.providers.JsonCheckpointCodec;
 import com.linkedin.datastream.server.providers.ZookeeperCheckpointProvider;
 import com.linkedin.datastream.server.zk.ZkAdapter;
 
@@ -267,7 +271,9 @@ public class Coordinator implements ZkAdapter.ZkAdapterListener, MetricsAware {
     VerifiableProperties coordinatorProperties = new VerifiableProperties(_config.getConfigProperties());
     _eventProducerConfig = coordinatorProperties.getDomainProperties(EVENT_PRODUCER_CONFIG_DOMAIN);
 
-    _cpProvider = new ZookeeperCheckpointProvider(_adapter);
+    _cpProvider = new ZookeeperCheckpointProvider(_adapter,
+        CoordinatorConfig.ZK_CHECKPOINT_FORMAT_BINARY.equals(_config.getZkCheckpointFormat())
+            ? new BinaryCheckpointCodec() : new JsonCheckpointCodec());
     _metrics = new CoordinatorMetrics(this);
 
     // Callback initialization – helps fetch throughput violating topics for given datastreams dynamically in runtime.
@@ -279,8 +285,9 @@ public class Coordinator implements ZkAdapter.ZkAdapterListener, MetricsAware {
   @VisibleForTesting
   ZkAdapter createZkAdapter() {
     return new ZkAdapter(_config.getZkAddress(), _clusterName, _config.getDefaultTransportProviderName(),
-        _config.getZkSessionTimeout(), _config.getZkConnectionTimeout(), _config.getDebounceTimerMs(),
-        _config.getLogSizeLimitInBytes(), this);
+        _config.getZkSessionTimeout(), _config.getZkConnectionTimeout(), ZkClient.DEFAULT_OPERATION_RETRY_TIMEOUT,
+        _config.getDebounceTimerMs(), _config.getLogSizeLimitInBytes(), _config.getZkAssignmentBatchSize(),
+        _config.getZkAssignmentParallelism(), this);
   }
 
   /**
@@ -293,16 +300,16 @@ public class Coordinator implements ZkAdapter.ZkAdapterListener, MetricsAware {
 
     // Initializing executor services
     _scheduledExecutor = Executors.newSingleThreadScheduledExecutor(
-        new ThreadFactoryBuilder().setNameFormat("CoordinatorScheduledExecutor-%d").build());
+        DatastreamThreadFactory.builder("CoordinatorScheduledExecutor-%d").build());
     _tokenClaimExecutor = Executors.newFixedThreadPool(TOKEN_CLAIM_THREAD_POOL_SIZE,
-        new ThreadFactoryBuilder().setNameFormat("CoordinatorTokenClaimExecutor-%d").build());
+        DatastreamThreadFactory.builder("CoordinatorTokenClaimExecutor-%d").build());
 
     for (String connectorType : _connectors.keySet()) {
       ConnectorInfo connectorInfo = _connectors.get(connectorType);
       ConnectorWrapper connector = connectorInfo.getConnector();
 
       // Creating a separate thread pool for making the onAssignmentChange calls to the connector
-      _assignmentChangeThreadPool.put(connectorType, Executors.newSingleThreadExecutor());
+      _assignmentChangeThreadPool.put(connectorType, createAssignmentChangeExecutor(connectorType));
 
       // populate the instanceName. We only know the instance name after _adapter.connect()
       connector.setInstanceName(getInstanceName());
@@ -324,6 +331,13 @@ public class Coordinator implements ZkAdapter.ZkAdapterListener, MetricsAware {
     // Queue up one heartbeat per period with a initial delay of 3 periods
     _scheduledExecutor.scheduleAtFixedRate(() -> _eventQueue.put(CoordinatorEvent.HEARTBEAT_EVENT),
         _heartbeatPeriod.toMillis() * 3, _heartbeatPeriod.toMillis(), TimeUnit.MILLISECONDS);
+
+    // Queue up one partition rebalance per period, which only the leader handles
+    long partitionRebalanceIntervalMs = _config.getPartitionRebalanceIntervalMs();
+    if (partitionRebalanceIntervalMs > 0) {
+      _scheduledExecutor.scheduleAtFixedRate(() -> _eventQueue.put(CoordinatorEvent.LEADER_PARTITION_REBALANCE_EVENT),
+          partitionRebalanceIntervalMs, partitionRebalanceIntervalMs, TimeUnit.MILLISECONDS);
+    }
   }
 
   protected synchronized void createEventThread() {
@@ -400,6 +414,11 @@ public class Coordinator implements ZkAdapter.ZkAdapterListener, MetricsAware {
     }
   }
 
+  private ExecutorService createAssignmentChangeExecutor(String connectorType) {
+    return Executors.newSingleThreadExecutor(
+        DatastreamThreadFactory.builder("CoordinatorAssignmentChange-" + connectorType + "-%d").build());
+  }
+
   /**
    * Stop coordinator (and all connectors)
    */
@@ -451,6 +470,15 @@ public class Coordinator implements ZkAdapter.ZkAdapterListener, MetricsAware {
       tpAdmin.stop();
     }
 
+    // Commit the outstanding checkpoints before the ZooKeeper session goes away.
+    if (_cpProvider instanceof ZookeeperCheckpointProvider) {
+      try {
+        ((ZookeeperCheckpointProvider) _cpProvider).shutdown();
+      } catch (Exception ex) {
+        _log.warn("Checkpoint provider shutdown threw an exception. Swallowing it and continuing shutdown.", ex);
+      }
+    }
+
     _adapter.disconnect();
     _log.info("Coordinator stopped");
   }
@@ -654,7 +682,7 @@ public class Coordinator implements ZkAdapter.ZkAdapterListener, MetricsAware {
     List<Future<Boolean>> assignmentChangeFutures = _connectors.keySet().stream()
         .map(connectorType -> {
           _assignmentChangeThreadPool.get(connectorType).shutdownNow();
-          _assignmentChangeThreadPool.put(connectorType, Executors.newSingleThreadExecutor());
+          _assignmentChangeThreadPool.put(connectorType, createAssignmentChangeExecutor(connectorType));
           return dispatchAssignmentChangeIfNeeded(connectorType, new ArrayList<>(), false, false);
         })
         .filter(Objects::nonNull)
@@ -678,7 +706,8 @@ public class Coordinator implements ZkAdapter.ZkAdapterListener, MetricsAware {
     }
 
     // Wait till all the futures are complete or timeout.
-    ExecutorService threadPoolExecutor = Executors.newFixedThreadPool(1);
+    ExecutorService threadPoolExecutor =
+        Executors.newFixedThreadPool(1, DatastreamThreadFactory.builder("CoordinatorAssignmentClear-%d").build());
     threadPoolExecutor.submit(() -> {
       Instant start = Instant.now();
       try {
@@ -748,7 +777,7 @@ public class Coordinator implements ZkAdapter.ZkAdapterListener, MetricsAware {
     if (isThroughputViolatingTopicsHandlingEnabled()) {
       try {
         // On creating a datastream if the metadata contains any throughput violating topics, we populate the host level cache
-        List<DatastreamGroup> datastreamGroups = _adapter.getInstanceAssignment(_adapter.getInstanceName())
+        List<DatastreamGroup> datastreamGroups = _adapter.getAssignedTaskNames()
             .stream()
             .map(task -> new DatastreamGroup(getDatastreamTask(task).getDatastreams()))
             .collect(Collectors.toList());
@@ -803,7 +832,7 @@ public class Coordinator implements ZkAdapter.ZkAdapterListener, MetricsAware {
 
     // when there is any change to the assignment for this instance. Need to find out what is the connector
     // type of the changed assignment, and then call the corresponding callback of the connector instance
-    List<String> assignment = _adapter.getInstanceAssignment(_adapter.getInstanceName());
+    List<String> assignment = _adapter.getAssignedTaskNames();
 
     _log.info("START: Coordinator::handleAssignmentChange. Instance: " + _adapter.getInstanceName() + ", assignment: "
         + assignment + " isDatastreamUpdate: " + isDatastreamUpdate);
@@ -1181,6 +1210,7 @@ public class Coordinator implements ZkAdapter.ZkAdapterListener, MetricsAware {
       _log.info("END: Handle event " + event);
       return;
     }
+    long startTime = System.currentTimeMillis();
     try {
       switch (event.getType()) {
         case LEADER_DO_ASSIGNMENT:
@@ -1225,6 +1255,10 @@ public class Coordinator implements ZkAdapter.ZkAdapterListener, MetricsAware {
           performPartitionMovement((Long) event.getEventMetadata());
           break;
 
+        case LEADER_PARTITION_REBALANCE:
+          performPartitionRebalance();
+          break;
+
         default:
           String errorMessage = String.format("Unknown event type %s.", event.getType());
           ErrorLogger.logAndThrowDatastreamRuntimeException(_log, errorMessage, null);
@@ -1235,6 +1269,7 @@ public class Coordinator implements ZkAdapter.ZkAdapterListener, MetricsAware {
       _log.error("ERROR: event + " + event + " failed.", e);
     }
 
+    _metrics.updateEventHandlingTime(event.getType(), System.currentTimeMillis() - startTime);
     _log.info("END: Handle event " + event);
   }
 
@@ -1244,6 +1279,7 @@ public class Coordinator implements ZkAdapter.ZkAdapterListener, MetricsAware {
       case HANDLE_ADD_OR_DELETE_DATASTREAM:
       case LEADER_PARTITION_ASSIGNMENT:
       case LEADER_PARTITION_MOVEMENT:
+      case LEADER_PARTITION_REBALANCE:
         return true;
       default:
         return false;
@@ -1892,6 +1928,62 @@ public class Coordinator implements ZkAdapter.ZkAdapterListener, MetricsAware {
     _log.info("END: Coordinator::performPartitionMovement.");
   }
 
+  /**
+   * Move partitions to even out the load of the datastream groups across their tasks and instances, as planned by
+   * the assignment strategies. Unlike the partition movement, a failed rebalance is not retried, the next periodic
+   * rebalance plans again from the then current assignment.
+   */
+  private void performPartitionRebalance() {
+    _log.info("START: Coordinator::performPartitionRebalance.");
+    Map<String, Set<DatastreamTask>> previousAssignmentByInstance = _adapter.getAllAssignedDatastreamTasks();
+    Map<String, Set<DatastreamTask>> assignmentByInstance = new HashMap<>(previousAssignmentByInstance);
+    int numMovedPartitions = 0;
+    // notifications of the strategies whose plans were applied, sent once the new assignment is published
+    List<Runnable> appliedPlanNotifications = new ArrayList<>();
+
+    List<DatastreamGroup> datastreamGroups = fetchDatastreamGroups();
+    for (String connectorType : _connectors.keySet()) {
+      AssignmentStrategy strategy = _connectors.get(connectorType).getAssignmentStrategy();
+      Connector connectorInstance = _connectors.get(connectorType).getConnector().getConnectorInstance();
+      Map<String, Optional<DatastreamGroupPartitionsMetadata>> datastreamPartitions =
+          connectorInstance.getDatastreamPartitions();
+
+      for (DatastreamGroup dg : datastreamGroups) {
+        if (!connectorType.equals(dg.getConnectorName()) || dg.isPaused()) {
+          continue;
+        }
+        Optional<DatastreamGroupPartitionsMetadata> subscribedPartitions =
+            datastreamPartitions.getOrDefault(dg.getName(), Optional.empty());
+        if (!subscribedPartitions.isPresent()) {
+          continue;
+        }
+        Map<String, Set<String>> targetAssignment =
+            strategy.planPartitionRebalance(assignmentByInstance, subscribedPartitions.get());
+        if (!targetAssignment.isEmpty()) {
+          assignmentByInstance = strategy.movePartitions(assignmentByInstance, targetAssignment,
+              subscribedPartitions.get());
+          numMovedPartitions += targetAssignment.values().stream().mapToInt(Set::size).sum();
+          appliedPlanNotifications.add(
+              () -> strategy.onPartitionRebalanceApplied(targetAssignment, subscribedPartitions.get()));
+        }
+      }
+    }
+
+    if (numMovedPartitions > 0) {
+      Map<String, List<DatastreamTask>> newAssignmentsByInstance = new HashMap<>();
+      for (String key : assignmentByInstance.keySet()) {
+        newAssignmentsByInstance.put(key, new ArrayList<>(assignmentByInstance.get(key)));
+      }
+      _adapter.updateAllAssignments(newAssignmentsByInstance);
+      appliedPlanNotifications.forEach(Runnable::run);
+      _adapter.cleanUpOldUnusedTasksFromConnector(previousAssignmentByInstance, newAssignmentsByInstance);
+      updateCounterForMaxPartitionInTask(newAssignmentsByInstance);
+      _metrics.updateMeter(CoordinatorMetrics.Meter.NUM_REBALANCED_PARTITIONS, numMovedPartitions);
+      _log.info("Partition rebalance moved {} partitions", numMovedPartitions);
+    }
+    _log.info("END: Coordinator::performPartitionRebalance.");
+  }
+
   @VisibleForTesting
   void validateNewAssignment(Map<String, List<DatastreamTask>> newAssignmentsByInstance) {
     if (_config.getMaxDatastreamTasksPerInstance() > 0) {
@@ -2415,6 +2507,7 @@ public class Coordinator implements ZkAdapter.ZkAdapterListener, MetricsAware {
     private static final String NUM_RETRIES = "numRetries";
     private static final String NUM_ERRORS = "numErrors";
     private static final String HANDLE_EVENT_PREFIX = "handleEvent";
+    private static final String HANDLING_TIME_MS = "handlingTimeMs";
 
     // Gauge metrics
     private static final String MAX_PARTITION_COUNT_IN_TASK = "maxPartitionCountInTask";
@@ -2443,6 +2536,7 @@ public class Coordinator implements ZkAdapter.ZkAdapterListener, MetricsAware {
       registerKeyedMeterMetrics();
       registerGaugeMetrics();
       registerCounterMetrics();
+      registerHistogramMetrics();
     }
 
     public void addMetricInfos(MetricsAware metricsAware) {
@@ -2487,6 +2581,11 @@ public class Coordinator implements ZkAdapter.ZkAdapterListener, MetricsAware {
       _dynamicMetricsManager.createOrUpdateCounter(MODULE, metric.getName(), value);
     }
 
+    public void updateEventHandlingTime(EventType eventType, long handlingTimeMs) {
+      _dynamicMetricsManager.createOrUpdateHistogram(MODULE, HANDLE_EVENT_PREFIX + eventType, HANDLING_TIME_MS,
+          handlingTimeMs);
+    }
+
     public static KeyedMeter getKeyedMeter(EventType eventType) {
       switch (eventType) {
         case LEADER_DO_ASSIGNMENT:
@@ -2495,6 +2594,8 @@ public class Coordinator implements ZkAdapter.ZkAdapterListener, MetricsAware {
           return KeyedMeter.LEADER_PARTITION_ASSIGNMENT_NUM_ERRORS;
         case LEADER_PARTITION_MOVEMENT:
           return KeyedMeter.LEADER_PARTITION_MOVEMENT_NUM_ERRORS;
+        case LEADER_PARTITION_REBALANCE:
+          return KeyedMeter.LEADER_PARTITION_REBALANCE_NUM_ERRORS;
         case HANDLE_ASSIGNMENT_CHANGE:
           return KeyedMeter.HANDLE_ASSIGNMENT_CHANGE_NUM_ERRORS;
         case HANDLE_DATASTREAM_CHANGE_WITH_UPDATE:
@@ -2519,6 +2620,12 @@ public class Coordinator implements ZkAdapter.ZkAdapterListener, MetricsAware {
       // CoordinatorEventBlockingQueue metrics
       addMetricInfos(_coordinator._eventQueue);
 
+      // ZkAdapter metrics
+      addMetricInfos(_coordinator._adapter);
+
+      // CachedDatastreamReader metrics
+      addMetricInfos(_coordinator._datastreamCache);
+
       // EventProducer metrics
       _metricInfos.addAll(EventProducer.getMetricInfos());
     }
@@ -2575,6 +2682,11 @@ public class Coordinator implements ZkAdapter.ZkAdapterListener, MetricsAware {
       Arrays.stream(Counter.values()).forEach(this::registerCounter);
     }
 
+    private void registerHistogramMetrics() {
+      // The event handling time histograms are created lazily, and covered by this regex-based BrooklinHistogramInfo
+      _metricInfos.add(new BrooklinHistogramInfo(_coordinator.getDynamicMetricPrefixRegex() + HANDLING_TIME_MS));
+    }
+
     private void registerMeter(Meter metric) {
       String metricName = metric.getName();
       _dynamicMetricsManager.registerMetric(MODULE, metricName, com.codahale.metrics.Meter.class);
@@ -2608,6 +2720,7 @@ public class Coordinator implements ZkAdapter.ZkAdapterListener, MetricsAware {
       NUM_ASSIGNMENT_CHANGES("numAssignmentChanges"),
       NUM_PARTITION_ASSIGNMENTS("numPartitionAssignments"),
       NUM_PARTITION_MOVEMENTS("numPartitionMovements"),
+      NUM_REBALANCED_PARTITIONS("numRebalancedPartitions"),
       NUM_ORPHAN_CONNECTOR_TASKS("numOrphanConnectorTasks"),
       NUM_ORPHAN_CONNECTOR_TASK_LOCKS("numOrphanConnectorTaskLocks");
 
@@ -2640,6 +2753,7 @@ public class Coordinator implements ZkAdapter.ZkAdapterListener, MetricsAware {
       LEADER_DO_ASSIGNMENT_NUM_ERRORS(HANDLE_EVENT_PREFIX + EventType.LEADER_DO_ASSIGNMENT, NUM_ERRORS),
       LEADER_PARTITION_ASSIGNMENT_NUM_ERRORS(HANDLE_EVENT_PREFIX + EventType.LEADER_PARTITION_ASSIGNMENT, NUM_ERRORS),
       LEADER_PARTITION_MOVEMENT_NUM_ERRORS(HANDLE_EVENT_PREFIX + EventType.LEADER_PARTITION_MOVEMENT, NUM_ERRORS),
+      LEADER_PARTITION_REBALANCE_NUM_ERRORS(HANDLE_EVENT_PREFIX + EventType.LEADER_PARTITION_REBALANCE, NUM_ERRORS),
       HANDLE_ASSIGNMENT_CHANGE_NUM_ERRORS(HANDLE_EVENT_PREFIX + EventType.HANDLE_ASSIGNMENT_CHANGE, NUM_ERRORS),
       HANDLE_DATASTREAM_CHANGE_WITH_UPDATE_NUM_ERRORS(HANDLE_EVENT_PREFIX + HANDLE_DATASTREAM_CHANGE_WITH_UPDATE, NUM_ERRORS),
       HANDLE_ADD_OR_DELETE_DATASTREAM_NUM_ERRORS(HANDLE_EVENT_PREFIX + EventType.HANDLE_ADD_OR_DELETE_DATASTREAM, NUM_ERRORS),
@@ -48,6 +48,15 @@ public final class CoordinatorConfig {
 
   public static final String CONFIG_ENABLE_THROUGHPUT_VIOLATING_TOPICS_HANDLING = PREFIX + "enableThroughputViolatingTopicsHandling";
   public static final String CONFIG_LOG_SIZE_LIMIT_IN_BYTES = PREFIX + "logSizeLimitInBytes";
+  // format used to write the checkpoints in ZooKeeper, "json" or "binary"; both formats can always be read
+  public static final String CONFIG_ZK_CHECKPOINT_FORMAT = PREFIX + "zkCheckpointFormat";
+  // how often the leader asks the assignment strategies to rebalance the partitions by load; 0 disables rebalancing
+  public static final String CONFIG_PARTITION_REBALANCE_INTERVAL_MS = PREFIX + "partitionRebalanceIntervalMs";
+  // max number of znode operations per ZooKeeper multi() transaction when publishing the assignment; 0 disables
+  // batching and writes the znodes one at a time
+  public static final String CONFIG_ZK_ASSIGNMENT_BATCH_SIZE = PREFIX + "zkAssignmentBatchSize";
+  // max number of multi() transactions in flight when publishing the assignment in batches
+  public static final String CONFIG_ZK_ASSIGNMENT_PARALLELISM = PREFIX + "zkAssignmentParallelism";
 
   public static final int DEFAULT_MAX_ASSIGNMENT_RETRY_COUNT = 100;
   public static final long DEFAULT_STOP_PROPAGATION_TIMEOUT_MS = 60 * 1000;
@@ -56,6 +65,9 @@ public final class CoordinatorConfig {
   public static final int DEFAULT_MARK_DATASTREMS_STOPPED_TIMEOUT_MS = 60 * 1000;
   public static final int DEFAULT_MARK_DATASTREMS_STOPPED_RETRY_PERIOD_MS = 10 * 1000;
   public static final int DEFAULT_LOG_SIZE_LIMIT_IN_BYTES = 1024 * 1024;
+  public static final String ZK_CHECKPOINT_FORMAT_JSON = "json";
+  public static final String ZK_CHECKPOINT_FORMAT_BINARY = "binary";
+  public static final int DEFAULT_ZK_ASSIGNMENT_PARALLELISM = 4;
 
   private final String _cluster;
   private final String _zkAddress;
@@ -82,6 +94,10 @@ public final class CoordinatorConfig {
   private final long _markDatastreamsStoppedRetryPeriodMs;
   private final boolean _enableThroughputViolatingTopicsHandling;
   private final double _logSizeLimitInBytes;
+  private final String _zkCheckpointFormat;
+  private final long _partitionRebalanceIntervalMs;
+  private final int _zkAssignmentBatchSize;
+  private final int _zkAssignmentParallelism;
 
 
   /**
@@ -121,6 +137,15 @@ public final class CoordinatorConfig {
     _enableThroughputViolatingTopicsHandling = _properties.getBoolean(
         CONFIG_ENABLE_THROUGHPUT_VIOLATING_TOPICS_HANDLING, false);
     _logSizeLimitInBytes = _properties.getDouble(CONFIG_LOG_SIZE_LIMIT_IN_BYTES, DEFAULT_LOG_SIZE_LIMIT_IN_BYTES);
+    _zkCheckpointFormat = _properties.getString(CONFIG_ZK_CHECKPOINT_FORMAT, ZK_CHECKPOINT_FORMAT_JSON);
+    _partitionRebalanceIntervalMs = _properties.getLongInRange(CONFIG_PARTITION_REBALANCE_INTERVAL_MS, 0, 0,
+        Long.MAX_VALUE);
+    _zkAssignmentBatchSize = _properties.getIntInRange(CONFIG_ZK_ASSIGNMENT_BATCH_SIZE, 0, 0, Integer.MAX_VALUE);
+    _zkAssignmentParallelism = _properties.getIntInRange(CONFIG_ZK_ASSIGNMENT_PARALLELISM,
+        DEFAULT_ZK_ASSIGNMENT_PARALLELISM, 1, Integer.MAX_VALUE);
+    if (!ZK_CHECKPOINT_FORMAT_JSON.equals(_zkCheckpointFormat) && !ZK_CHECKPOINT_FORMAT_BINARY.equals(_zkCheckpointFormat)) {
+      throw new IllegalArgumentException("Unsupported " + CONFIG_ZK_CHECKPOINT_FORMAT + ": " + _zkCheckpointFormat);
+    }
   }
 
   public Properties getConfigProperties() {
@@ -220,4 +245,20 @@ public final class CoordinatorConfig {
   public double getLogSizeLimitInBytes() {
     return _logSizeLimitInBytes;
   }
+
+  public String getZkCheckpointFormat() {
+    return _zkCheckpointFormat;
+  }
+
+  public long getPartitionRebalanceIntervalMs() {
+    return _partitionRebalanceIntervalMs;
+  }
+
+  public int getZkAssignmentBatchSize() {
+    return _zkAssignmentBatchSize;
+  }
+
+  public int getZkAssignmentParallelism() {
+    return _zkAssignmentParallelism;
+  }
 }
@@ -11,23 +11,48 @@ import java.util.Objects;
  * Represents different event types inside {@link Coordinator}.
  *
  * CoordinatorEvent will be deduped in the event queue {@link CoordinatorEventBlockingQueue}
- * based on the event type. However, any event with eventMetadata will not get deduped
+ * based on the event type. However, any event with eventMetadata will not get deduped, unless
+ * it is subsumed by an event which is already queued (see {@link #getSubsumingEvent()}).
  */
 public class CoordinatorEvent {
 
+  /**
+   * Represents the priority classes of the events in {@link CoordinatorEventBlockingQueue}, from the highest
+   * to the lowest. Events of a higher class are handled first, and events of the same class in order.
+   */
+  public enum EventPriority {
+    // cheap events which report or preserve the liveness of the instance
+    HIGH,
+    // events which apply the assignment of this instance
+    NORMAL,
+    // leader events which compute the assignment
+    LOW
+  }
+
   /**
    * Represents event types inside {@link Coordinator}.
    */
   public enum EventType {
-    LEADER_DO_ASSIGNMENT,
-    LEADER_PARTITION_ASSIGNMENT,
-    LEADER_PARTITION_MOVEMENT,
-    HANDLE_ASSIGNMENT_CHANGE,
-    HANDLE_DATASTREAM_CHANGE_WITH_UPDATE,
-    HANDLE_ADD_OR_DELETE_DATASTREAM,
-    HANDLE_INSTANCE_ERROR,
-    HEARTBEAT,
-    NO_OP,
+    LEADER_DO_ASSIGNMENT(EventPriority.LOW),
+    LEADER_PARTITION_ASSIGNMENT(EventPriority.LOW),
+    LEADER_PARTITION_MOVEMENT(EventPriority.LOW),
+    LEADER_PARTITION_REBALANCE(EventPriority.LOW),
+    HANDLE_ASSIGNMENT_CHANGE(EventPriority.NORMAL),
+    HANDLE_DATASTREAM_CHANGE_WITH_UPDATE(EventPriority.NORMAL),
+    HANDLE_ADD_OR_DELETE_DATASTREAM(EventPriority.LOW),
+    HANDLE_INSTANCE_ERROR(EventPriority.HIGH),
+    HEARTBEAT(EventPriority.HIGH),
+    NO_OP(EventPriority.HIGH);
+
+    private final EventPriority _priority;
+
+    EventType(EventPriority priority) {
+      _priority = priority;
+    }
+
+    public EventPriority getPriority() {
+      return _priority;
+    }
   }
 
   public static final CoordinatorEvent HANDLE_ASSIGNMENT_CHANGE_EVENT =
@@ -37,6 +62,8 @@ public class CoordinatorEvent {
   public static final CoordinatorEvent HANDLE_ADD_OR_DELETE_DATASTREAM_EVENT =
       new CoordinatorEvent(EventType.HANDLE_ADD_OR_DELETE_DATASTREAM);
   public static final CoordinatorEvent HEARTBEAT_EVENT = new CoordinatorEvent(EventType.HEARTBEAT);
+  public static final CoordinatorEvent LEADER_PARTITION_REBALANCE_EVENT =
+      new CoordinatorEvent(EventType.LEADER_PARTITION_REBALANCE);
 
   // This event is used during shutdown to unblock an empty queue
   public static final CoordinatorEvent NO_OP_EVENT = new CoordinatorEvent(EventType.NO_OP);
@@ -121,6 +148,37 @@ public class CoordinatorEvent {
     return _eventType;
   }
 
+  /**
+   * Get the event whose handling covers the handling of this event, if any. This event does not need to be
+   * queued if that event is already queued.
+   */
+  public CoordinatorEvent getSubsumingEvent() {
+    switch (_eventType) {
+      case LEADER_DO_ASSIGNMENT:
+        // the assignment of a newly elected leader also cleans up the orphan nodes
+        return Boolean.TRUE.equals(_eventMetadata) ? null : createLeaderDoAssignmentEvent(true);
+      case HANDLE_ASSIGNMENT_CHANGE:
+        return HANDLE_DATASTREAM_CHANGE_WITH_UPDATE_EVENT;
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Get the event whose handling is covered by the handling of this event, if any. That event can be replaced by
+   * this event if it is already queued.
+   */
+  public CoordinatorEvent getSubsumedEvent() {
+    switch (_eventType) {
+      case LEADER_DO_ASSIGNMENT:
+        return Boolean.TRUE.equals(_eventMetadata) ? createLeaderDoAssignmentEvent(false) : null;
+      case HANDLE_DATASTREAM_CHANGE_WITH_UPDATE:
+        return HANDLE_ASSIGNMENT_CHANGE_EVENT;
+      default:
+        return null;
+    }
+  }
+
   @Override
   public String toString() {
     return "type:" + _eventType;
@@ -5,14 +5,15 @@
  */
 package com.linkedin.datastream.server;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Deque;
-import java.util.HashSet;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingDeque;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,15 +24,24 @@ import com.codahale.metrics.MetricRegistry;
 
 import com.linkedin.datastream.metrics.BrooklinCounterInfo;
 import com.linkedin.datastream.metrics.BrooklinGaugeInfo;
+import com.linkedin.datastream.metrics.BrooklinHistogramInfo;
 import com.linkedin.datastream.metrics.BrooklinMetricInfo;
 import com.linkedin.datastream.metrics.DynamicMetricsManager;
+import com.linkedin.datastream.metrics.HistogramHandle;
 import com.linkedin.datastream.metrics.MetricsAware;
+import com.linkedin.datastream.server.CoordinatorEvent.EventPriority;
+import com.linkedin.datastream.server.CoordinatorEvent.EventType;
 
 
 /**
- * A blocking queue for {@link Coordinator} events. Includes two metrics, a
- * {@link Gauge} and {@link Counter}. The gauge provides the queue size and
- * the counter increments when duplicate events are {@code put()}.
+ * A blocking queue for {@link Coordinator} events. Events are taken by priority class (see
+ * {@link CoordinatorEvent.EventPriority}), and in order within a class, except for the events
+ * which are {@code putFirst()}, which are taken before any other.
+ *
+ * Events equal to or subsumed by a queued event are coalesced into it, so each event is queued
+ * at most once. Includes three metrics, a {@link Gauge}, a {@link Counter}, and a histogram per
+ * event type. The gauge provides the queue size, the counter increments when duplicate events are
+ * {@code put()}, and the histograms track the time the events wait in the queue.
  *
  * @see CoordinatorEvent.EventType
  */
@@ -42,12 +52,17 @@ class CoordinatorEventBlockingQueue implements MetricsAware {
 
   static final String COUNTER_KEY = "duplicateEvents";
   static final String GAUGE_KEY = "queuedEvents";
+  static final String QUEUE_WAIT_MS_KEY = "queueWaitMs";
 
-  private final Set<CoordinatorEvent> _eventSet;
-  private final Deque<CoordinatorEvent> _eventQueue;
+  // queued events by event, to look them up in constant time
+  private final Map<CoordinatorEvent, QueuedEvent> _queuedEvents;
+  // events which are put first, in the reverse order they were put
+  private final Deque<QueuedEvent> _prioritizedEvents;
+  private final Map<EventPriority, Deque<QueuedEvent>> _eventQueues;
   private final DynamicMetricsManager _dynamicMetricsManager;
   private final Gauge<Integer> _gauge;
   private final Counter _counter;
+  private final Map<EventType, HistogramHandle> _queueWaitMs;
 
   /**
    * Construct a blocking event queue for all types of events in {@link CoordinatorEvent.EventType}
@@ -55,25 +70,37 @@ class CoordinatorEventBlockingQueue implements MetricsAware {
    * @param key String used to register CoordinatorEventBlockQueue metrics. The metrics
    *            will be registered to {@code CoordinatorEventBlockingQueue.<key>.<metric>}.
    *            Where {@code <metric>} is either {@link CoordinatorEventBlockingQueue#COUNTER_KEY}
-   *            or {@link CoordinatorEventBlockingQueue#GAUGE_KEY}.
+   *            or {@link CoordinatorEventBlockingQueue#GAUGE_KEY}, or to
+   *            {@code CoordinatorEventBlockingQueue.<key>.<eventType>.<metric>} for the
+   *            {@link CoordinatorEventBlockingQueue#QUEUE_WAIT_MS_KEY} histograms.
    */
   CoordinatorEventBlockingQueue(String key) {
-    _eventSet = new HashSet<>();
-    _eventQueue = new LinkedBlockingDeque<>();
+    _queuedEvents = new HashMap<>();
+    _prioritizedEvents = new ArrayDeque<>();
+    _eventQueues = new EnumMap<>(EventPriority.class);
+    for (EventPriority priority : EventPriority.values()) {
+      _eventQueues.put(priority, new ArrayDeque<>());
+    }
     _dynamicMetricsManager = DynamicMetricsManager.getInstance();
 
     String prefix = buildMetricName(key);
     _counter = _dynamicMetricsManager.registerMetric(prefix, COUNTER_KEY, Counter.class);
-    _gauge = _dynamicMetricsManager.registerGauge(prefix, GAUGE_KEY, _eventQueue::size);
+    _gauge = _dynamicMetricsManager.registerGauge(prefix, GAUGE_KEY, this::size);
+    // the gauge may have been registered by a previous queue with the same key
+    _dynamicMetricsManager.setGauge(_gauge, this::size);
+    _queueWaitMs = new EnumMap<>(EventType.class);
+    for (EventType eventType : EventType.values()) {
+      _queueWaitMs.put(eventType, _dynamicMetricsManager.histogramHandle(prefix, eventType.name(), QUEUE_WAIT_MS_KEY));
+      _metricInfos.add(new BrooklinHistogramInfo(MetricRegistry.name(prefix, eventType.name(), QUEUE_WAIT_MS_KEY)));
+    }
 
-    BrooklinCounterInfo counterInfo = new BrooklinCounterInfo(MetricRegistry.name(prefix, COUNTER_KEY));
-    BrooklinGaugeInfo gaugeInfo = new BrooklinGaugeInfo(MetricRegistry.name(prefix, GAUGE_KEY));
-    _metricInfos.addAll(Arrays.asList(counterInfo, gaugeInfo));
+    _metricInfos.add(new BrooklinCounterInfo(MetricRegistry.name(prefix, COUNTER_KEY)));
+    _metricInfos.add(new BrooklinGaugeInfo(MetricRegistry.name(prefix, GAUGE_KEY)));
   }
 
 
   /**
-   * Add a single event to the queue. Defaults to adding the event at the end of the queue.
+   * Add a single event to the queue. Defaults to adding the event at the end of the queue of its priority class.
    * @param event CoordinatorEvent event to add to the queue
    */
   public synchronized void put(CoordinatorEvent event) {
@@ -81,47 +108,53 @@ class CoordinatorEventBlockingQueue implements MetricsAware {
   }
 
   /**
-   * Add a single event to the queue. Adds the event to the front of the queue.
+   * Add a single event to the queue. Adds the event to the front of the queue, before the events of any priority.
    * @param event CoordinatorEvent event to add to the queue
    */
   public synchronized void putFirst(CoordinatorEvent event) {
-    // If the requested event is already in the CoordinatorEventBlockingQueue, it will be removed to prioritize the
-    // event to be putFirst.
-    if (_eventSet.contains(event)) {
-      LOG.info("Prioritizing the event to be putFirst by removing the existing CoordinatorEvent " + event);
-      // Since the distinct content of the CoordinatorEventBlockingQueue is not anticipated to be extensive, the
-      // linear complexity removal operation deemed acceptable.
-      _eventQueue.remove(event);
-      _eventSet.remove(event);
-    }
     put(event, false);
   }
 
   /**
-   * Add a single event to the queue, de-duping events with the same name and same metadata.
+   * Add a single event to the queue, coalescing it with the queued event with the same name and same metadata,
+   * or which subsumes it or is subsumed by it.
    * @param event CoordinatorEvent event to add to the queue
    * @param insertInTheEnd if true, indicates to add the event to the end of the queue and front, otherwise.
    */
   private synchronized void put(CoordinatorEvent event, boolean insertInTheEnd) {
-    LOG.info("Queuing event {} at the " + (insertInTheEnd ? "end" : "front") + " of the event queue", event.getType());
-    if (_eventSet.contains(event)) {
-      _counter.inc(); // count duplicate event
-    } else {
-      // only insert if there isn't an event present in the queue with the same name and same metadata.
-      boolean result;
+    LOG.debug("Queuing event {} at the {} of the event queue", event.getType(), insertInTheEnd ? "end" : "front");
+    long queuedTimeMs = System.currentTimeMillis();
+    QueuedEvent queuedEvent = getQueuedEquivalentEvent(event);
+    if (queuedEvent != null) {
+      CoordinatorEvent coalescedEvent = event.equals(queuedEvent.getEvent().getSubsumingEvent()) ? event :
+          queuedEvent.getEvent();
       if (insertInTheEnd) {
-        result = _eventQueue.offer(event);
-      } else {
-        result = _eventQueue.offerFirst(event);
-      }
-      if (!result) {
+        _counter.inc(); // count duplicate event
+        if (coalescedEvent != queuedEvent.getEvent()) {
+          // the subsuming event takes the place of the queued one
+          _queuedEvents.remove(queuedEvent.getEvent());
+          queuedEvent.setEvent(coalescedEvent);
+          _queuedEvents.put(coalescedEvent, queuedEvent);
+        }
         return;
       }
-      _eventSet.add(event);
-      _dynamicMetricsManager.setGauge(_gauge, _eventQueue::size);
+
+      // The requested event is already in the queue, it is removed to prioritize the event to be putFirst.
+      LOG.debug("Prioritizing the event to be putFirst by removing the existing CoordinatorEvent {}", queuedEvent);
+      removeQueuedEvent(queuedEvent);
+      event = coalescedEvent;
+      queuedTimeMs = queuedEvent.getQueuedTimeMs();
+    }
+
+    queuedEvent = new QueuedEvent(event, queuedTimeMs);
+    if (insertInTheEnd) {
+      _eventQueues.get(event.getType().getPriority()).offerLast(queuedEvent);
+    } else {
+      _prioritizedEvents.offerFirst(queuedEvent);
     }
+    _queuedEvents.put(event, queuedEvent);
 
-    LOG.debug("Event queue size {}", _eventQueue.size());
+    LOG.debug("Event queue size {}", _queuedEvents.size());
     notify();
   }
 
@@ -135,33 +168,31 @@ class CoordinatorEventBlockingQueue implements MetricsAware {
    *             was waiting for a notification
    */
   public synchronized CoordinatorEvent take() throws InterruptedException {
-    while (_eventQueue.isEmpty()) {
+    Deque<QueuedEvent> eventQueue;
+    while ((eventQueue = getHeadQueue()) == null) {
       wait();
     }
 
-    CoordinatorEvent queuedEvent = _eventQueue.poll();
+    QueuedEvent queuedEvent = eventQueue.poll();
+    CoordinatorEvent event = queuedEvent.getEvent();
+    _queuedEvents.remove(event);
+    _queueWaitMs.get(event.getType()).update(System.currentTimeMillis() - queuedEvent.getQueuedTimeMs());
 
-    if (CoordinatorEvent.NO_OP_EVENT == queuedEvent) {
+    if (CoordinatorEvent.NO_OP_EVENT == event) {
       return null;
     }
 
-    if (queuedEvent != null) {
-      LOG.info("De-queuing event " + queuedEvent.getType());
-      LOG.debug("Event queue size: {}", _eventQueue.size());
-      _eventSet.remove(queuedEvent);
-      _dynamicMetricsManager.setGauge(_gauge, _eventQueue::size);
-    }
-
-    return queuedEvent;
+    LOG.debug("De-queuing event {}, event queue size: {}", event.getType(), _queuedEvents.size());
+    return event;
   }
 
   /**
-   *
+   * Remove all the events from this queue
    */
   public synchronized void clear() {
-    _eventQueue.clear();
-    _eventSet.clear();
-    _dynamicMetricsManager.setGauge(_gauge, _eventQueue::size);
+    _queuedEvents.clear();
+    _prioritizedEvents.clear();
+    _eventQueues.values().forEach(Deque::clear);
   }
 
   /**
@@ -171,14 +202,15 @@ class CoordinatorEventBlockingQueue implements MetricsAware {
    * @return the head of this queue, or {@code null} if this queue is empty
    */
   public synchronized CoordinatorEvent peek() {
-    return _eventQueue.peek();
+    Deque<QueuedEvent> eventQueue = getHeadQueue();
+    return eventQueue == null ? null : eventQueue.peek().getEvent();
   }
 
   /**
    * Get the number of events in this queue
    */
-  public int size() {
-    return _eventQueue.size();
+  public synchronized int size() {
+    return _queuedEvents.size();
   }
 
   /**
@@ -186,12 +218,93 @@ class CoordinatorEventBlockingQueue implements MetricsAware {
    *
    * @return true if the queue is empty
    */
-  public boolean isEmpty() {
-    return _eventQueue.isEmpty();
+  public synchronized boolean isEmpty() {
+    return _queuedEvents.isEmpty();
   }
 
   @Override
   public List<BrooklinMetricInfo> getMetricInfos() {
     return new ArrayList<>(_metricInfos);
   }
+
+  private QueuedEvent getQueuedEquivalentEvent(CoordinatorEvent event) {
+    QueuedEvent queuedEvent = _queuedEvents.get(event);
+    CoordinatorEvent subsumingEvent = event.getSubsumingEvent();
+    if (queuedEvent == null && subsumingEvent != null) {
+      queuedEvent = _queuedEvents.get(subsumingEvent);
+    }
+    CoordinatorEvent subsumedEvent = event.getSubsumedEvent();
+    if (queuedEvent == null && subsumedEvent != null) {
+      queuedEvent = _queuedEvents.get(subsumedEvent);
+    }
+    return queuedEvent;
+  }
+
+  private void removeQueuedEvent(QueuedEvent queuedEvent) {
+    // removed events are skipped once they reach the head of their queue
+    _queuedEvents.remove(queuedEvent.getEvent());
+    queuedEvent.setRemoved();
+  }
+
+  /**
+   * Get the queue which holds the next event, after discarding the removed events at its head,
+   * or null if there is no event
+   */
+  private Deque<QueuedEvent> getHeadQueue() {
+    if (skipRemovedEvents(_prioritizedEvents)) {
+      return _prioritizedEvents;
+    }
+    for (Deque<QueuedEvent> eventQueue : _eventQueues.values()) {
+      if (skipRemovedEvents(eventQueue)) {
+        return eventQueue;
+      }
+    }
+    return null;
+  }
+
+  private static boolean skipRemovedEvents(Deque<QueuedEvent> eventQueue) {
+    while (!eventQueue.isEmpty() && eventQueue.peek().isRemoved()) {
+      eventQueue.poll();
+    }
+    return !eventQueue.isEmpty();
+  }
+
+  /**
+   * A queued event, with the time it was queued at
+   */
+  private static final class QueuedEvent {
+    private final long _queuedTimeMs;
+    private CoordinatorEvent _event;
+    private boolean _isRemoved;
+
+    QueuedEvent(CoordinatorEvent event, long queuedTimeMs) {
+      _event = event;
+      _queuedTimeMs = queuedTimeMs;
+    }
+
+    CoordinatorEvent getEvent() {
+      return _event;
+    }
+
+    void setEvent(CoordinatorEvent event) {
+      _event = event;
+    }
+
+    long getQueuedTimeMs() {
+      return _queuedTimeMs;
+    }
+
+    boolean isRemoved() {
+      return _isRemoved;
+    }
+
+    void setRemoved() {
+      _isRemoved = true;
+    }
+
+    @Override
+    public String toString() {
+      return _event.toString();
+    }
+  }
 }
@@ -14,6 +14,8 @@ public final class DatastreamServerConfigurationConstants {
   public static final String CONFIG_CONNECTOR_NAMES = CONFIG_PREFIX + "connectorNames";
   public static final String CONFIG_HTTP_PORT = CONFIG_PREFIX + "httpPort";
   public static final String CONFIG_CSV_METRICS_DIR = CONFIG_PREFIX + "csvMetricsDir";
+  // "platform" or "virtual", the kind of threads running connector tasks and executors (virtual requires JDK 21+)
+  public static final String CONFIG_THREAD_MODE = CONFIG_PREFIX + "threadMode";
   public static final String CONFIG_ZK_ADDRESS = CoordinatorConfig.CONFIG_ZK_ADDRESS;
   public static final String CONFIG_CLUSTER_NAME = CoordinatorConfig.CONFIG_CLUSTER;
   public static final String CONFIG_ENABLE_EMBEDDED_JETTY = "enableEmbeddedJetty";
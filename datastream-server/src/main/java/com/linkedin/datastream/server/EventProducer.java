@@ -33,7 +33,10 @@ import com.linkedin.datastream.metrics.BrooklinCounterInfo;
 import com.linkedin.datastream.metrics.BrooklinHistogramInfo;
 import com.linkedin.datastream.metrics.BrooklinMeterInfo;
 import com.linkedin.datastream.metrics.BrooklinMetricInfo;
+import com.linkedin.datastream.metrics.CounterHandle;
 import com.linkedin.datastream.metrics.DynamicMetricsManager;
+import com.linkedin.datastream.metrics.HistogramHandle;
+import com.linkedin.datastream.metrics.MeterHandle;
 import com.linkedin.datastream.metrics.MetricsAware;
 import com.linkedin.datastream.server.api.transport.DatastreamRecordMetadata;
 import com.linkedin.datastream.server.api.transport.SendCallback;
@@ -117,6 +120,12 @@ public class EventProducer implements DatastreamEventProducer {
   private Map<TopicPartition, Integer> _trackEventsOutsideAltSlaMap = new ConcurrentHashMap<>();
   private boolean _enableFlushOnSend = true;
 
+  // Pre-resolved handles of the metrics reported on every send callback, for the aggregate, the connector
+  // and each topic (or datastream) key
+  private final KeyedMetrics _aggregateMetrics;
+  private final KeyedMetrics _connectorMetrics;
+  private final Map<String, KeyedMetrics> _keyedMetrics = new ConcurrentHashMap<>();
+
   /**
    * Construct an EventProducer instance.
    * @param transportProvider the transport provider
@@ -191,6 +200,8 @@ public class EventProducer implements DatastreamEventProducer {
     _logger.info("Created event producer with customCheckpointing={}", customCheckpointing);
 
     _dynamicMetricsManager = DynamicMetricsManager.getInstance();
+    _aggregateMetrics = new KeyedMetrics(AGGREGATE);
+    _connectorMetrics = new KeyedMetrics(_datastreamTask.getConnectorType());
     // provision some metrics to force them to create
     _dynamicMetricsManager.createOrUpdateCounter(MODULE, AGGREGATE, EVENTS_PRODUCED_OUTSIDE_SLA, 0);
     if (!_enablePerTopicMetrics) {
@@ -233,20 +244,69 @@ public class EventProducer implements DatastreamEventProducer {
   }
 
   /**
-   * Send the event onto the underlying transport.
-   * @param record the datastream event
-   * @param sendEventCallback the callback to be invoked after the event is sent to the destination
-   *
-   * @return For broadcast return DatastreamRecordMetadata got from transport provider broadcast, null for send
+   * Send the batch of events onto the underlying transport. Validation and serialization still happen per record,
+   * but the send timestamp, the destination lookup, the periodic flush check and the transport callback are shared
+   * by the whole batch. Records skipped because of serialization errors are not sent and get no callback.
+   * @param records the datastream events
+   * @param sendCallback the callback to be invoked after each event is sent to the destination
    */
-  private DatastreamRecordMetadata helperSendOrBroadcast(DatastreamProducerRecord record,
-      SendCallback sendEventCallback, boolean isBroadcast) {
-    DatastreamRecordMetadata broadcastMetadata = null;
+  @Override
+  public void sendBatch(List<DatastreamProducerRecord> records, SendCallback sendCallback) {
+    if (records.isEmpty()) {
+      return;
+    }
 
+    List<DatastreamProducerRecord> toSend = new ArrayList<>(records.size());
+    // position within records of each record in toSend, which differ only if some records were skipped
+    int[] batchIndexes = new int[records.size()];
+    for (int i = 0; i < records.size(); i++) {
+      DatastreamProducerRecord record = records.get(i);
+      if (validateAndSerialize(record)) {
+        batchIndexes[toSend.size()] = i;
+        toSend.add(record);
+      }
+    }
+
+    int start = 0;
+    try {
+      long sendTimestamp = System.currentTimeMillis();
+      boolean isNoOpTransport = isNoOpTransportProvider();
+      while (start < toSend.size()) {
+        // Send each run of records sharing a destination as one transport batch
+        String destination = getDestination(toSend.get(start), isNoOpTransport);
+        int end = start + 1;
+        while (end < toSend.size() && destination.equals(getDestination(toSend.get(end), isNoOpTransport))) {
+          end++;
+        }
+        List<DatastreamProducerRecord> batch = toSend.subList(start, end);
+        for (DatastreamProducerRecord record : batch) {
+          record.setEventsSendTimestamp(sendTimestamp);
+        }
+        boolean sameIndexes = toSend.size() == records.size() && start == 0;
+        _transportProvider.sendBatch(destination, batch,
+            new BatchSendCallback(batch, sameIndexes ? null : batchIndexes, start, sendTimestamp, sendCallback));
+        start = end;
+      }
+    } catch (Exception e) {
+      String errorMessage = String.format("Failed to send the event %s exception %s",
+          start < toSend.size() ? toSend.get(start) : null, e);
+      _logger.warn(errorMessage, e);
+      throw new DatastreamRuntimeException(errorMessage, e);
+    }
+
+    maybeFlushOnSend();
+  }
+
+  /**
+   * Validate and serialize the record.
+   * @return true if the record should be sent, false if it must be skipped because of a serialization error
+   */
+  private boolean validateAndSerialize(DatastreamProducerRecord record) {
     try {
       validateEventRecord(record);
 
       record.serializeEvents(_datastreamTask.getDestinationSerDes());
+      return true;
     } catch (NullPointerException e) {
       String errorMessage = String.format("Validation failed for record %s exception %s", record, e);
       _logger.warn(errorMessage, e);
@@ -259,25 +319,55 @@ public class EventProducer implements DatastreamEventProducer {
         _dynamicMetricsManager.createOrUpdateCounter(MODULE, getDatastreamName(),
             DROPPED_SENT_FROM_SERIALIZATION_ERROR, 1);
         _dynamicMetricsManager.createOrUpdateCounter(MODULE, AGGREGATE, DROPPED_SENT_FROM_SERIALIZATION_ERROR, 1);
-        if (isBroadcast) {
-          return new DatastreamRecordMetadata(true);
-        }
-        return null;
+        return false;
       } else {
         String errorMessage = String.format("Failed to send event %s because of serialization exception %s", record, e);
         _logger.warn(errorMessage, e);
         throw new DatastreamRuntimeException(errorMessage, e);
       }
     }
+  }
+
+  private boolean isNoOpTransportProvider() {
+    return _datastreamTask.getTransportProviderName().
+        equalsIgnoreCase(NoOpTransportProviderAdminFactory.NoOpTransportProvider.NAME);
+  }
+
+  private String getDestination(DatastreamProducerRecord record, boolean isNoOpTransport) {
+    if (isNoOpTransport) {
+      return StringUtils.EMPTY;
+    }
+    return record.getDestination().orElse(_datastreamTask.getDatastreamDestination().getConnectionString());
+  }
+
+  /**
+   * Force a periodic flush if flushless mode isn't enabled, in case the connector is not calling flush at
+   * regular intervals
+   */
+  private void maybeFlushOnSend() {
+    if (_enableFlushOnSend && Instant.now().isAfter(_lastFlushTime.plus(_flushInterval))) {
+      flush();
+    }
+  }
+
+  /**
+   * Send the event onto the underlying transport.
+   * @param record the datastream event
+   * @param sendEventCallback the callback to be invoked after the event is sent to the destination
+   *
+   * @return For broadcast return DatastreamRecordMetadata got from transport provider broadcast, null for send
+   */
+  private DatastreamRecordMetadata helperSendOrBroadcast(DatastreamProducerRecord record,
+      SendCallback sendEventCallback, boolean isBroadcast) {
+    DatastreamRecordMetadata broadcastMetadata = null;
+
+    if (!validateAndSerialize(record)) {
+      return isBroadcast ? new DatastreamRecordMetadata(true) : null;
+    }
 
     try {
       // Send the event to the transport
-      String destination = StringUtils.EMPTY;
-      if (!_datastreamTask.getTransportProviderName().
-          equalsIgnoreCase(NoOpTransportProviderAdminFactory.NoOpTransportProvider.NAME)) {
-        destination =
-            record.getDestination().orElse(_datastreamTask.getDatastreamDestination().getConnectionString());
-      }
+      String destination = getDestination(record, isNoOpTransportProvider());
       record.setEventsSendTimestamp(System.currentTimeMillis());
       long recordEventsSourceTimestamp = record.getEventsSourceTimestamp();
       long recordEventsSendTimestamp = record.getEventsSendTimestamp().orElse(0L);
@@ -301,29 +391,21 @@ public class EventProducer implements DatastreamEventProducer {
       throw new DatastreamRuntimeException(errorMessage, e);
     }
 
-    // Force a periodic flush if flushless mode isn't enabled, in case the connector is not calling flush at
-    // regular intervals
-    if (_enableFlushOnSend && Instant.now().isAfter(_lastFlushTime.plus(_flushInterval))) {
-      flush();
-    }
+    maybeFlushOnSend();
 
     return broadcastMetadata;
   }
 
   // Report SLA metrics for aggregate, connector and task
-  private void reportSLAMetrics(String topicOrDatastreamName, boolean isWithinSLA, String metricNameForWithinSLA,
-      String metricNameForOutsideSLA) {
+  private void reportSLAMetrics(KeyedMetrics topicOrDatastreamMetrics, boolean isWithinSLA, boolean alternateSla) {
     int withinSLAValue = isWithinSLA ? 1 : 0;
     int outsideSLAValue = isWithinSLA ? 0 : 1;
-    _dynamicMetricsManager.createOrUpdateCounter(MODULE, AGGREGATE, metricNameForWithinSLA, withinSLAValue);
-    _dynamicMetricsManager.createOrUpdateCounter(MODULE, _datastreamTask.getConnectorType(), metricNameForWithinSLA,
-        withinSLAValue);
-    _dynamicMetricsManager.createOrUpdateCounter(MODULE, topicOrDatastreamName, metricNameForWithinSLA, withinSLAValue);
-    _dynamicMetricsManager.createOrUpdateCounter(MODULE, AGGREGATE, metricNameForOutsideSLA, outsideSLAValue);
-    _dynamicMetricsManager.createOrUpdateCounter(MODULE, _datastreamTask.getConnectorType(), metricNameForOutsideSLA,
-        outsideSLAValue);
-    _dynamicMetricsManager.createOrUpdateCounter(MODULE, topicOrDatastreamName, metricNameForOutsideSLA,
-        outsideSLAValue);
+    _aggregateMetrics.eventsProducedWithinSla(alternateSla).inc(withinSLAValue);
+    _connectorMetrics.eventsProducedWithinSla(alternateSla).inc(withinSLAValue);
+    topicOrDatastreamMetrics.eventsProducedWithinSla(alternateSla).inc(withinSLAValue);
+    _aggregateMetrics.eventsProducedOutsideSla(alternateSla).inc(outsideSLAValue);
+    _connectorMetrics.eventsProducedOutsideSla(alternateSla).inc(outsideSLAValue);
+    topicOrDatastreamMetrics.eventsProducedOutsideSla(alternateSla).inc(outsideSLAValue);
   }
 
   private void performSlaRelatedLogging(DatastreamRecordMetadata metadata, long eventsSourceTimestamp,
@@ -369,18 +451,18 @@ public class EventProducer implements DatastreamEventProducer {
     // If per-topic metrics are enabled, use topic as key for metrics; else, use datastream name as the key
     String datastreamName = getDatastreamName();
 
-    String topicOrDatastreamName = _enablePerTopicMetrics ? metadata.getTopic() : datastreamName;
+    KeyedMetrics topicOrDatastreamMetrics =
+        getKeyedMetrics(_enablePerTopicMetrics ? metadata.getTopic() : datastreamName);
     // Treat all events within this record equally (assume same timestamp)
     if (eventsSourceTimestamp > 0) {
       // Report availability metrics
       long sourceToDestinationLatencyMs = System.currentTimeMillis() - eventsSourceTimestamp;
-      reportEventLatencyMetrics(topicOrDatastreamName, metadata, sourceToDestinationLatencyMs, EVENTS_LATENCY_MS_STRING);
+      reportEventLatencyMetrics(topicOrDatastreamMetrics, metadata, sourceToDestinationLatencyMs, false);
 
-      reportSLAMetrics(topicOrDatastreamName, sourceToDestinationLatencyMs <= _availabilityThresholdSlaMs,
-          EVENTS_PRODUCED_WITHIN_SLA, EVENTS_PRODUCED_OUTSIDE_SLA);
+      reportSLAMetrics(topicOrDatastreamMetrics, sourceToDestinationLatencyMs <= _availabilityThresholdSlaMs, false);
 
-      reportSLAMetrics(topicOrDatastreamName, sourceToDestinationLatencyMs <= _availabilityThresholdAlternateSlaMs,
-          EVENTS_PRODUCED_WITHIN_ALTERNATE_SLA, EVENTS_PRODUCED_OUTSIDE_ALTERNATE_SLA);
+      reportSLAMetrics(topicOrDatastreamMetrics, sourceToDestinationLatencyMs <= _availabilityThresholdAlternateSlaMs,
+          true);
 
       if (_logger.isDebugEnabled()) {
         if (sourceToDestinationLatencyMs > _availabilityThresholdSlaMs) {
@@ -397,9 +479,8 @@ public class EventProducer implements DatastreamEventProducer {
         }
       }
 
-      _dynamicMetricsManager.createOrUpdateCounter(MODULE, AGGREGATE, TOTAL_EVENTS_PRODUCED, 1);
-      _dynamicMetricsManager.createOrUpdateCounter(MODULE, _datastreamTask.getConnectorType(), TOTAL_EVENTS_PRODUCED,
-          1);
+      _aggregateMetrics._totalEventsProduced.inc();
+      _connectorMetrics._totalEventsProduced.inc();
 
       // Log information about events if either warn logging is enabled or logging for topic partitions outside
       // alternate SLA is enabled
@@ -409,10 +490,10 @@ public class EventProducer implements DatastreamEventProducer {
     // Report the time it took to just send the events to destination
     if (eventsSendTimestamp > 0) {
       long sendLatency = System.currentTimeMillis() - eventsSendTimestamp;
-      reportSendLatencyMetrics(metadata, sendLatency, EVENTS_SEND_LATENCY_MS_STRING);
+      reportSendLatencyMetrics(topicOrDatastreamMetrics, sendLatency, false);
     }
-    _dynamicMetricsManager.createOrUpdateMeter(MODULE, AGGREGATE, EVENT_PRODUCE_RATE, 1);
-    _dynamicMetricsManager.createOrUpdateMeter(MODULE, _datastreamTask.getConnectorType(), EVENT_PRODUCE_RATE, 1);
+    _aggregateMetrics._eventProduceRate.mark();
+    _connectorMetrics._eventProduceRate.mark();
   }
 
   /**
@@ -425,15 +506,16 @@ public class EventProducer implements DatastreamEventProducer {
    */
   private void reportMetricsForThroughputViolatingTopics(DatastreamRecordMetadata metadata, long eventsSourceTimestamp,
       long eventsSendTimestamp) {
-    String topicOrDatastreamName = _enablePerTopicMetrics ? metadata.getTopic() : getDatastreamName();
+    KeyedMetrics topicOrDatastreamMetrics =
+        getKeyedMetrics(_enablePerTopicMetrics ? metadata.getTopic() : getDatastreamName());
     // Treat all events within this record equally (assume same timestamp)
     if (eventsSourceTimestamp > 0) {
       // Report availability metrics
       long sourceToDestinationLatencyMs = System.currentTimeMillis() - eventsSourceTimestamp;
-      reportEventLatencyMetrics(topicOrDatastreamName, metadata, sourceToDestinationLatencyMs, THROUGHPUT_VIOLATING_EVENTS_LATENCY_MS_STRING);
+      reportEventLatencyMetrics(topicOrDatastreamMetrics, metadata, sourceToDestinationLatencyMs, true);
 
-      reportSLAMetrics(topicOrDatastreamName, sourceToDestinationLatencyMs <= _availabilityThresholdAlternateSlaMs,
-          EVENTS_PRODUCED_WITHIN_ALTERNATE_SLA, EVENTS_PRODUCED_OUTSIDE_ALTERNATE_SLA);
+      reportSLAMetrics(topicOrDatastreamMetrics, sourceToDestinationLatencyMs <= _availabilityThresholdAlternateSlaMs,
+          true);
 
       if (_logger.isDebugEnabled()) {
         if (sourceToDestinationLatencyMs > _availabilityThresholdAlternateSlaMs) {
@@ -444,9 +526,8 @@ public class EventProducer implements DatastreamEventProducer {
         }
       }
 
-      _dynamicMetricsManager.createOrUpdateCounter(MODULE, AGGREGATE, TOTAL_EVENTS_PRODUCED, 1);
-      _dynamicMetricsManager.createOrUpdateCounter(MODULE, _datastreamTask.getConnectorType(), TOTAL_EVENTS_PRODUCED,
-          1);
+      _aggregateMetrics._totalEventsProduced.inc();
+      _connectorMetrics._totalEventsProduced.inc();
 
       // Log information about events if either warn logging is enabled or logging for topic partitions outside
       // alternate SLA is enabled
@@ -456,42 +537,39 @@ public class EventProducer implements DatastreamEventProducer {
     // Report the time it took to just send the events to destination
     if (eventsSendTimestamp > 0) {
       long sendLatency = System.currentTimeMillis() - eventsSendTimestamp;
-      reportSendLatencyMetrics(metadata, sendLatency, THROUGHPUT_VIOLATING_EVENTS_SEND_LATENCY_MS_STRING);
+      reportSendLatencyMetrics(topicOrDatastreamMetrics, sendLatency, true);
     }
-    _dynamicMetricsManager.createOrUpdateMeter(MODULE, AGGREGATE, EVENT_PRODUCE_RATE, 1);
-    _dynamicMetricsManager.createOrUpdateMeter(MODULE, _datastreamTask.getConnectorType(), EVENT_PRODUCE_RATE, 1);
+    _aggregateMetrics._eventProduceRate.mark();
+    _connectorMetrics._eventProduceRate.mark();
   }
 
   // Report Event Latency metrics for aggregate, connector and topic/datastream
-  private void reportEventLatencyMetrics(String topicOrDatastreamName, DatastreamRecordMetadata metadata,
-      long sourceToDestinationLatencyMs, String eventLatencyMetricName) {
+  private void reportEventLatencyMetrics(KeyedMetrics topicOrDatastreamMetrics, DatastreamRecordMetadata metadata,
+      long sourceToDestinationLatencyMs, boolean throughputViolating) {
     // Using a time sliding window for reporting latency specifically.
     // Otherwise we report very stuck max value for slow source
-    _dynamicMetricsManager.createOrUpdateSlidingWindowHistogram(MODULE, topicOrDatastreamName, eventLatencyMetricName,
-        LATENCY_SLIDING_WINDOW_LENGTH_MS, sourceToDestinationLatencyMs);
-    _dynamicMetricsManager.createOrUpdateSlidingWindowHistogram(MODULE, AGGREGATE, eventLatencyMetricName,
-        LATENCY_SLIDING_WINDOW_LENGTH_MS, sourceToDestinationLatencyMs);
-    _dynamicMetricsManager.createOrUpdateSlidingWindowHistogram(MODULE, _datastreamTask.getConnectorType(),
-        eventLatencyMetricName, LATENCY_SLIDING_WINDOW_LENGTH_MS, sourceToDestinationLatencyMs);
+    topicOrDatastreamMetrics.eventsLatencyMs(throughputViolating).update(sourceToDestinationLatencyMs);
+    _aggregateMetrics.eventsLatencyMs(throughputViolating).update(sourceToDestinationLatencyMs);
+    _connectorMetrics.eventsLatencyMs(throughputViolating).update(sourceToDestinationLatencyMs);
 
     // Only update the per topic latency metric here if 'enablePerTopicMetrics' is false, otherwise this will
     // update the metric twice.
     if (_enablePerTopicEventLatencyMetrics && !_enablePerTopicMetrics) {
-      _dynamicMetricsManager.createOrUpdateSlidingWindowHistogram(MODULE, metadata.getTopic(), eventLatencyMetricName,
-          LATENCY_SLIDING_WINDOW_LENGTH_MS, sourceToDestinationLatencyMs);
+      getKeyedMetrics(metadata.getTopic()).eventsLatencyMs(throughputViolating).update(sourceToDestinationLatencyMs);
     }
   }
 
   // Report Send to destination Latency metrics for aggregate, connector and topic/datastream
-  private void reportSendLatencyMetrics(DatastreamRecordMetadata metadata, long sendLatency,
-      String sendLatencyMetricName) {
-    String topicOrDatastreamName = _enablePerTopicMetrics ? metadata.getTopic() : getDatastreamName();
-    _dynamicMetricsManager.createOrUpdateHistogram(MODULE, topicOrDatastreamName,
-        sendLatencyMetricName, sendLatency);
-    _dynamicMetricsManager.createOrUpdateHistogram(MODULE, AGGREGATE,
-        sendLatencyMetricName, sendLatency);
-    _dynamicMetricsManager.createOrUpdateHistogram(MODULE, _datastreamTask.getConnectorType(),
-        sendLatencyMetricName, sendLatency);
+  private void reportSendLatencyMetrics(KeyedMetrics topicOrDatastreamMetrics, long sendLatency,
+      boolean throughputViolating) {
+    topicOrDatastreamMetrics.eventsSendLatencyMs(throughputViolating).update(sendLatency);
+    _aggregateMetrics.eventsSendLatencyMs(throughputViolating).update(sendLatency);
+    _connectorMetrics.eventsSendLatencyMs(throughputViolating).update(sendLatency);
+  }
+
+  private KeyedMetrics getKeyedMetrics(String key) {
+    // ConcurrentHashMap does not allow null keys; handles for them are not worth caching
+    return key == null ? new KeyedMetrics(null) : _keyedMetrics.computeIfAbsent(key, KeyedMetrics::new);
   }
 
   private void onSendCallback(DatastreamRecordMetadata metadata, Exception exception, SendCallback sendCallback,
@@ -559,9 +637,8 @@ public class EventProducer implements DatastreamEventProducer {
     } finally {
       // Report flush latency metrics
       long flushLatencyMs = Duration.between(beforeFlush, _lastFlushTime).toMillis();
-      _dynamicMetricsManager.createOrUpdateHistogram(MODULE, AGGREGATE, FLUSH_LATENCY_MS_STRING, flushLatencyMs);
-      _dynamicMetricsManager.createOrUpdateHistogram(MODULE, _datastreamTask.getConnectorType(), FLUSH_LATENCY_MS_STRING,
-          flushLatencyMs);
+      _aggregateMetrics._flushLatencyMs.update(flushLatencyMs);
+      _connectorMetrics._flushLatencyMs.update(flushLatencyMs);
 
       if (flushLatencyMs > LONG_FLUSH_WARN_THRESHOLD_MS) {
         _logger.warn("Flush took {} ms", flushLatencyMs);
@@ -607,6 +684,98 @@ public class EventProducer implements DatastreamEventProducer {
     return _datastreamTask.getDatastreams().get(0).getName();
   }
 
+  /**
+   * Transport callback shared by all the records of a batch sent through {@link #sendBatch}. It looks up the
+   * per-record state through the batch index reported by the transport, instead of capturing it in a callback
+   * allocated for every record.
+   */
+  private final class BatchSendCallback implements SendCallback {
+    private final List<DatastreamProducerRecord> _batch;
+    private final int[] _batchIndexes;
+    private final int _offset;
+    private final long _sendTimestamp;
+    private final SendCallback _sendCallback;
+
+    /**
+     * @param batch the records handed to the transport
+     * @param batchIndexes positions of the sent records within the caller's batch, or null if they are the same
+     * @param offset position of the first record of {@code batch} within {@code batchIndexes}
+     */
+    BatchSendCallback(List<DatastreamProducerRecord> batch, int[] batchIndexes, int offset, long sendTimestamp,
+        SendCallback sendCallback) {
+      _batch = batch;
+      _batchIndexes = batchIndexes;
+      _offset = offset;
+      _sendTimestamp = sendTimestamp;
+      _sendCallback = sendCallback;
+    }
+
+    @Override
+    public void onCompletion(DatastreamRecordMetadata metadata, Exception exception) {
+      long eventsSourceTimestamp = 0;
+      if (metadata != null && metadata.getBatchIndex() >= 0) {
+        eventsSourceTimestamp = _batch.get(metadata.getBatchIndex()).getEventsSourceTimestamp();
+        if (_batchIndexes != null) {
+          metadata = metadata.withBatchIndex(_batchIndexes[_offset + metadata.getBatchIndex()]);
+        }
+      }
+      onSendCallback(metadata, exception, _sendCallback, eventsSourceTimestamp, _sendTimestamp);
+    }
+  }
+
+  /**
+   * Handles of the metrics reported on every send callback for a single metrics key (aggregate, connector type,
+   * topic or datastream name). The metrics themselves are only created once the handles are first used.
+   */
+  private final class KeyedMetrics {
+    private final CounterHandle _totalEventsProduced;
+    private final CounterHandle _eventsProducedWithinSla;
+    private final CounterHandle _eventsProducedOutsideSla;
+    private final CounterHandle _eventsProducedWithinAlternateSla;
+    private final CounterHandle _eventsProducedOutsideAlternateSla;
+    private final MeterHandle _eventProduceRate;
+    private final HistogramHandle _eventsLatencyMs;
+    private final HistogramHandle _eventsSendLatencyMs;
+    private final HistogramHandle _throughputViolatingEventsLatencyMs;
+    private final HistogramHandle _throughputViolatingEventsSendLatencyMs;
+    private final HistogramHandle _flushLatencyMs;
+
+    KeyedMetrics(String key) {
+      _totalEventsProduced = _dynamicMetricsManager.counterHandle(MODULE, key, TOTAL_EVENTS_PRODUCED);
+      _eventsProducedWithinSla = _dynamicMetricsManager.counterHandle(MODULE, key, EVENTS_PRODUCED_WITHIN_SLA);
+      _eventsProducedOutsideSla = _dynamicMetricsManager.counterHandle(MODULE, key, EVENTS_PRODUCED_OUTSIDE_SLA);
+      _eventsProducedWithinAlternateSla =
+          _dynamicMetricsManager.counterHandle(MODULE, key, EVENTS_PRODUCED_WITHIN_ALTERNATE_SLA);
+      _eventsProducedOutsideAlternateSla =
+          _dynamicMetricsManager.counterHandle(MODULE, key, EVENTS_PRODUCED_OUTSIDE_ALTERNATE_SLA);
+      _eventProduceRate = _dynamicMetricsManager.meterHandle(MODULE, key, EVENT_PRODUCE_RATE);
+      _eventsLatencyMs = _dynamicMetricsManager.slidingWindowHistogramHandle(MODULE, key, EVENTS_LATENCY_MS_STRING,
+          LATENCY_SLIDING_WINDOW_LENGTH_MS);
+      _eventsSendLatencyMs = _dynamicMetricsManager.histogramHandle(MODULE, key, EVENTS_SEND_LATENCY_MS_STRING);
+      _throughputViolatingEventsLatencyMs = _dynamicMetricsManager.slidingWindowHistogramHandle(MODULE, key,
+          THROUGHPUT_VIOLATING_EVENTS_LATENCY_MS_STRING, LATENCY_SLIDING_WINDOW_LENGTH_MS);
+      _throughputViolatingEventsSendLatencyMs =
+          _dynamicMetricsManager.histogramHandle(MODULE, key, THROUGHPUT_VIOLATING_EVENTS_SEND_LATENCY_MS_STRING);
+      _flushLatencyMs = _dynamicMetricsManager.histogramHandle(MODULE, key, FLUSH_LATENCY_MS_STRING);
+    }
+
+    CounterHandle eventsProducedWithinSla(boolean alternateSla) {
+      return alternateSla ? _eventsProducedWithinAlternateSla : _eventsProducedWithinSla;
+    }
+
+    CounterHandle eventsProducedOutsideSla(boolean alternateSla) {
+      return alternateSla ? _eventsProducedOutsideAlternateSla : _eventsProducedOutsideSla;
+    }
+
+    HistogramHandle eventsLatencyMs(boolean throughputViolating) {
+      return throughputViolating ? _throughputViolatingEventsLatencyMs : _eventsLatencyMs;
+    }
+
+    HistogramHandle eventsSendLatencyMs(boolean throughputViolating) {
+      return throughputViolating ? _throughputViolatingEventsSendLatencyMs : _eventsSendLatencyMs;
+    }
+  }
+
   /**
    * Get the list of metrics maintained by the event producer
    */
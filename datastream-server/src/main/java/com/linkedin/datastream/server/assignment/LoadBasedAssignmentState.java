@@ -0,0 +1,506 @@
+/**
+ *  Copyright 2021 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.server.assignment;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.datastream.common.DatastreamRuntimeException;
+import com.linkedin.datastream.server.DatastreamTask;
+import com.linkedin.datastream.server.PartitionThroughputInfo;
+
+
+/**
+ * The partition assignment of one datastream group as last computed by {@link LoadBasedPartitionAssigner}, kept
+ * between assignments so that each assignment only has to apply what changed since the previous one: tasks which
+ * were added or removed, partitions which were added or removed, and partitions whose throughput changed.
+ * <p>
+ * Partition names are interned to int ids, which index the per partition state, and each task is given a slot, which
+ * indexes the per task state. The tasks which can take more partitions are kept in a min-heap on their throughput,
+ * which is updated in place whenever a task's throughput or partition count changes.
+ * </p>
+ * Tasks are recognized by their ids, which change whenever their partitions do. A task whose id is already known is
+ * assumed to still have the partitions it had when it was last seen, unless their number changed.
+ */
+final class LoadBasedAssignmentState {
+  private static final Logger LOG = LoggerFactory.getLogger(LoadBasedAssignmentState.class.getName());
+  private static final int UNASSIGNED = -1;
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final int _defaultPartitionBytesInKBRate;
+
+  // per partition state, indexed by partition id
+  private final Map<String, Integer> _partitionIds = new HashMap<>();
+  private final Deque<Integer> _freePartitionIds = new ArrayDeque<>();
+  private String[] _partitionNames = new String[INITIAL_CAPACITY];
+  private String[] _partitionTopics = new String[INITIAL_CAPACITY];
+  private int[] _partitionLoads = new int[INITIAL_CAPACITY];
+  private boolean[] _partitionRecognized = new boolean[INITIAL_CAPACITY];
+  private int[] _partitionOwners = new int[INITIAL_CAPACITY];
+  // index of the partition in the partitions of its owner
+  private int[] _partitionPositions = new int[INITIAL_CAPACITY];
+  private int[] _partitionRounds = new int[INITIAL_CAPACITY];
+  private int _numPartitionIds;
+
+  // per task state, indexed by task slot
+  private final Map<String, Integer> _taskSlots = new HashMap<>();
+  private final Deque<Integer> _freeTaskSlots = new ArrayDeque<>();
+  private String[] _taskIds = new String[INITIAL_CAPACITY];
+  private int[][] _taskPartitions = new int[INITIAL_CAPACITY][];
+  private int[] _taskNumPartitions = new int[INITIAL_CAPACITY];
+  private int[] _taskLoads = new int[INITIAL_CAPACITY];
+  private int[] _taskNumUnrecognizedPartitions = new int[INITIAL_CAPACITY];
+  private boolean[] _taskChanged = new boolean[INITIAL_CAPACITY];
+  // breaks ties between tasks of the same throughput, in favor of the one least recently given a partition
+  private long[] _taskSequenceNumbers = new long[INITIAL_CAPACITY];
+  private int _numTaskSlots;
+
+  // min-heap of the slots of the tasks which can take more partitions
+  private int[] _heap = new int[INITIAL_CAPACITY];
+  private int[] _heapPositions = new int[INITIAL_CAPACITY];
+  private int _heapSize;
+
+  private Map<String, PartitionThroughputInfo> _partitionInfo = Collections.emptyMap();
+  private int _maxPartitionsPerTask;
+  private int _round;
+  private long _sequenceNumber;
+  private int _roundRobinSlot;
+
+  /**
+   * Constructor of LoadBasedAssignmentState
+   * @param defaultPartitionBytesInKBRate bytesIn rate in KB of the partitions with no throughput information
+   */
+  LoadBasedAssignmentState(int defaultPartitionBytesInKBRate) {
+    _defaultPartitionBytesInKBRate = defaultPartitionBytesInKBRate;
+  }
+
+  /**
+   * Bring the state up to date with the current assignment and throughput information, and assign the unassigned
+   * partitions. Partitions with throughput information are assigned heaviest first to the lightest task, and the
+   * others round-robin.
+   * @param tasks the current tasks of the datastream group
+   * @param partitions all the partitions of the datastream group
+   * @param unassignedPartitions the partitions which aren't assigned to any task
+   * @param partitionInfo per partition or per topic throughput information
+   * @param maxPartitionsPerTask maximum number of partitions of a task
+   */
+  void assign(Collection<DatastreamTask> tasks, Collection<String> partitions, Collection<String> unassignedPartitions,
+      Map<String, PartitionThroughputInfo> partitionInfo, int maxPartitionsPerTask) {
+    _round++;
+    Arrays.fill(_taskChanged, 0, _numTaskSlots, false);
+    Arrays.fill(_taskNumUnrecognizedPartitions, 0, _numTaskSlots, 0);
+    setMaxPartitionsPerTask(maxPartitionsPerTask);
+    setPartitionInfo(partitionInfo);
+    syncTasks(tasks);
+    retainPartitions(partitions);
+
+    int[] recognizedPartitions = new int[unassignedPartitions.size()];
+    long[] sortKeys = new long[unassignedPartitions.size()];
+    int numRecognizedPartitions = 0;
+    List<Integer> unrecognizedPartitions = new ArrayList<>();
+    for (String partition : unassignedPartitions) {
+      int id = internPartition(partition);
+      if (_partitionOwners[id] != UNASSIGNED) {
+        continue;
+      }
+      if (_partitionRecognized[id]) {
+        // sorts on throughput, and then on the order in which the partitions were given
+        sortKeys[numRecognizedPartitions] = ((long) _partitionLoads[id] << 32) | numRecognizedPartitions;
+        recognizedPartitions[numRecognizedPartitions++] = id;
+      } else {
+        unrecognizedPartitions.add(id);
+      }
+    }
+
+    // assign partitions with throughput info one by one, by putting the heaviest partition in the lightest task
+    Arrays.sort(sortKeys, 0, numRecognizedPartitions);
+    for (int i = numRecognizedPartitions - 1; i >= 0 && _heapSize > 0; i--) {
+      int id = recognizedPartitions[(int) sortKeys[i]];
+      int slot = _heap[0];
+      _taskSequenceNumbers[slot] = ++_sequenceNumber;
+      addPartition(slot, id);
+      _taskChanged[slot] = true;
+    }
+
+    // assign unrecognized partitions with round-robin
+    Collections.shuffle(unrecognizedPartitions);
+    for (int id : unrecognizedPartitions) {
+      int slot = findTaskWithRoomForAPartition(_roundRobinSlot);
+      addPartition(slot, id);
+      _taskChanged[slot] = true;
+      _taskNumUnrecognizedPartitions[slot]++;
+      _roundRobinSlot = (slot + 1) % _numTaskSlots;
+    }
+  }
+
+  /**
+   * Check if the partitions of a task were changed by the last assignment
+   */
+  boolean isChanged(String taskId) {
+    Integer slot = _taskSlots.get(taskId);
+    return slot != null && _taskChanged[slot];
+  }
+
+  /**
+   * Get the partitions of a task
+   */
+  Set<String> getPartitions(String taskId) {
+    int slot = getSlot(taskId);
+    Set<String> partitions = new HashSet<>(_taskNumPartitions[slot] * 2);
+    for (int i = 0; i < _taskNumPartitions[slot]; i++) {
+      partitions.add(_partitionNames[_taskPartitions[slot][i]]);
+    }
+    return partitions;
+  }
+
+  /**
+   * Get the total bytesIn rate in KB of the partitions of a task
+   */
+  int getLoad(String taskId) {
+    return _taskLoads[getSlot(taskId)];
+  }
+
+  /**
+   * Get the number of partitions with no throughput information given to a task by the last assignment
+   */
+  int getNumUnrecognizedPartitions(String taskId) {
+    return _taskNumUnrecognizedPartitions[getSlot(taskId)];
+  }
+
+  /**
+   * Record the new id of a task, once it's replaced with a task of the partitions it was assigned
+   */
+  void renameTask(String taskId, String newTaskId) {
+    int slot = getSlot(taskId);
+    _taskSlots.remove(taskId);
+    _taskSlots.put(newTaskId, slot);
+    _taskIds[slot] = newTaskId;
+  }
+
+  /**
+   * Get the statistics of the number of partitions of the tasks
+   */
+  IntSummaryStatistics getPartitionCountStats() {
+    IntSummaryStatistics stats = new IntSummaryStatistics();
+    for (int slot = 0; slot < _numTaskSlots; slot++) {
+      if (_taskIds[slot] != null) {
+        stats.accept(_taskNumPartitions[slot]);
+      }
+    }
+    return stats;
+  }
+
+  private int getSlot(String taskId) {
+    Integer slot = _taskSlots.get(taskId);
+    if (slot == null) {
+      throw new DatastreamRuntimeException("Unknown task " + taskId);
+    }
+    return slot;
+  }
+
+  private void setMaxPartitionsPerTask(int maxPartitionsPerTask) {
+    if (maxPartitionsPerTask == _maxPartitionsPerTask) {
+      return;
+    }
+    _maxPartitionsPerTask = maxPartitionsPerTask;
+    _heapSize = 0;
+    Arrays.fill(_heapPositions, 0, _numTaskSlots, -1);
+    for (int slot = 0; slot < _numTaskSlots; slot++) {
+      if (_taskIds[slot] != null) {
+        updateHeap(slot);
+      }
+    }
+  }
+
+  private void setPartitionInfo(Map<String, PartitionThroughputInfo> partitionInfo) {
+    if (partitionInfo == _partitionInfo || (partitionInfo.isEmpty() && _partitionInfo.isEmpty())) {
+      return;
+    }
+    _partitionInfo = partitionInfo;
+    for (int id = 0; id < _numPartitionIds; id++) {
+      if (_partitionNames[id] != null) {
+        updatePartitionLoad(id);
+      }
+    }
+  }
+
+  // Forget the tasks which aren't part of the assignment any more or whose partitions changed, and add the new ones
+  private void syncTasks(Collection<DatastreamTask> tasks) {
+    Map<String, DatastreamTask> tasksById = new HashMap<>();
+    tasks.forEach(task -> tasksById.put(task.getId(), task));
+    for (int slot = 0; slot < _numTaskSlots; slot++) {
+      if (_taskIds[slot] != null) {
+        DatastreamTask task = tasksById.get(_taskIds[slot]);
+        if (task == null || task.getPartitionsV2().size() != _taskNumPartitions[slot]) {
+          removeTask(slot);
+        }
+      }
+    }
+    for (DatastreamTask task : tasksById.values()) {
+      if (!_taskSlots.containsKey(task.getId())) {
+        addTask(task);
+      }
+    }
+  }
+
+  // Remove the partitions which aren't part of the datastream group any more from their tasks and forget them
+  private void retainPartitions(Collection<String> partitions) {
+    for (String partition : partitions) {
+      Integer id = _partitionIds.get(partition);
+      if (id != null) {
+        _partitionRounds[id] = _round;
+      }
+    }
+    for (int id = 0; id < _numPartitionIds; id++) {
+      if (_partitionNames[id] != null && _partitionRounds[id] != _round) {
+        int slot = _partitionOwners[id];
+        if (slot != UNASSIGNED) {
+          removePartition(slot, id);
+          _taskChanged[slot] = true;
+        }
+        releasePartition(id);
+      }
+    }
+  }
+
+  private void addTask(DatastreamTask task) {
+    int slot;
+    if (_freeTaskSlots.isEmpty()) {
+      slot = _numTaskSlots++;
+      ensureTaskCapacity(_numTaskSlots);
+    } else {
+      slot = _freeTaskSlots.pop();
+    }
+    _taskSlots.put(task.getId(), slot);
+    _taskIds[slot] = task.getId();
+    _taskPartitions[slot] = new int[Math.max(INITIAL_CAPACITY, task.getPartitionsV2().size())];
+    _taskNumPartitions[slot] = 0;
+    _taskLoads[slot] = 0;
+    _taskNumUnrecognizedPartitions[slot] = 0;
+    _taskChanged[slot] = false;
+    _taskSequenceNumbers[slot] = ++_sequenceNumber;
+    _heapPositions[slot] = -1;
+    for (String partition : task.getPartitionsV2()) {
+      int id = internPartition(partition);
+      int owner = _partitionOwners[id];
+      if (owner != UNASSIGNED) {
+        LOG.warn("Partition {} is assigned to both tasks {} and {}, keeping it in the latter", partition,
+            _taskIds[owner], task.getId());
+        removePartition(owner, id);
+        _taskChanged[owner] = true;
+      }
+      addPartition(slot, id);
+    }
+    updateHeap(slot);
+  }
+
+  private void removeTask(int slot) {
+    for (int i = 0; i < _taskNumPartitions[slot]; i++) {
+      _partitionOwners[_taskPartitions[slot][i]] = UNASSIGNED;
+    }
+    if (_heapPositions[slot] >= 0) {
+      removeFromHeap(slot);
+    }
+    _taskSlots.remove(_taskIds[slot]);
+    _taskIds[slot] = null;
+    _taskPartitions[slot] = null;
+    _taskNumPartitions[slot] = 0;
+    _taskLoads[slot] = 0;
+    _freeTaskSlots.push(slot);
+  }
+
+  private void addPartition(int slot, int id) {
+    int numPartitions = _taskNumPartitions[slot];
+    if (numPartitions == _taskPartitions[slot].length) {
+      _taskPartitions[slot] = Arrays.copyOf(_taskPartitions[slot], numPartitions * 2);
+    }
+    _taskPartitions[slot][numPartitions] = id;
+    _taskNumPartitions[slot] = numPartitions + 1;
+    _partitionOwners[id] = slot;
+    _partitionPositions[id] = numPartitions;
+    _taskLoads[slot] += _partitionLoads[id];
+    updateHeap(slot);
+  }
+
+  private void removePartition(int slot, int id) {
+    int position = _partitionPositions[id];
+    int last = _taskPartitions[slot][--_taskNumPartitions[slot]];
+    _taskPartitions[slot][position] = last;
+    _partitionPositions[last] = position;
+    _partitionOwners[id] = UNASSIGNED;
+    _taskLoads[slot] -= _partitionLoads[id];
+    updateHeap(slot);
+  }
+
+  private int internPartition(String partition) {
+    Integer existingId = _partitionIds.get(partition);
+    if (existingId != null) {
+      return existingId;
+    }
+    int id;
+    if (_freePartitionIds.isEmpty()) {
+      id = _numPartitionIds++;
+      ensurePartitionCapacity(_numPartitionIds);
+    } else {
+      id = _freePartitionIds.pop();
+    }
+    _partitionIds.put(partition, id);
+    _partitionNames[id] = partition;
+    _partitionTopics[id] = LoadBasedPartitionAssigner.extractTopicFromPartition(partition);
+    _partitionOwners[id] = UNASSIGNED;
+    _partitionLoads[id] = 0;
+    updatePartitionLoad(id);
+    return id;
+  }
+
+  private void releasePartition(int id) {
+    _partitionIds.remove(_partitionNames[id]);
+    _partitionNames[id] = null;
+    _partitionTopics[id] = null;
+    _freePartitionIds.push(id);
+  }
+
+  // If the partition level information is not found, use the topic level information. It is always better than no
+  // information about the partition.
+  private void updatePartitionLoad(int id) {
+    PartitionThroughputInfo info = _partitionInfo.get(_partitionNames[id]);
+    if (info == null) {
+      info = _partitionInfo.get(_partitionTopics[id]);
+    }
+    _partitionRecognized[id] = info != null;
+    int load = info != null ? info.getBytesInKBRate() : _defaultPartitionBytesInKBRate;
+    int slot = _partitionOwners[id];
+    if (slot != UNASSIGNED) {
+      _taskLoads[slot] += load - _partitionLoads[id];
+      updateHeap(slot);
+    }
+    _partitionLoads[id] = load;
+  }
+
+  private int findTaskWithRoomForAPartition(int startSlot) {
+    for (int i = 0; i < _numTaskSlots; i++) {
+      int slot = (startSlot + i) % _numTaskSlots;
+      if (_taskIds[slot] != null && _taskNumPartitions[slot] < _maxPartitionsPerTask) {
+        return slot;
+      }
+    }
+    throw new DatastreamRuntimeException("No tasks found that can host an additional partition");
+  }
+
+  private void ensurePartitionCapacity(int capacity) {
+    if (capacity > _partitionNames.length) {
+      int newCapacity = Math.max(capacity, _partitionNames.length * 2);
+      _partitionNames = Arrays.copyOf(_partitionNames, newCapacity);
+      _partitionTopics = Arrays.copyOf(_partitionTopics, newCapacity);
+      _partitionLoads = Arrays.copyOf(_partitionLoads, newCapacity);
+      _partitionRecognized = Arrays.copyOf(_partitionRecognized, newCapacity);
+      _partitionOwners = Arrays.copyOf(_partitionOwners, newCapacity);
+      _partitionPositions = Arrays.copyOf(_partitionPositions, newCapacity);
+      _partitionRounds = Arrays.copyOf(_partitionRounds, newCapacity);
+    }
+  }
+
+  private void ensureTaskCapacity(int capacity) {
+    if (capacity > _taskIds.length) {
+      int newCapacity = Math.max(capacity, _taskIds.length * 2);
+      _taskIds = Arrays.copyOf(_taskIds, newCapacity);
+      _taskPartitions = Arrays.copyOf(_taskPartitions, newCapacity);
+      _taskNumPartitions = Arrays.copyOf(_taskNumPartitions, newCapacity);
+      _taskLoads = Arrays.copyOf(_taskLoads, newCapacity);
+      _taskNumUnrecognizedPartitions = Arrays.copyOf(_taskNumUnrecognizedPartitions, newCapacity);
+      _taskChanged = Arrays.copyOf(_taskChanged, newCapacity);
+      _taskSequenceNumbers = Arrays.copyOf(_taskSequenceNumbers, newCapacity);
+      _heap = Arrays.copyOf(_heap, newCapacity);
+      _heapPositions = Arrays.copyOf(_heapPositions, newCapacity);
+    }
+  }
+
+  // Add, move or remove a task in the heap after its throughput or partition count changed
+  private void updateHeap(int slot) {
+    int position = _heapPositions[slot];
+    if (_taskNumPartitions[slot] >= _maxPartitionsPerTask) {
+      if (position >= 0) {
+        removeFromHeap(slot);
+      }
+    } else if (position < 0) {
+      _heap[_heapSize] = slot;
+      _heapPositions[slot] = _heapSize;
+      siftUp(_heapSize++);
+    } else {
+      siftUp(position);
+      siftDown(_heapPositions[slot]);
+    }
+  }
+
+  private void removeFromHeap(int slot) {
+    int position = _heapPositions[slot];
+    int last = _heap[--_heapSize];
+    _heapPositions[slot] = -1;
+    if (position < _heapSize) {
+      _heap[position] = last;
+      _heapPositions[last] = position;
+      siftUp(position);
+      siftDown(_heapPositions[last]);
+    }
+  }
+
+  private void siftUp(int position) {
+    int slot = _heap[position];
+    while (position > 0) {
+      int parent = (position - 1) / 2;
+      if (!isLighter(slot, _heap[parent])) {
+        break;
+      }
+      moveInHeap(_heap[parent], position);
+      position = parent;
+    }
+    moveInHeap(slot, position);
+  }
+
+  private void siftDown(int position) {
+    int slot = _heap[position];
+    while (true) {
+      int child = 2 * position + 1;
+      if (child >= _heapSize) {
+        break;
+      }
+      if (child + 1 < _heapSize && isLighter(_heap[child + 1], _heap[child])) {
+        child++;
+      }
+      if (!isLighter(_heap[child], slot)) {
+        break;
+      }
+      moveInHeap(_heap[child], position);
+      position = child;
+    }
+    moveInHeap(slot, position);
+  }
+
+  private void moveInHeap(int slot, int position) {
+    _heap[position] = slot;
+    _heapPositions[slot] = position;
+  }
+
+  private boolean isLighter(int slot1, int slot2) {
+    if (_taskLoads[slot1] != _taskLoads[slot2]) {
+      return _taskLoads[slot1] < _taskLoads[slot2];
+    }
+    return _taskSequenceNumbers[slot1] < _taskSequenceNumbers[slot2];
+  }
+}
@@ -8,13 +8,9 @@ package com.linkedin.datastream.server.assignment;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.IntSummaryStatistics;
 import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
@@ -25,8 +21,6 @@ import org.slf4j.LoggerFactory;
 
 import com.codahale.metrics.Gauge;
 
-import com.google.common.annotations.VisibleForTesting;
-
 import com.linkedin.datastream.common.DatastreamRuntimeException;
 import com.linkedin.datastream.common.JsonUtils;
 import com.linkedin.datastream.metrics.BrooklinGaugeInfo;
@@ -54,6 +48,8 @@ public class LoadBasedPartitionAssigner implements MetricsAware {
   private final int _defaultPartitionMsgsInRate;
 
   private final Map<String, DatastreamMetrics> _metricsForDatastream = new ConcurrentHashMap<>();
+  // the assignment of each datastream group as of the last time it was computed, by datastream group name
+  private final Map<String, LoadBasedAssignmentState> _assignmentStates = new ConcurrentHashMap<>();
 
   /**
    * Constructor of LoadBasedPartitionAssigner
@@ -71,6 +67,10 @@ public class LoadBasedPartitionAssigner implements MetricsAware {
    * Unlike other assignment algorithms, this one can result in uneven distribution of partitions in tasks. Partitions
    * with no throughput information (such as newly discovered partitions) will be assigned to tasks using round-robin.
    * </p>
+   * <p>
+   * The assignment of each datastream group is kept between calls, so that the cost of a call depends on what changed
+   * since the previous one rather than on the total number of partitions and tasks.
+   * </p>
    * @param throughputInfo Per partition throughput information
    * @param currentAssignment Current assignment
    * @param unassignedPartitions Unassigned partitions
@@ -82,130 +82,50 @@ public class LoadBasedPartitionAssigner implements MetricsAware {
       Set<String> unassignedPartitions, DatastreamGroupPartitionsMetadata partitionMetadata, int maxPartitionsPerTask) {
     String datastreamGroupName = partitionMetadata.getDatastreamGroup().getName();
     LOG.info("START: assignPartitions for datasteam={}", datastreamGroupName);
-    Map<String, PartitionThroughputInfo> partitionInfoMap = new HashMap<>(throughputInfo.getPartitionInfoMap());
-    Set<String> tasksWithChangedPartition = new HashSet<>();
-
-    // filter out all the tasks for the current datastream group, and retain assignments in a map
-    Map<String, Set<String>> newPartitionAssignmentMap = new HashMap<>();
-    currentAssignment.values().forEach(tasks ->
-        tasks.forEach(task -> {
-          if (task.getTaskPrefix().equals(datastreamGroupName)) {
-            Set<String> retainedPartitions = new HashSet<>(task.getPartitionsV2());
-            retainedPartitions.retainAll(partitionMetadata.getPartitions());
-            newPartitionAssignmentMap.put(task.getId(), retainedPartitions);
-            if (retainedPartitions.size() != task.getPartitionsV2().size()) {
-              tasksWithChangedPartition.add(task.getId());
-            }
-          }
-    }));
+    Map<String, PartitionThroughputInfo> partitionInfoMap = throughputInfo.getPartitionInfoMap();
+
+    // filter out all the tasks for the current datastream group
+    List<DatastreamTask> tasks = currentAssignment.values().stream()
+        .flatMap(Set::stream)
+        .filter(task -> task.getTaskPrefix().equals(datastreamGroupName))
+        .collect(Collectors.toList());
 
     int numPartitions = partitionMetadata.getPartitions().size();
-    int numTasks = newPartitionAssignmentMap.size();
+    int numTasks = (int) tasks.stream().map(DatastreamTask::getId).distinct().count();
     validatePartitionCountAndThrow(datastreamGroupName, numTasks, numPartitions, maxPartitionsPerTask);
 
-    // sort the current assignment's tasks on total throughput
-    LOG.info("Extracting throughput info for partitions which have the throughput data (recognized partitions)");
-    Map<String, Integer> taskThroughputMap = new HashMap<>();
-    PartitionThroughputInfo defaultPartitionInfo = new PartitionThroughputInfo(_defaultPartitionBytesInKBRate,
-        _defaultPartitionMsgsInRate, "");
-
-    newPartitionAssignmentMap.forEach((task, partitions) -> {
-      int totalThroughput = partitions.stream()
-          .mapToInt(p ->  {
-            String topic = extractTopicFromPartition(p);
-            PartitionThroughputInfo defaultValue = partitionInfoMap.getOrDefault(topic, defaultPartitionInfo);
-            return partitionInfoMap.getOrDefault(p, defaultValue).getBytesInKBRate();
-          })
-          .sum();
-      taskThroughputMap.put(task, totalThroughput);
-    });
-
-    ArrayList<String> recognizedPartitions = new ArrayList<>(); // partitions with throughput info
-    ArrayList<String> unrecognizedPartitions = new ArrayList<>(); // partitions without throughput info
-    for (String partition : unassignedPartitions) {
-      if (partitionInfoMap.containsKey(partition)) {
-        recognizedPartitions.add(partition);
-      } else {
-        // If the partition level information is not found, try finding topic level information. It is always better
-        // than no information about the partition. Update the map with that information so that it can be used in later
-        // part of the code.
-        String topic = extractTopicFromPartition(partition);
-        if (partitionInfoMap.containsKey(topic)) {
-          partitionInfoMap.put(partition, partitionInfoMap.get(topic));
-          recognizedPartitions.add(partition);
-        } else {
-          unrecognizedPartitions.add(partition);
-        }
-      }
-    }
-
-    LOG.info("Sorting recognized partitions on byte rate");
-    // sort unassigned partitions with throughput info on throughput
-    recognizedPartitions.sort((p1, p2) -> {
-      Integer p1KBRate = partitionInfoMap.get(p1).getBytesInKBRate();
-      Integer p2KBRate = partitionInfoMap.get(p2).getBytesInKBRate();
-      return p1KBRate.compareTo(p2KBRate);
-    });
-
-    LOG.info("Building a priority min queue with tasks based on throughput");
-    // build a priority queue of tasks based on throughput
-    // only add tasks that can accommodate more partitions in the queue
-    List<String> tasks = newPartitionAssignmentMap.keySet().stream()
-        .filter(t -> newPartitionAssignmentMap.get(t).size() < maxPartitionsPerTask)
-        .collect(Collectors.toList());
-    PriorityQueue<String> taskQueue = new PriorityQueue<>(Comparator.comparing(taskThroughputMap::get));
-    taskQueue.addAll(tasks);
-
-    LOG.info("Assigning partitions to the tasks from the priority queue");
-    // assign partitions with throughput info one by one, by putting the heaviest partition in the lightest task
-    while (recognizedPartitions.size() > 0 && taskQueue.size() > 0) {
-       String heaviestPartition = recognizedPartitions.remove(recognizedPartitions.size() - 1);
-       int heaviestPartitionThroughput = partitionInfoMap.get(heaviestPartition).getBytesInKBRate();
-       String lightestTask = taskQueue.poll();
-       newPartitionAssignmentMap.get(lightestTask).add(heaviestPartition);
-       taskThroughputMap.put(lightestTask, taskThroughputMap.get(lightestTask) + heaviestPartitionThroughput);
-       tasksWithChangedPartition.add(lightestTask);
-       int currentNumPartitions = newPartitionAssignmentMap.get(lightestTask).size();
-       // don't put the task back in the queue if the number of its partitions is maxed out
-       if (currentNumPartitions < maxPartitionsPerTask) {
-         taskQueue.add(lightestTask);
-       }
-    }
+    LoadBasedAssignmentState state = _assignmentStates.computeIfAbsent(datastreamGroupName,
+        k -> new LoadBasedAssignmentState(_defaultPartitionBytesInKBRate));
+    Map<String, Set<DatastreamTask>> newAssignments;
+    try {
+      LOG.info("Applying the changes since the previous assignment and assigning the unassigned partitions");
+      state.assign(tasks, partitionMetadata.getPartitions(), unassignedPartitions, partitionInfoMap,
+          maxPartitionsPerTask);
 
-    // assign unrecognized partitions with round-robin
-    LOG.info("Assigning unrecognized partitions with round-robin");
-    Map<String, Integer> unrecognizedPartitionCountPerTask = new HashMap<>();
-    Collections.shuffle(unrecognizedPartitions);
-    int index = 0;
-    for (String partition : unrecognizedPartitions) {
-      index = findTaskWithRoomForAPartition(tasks, newPartitionAssignmentMap, index, maxPartitionsPerTask);
-      String currentTask = tasks.get(index);
-      newPartitionAssignmentMap.get(currentTask).add(partition);
-      tasksWithChangedPartition.add(currentTask);
-      index = (index + 1) % tasks.size();
-      unrecognizedPartitionCountPerTask.put(currentTask, unrecognizedPartitionCountPerTask.getOrDefault(currentTask, 0) + 1);
+      // build the new assignment using the new partitions for the affected datastream's tasks
+      LOG.info("Finishing building new assignment");
+      newAssignments = currentAssignment.entrySet().stream()
+        .collect(Collectors.toMap(x -> x.getKey(), x -> x.getValue().stream()
+          .map(task -> {
+            if (task.getTaskPrefix().equals(datastreamGroupName) && state.isChanged(task.getId())) {
+              Set<String> newAssignment = state.getPartitions(task.getId());
+              DatastreamTaskImpl newTask = new DatastreamTaskImpl((DatastreamTaskImpl) task, newAssignment);
+              saveStats(!partitionInfoMap.isEmpty(), state.getLoad(task.getId()),
+                  state.getNumUnrecognizedPartitions(task.getId()), task, newAssignment.size(), newTask);
+              state.renameTask(task.getId(), newTask.getId());
+              return newTask;
+            } else {
+              return task;
+            }
+          })
+          .collect(Collectors.toSet())));
+    } catch (RuntimeException e) {
+      // the state may not match any assignment any more, it is rebuilt from the current assignment next time
+      _assignmentStates.remove(datastreamGroupName);
+      throw e;
     }
 
-    // build the new assignment using the new partitions for the affected datastream's tasks
-    LOG.info("Finishing building new assignment");
-    Map<String, Set<DatastreamTask>> newAssignments = currentAssignment.entrySet().stream()
-      .collect(Collectors.toMap(x -> x.getKey(), x -> x.getValue().stream()
-        .map(task -> {
-          if (tasksWithChangedPartition.contains(task.getId())) {
-            Set<String> newAssignment = newPartitionAssignmentMap.get(task.getId());
-            DatastreamTaskImpl newTask = new DatastreamTaskImpl((DatastreamTaskImpl) task, newAssignment);
-            saveStats(partitionInfoMap, taskThroughputMap, unrecognizedPartitionCountPerTask, task, newAssignment.size(), newTask);
-            return newTask;
-          } else {
-            return task;
-          }
-        })
-        .collect(Collectors.toSet())));
-
-    IntSummaryStatistics stats = newAssignments.values().stream()
-      .flatMap(x -> x.stream()) // flatten
-      .filter(x -> x.getTaskPrefix().equals(datastreamGroupName))
-      .collect(Collectors.summarizingInt(x -> x.getPartitionsV2().size()));
+    IntSummaryStatistics stats = state.getPartitionCountStats();
 
     // update metrics
     String taskPrefix = partitionMetadata.getDatastreamGroup().getTaskPrefix();
@@ -223,19 +143,18 @@ public class LoadBasedPartitionAssigner implements MetricsAware {
     return _metricsForDatastream.computeIfAbsent(taskPrefix, (x) -> new DatastreamMetrics(x));
   }
 
-  private void saveStats(Map<String, PartitionThroughputInfo> partitionInfoMap, Map<String, Integer> taskThroughputMap,
-      Map<String, Integer> unrecognizedPartitionCountPerTask, DatastreamTask task, int partitionCount,
-      DatastreamTaskImpl newTask) {
+  private void saveStats(boolean isThroughputRateLatest, int taskThroughput, int unrecognizedPartitionCount,
+      DatastreamTask task, int partitionCount, DatastreamTaskImpl newTask) {
     PartitionAssignmentStatPerTask stat = PartitionAssignmentStatPerTask.fromJson(((DatastreamTaskImpl) task).getStats());
-    if (partitionInfoMap.isEmpty()) {
-      stat.isThroughputRateLatest = false;
-    } else {
-      stat.throughputRateInKBps = taskThroughputMap.get(task.getId());
+    if (isThroughputRateLatest) {
+      stat.throughputRateInKBps = taskThroughput;
       stat.isThroughputRateLatest = true;
+    } else {
+      stat.isThroughputRateLatest = false;
     }
     stat.totalPartitions = partitionCount;
     // ignores the partitions removed. This value will be approximate.
-    stat.partitionsWithUnknownThroughput += unrecognizedPartitionCountPerTask.getOrDefault(task.getId(), 0);
+    stat.partitionsWithUnknownThroughput += unrecognizedPartitionCount;
     try {
       newTask.setStats(stat.toJson());
     } catch (IOException e) {
@@ -254,19 +173,6 @@ public class LoadBasedPartitionAssigner implements MetricsAware {
     }
   }
 
-  @VisibleForTesting
-  int findTaskWithRoomForAPartition(List<String> tasks, Map<String, Set<String>> partitionMap, int startIndex,
-      int maxPartitionsPerTask) {
-    for (int i = 0; i < tasks.size(); i++) {
-      int currentIndex = (startIndex + i) % tasks.size();
-      String currentTask = tasks.get(currentIndex);
-      if (partitionMap.get(currentTask).size() < maxPartitionsPerTask) {
-        return currentIndex;
-      }
-    }
-    throw new DatastreamRuntimeException("No tasks found that can host an additional partition");
-  }
-
   /**
    * {@inheritDoc}
    */
@@ -283,9 +189,12 @@ public class LoadBasedPartitionAssigner implements MetricsAware {
 
   void cleanupMetrics() {
     _metricsForDatastream.keySet().forEach(this::unregisterMetricsForDatastream);
+    _assignmentStates.clear();
   }
 
   void unregisterMetricsForDatastream(String datastream) {
+    // the datastream is gone, and so is the need to keep its assignment state
+    _assignmentStates.remove(datastream);
     // cleanup existing DatastreamMetrics object, then remove it
     _metricsForDatastream.compute(datastream, (k, v) -> {
       if (v != null) {
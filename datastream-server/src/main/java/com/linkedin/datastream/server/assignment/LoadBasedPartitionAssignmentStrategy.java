@@ -60,6 +60,8 @@ public class LoadBasedPartitionAssignmentStrategy extends StickyPartitionAssignm
   private final int _defaultPartitionBytesInKBRate;
   private final int _defaultPartitionMsgsInRate;
   private final double _logSizeLimitInBytes;
+  // plans the partition moves of the periodic rebalance, null if partition rebalancing is disabled
+  private final LoadBasedPartitionRebalancer _rebalancer;
 
   /**
    * Creates an instance of {@link LoadBasedPartitionAssignmentStrategy}
@@ -70,6 +72,24 @@ public class LoadBasedPartitionAssignmentStrategy extends StickyPartitionAssignm
       int throughputInfoFetchTimeoutMs, int throughputInfoFetchRetryPeriodMs, ZkClient zkClient, String clusterName,
       boolean enableThroughputBasedPartitionAssignment, boolean enablePartitionNumBasedTaskCountEstimation,
       int defaultPartitionBytesInKBRate, int defaultPartitionMsgsInRate, double logSizeLimitInBytes) {
+    this(throughputProvider, maxTasks, imbalanceThreshold, maxPartitionPerTask, enableElasticTaskAssignment,
+        partitionsPerTask, partitionFullnessFactorPct, taskCapacityMBps, taskCapacityUtilizationPct,
+        throughputInfoFetchTimeoutMs, throughputInfoFetchRetryPeriodMs, zkClient, clusterName,
+        enableThroughputBasedPartitionAssignment, enablePartitionNumBasedTaskCountEstimation,
+        defaultPartitionBytesInKBRate, defaultPartitionMsgsInRate, logSizeLimitInBytes, null);
+  }
+
+  /**
+   * Creates an instance of {@link LoadBasedPartitionAssignmentStrategy}
+   * @param rebalancer plans the partition moves of the periodic rebalance, null to disable partition rebalancing
+   */
+  public LoadBasedPartitionAssignmentStrategy(PartitionThroughputProvider throughputProvider, Optional<Integer> maxTasks,
+      int imbalanceThreshold, int maxPartitionPerTask, boolean enableElasticTaskAssignment, int partitionsPerTask,
+      int partitionFullnessFactorPct, int taskCapacityMBps, int taskCapacityUtilizationPct,
+      int throughputInfoFetchTimeoutMs, int throughputInfoFetchRetryPeriodMs, ZkClient zkClient, String clusterName,
+      boolean enableThroughputBasedPartitionAssignment, boolean enablePartitionNumBasedTaskCountEstimation,
+      int defaultPartitionBytesInKBRate, int defaultPartitionMsgsInRate, double logSizeLimitInBytes,
+      LoadBasedPartitionRebalancer rebalancer) {
     super(maxTasks, imbalanceThreshold, maxPartitionPerTask, enableElasticTaskAssignment, partitionsPerTask,
         partitionFullnessFactorPct, zkClient, clusterName);
     _throughputProvider = throughputProvider;
@@ -89,6 +109,7 @@ public class LoadBasedPartitionAssignmentStrategy extends StickyPartitionAssignm
         _throughputInfoFetchTimeoutMs, _throughputInfoFetchRetryPeriodMs, _enableThroughputBasedPartitionAssignment ?
             "enabled" : "disabled", _enablePartitionNumBasedTaskCountEstimation ? "enabled" : "disabled");
     _assigner = new LoadBasedPartitionAssigner(defaultPartitionBytesInKBRate, defaultPartitionMsgsInRate);
+    _rebalancer = rebalancer;
   }
 
   /**
@@ -206,6 +227,29 @@ public class LoadBasedPartitionAssignmentStrategy extends StickyPartitionAssignm
     return assignment;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Map<String, Set<String>> planPartitionRebalance(Map<String, Set<DatastreamTask>> currentAssignment,
+      DatastreamGroupPartitionsMetadata partitionsMetadata) {
+    if (_rebalancer == null) {
+      return Collections.emptyMap();
+    }
+    return _rebalancer.planPartitionMoves(currentAssignment, partitionsMetadata, _maxPartitionPerTask);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void onPartitionRebalanceApplied(Map<String, Set<String>> targetAssignment,
+      DatastreamGroupPartitionsMetadata partitionsMetadata) {
+    if (_rebalancer != null) {
+      _rebalancer.recordPartitionMoves(targetAssignment, partitionsMetadata);
+    }
+  }
+
   private ClusterThroughputInfo fetchPartitionThroughputInfo(DatastreamGroup datastreamGroup) {
     AtomicInteger attemptNum = new AtomicInteger(0);
     return PollUtils.poll(() -> {
@@ -230,6 +274,9 @@ public class LoadBasedPartitionAssignmentStrategy extends StickyPartitionAssignm
     List<BrooklinMetricInfo> metricInfos = new ArrayList<>(baseStrategyMetricInfos);
     metricInfos.add(new BrooklinMeterInfo(CLASS_NAME + "." + THROUGHPUT_INFO_FETCH_RATE));
     metricInfos.addAll(_assigner.getMetricInfos());
+    if (_rebalancer != null) {
+      metricInfos.addAll(_rebalancer.getMetricInfos());
+    }
     metricInfos.addAll(_throughputProvider.getMetricInfos());
     return Collections.unmodifiableList(metricInfos);
   }
@@ -240,11 +287,17 @@ public class LoadBasedPartitionAssignmentStrategy extends StickyPartitionAssignm
   @Override
   public void cleanupStrategy() {
     _assigner.cleanupMetrics();
+    if (_rebalancer != null) {
+      _rebalancer.cleanupMetrics();
+    }
     super.cleanupStrategy();
   }
 
   @Override
   protected void unregisterMetrics(String datastream) {
     _assigner.unregisterMetricsForDatastream(datastream);
+    if (_rebalancer != null) {
+      _rebalancer.unregisterMetricsForDatastream(datastream);
+    }
   }
 }
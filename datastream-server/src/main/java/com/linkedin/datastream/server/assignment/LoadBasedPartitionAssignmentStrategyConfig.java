@@ -24,6 +24,14 @@ public class LoadBasedPartitionAssignmentStrategyConfig extends PartitionAssignm
   public static final String CFG_DEFAULT_PARTITION_BYTES_IN_KB_RATE = "defaultPartitionBytesInKBRate";
   public static final String CFG_DEFAULT_PARTITION_MSGS_IN_RATE = "defaultPartitionMsgsInRate";
   public static final String CFG_LOG_SIZE_LIMIT_IN_BYTES = "logSizeLimitInBytes";
+  public static final String CFG_ENABLE_TASK_REPORTED_THROUGHPUT = "enableTaskReportedThroughput";
+  public static final String CFG_THROUGHPUT_CACHE_TTL_MS = "throughputCacheTtlMs";
+  public static final String CFG_THROUGHPUT_DECAY_HALF_LIFE_MS = "throughputDecayHalfLifeMs";
+  public static final String CFG_THROUGHPUT_MAX_REPORT_AGE_MS = "throughputMaxReportAgeMs";
+  public static final String CFG_ENABLE_PARTITION_REBALANCE = "enablePartitionRebalance";
+  public static final String CFG_REBALANCE_SKEW_THRESHOLD_PCT = "rebalanceSkewThresholdPct";
+  public static final String CFG_MAX_PARTITION_MOVES_PER_REBALANCE = "maxPartitionMovesPerRebalance";
+  public static final String CFG_PARTITION_MOVE_COOLDOWN_MS = "partitionMoveCooldownMs";
 
   private static final int DEFAULT_THROUGHPUT_INFO_FETCH_TIMEOUT_MS = (int) Duration.ofSeconds(10).toMillis();
   private static final int DEFAULT_THROUGHPUT_INFO_FETCH_RETRY_PERIOD_MS = (int) Duration.ofSeconds(1).toMillis();
@@ -34,6 +42,14 @@ public class LoadBasedPartitionAssignmentStrategyConfig extends PartitionAssignm
   private static final int DEFAULT_PARTITION_BYTES_IN_KB_RATE = 5;
   private static final int DEFAULT_PARTITION_MSGS_IN_RATE = 5;
   private static final double DEFAULT_LOG_SIZE_LIMIT_IN_BYTES = 1024 * 1024;
+  private static final boolean DEFAULT_ENABLE_TASK_REPORTED_THROUGHPUT = false;
+  private static final long DEFAULT_THROUGHPUT_CACHE_TTL_MS = Duration.ofMinutes(1).toMillis();
+  private static final long DEFAULT_THROUGHPUT_DECAY_HALF_LIFE_MS = Duration.ofMinutes(30).toMillis();
+  private static final long DEFAULT_THROUGHPUT_MAX_REPORT_AGE_MS = Duration.ofHours(6).toMillis();
+  private static final boolean DEFAULT_ENABLE_PARTITION_REBALANCE = false;
+  private static final int DEFAULT_REBALANCE_SKEW_THRESHOLD_PCT = 25;
+  private static final int DEFAULT_MAX_PARTITION_MOVES_PER_REBALANCE = 10;
+  private static final long DEFAULT_PARTITION_MOVE_COOLDOWN_MS = Duration.ofMinutes(30).toMillis();
 
 
   private final int _taskCapacityMBps;
@@ -45,6 +61,14 @@ public class LoadBasedPartitionAssignmentStrategyConfig extends PartitionAssignm
   private final int _defaultPartitionBytesInKBRate;
   private final int _defaultPartitionMsgsInRate;
   private final double _logSizeLimitInBytes;
+  private final boolean _enableTaskReportedThroughput;
+  private final long _throughputCacheTtlMs;
+  private final long _throughputDecayHalfLifeMs;
+  private final long _throughputMaxReportAgeMs;
+  private final boolean _enablePartitionRebalance;
+  private final int _rebalanceSkewThresholdPct;
+  private final int _maxPartitionMovesPerRebalance;
+  private final long _partitionMoveCooldownMs;
 
   /**
    * Creates an instance of {@link LoadBasedPartitionAssignmentStrategyConfig}
@@ -64,6 +88,21 @@ public class LoadBasedPartitionAssignmentStrategyConfig extends PartitionAssignm
     _defaultPartitionBytesInKBRate = props.getInt(CFG_DEFAULT_PARTITION_BYTES_IN_KB_RATE, DEFAULT_PARTITION_BYTES_IN_KB_RATE);
     _defaultPartitionMsgsInRate = props.getInt(CFG_DEFAULT_PARTITION_MSGS_IN_RATE, DEFAULT_PARTITION_MSGS_IN_RATE);
     _logSizeLimitInBytes = props.getDouble(CFG_LOG_SIZE_LIMIT_IN_BYTES, DEFAULT_LOG_SIZE_LIMIT_IN_BYTES);
+    _enableTaskReportedThroughput = props.getBoolean(CFG_ENABLE_TASK_REPORTED_THROUGHPUT,
+        DEFAULT_ENABLE_TASK_REPORTED_THROUGHPUT);
+    _throughputCacheTtlMs = props.getLongInRange(CFG_THROUGHPUT_CACHE_TTL_MS, DEFAULT_THROUGHPUT_CACHE_TTL_MS, 0,
+        Long.MAX_VALUE);
+    _throughputDecayHalfLifeMs = props.getLongInRange(CFG_THROUGHPUT_DECAY_HALF_LIFE_MS,
+        DEFAULT_THROUGHPUT_DECAY_HALF_LIFE_MS, 1, Long.MAX_VALUE);
+    _throughputMaxReportAgeMs = props.getLongInRange(CFG_THROUGHPUT_MAX_REPORT_AGE_MS,
+        DEFAULT_THROUGHPUT_MAX_REPORT_AGE_MS, 0, Long.MAX_VALUE);
+    _enablePartitionRebalance = props.getBoolean(CFG_ENABLE_PARTITION_REBALANCE, DEFAULT_ENABLE_PARTITION_REBALANCE);
+    _rebalanceSkewThresholdPct = props.getIntInRange(CFG_REBALANCE_SKEW_THRESHOLD_PCT,
+        DEFAULT_REBALANCE_SKEW_THRESHOLD_PCT, 0, Integer.MAX_VALUE);
+    _maxPartitionMovesPerRebalance = props.getIntInRange(CFG_MAX_PARTITION_MOVES_PER_REBALANCE,
+        DEFAULT_MAX_PARTITION_MOVES_PER_REBALANCE, 1, Integer.MAX_VALUE);
+    _partitionMoveCooldownMs = props.getLongInRange(CFG_PARTITION_MOVE_COOLDOWN_MS, DEFAULT_PARTITION_MOVE_COOLDOWN_MS,
+        0, Long.MAX_VALUE);
   }
 
   /**
@@ -125,4 +164,45 @@ public class LoadBasedPartitionAssignmentStrategyConfig extends PartitionAssignm
   public double getLogSizeLimitInBytes() {
     return _logSizeLimitInBytes;
   }
+
+  /**
+   * Check if the partition throughput reported by the connector tasks in ZooKeeper should be used, instead of the
+   * provider returned by {@link LoadBasedPartitionAssignmentStrategyFactory#constructPartitionThroughputProvider()}
+   * @return True if the task reported throughput is used else false
+   */
+  public boolean isEnableTaskReportedThroughput() {
+    return _enableTaskReportedThroughput;
+  }
+
+  public long getThroughputCacheTtlMs() {
+    return _throughputCacheTtlMs;
+  }
+
+  public long getThroughputDecayHalfLifeMs() {
+    return _throughputDecayHalfLifeMs;
+  }
+
+  public long getThroughputMaxReportAgeMs() {
+    return _throughputMaxReportAgeMs;
+  }
+
+  /**
+   * Check if the periodic rebalance of the partitions by throughput is enabled or not
+   * @return True if partition rebalancing is enabled else false
+   */
+  public boolean isEnablePartitionRebalance() {
+    return _enablePartitionRebalance;
+  }
+
+  public int getRebalanceSkewThresholdPct() {
+    return _rebalanceSkewThresholdPct;
+  }
+
+  public int getMaxPartitionMovesPerRebalance() {
+    return _maxPartitionMovesPerRebalance;
+  }
+
+  public long getPartitionMoveCooldownMs() {
+    return _partitionMoveCooldownMs;
+  }
 }
@@ -14,6 +14,7 @@ import com.linkedin.datastream.common.zk.ZkClient;
 import com.linkedin.datastream.server.api.strategy.AssignmentStrategy;
 import com.linkedin.datastream.server.providers.NoOpPartitionThroughputProvider;
 import com.linkedin.datastream.server.providers.PartitionThroughputProvider;
+import com.linkedin.datastream.server.providers.ZookeeperPartitionThroughputProvider;
 
 
 /**
@@ -36,7 +37,23 @@ public class LoadBasedPartitionAssignmentStrategyFactory extends StickyPartition
       enableElasticTaskAssignment = false;
     }
 
-    PartitionThroughputProvider provider = constructPartitionThroughputProvider();
+    PartitionThroughputProvider provider;
+    if (config.isEnableTaskReportedThroughput() && zkClient != null) {
+      provider = new ZookeeperPartitionThroughputProvider(zkClient, _config.getCluster(),
+          config.getThroughputCacheTtlMs(), config.getThroughputDecayHalfLifeMs(), config.getThroughputMaxReportAgeMs());
+    } else {
+      if (config.isEnableTaskReportedThroughput()) {
+        LOG.warn("Not using the task reported throughput as it requires a zkClient");
+      }
+      provider = constructPartitionThroughputProvider();
+    }
+
+    LoadBasedPartitionRebalancer rebalancer = null;
+    if (config.isEnablePartitionRebalance()) {
+      rebalancer = new LoadBasedPartitionRebalancer(provider, config.getRebalanceSkewThresholdPct(),
+          config.getMaxPartitionMovesPerRebalance(), config.getPartitionMoveCooldownMs(),
+          config.getDefaultPartitionBytesInKBRate());
+    }
 
     //TODO: Directly pass the config object.
     return new LoadBasedPartitionAssignmentStrategy(provider, _config.getMaxTasks(),
@@ -45,7 +62,8 @@ public class LoadBasedPartitionAssignmentStrategyFactory extends StickyPartition
         config.getTaskCapacityUtilizationPct(), config.getThroughputInfoFetchTimeoutMs(),
         config.getThroughputInfoFetchRetryPeriodMs(), zkClient, _config.getCluster(),
         config.isEnableThroughputBasedPartitionAssignment(), config.isEnablePartitionNumBasedTaskCountEstimation(),
-        config.getDefaultPartitionBytesInKBRate(), config.getDefaultPartitionMsgsInRate(), config.getLogSizeLimitInBytes());
+        config.getDefaultPartitionBytesInKBRate(), config.getDefaultPartitionMsgsInRate(), config.getLogSizeLimitInBytes(),
+        rebalancer);
   }
 
   protected PartitionThroughputProvider constructPartitionThroughputProvider() {
@@ -0,0 +1,326 @@
+/**
+ *  Copyright 2021 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.server.assignment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+
+import com.linkedin.datastream.metrics.BrooklinGaugeInfo;
+import com.linkedin.datastream.metrics.BrooklinMeterInfo;
+import com.linkedin.datastream.metrics.BrooklinMetricInfo;
+import com.linkedin.datastream.metrics.DynamicMetricsManager;
+import com.linkedin.datastream.metrics.MetricsAware;
+import com.linkedin.datastream.server.ClusterThroughputInfo;
+import com.linkedin.datastream.server.DatastreamGroup;
+import com.linkedin.datastream.server.DatastreamGroupPartitionsMetadata;
+import com.linkedin.datastream.server.DatastreamTask;
+import com.linkedin.datastream.server.PartitionThroughputInfo;
+import com.linkedin.datastream.server.providers.PartitionThroughputProvider;
+
+
+/**
+ * Plans partition moves which even out the throughput of a datastream group across its tasks and instances, once
+ * partitions got hot or cold after they were assigned. The moves are applied with
+ * {@link StickyPartitionAssignmentStrategy#movePartitions}, which places all the partitions moving to an instance on
+ * the task of that instance with the fewest partitions, so a move is only planned if it reduces the skew once placed
+ * there.
+ *
+ * The rebalancer only acts when the load (bytes in rate) of the hottest task or instance exceeds the mean by more
+ * than the skew threshold. To avoid thrashing, it plans at most a few moves per rebalance, and a partition which was
+ * moved is not moved again before a cooldown period has passed. The cooldown starts once the moves are recorded with
+ * {@link #recordPartitionMoves}, after the assignment was published, so a plan which fails to apply is not held back.
+ */
+public class LoadBasedPartitionRebalancer implements MetricsAware {
+  private static final Logger LOG = LoggerFactory.getLogger(LoadBasedPartitionRebalancer.class.getName());
+  private static final String CLASS_NAME = LoadBasedPartitionRebalancer.class.getSimpleName();
+  private static final DynamicMetricsManager DYNAMIC_METRICS_MANAGER = DynamicMetricsManager.getInstance();
+  private static final String TASK_THROUGHPUT_SKEW_PCT = "taskThroughputSkewPct";
+  private static final String INSTANCE_THROUGHPUT_SKEW_PCT = "instanceThroughputSkewPct";
+  private static final String PLANNED_PARTITION_MOVES = "plannedPartitionMoves";
+
+  private final PartitionThroughputProvider _throughputProvider;
+  private final int _skewThresholdPct;
+  private final int _maxPartitionMovesPerRebalance;
+  private final long _partitionMoveCooldownMs;
+  private final int _defaultPartitionBytesInKBRate;
+
+  // time of the last move of the partitions moved within the cooldown period, by task prefix
+  private final Map<String, Map<String, Long>> _partitionMoveTimes = new ConcurrentHashMap<>();
+  private final Map<String, DatastreamMetrics> _metricsForDatastream = new ConcurrentHashMap<>();
+
+  /**
+   * Creates an instance of {@link LoadBasedPartitionRebalancer}
+   * @param throughputProvider provider of the partition throughput
+   * @param skewThresholdPct how far (in percent) the load of the hottest task or instance may exceed the mean load
+   * @param maxPartitionMovesPerRebalance maximum number of partitions moved by a single rebalance
+   * @param partitionMoveCooldownMs minimum time between two moves of the same partition
+   * @param defaultPartitionBytesInKBRate bytes in rate assumed for the partitions without throughput info
+   */
+  public LoadBasedPartitionRebalancer(PartitionThroughputProvider throughputProvider, int skewThresholdPct,
+      int maxPartitionMovesPerRebalance, long partitionMoveCooldownMs, int defaultPartitionBytesInKBRate) {
+    Validate.notNull(throughputProvider, "null throughputProvider");
+    Validate.isTrue(skewThresholdPct >= 0, "skewThresholdPct must not be negative");
+    _throughputProvider = throughputProvider;
+    _skewThresholdPct = skewThresholdPct;
+    _maxPartitionMovesPerRebalance = maxPartitionMovesPerRebalance;
+    _partitionMoveCooldownMs = partitionMoveCooldownMs;
+    _defaultPartitionBytesInKBRate = defaultPartitionBytesInKBRate;
+  }
+
+  /**
+   * Plan the partition moves which rebalance the throughput of a datastream group
+   * @param currentAssignment the current assignment of all the datastream groups
+   * @param partitionsMetadata the partitions of the datastream group to rebalance
+   * @param maxPartitionsPerTask maximum number of partitions of a task
+   * @return the target assignment to pass to {@link StickyPartitionAssignmentStrategy#movePartitions}, from the
+   *         instance name to the partitions to move to that instance; empty if no move is needed
+   */
+  public Map<String, Set<String>> planPartitionMoves(Map<String, Set<DatastreamTask>> currentAssignment,
+      DatastreamGroupPartitionsMetadata partitionsMetadata, int maxPartitionsPerTask) {
+    DatastreamGroup datastreamGroup = partitionsMetadata.getDatastreamGroup();
+    String taskPrefix = datastreamGroup.getTaskPrefix();
+    ClusterThroughputInfo throughputInfo;
+    try {
+      throughputInfo = _throughputProvider.getThroughputInfo(datastreamGroup);
+    } catch (Exception e) {
+      LOG.warn(String.format("Failed to fetch partition throughput info of datastream group %s, skipping rebalance",
+          datastreamGroup.getName()), e);
+      return Collections.emptyMap();
+    }
+    if (throughputInfo == null || throughputInfo.getPartitionInfoMap().isEmpty()) {
+      LOG.info("No partition throughput info for datastream group {}, skipping rebalance", datastreamGroup.getName());
+      return Collections.emptyMap();
+    }
+    Map<String, PartitionThroughputInfo> partitionInfoMap = throughputInfo.getPartitionInfoMap();
+
+    List<TaskLoad> tasks = new ArrayList<>();
+    Map<String, InstanceLoad> instances = new HashMap<>();
+    currentAssignment.forEach((instance, instanceTasks) -> instanceTasks.stream().filter(datastreamGroup::belongsTo)
+        .forEach(task -> {
+          InstanceLoad instanceLoad = instances.computeIfAbsent(instance, InstanceLoad::new);
+          TaskLoad taskLoad = new TaskLoad(instanceLoad, task.getPartitionsV2());
+          for (String partition : taskLoad._partitions) {
+            PartitionThroughputInfo info = partitionInfoMap.get(partition);
+            taskLoad._load += info == null ? _defaultPartitionBytesInKBRate : info.getBytesInKBRate();
+          }
+          instanceLoad._load += taskLoad._load;
+          instanceLoad._tasks.add(taskLoad);
+          tasks.add(taskLoad);
+        }));
+    if (instances.size() < 2) {
+      return Collections.emptyMap();
+    }
+
+    // movePartitions puts the partitions moving to an instance on the task with the fewest partitions. If several
+    // tasks qualify, the most loaded of them is assumed to receive the partitions.
+    for (InstanceLoad instance : instances.values()) {
+      int minPartitions = instance._tasks.stream().mapToInt(task -> task._partitions.size()).min().getAsInt();
+      instance._receiver = instance._tasks.stream().filter(task -> task._partitions.size() == minPartitions)
+          .max(Comparator.comparingDouble(task -> task._load)).get();
+    }
+
+    double taskSkewPct = getSkewPct(tasks.stream().mapToDouble(task -> task._load).toArray());
+    double instanceSkewPct = getSkewPct(instances.values().stream().mapToDouble(instance -> instance._load).toArray());
+    DatastreamMetrics metrics = getMetricsForDatastream(taskPrefix);
+    metrics.setSkew((int) taskSkewPct, (int) instanceSkewPct);
+
+    long now = System.currentTimeMillis();
+    Map<String, Long> moveTimes = _partitionMoveTimes.computeIfAbsent(taskPrefix, k -> new ConcurrentHashMap<>());
+    moveTimes.values().removeIf(moveTime -> now - moveTime >= _partitionMoveCooldownMs);
+
+    Map<String, Set<String>> targetAssignment = new HashMap<>();
+    int numMoves = 0;
+    while (numMoves < _maxPartitionMovesPerRebalance) {
+      boolean instanceSkewed = instanceSkewPct > _skewThresholdPct;
+      if (!instanceSkewed && taskSkewPct <= _skewThresholdPct) {
+        break;
+      }
+
+      TaskLoad source;
+      TaskLoad target;
+      double gap;
+      if (instanceSkewed) {
+        InstanceLoad hottest = instances.values().stream().max(Comparator.comparingDouble(i -> i._load)).get();
+        InstanceLoad coolest = instances.values().stream().min(Comparator.comparingDouble(i -> i._load)).get();
+        source = hottest._tasks.stream().max(Comparator.comparingDouble(task -> task._load)).get();
+        target = coolest._receiver;
+        gap = Math.min(hottest._load - coolest._load, source._load - target._load);
+      } else {
+        source = tasks.stream().max(Comparator.comparingDouble(task -> task._load)).get();
+        target = instances.values().stream().filter(instance -> instance != source._instance)
+            .map(instance -> instance._receiver).min(Comparator.comparingDouble(task -> task._load)).get();
+        gap = source._load - target._load;
+      }
+      if (target._partitions.size() + target._numIncoming >= maxPartitionsPerTask) {
+        break;
+      }
+
+      // pick the partition which brings the source and the target closest to each other
+      String bestPartition = null;
+      double bestScore = 0;
+      for (String partition : source._partitions) {
+        PartitionThroughputInfo info = partitionInfoMap.get(partition);
+        if (info == null || moveTimes.containsKey(partition)) {
+          continue;
+        }
+        double load = info.getBytesInKBRate();
+        double score = Math.min(load, gap - load);
+        if (score > bestScore) {
+          bestScore = score;
+          bestPartition = partition;
+        }
+      }
+      if (bestPartition == null) {
+        break;
+      }
+
+      double load = partitionInfoMap.get(bestPartition).getBytesInKBRate();
+      source._partitions.remove(bestPartition);
+      source._load -= load;
+      source._instance._load -= load;
+      target._numIncoming++;
+      target._load += load;
+      target._instance._load += load;
+      targetAssignment.computeIfAbsent(target._instance._name, k -> new HashSet<>()).add(bestPartition);
+      numMoves++;
+
+      taskSkewPct = getSkewPct(tasks.stream().mapToDouble(task -> task._load).toArray());
+      instanceSkewPct = getSkewPct(instances.values().stream().mapToDouble(instance -> instance._load).toArray());
+    }
+
+    if (numMoves > 0) {
+      LOG.info("Planned {} partition moves for datastream group {}: {}. Task skew: {}%, instance skew: {}% after the "
+          + "moves", numMoves, datastreamGroup.getName(), targetAssignment, (int) taskSkewPct, (int) instanceSkewPct);
+      metrics.plannedMoves(numMoves);
+    }
+    return targetAssignment;
+  }
+
+  /**
+   * Record the moves of a plan which was applied, so the moved partitions are not moved again during the cooldown
+   * @param targetAssignment the target assignment returned by {@link #planPartitionMoves}
+   * @param partitionsMetadata the partitions of the rebalanced datastream group
+   */
+  public void recordPartitionMoves(Map<String, Set<String>> targetAssignment,
+      DatastreamGroupPartitionsMetadata partitionsMetadata) {
+    long now = System.currentTimeMillis();
+    Map<String, Long> moveTimes = _partitionMoveTimes.computeIfAbsent(
+        partitionsMetadata.getDatastreamGroup().getTaskPrefix(), k -> new ConcurrentHashMap<>());
+    targetAssignment.values().forEach(partitions -> partitions.forEach(partition -> moveTimes.put(partition, now)));
+  }
+
+  /**
+   * How far (in percent) the maximum exceeds the mean
+   */
+  private static double getSkewPct(double[] loads) {
+    double sum = 0;
+    double max = 0;
+    for (double load : loads) {
+      sum += load;
+      max = Math.max(max, load);
+    }
+    return sum <= 0 ? 0 : (max * loads.length / sum - 1) * 100;
+  }
+
+  private DatastreamMetrics getMetricsForDatastream(String taskPrefix) {
+    return _metricsForDatastream.computeIfAbsent(taskPrefix, DatastreamMetrics::new);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public List<BrooklinMetricInfo> getMetricInfos() {
+    List<BrooklinMetricInfo> metricInfos = new ArrayList<>();
+    String prefix = CLASS_NAME + MetricsAware.KEY_REGEX;
+
+    metricInfos.add(new BrooklinGaugeInfo(prefix + TASK_THROUGHPUT_SKEW_PCT));
+    metricInfos.add(new BrooklinGaugeInfo(prefix + INSTANCE_THROUGHPUT_SKEW_PCT));
+    metricInfos.add(new BrooklinMeterInfo(prefix + PLANNED_PARTITION_MOVES));
+
+    return Collections.unmodifiableList(metricInfos);
+  }
+
+  void cleanupMetrics() {
+    _metricsForDatastream.keySet().forEach(this::unregisterMetricsForDatastream);
+    _partitionMoveTimes.clear();
+  }
+
+  void unregisterMetricsForDatastream(String datastream) {
+    _partitionMoveTimes.remove(datastream);
+    _metricsForDatastream.compute(datastream, (k, v) -> {
+      if (v != null) {
+        v.cleanup();
+      }
+      return null;
+    });
+  }
+
+  private static class InstanceLoad {
+    private final String _name;
+    private final List<TaskLoad> _tasks = new ArrayList<>();
+    private double _load;
+    private TaskLoad _receiver;
+
+    InstanceLoad(String name) {
+      _name = name;
+    }
+  }
+
+  private static class TaskLoad {
+    private final InstanceLoad _instance;
+    private final Set<String> _partitions;
+    private double _load;
+    private int _numIncoming;
+
+    TaskLoad(InstanceLoad instance, List<String> partitions) {
+      _instance = instance;
+      _partitions = new HashSet<>(partitions);
+    }
+  }
+
+  private static class DatastreamMetrics {
+    private final String taskPrefix;
+    private final Gauge<Integer> taskThroughputSkewPct;
+    private final Gauge<Integer> instanceThroughputSkewPct;
+
+    DatastreamMetrics(String taskPrefix) {
+      this.taskPrefix = taskPrefix;
+      taskThroughputSkewPct = DYNAMIC_METRICS_MANAGER.registerGauge(CLASS_NAME, taskPrefix,
+          TASK_THROUGHPUT_SKEW_PCT, () -> 0);
+      instanceThroughputSkewPct = DYNAMIC_METRICS_MANAGER.registerGauge(CLASS_NAME, taskPrefix,
+          INSTANCE_THROUGHPUT_SKEW_PCT, () -> 0);
+    }
+
+    void cleanup() {
+      DYNAMIC_METRICS_MANAGER.unregisterMetric(CLASS_NAME, taskPrefix, TASK_THROUGHPUT_SKEW_PCT);
+      DYNAMIC_METRICS_MANAGER.unregisterMetric(CLASS_NAME, taskPrefix, INSTANCE_THROUGHPUT_SKEW_PCT);
+      DYNAMIC_METRICS_MANAGER.unregisterMetric(CLASS_NAME, taskPrefix, PLANNED_PARTITION_MOVES);
+    }
+
+    void setSkew(int taskSkewPct, int instanceSkewPct) {
+      DYNAMIC_METRICS_MANAGER.setGauge(taskThroughputSkewPct, () -> taskSkewPct);
+      DYNAMIC_METRICS_MANAGER.setGauge(instanceThroughputSkewPct, () -> instanceSkewPct);
+    }
+
+    void plannedMoves(int numMoves) {
+      DYNAMIC_METRICS_MANAGER.createOrUpdateMeter(CLASS_NAME, taskPrefix, PLANNED_PARTITION_MOVES, numMoves);
+    }
+  }
+}
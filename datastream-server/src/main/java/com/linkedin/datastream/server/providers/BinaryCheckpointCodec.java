@@ -0,0 +1,276 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.server.providers;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.commons.lang.Validate;
+
+import com.linkedin.datastream.common.DatastreamRuntimeException;
+
+
+/**
+ * Compact {@link CheckpointCodec} for tasks owning many partitions. It also reads the {@link JsonCheckpointCodec}
+ * format, so that existing checkpoints are migrated the next time they are committed.
+ *
+ * The checkpoints are sorted by partition and written as:
+ * <pre>
+ *   version (1 byte) | flags (1 byte) | [uncompressed size (varint) if deflated] | payload
+ *   payload := count (varint) | entry*
+ *   entry   := partition delta (zigzag varint) | kind (1 byte) | value
+ *   value   := offset delta (zigzag varint)          for kind NUMERIC, the checkpoint being a decimal long
+ *            | length (varint) | UTF-8 bytes          for kind STRING
+ * </pre>
+ * Deltas are taken from the previous entry, so consecutive partitions and numeric offsets of the same order of
+ * magnitude take a byte or two each. Payloads of at least {@code compressionThresholdBytes} are deflated when that
+ * makes them smaller. Since ZooKeeper state is stored as strings, the result is Base64 encoded behind a prefix that
+ * can never start a JSON object.
+ */
+public class BinaryCheckpointCodec implements CheckpointCodec {
+
+  public static final int DEFAULT_COMPRESSION_THRESHOLD_BYTES = 1024;
+
+  private static final String PREFIX = "#cp:";
+  private static final byte VERSION = 1;
+  private static final byte FLAG_DEFLATED = 0x1;
+  private static final byte KIND_NUMERIC = 0;
+  private static final byte KIND_STRING = 1;
+
+  private static final JsonCheckpointCodec JSON_CODEC = new JsonCheckpointCodec();
+
+  private final int _compressionThresholdBytes;
+
+  /**
+   * Construct a BinaryCheckpointCodec compressing payloads of at least {@value #DEFAULT_COMPRESSION_THRESHOLD_BYTES}
+   * bytes
+   */
+  public BinaryCheckpointCodec() {
+    this(DEFAULT_COMPRESSION_THRESHOLD_BYTES);
+  }
+
+  /**
+   * Construct a BinaryCheckpointCodec
+   * @param compressionThresholdBytes minimum payload size to try compressing; 0 or less disables compression
+   */
+  public BinaryCheckpointCodec(int compressionThresholdBytes) {
+    _compressionThresholdBytes = compressionThresholdBytes;
+  }
+
+  @Override
+  public String encode(Map<Integer, String> checkpoints) {
+    Validate.notNull(checkpoints, "null checkpoints");
+    ByteArrayOutputStream payload = new ByteArrayOutputStream(16 + checkpoints.size() * 4);
+    writeVarLong(payload, checkpoints.size());
+    long previousPartition = 0;
+    long previousOffset = 0;
+    for (Map.Entry<Integer, String> entry : new TreeMap<>(checkpoints).entrySet()) {
+      writeVarLong(payload, zigZag(entry.getKey() - previousPartition));
+      previousPartition = entry.getKey();
+
+      String checkpoint = entry.getValue();
+      Long offset = parseOffset(checkpoint);
+      if (offset != null) {
+        payload.write(KIND_NUMERIC);
+        writeVarLong(payload, zigZag(offset - previousOffset));
+        previousOffset = offset;
+      } else {
+        byte[] bytes = checkpoint.getBytes(StandardCharsets.UTF_8);
+        payload.write(KIND_STRING);
+        writeVarLong(payload, bytes.length);
+        payload.write(bytes, 0, bytes.length);
+      }
+    }
+
+    byte[] raw = payload.toByteArray();
+    ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length + 8);
+    out.write(VERSION);
+    byte[] compressed = _compressionThresholdBytes > 0 && raw.length >= _compressionThresholdBytes ? deflate(raw) : null;
+    if (compressed != null && compressed.length < raw.length) {
+      out.write(FLAG_DEFLATED);
+      writeVarLong(out, raw.length);
+      out.write(compressed, 0, compressed.length);
+    } else {
+      out.write(0);
+      out.write(raw, 0, raw.length);
+    }
+    return PREFIX + Base64.getEncoder().encodeToString(out.toByteArray());
+  }
+
+  @Override
+  public Map<Integer, String> decode(String data) {
+    return isBinary(data) ? decodeBinary(data) : JSON_CODEC.decode(data);
+  }
+
+  static boolean isBinary(String data) {
+    return data != null && data.startsWith(PREFIX);
+  }
+
+  static Map<Integer, String> decodeBinary(String data) {
+    byte[] bytes;
+    try {
+      bytes = Base64.getDecoder().decode(data.substring(PREFIX.length()));
+    } catch (IllegalArgumentException e) {
+      throw new DatastreamRuntimeException("Malformed binary checkpoints: " + data, e);
+    }
+    Reader reader = new Reader(bytes, 0, bytes.length);
+    if (reader.readByte() != VERSION) {
+      throw new DatastreamRuntimeException("Unsupported binary checkpoints version: " + bytes[0]);
+    }
+    if ((reader.readByte() & FLAG_DEFLATED) != 0) {
+      int size = (int) reader.readVarLong();
+      reader = new Reader(inflate(bytes, reader._position, size), 0, size);
+    }
+
+    int count = (int) reader.readVarLong();
+    Map<Integer, String> checkpoints = new HashMap<>(count * 4 / 3 + 1);
+    long partition = 0;
+    long offset = 0;
+    for (int i = 0; i < count; i++) {
+      partition += unZigZag(reader.readVarLong());
+      byte kind = reader.readByte();
+      if (kind == KIND_NUMERIC) {
+        offset += unZigZag(reader.readVarLong());
+        checkpoints.put((int) partition, Long.toString(offset));
+      } else if (kind == KIND_STRING) {
+        int length = (int) reader.readVarLong();
+        checkpoints.put((int) partition, reader.readString(length));
+      } else {
+        throw new DatastreamRuntimeException("Unknown checkpoint kind " + kind + " in binary checkpoints");
+      }
+    }
+    return checkpoints;
+  }
+
+  /**
+   * Parse the checkpoint if it is the canonical decimal form of a long, i.e. if it can be restored from the long
+   */
+  private static Long parseOffset(String checkpoint) {
+    int length = checkpoint.length();
+    if (length == 0 || length > 20) {
+      return null;
+    }
+    for (int i = 0; i < length; i++) {
+      char c = checkpoint.charAt(i);
+      if ((c < '0' || c > '9') && !(i == 0 && c == '-')) {
+        return null;
+      }
+    }
+    try {
+      long offset = Long.parseLong(checkpoint);
+      return Long.toString(offset).equals(checkpoint) ? offset : null;
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private static byte[] deflate(byte[] raw) {
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(raw);
+      deflater.finish();
+      ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 16);
+      byte[] buffer = new byte[4096];
+      while (!deflater.finished()) {
+        int length = deflater.deflate(buffer);
+        out.write(buffer, 0, length);
+      }
+      return out.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private static byte[] inflate(byte[] bytes, int offset, int size) {
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(bytes, offset, bytes.length - offset);
+      byte[] raw = new byte[size];
+      int position = 0;
+      while (position < size && !inflater.finished()) {
+        int length = inflater.inflate(raw, position, size - position);
+        if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        position += length;
+      }
+      if (position != size) {
+        throw new DatastreamRuntimeException("Truncated binary checkpoints: inflated " + position + " of " + size + " bytes");
+      }
+      return raw;
+    } catch (DataFormatException e) {
+      throw new DatastreamRuntimeException("Malformed compressed binary checkpoints", e);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  private static void writeVarLong(ByteArrayOutputStream out, long value) {
+    while ((value & ~0x7FL) != 0) {
+      out.write((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+
+  private static long zigZag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long unZigZag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  /**
+   * Bounds-checked cursor over the encoded bytes
+   */
+  private static final class Reader {
+    private final byte[] _bytes;
+    private final int _limit;
+    private int _position;
+
+    Reader(byte[] bytes, int position, int limit) {
+      _bytes = bytes;
+      _position = position;
+      _limit = limit;
+    }
+
+    byte readByte() {
+      if (_position >= _limit) {
+        throw new DatastreamRuntimeException("Truncated binary checkpoints");
+      }
+      return _bytes[_position++];
+    }
+
+    long readVarLong() {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        byte b = readByte();
+        value |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new DatastreamRuntimeException("Malformed varint in binary checkpoints");
+    }
+
+    String readString(int length) {
+      if (length < 0 || length > _limit - _position) {
+        throw new DatastreamRuntimeException("Truncated binary checkpoints");
+      }
+      String value = new String(_bytes, _position, length, StandardCharsets.UTF_8);
+      _position += length;
+      return value;
+    }
+  }
+}
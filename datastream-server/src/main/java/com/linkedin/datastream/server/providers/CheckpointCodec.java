@@ -0,0 +1,33 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.server.providers;
+
+import java.util.Map;
+
+
+/**
+ * Converts the checkpoints of a {@link com.linkedin.datastream.server.DatastreamTask}, by partition, to and from the
+ * string stored in its ZooKeeper state node.
+ *
+ * Implementations must be able to decode every format written by the other implementations, so that the format
+ * used to write checkpoints can be switched (and switched back) on a live cluster.
+ */
+public interface CheckpointCodec {
+
+  /**
+   * Encode the checkpoints of a task
+   * @param checkpoints checkpoints by partition
+   * @return the encoded checkpoints
+   */
+  String encode(Map<Integer, String> checkpoints);
+
+  /**
+   * Decode the checkpoints of a task, in any of the supported formats
+   * @param data the encoded checkpoints
+   * @return checkpoints by partition
+   */
+  Map<Integer, String> decode(String data);
+}
@@ -0,0 +1,40 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.server.providers;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import com.linkedin.datastream.common.JsonUtils;
+
+
+/**
+ * {@link CheckpointCodec} that writes the checkpoints as a JSON object keyed by partition, which is the format
+ * historically used by {@link ZookeeperCheckpointProvider}. It also reads the {@link BinaryCheckpointCodec} format,
+ * so that a cluster can be rolled back after switching to it.
+ */
+public class JsonCheckpointCodec implements CheckpointCodec {
+
+  // Instruct jackson to convert string keys to integer
+  private static final TypeReference<HashMap<Integer, String>> HASH_MAP_TYPE_REFERENCE =
+      new TypeReference<HashMap<Integer, String>>() {
+      };
+
+  @Override
+  public String encode(Map<Integer, String> checkpoints) {
+    return JsonUtils.toJson(checkpoints);
+  }
+
+  @Override
+  public Map<Integer, String> decode(String data) {
+    if (BinaryCheckpointCodec.isBinary(data)) {
+      return BinaryCheckpointCodec.decodeBinary(data);
+    }
+    return JsonUtils.fromJson(data, HASH_MAP_TYPE_REFERENCE);
+  }
+}
@@ -6,32 +6,28 @@
 package com.linkedin.datastream.server.providers;
 
 import java.time.Duration;
-import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
-import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-
-import com.linkedin.datastream.common.JsonUtils;
+import com.linkedin.datastream.metrics.BrooklinGaugeInfo;
 import com.linkedin.datastream.metrics.BrooklinHistogramInfo;
 import com.linkedin.datastream.metrics.BrooklinMeterInfo;
 import com.linkedin.datastream.metrics.BrooklinMetricInfo;
-import com.linkedin.datastream.metrics.DynamicMetricsManager;
 import com.linkedin.datastream.server.DatastreamTask;
 import com.linkedin.datastream.server.zk.ZkAdapter;
 
  /**
   * ZooKeeper-backed {@link CheckpointProvider} that maintains {@link DatastreamTask}
   * processing state information, e.g. offsets/checkpoints, errors.
+  *
+  * Checkpoints are committed asynchronously by a {@link ZookeeperCheckpointWriter}, at most once per
+  * commit interval for each task, so {@link #updateCheckpoint} never blocks on ZooKeeper.
   */
 public class ZookeeperCheckpointProvider implements CheckpointProvider {
 
@@ -39,98 +35,63 @@ public class ZookeeperCheckpointProvider implements CheckpointProvider {
 
   private static final Logger LOG = LoggerFactory.getLogger(ZookeeperCheckpointProvider.class.getName());
   private static final String MODULE = ZookeeperCheckpointProvider.class.getSimpleName();
-  private static final String NUM_CHECKPOINT_COMMITS = "numCheckpointCommits";
-  private static final String CHECKPOINT_COMMIT_LATENCY_MS = "checkpointCommitLatencyMs";
   private static final Duration CHECKPOINT_INTERVAL = Duration.ofMinutes(1);
+  private static final int MAX_CHECKPOINT_COMMIT_BATCH_SIZE = 100;
 
-  private final ZkAdapter _zkAdapter;
-  private final DynamicMetricsManager _dynamicMetricsManager;
-
-  // Instruct jackson to convert string keys to integer
-  final TypeReference<ConcurrentHashMap<Integer, String>> _hashMapTypeReference =
-      new TypeReference<ConcurrentHashMap<Integer, String>>() {
-      };
-
-  private final ConcurrentHashMap<DatastreamTask, Map<Integer, String>> _checkpointsToCommit = new ConcurrentHashMap<>();
-  private final ConcurrentHashMap<DatastreamTask, Instant> _lastCommitTime = new ConcurrentHashMap<>();
+  private final ZookeeperCheckpointWriter _checkpointWriter;
 
    /**
     * Construct an instance of ZookeeperCheckpointProvider
     * @param zkAdapter ZooKeeper client adapter to use
     */
   public ZookeeperCheckpointProvider(ZkAdapter zkAdapter) {
-    _zkAdapter = zkAdapter;
-    // Initialize metrics
-    _dynamicMetricsManager = DynamicMetricsManager.getInstance();
+    this(zkAdapter, new JsonCheckpointCodec());
   }
 
-  @Override
-  public void unassignDatastreamTask(DatastreamTask task) {
-    _checkpointsToCommit.remove(task);
-    _lastCommitTime.remove(task);
+  /**
+   * Construct an instance of ZookeeperCheckpointProvider
+   * @param zkAdapter ZooKeeper client adapter to use
+   * @param codec codec used to write the checkpoints; all the codecs read each other's formats
+   */
+  public ZookeeperCheckpointProvider(ZkAdapter zkAdapter, CheckpointCodec codec) {
+    this(zkAdapter, codec, CHECKPOINT_INTERVAL);
   }
 
   /**
-   * Commit the checkpoints to the checkpoint store.
+   * Construct an instance of ZookeeperCheckpointProvider
+   * @param zkAdapter ZooKeeper client adapter to use
+   * @param codec codec used to write the checkpoints
+   * @param checkpointInterval minimum interval between two commits of the checkpoints of the same task
    */
-  @Override
-  public void updateCheckpoint(DatastreamTask task, int partition, String checkpoint) {
-    Map<Integer, String> taskMap = getOrAddCheckpointMap(task);
-    synchronized (taskMap) {
-      taskMap.put(partition, checkpoint);
-
-      if (!_lastCommitTime.containsKey(task) || Instant.now()
-          .isAfter(_lastCommitTime.get(task).plus(CHECKPOINT_INTERVAL))) {
-        writeCheckpointsToStore(task);
-      }
-    }
+  ZookeeperCheckpointProvider(ZkAdapter zkAdapter, CheckpointCodec codec, Duration checkpointInterval) {
+    _checkpointWriter = new ZookeeperCheckpointWriter(zkAdapter, MODULE, codec, checkpointInterval,
+        MAX_CHECKPOINT_COMMIT_BATCH_SIZE);
   }
 
-  private Map<Integer, String> getOrAddCheckpointMap(DatastreamTask task) {
-    return _checkpointsToCommit.computeIfAbsent(task, k -> new HashMap<>());
+  @Override
+  public void unassignDatastreamTask(DatastreamTask task) {
+    _checkpointWriter.unassignDatastreamTask(task);
   }
 
-  private void writeCheckpointsToStore(DatastreamTask task) {
-    Map<Integer, String> taskMap = getOrAddCheckpointMap(task);
-    synchronized (taskMap) {
-      long startTime = System.currentTimeMillis();
-      Map<Integer, String> checkpoints = mergeAndGetSafeCheckpoints(task, taskMap);
-
-      _zkAdapter.setDatastreamTaskStateForKey(task, CHECKPOINT_KEY_NAME, JsonUtils.toJson(checkpoints));
-      _dynamicMetricsManager.createOrUpdateMeter(MODULE, NUM_CHECKPOINT_COMMITS, 1);
-      _dynamicMetricsManager.createOrUpdateHistogram(MODULE, CHECKPOINT_COMMIT_LATENCY_MS,
-          System.currentTimeMillis() - startTime);
-
-      Map<Integer, String> committedCheckpoints = _checkpointsToCommit.get(task);
-      // This check is necessary since task may have been unassigned/removed by a concurrent call to unassignDatastreamTask().
-      if (committedCheckpoints != null) {
-        // Clear the checkpoints to commit.
-        committedCheckpoints.clear();
-      }
-      _lastCommitTime.put(task, Instant.now());
-    }
+  /**
+   * Record the checkpoint, which is committed to the checkpoint store in the background.
+   */
+  @Override
+  public void updateCheckpoint(DatastreamTask task, int partition, String checkpoint) {
+    _checkpointWriter.updateCheckpoint(task, partition, checkpoint);
   }
 
   @Override
   public void flush() {
-    LOG.info("Flushing checkpoints for {} datatstream tasks to ZooKeeper", _checkpointsToCommit.size());
-    _checkpointsToCommit.keySet().forEach(this::writeCheckpointsToStore);
+    _checkpointWriter.flush();
     LOG.info("Flushing checkpoints to ZooKeeper completed successfully");
   }
 
-  private Map<Integer, String> mergeAndGetSafeCheckpoints(DatastreamTask task, Map<Integer, String> safeCheckpoints) {
-
-    // It is possible that the safe checkpoints contains only subset of partitions.
-    // So it is safe to merge them with the existing checkpoints in ZooKeeper.
-    Map<Integer, String> checkpoints = getCheckpoint(task);
-
-    if (safeCheckpoints != null && !safeCheckpoints.isEmpty()) {
-      for (Map.Entry<Integer, String> safeCheckpoint : safeCheckpoints.entrySet()) {
-        checkpoints.put(safeCheckpoint.getKey(), safeCheckpoint.getValue());
-      }
-    }
-
-    return checkpoints;
+  /**
+   * Commit the outstanding checkpoints and stop committing in the background
+   */
+  public void shutdown() {
+    _checkpointWriter.shutdown();
   }
 
   /**
@@ -140,20 +101,7 @@ public class ZookeeperCheckpointProvider implements CheckpointProvider {
    */
   @Override
   public Map<Integer, String> getSafeCheckpoints(DatastreamTask task) {
-    Map<Integer, String> taskMap = getOrAddCheckpointMap(task);
-    synchronized (taskMap) {
-      return mergeAndGetSafeCheckpoints(task, taskMap);
-    }
-  }
-
-  private Map<Integer, String> getCheckpoint(DatastreamTask task) {
-    String checkpoint = _zkAdapter.getDatastreamTaskStateForKey(task, CHECKPOINT_KEY_NAME);
-    if (StringUtils.isNotBlank(checkpoint)) {
-      return JsonUtils.fromJson(checkpoint, _hashMapTypeReference);
-    } else {
-      LOG.info("Checkpoint doesn't exist for DatastreamTask " + task.toString());
-      return new HashMap<>();
-    }
+    return _checkpointWriter.getSafeCheckpoints(task);
   }
 
   /**
@@ -164,7 +112,7 @@ public class ZookeeperCheckpointProvider implements CheckpointProvider {
   @Override
   public Map<Integer, String> getCommitted(DatastreamTask datastreamTask) {
     Validate.notNull(datastreamTask, "datastreamTask should not be null");
-    Map<Integer, String> checkpoints = getCheckpoint(datastreamTask);
+    Map<Integer, String> checkpoints = _checkpointWriter.readCommitted(datastreamTask);
     LOG.info("GetCommitted returning the last committed checkpoints " + checkpoints.toString());
     return checkpoints;
   }
@@ -173,8 +121,12 @@ public class ZookeeperCheckpointProvider implements CheckpointProvider {
   public List<BrooklinMetricInfo> getMetricInfos() {
     List<BrooklinMetricInfo> metrics = new ArrayList<>();
 
-    metrics.add(new BrooklinMeterInfo(buildMetricName(NUM_CHECKPOINT_COMMITS)));
-    metrics.add(new BrooklinHistogramInfo(buildMetricName(CHECKPOINT_COMMIT_LATENCY_MS)));
+    metrics.add(new BrooklinMeterInfo(buildMetricName(ZookeeperCheckpointWriter.NUM_CHECKPOINT_COMMITS)));
+    metrics.add(new BrooklinMeterInfo(buildMetricName(ZookeeperCheckpointWriter.NUM_CHECKPOINT_COMMIT_FAILURES)));
+    metrics.add(new BrooklinHistogramInfo(buildMetricName(ZookeeperCheckpointWriter.CHECKPOINT_COMMIT_LATENCY_MS)));
+    metrics.add(new BrooklinHistogramInfo(buildMetricName(ZookeeperCheckpointWriter.CHECKPOINT_COMMIT_LAG_MS)));
+    metrics.add(new BrooklinHistogramInfo(buildMetricName(ZookeeperCheckpointWriter.CHECKPOINT_COMMIT_BATCH_SIZE)));
+    metrics.add(new BrooklinGaugeInfo(buildMetricName(ZookeeperCheckpointWriter.CHECKPOINT_WRITER_QUEUE_DEPTH)));
 
     return Collections.unmodifiableList(metrics);
   }
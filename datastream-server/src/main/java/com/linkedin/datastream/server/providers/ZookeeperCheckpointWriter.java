@@ -0,0 +1,444 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.server.providers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import com.linkedin.datastream.common.DatastreamRuntimeException;
+import com.linkedin.datastream.metrics.DynamicMetricsManager;
+import com.linkedin.datastream.metrics.HistogramHandle;
+import com.linkedin.datastream.metrics.MeterHandle;
+import com.linkedin.datastream.server.DatastreamTask;
+import com.linkedin.datastream.server.zk.ZkAdapter;
+
+
+/**
+ * Background writer of the checkpoints managed by {@link ZookeeperCheckpointProvider}.
+ *
+ * Checkpoint updates only touch the in-memory state of their task and, the first time the task becomes dirty,
+ * queue it to be committed once its commit interval has elapsed. Further updates to a queued task are coalesced
+ * into its pending checkpoints. A single writer thread takes the tasks that are due, merges their pending
+ * checkpoints with the cached checkpoints last committed for them (so ZooKeeper is only read the first time a task
+ * is committed), and writes them in batches with ZooKeeper multi() transactions. Threads updating checkpoints
+ * therefore never block on ZooKeeper; only {@link #flush()} does.
+ */
+final class ZookeeperCheckpointWriter {
+  private static final Logger LOG = LoggerFactory.getLogger(ZookeeperCheckpointWriter.class.getName());
+
+  static final String NUM_CHECKPOINT_COMMITS = "numCheckpointCommits";
+  static final String NUM_CHECKPOINT_COMMIT_FAILURES = "numCheckpointCommitFailures";
+  static final String CHECKPOINT_COMMIT_LATENCY_MS = "checkpointCommitLatencyMs";
+  static final String CHECKPOINT_COMMIT_LAG_MS = "checkpointCommitLagMs";
+  static final String CHECKPOINT_COMMIT_BATCH_SIZE = "checkpointCommitBatchSize";
+  static final String CHECKPOINT_WRITER_QUEUE_DEPTH = "checkpointWriterQueueDepth";
+
+  // ZooKeeper rejects requests larger than jute.maxbuffer (1MB by default), so keep multi() requests well below it
+  private static final int MAX_BATCH_BYTES = 512 * 1024;
+  private static final Duration RETRY_BACKOFF = Duration.ofSeconds(5);
+
+  private final ZkAdapter _zkAdapter;
+  private final CheckpointCodec _codec;
+  private final long _commitIntervalNanos;
+  private final int _maxBatchSize;
+
+  private final ConcurrentHashMap<DatastreamTask, TaskCheckpoints> _taskCheckpoints = new ConcurrentHashMap<>();
+  private final DelayQueue<DirtyTask> _dirtyTasks = new DelayQueue<>();
+  // Serializes the writes to ZooKeeper between the writer thread and flush(), so that checkpoints of the same task
+  // are always written in the order they were taken.
+  private final ReentrantLock _writeLock = new ReentrantLock();
+  private final ExecutorService _writerExecutor;
+  private volatile boolean _shutdown = false;
+
+  private final MeterHandle _numCheckpointCommits;
+  private final MeterHandle _numCheckpointCommitFailures;
+  private final HistogramHandle _checkpointCommitLatencyMs;
+  private final HistogramHandle _checkpointCommitLagMs;
+  private final HistogramHandle _checkpointCommitBatchSize;
+
+  /**
+   * Construct and start a ZookeeperCheckpointWriter
+   * @param zkAdapter ZooKeeper client adapter to use
+   * @param module the name under which the metrics are reported
+   * @param codec codec converting the checkpoints of a task to and from the string stored in ZooKeeper
+   * @param commitInterval minimum interval between two commits of the checkpoints of the same task
+   * @param maxBatchSize maximum number of tasks whose checkpoints are written in a single ZooKeeper transaction
+   */
+  ZookeeperCheckpointWriter(ZkAdapter zkAdapter, String module, CheckpointCodec codec, Duration commitInterval,
+      int maxBatchSize) {
+    _zkAdapter = zkAdapter;
+    _codec = codec;
+    _commitIntervalNanos = commitInterval.toNanos();
+    _maxBatchSize = maxBatchSize;
+
+    DynamicMetricsManager dynamicMetricsManager = DynamicMetricsManager.getInstance();
+    _numCheckpointCommits = dynamicMetricsManager.meterHandle(module, NUM_CHECKPOINT_COMMITS);
+    _numCheckpointCommitFailures = dynamicMetricsManager.meterHandle(module, NUM_CHECKPOINT_COMMIT_FAILURES);
+    _checkpointCommitLatencyMs = dynamicMetricsManager.histogramHandle(module, null, CHECKPOINT_COMMIT_LATENCY_MS);
+    _checkpointCommitLagMs = dynamicMetricsManager.histogramHandle(module, null, CHECKPOINT_COMMIT_LAG_MS);
+    _checkpointCommitBatchSize = dynamicMetricsManager.histogramHandle(module, null, CHECKPOINT_COMMIT_BATCH_SIZE);
+    // point the gauge at the latest writer in case it was already registered by a previous one
+    dynamicMetricsManager.setGauge(
+        dynamicMetricsManager.registerGauge(module, CHECKPOINT_WRITER_QUEUE_DEPTH, this::getQueueDepth),
+        this::getQueueDepth);
+
+    _writerExecutor = Executors.newSingleThreadExecutor(
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("ZookeeperCheckpointWriter-%d").build());
+    _writerExecutor.submit(this::runWriter);
+  }
+
+  /**
+   * Record the checkpoint of the task's partition, and queue the task to be committed if it is not already.
+   * This never blocks on ZooKeeper.
+   */
+  void updateCheckpoint(DatastreamTask task, int partition, String checkpoint) {
+    TaskCheckpoints checkpoints = _taskCheckpoints.computeIfAbsent(task, k -> new TaskCheckpoints(task));
+    DirtyTask dirtyTask = null;
+    synchronized (checkpoints) {
+      if (checkpoints._pending.isEmpty()) {
+        checkpoints._dirtySinceMs = System.currentTimeMillis();
+      }
+      checkpoints._pending.put(partition, checkpoint);
+      if (checkpoints._queued == null) {
+        long dueNanos = checkpoints._committedOnce ? checkpoints._lastCommitNanos + _commitIntervalNanos : System.nanoTime();
+        dirtyTask = new DirtyTask(checkpoints, dueNanos);
+        checkpoints._queued = dirtyTask;
+      }
+    }
+    if (dirtyTask != null) {
+      _dirtyTasks.add(dirtyTask);
+    }
+  }
+
+  /**
+   * Get the latest checkpoints of the task, committed or not. The committed checkpoints are read from ZooKeeper
+   * the first time they are needed, and cached afterwards.
+   */
+  Map<Integer, String> getSafeCheckpoints(DatastreamTask task) {
+    TaskCheckpoints checkpoints = _taskCheckpoints.computeIfAbsent(task, k -> new TaskCheckpoints(task));
+    loadCommitted(checkpoints);
+    synchronized (checkpoints) {
+      Map<Integer, String> safeCheckpoints = new HashMap<>(checkpoints._committed);
+      safeCheckpoints.putAll(checkpoints._pending);
+      return safeCheckpoints;
+    }
+  }
+
+  /**
+   * Drop the state of the task; its pending checkpoints are discarded
+   */
+  void unassignDatastreamTask(DatastreamTask task) {
+    _taskCheckpoints.remove(task);
+  }
+
+  /**
+   * Synchronously commit the pending checkpoints of all the tasks
+   */
+  void flush() {
+    _writeLock.lock();
+    try {
+      List<TaskCheckpoints> dirty = new ArrayList<>();
+      for (TaskCheckpoints checkpoints : _taskCheckpoints.values()) {
+        synchronized (checkpoints) {
+          if (!checkpoints._pending.isEmpty()) {
+            dirty.add(checkpoints);
+          }
+        }
+      }
+      LOG.info("Flushing checkpoints for {} datastream tasks to ZooKeeper", dirty.size());
+      Exception failure = commit(dirty);
+      if (failure != null) {
+        throw new DatastreamRuntimeException("Failed to flush checkpoints to ZooKeeper", failure);
+      }
+    } finally {
+      _writeLock.unlock();
+    }
+  }
+
+  /**
+   * Commit the pending checkpoints of all the tasks and stop the writer thread
+   */
+  void shutdown() {
+    _shutdown = true;
+    try {
+      flush();
+    } finally {
+      _writerExecutor.shutdownNow();
+    }
+  }
+
+  /**
+   * Get the number of tasks waiting to be committed
+   */
+  int getQueueDepth() {
+    return _dirtyTasks.size();
+  }
+
+  private void runWriter() {
+    List<DirtyTask> dueTasks = new ArrayList<>();
+    while (!_shutdown) {
+      try {
+        dueTasks.add(_dirtyTasks.take());
+        _dirtyTasks.drainTo(dueTasks);
+        _writeLock.lock();
+        try {
+          List<TaskCheckpoints> dirty = new ArrayList<>(dueTasks.size());
+          for (DirtyTask dirtyTask : dueTasks) {
+            TaskCheckpoints checkpoints = dirtyTask._checkpoints;
+            // skip tasks that have been unassigned, flushed or requeued since this entry was queued
+            synchronized (checkpoints) {
+              if (checkpoints._queued == dirtyTask && _taskCheckpoints.get(checkpoints._task) == checkpoints) {
+                dirty.add(checkpoints);
+              }
+            }
+          }
+          commit(dirty);
+        } finally {
+          _writeLock.unlock();
+          dueTasks.clear();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      } catch (Exception e) {
+        LOG.error("Checkpoint writer failed to commit checkpoints", e);
+      }
+    }
+    LOG.info("Checkpoint writer exiting, shutdown={}", _shutdown);
+  }
+
+  /**
+   * Write the pending checkpoints of the tasks. Must be called with the write lock held.
+   * @return the first failure encountered, or null if all the checkpoints were committed
+   */
+  private Exception commit(Collection<TaskCheckpoints> dirty) {
+    Exception failure = null;
+    List<CheckpointWrite> batch = new ArrayList<>();
+    int batchBytes = 0;
+    for (TaskCheckpoints checkpoints : dirty) {
+      CheckpointWrite write;
+      try {
+        loadCommitted(checkpoints);
+        write = new CheckpointWrite(checkpoints, _codec);
+      } catch (Exception e) {
+        LOG.warn("Failed to read the committed checkpoints of task {}", checkpoints._task, e);
+        onCommitFailure(checkpoints);
+        failure = failure == null ? e : failure;
+        continue;
+      }
+
+      if (!checkpoints._stateNodeCreated) {
+        // the first write of a task goes on its own, as it may need to create the state node
+        failure = firstNonNull(failure, writeIndividually(write));
+        continue;
+      }
+      if (!batch.isEmpty() && (batch.size() >= _maxBatchSize || batchBytes + write._data.length() > MAX_BATCH_BYTES)) {
+        failure = firstNonNull(failure, writeBatch(batch));
+        batch.clear();
+        batchBytes = 0;
+      }
+      batch.add(write);
+      batchBytes += write._data.length();
+    }
+    if (!batch.isEmpty()) {
+      failure = firstNonNull(failure, writeBatch(batch));
+    }
+    return failure;
+  }
+
+  private Exception writeBatch(List<CheckpointWrite> batch) {
+    if (batch.size() == 1) {
+      return writeIndividually(batch.get(0));
+    }
+    Map<DatastreamTask, String> values = new LinkedHashMap<>();
+    batch.forEach(write -> values.put(write._checkpoints._task, write._data));
+    long startTime = System.currentTimeMillis();
+    try {
+      _zkAdapter.setDatastreamTaskStatesForKey(values, ZookeeperCheckpointProvider.CHECKPOINT_KEY_NAME);
+    } catch (Exception e) {
+      // The transaction fails as a whole if any of the tasks is gone; write them one by one instead
+      LOG.warn("Failed to commit the checkpoints of {} tasks in one transaction, committing them individually",
+          batch.size(), e);
+      Exception failure = null;
+      for (CheckpointWrite write : batch) {
+        failure = firstNonNull(failure, writeIndividually(write));
+      }
+      return failure;
+    }
+    _checkpointCommitLatencyMs.update(System.currentTimeMillis() - startTime);
+    _checkpointCommitBatchSize.update(batch.size());
+    batch.forEach(this::onCommitSuccess);
+    return null;
+  }
+
+  private Exception writeIndividually(CheckpointWrite write) {
+    long startTime = System.currentTimeMillis();
+    try {
+      _zkAdapter.setDatastreamTaskStateForKey(write._checkpoints._task, ZookeeperCheckpointProvider.CHECKPOINT_KEY_NAME,
+          write._data);
+    } catch (Exception e) {
+      LOG.warn("Failed to commit the checkpoints of task {}", write._checkpoints._task, e);
+      onCommitFailure(write._checkpoints);
+      return e;
+    }
+    _checkpointCommitLatencyMs.update(System.currentTimeMillis() - startTime);
+    _checkpointCommitBatchSize.update(1);
+    onCommitSuccess(write);
+    return null;
+  }
+
+  private void onCommitSuccess(CheckpointWrite write) {
+    TaskCheckpoints checkpoints = write._checkpoints;
+    DirtyTask dirtyTask = null;
+    synchronized (checkpoints) {
+      checkpoints._stateNodeCreated = true;
+      checkpoints._committed.putAll(write._written);
+      // only drop the pending checkpoints that have not been updated since they were written
+      write._written.forEach(checkpoints._pending::remove);
+      checkpoints._committedOnce = true;
+      checkpoints._lastCommitNanos = System.nanoTime();
+      _checkpointCommitLagMs.update(System.currentTimeMillis() - write._dirtySinceMs);
+      if (checkpoints._pending.isEmpty()) {
+        checkpoints._queued = null;
+      } else {
+        checkpoints._dirtySinceMs = System.currentTimeMillis();
+        dirtyTask = new DirtyTask(checkpoints, checkpoints._lastCommitNanos + _commitIntervalNanos);
+        checkpoints._queued = dirtyTask;
+      }
+    }
+    _numCheckpointCommits.mark();
+    if (dirtyTask != null) {
+      _dirtyTasks.add(dirtyTask);
+    }
+  }
+
+  private void onCommitFailure(TaskCheckpoints checkpoints) {
+    _numCheckpointCommitFailures.mark();
+    DirtyTask dirtyTask = new DirtyTask(checkpoints, System.nanoTime() + RETRY_BACKOFF.toNanos());
+    synchronized (checkpoints) {
+      checkpoints._queued = dirtyTask;
+    }
+    _dirtyTasks.add(dirtyTask);
+  }
+
+  private void loadCommitted(TaskCheckpoints checkpoints) {
+    synchronized (checkpoints) {
+      if (checkpoints._committed != null) {
+        return;
+      }
+    }
+    // read outside of the lock so that checkpoint updates are not blocked on ZooKeeper
+    Map<Integer, String> committed = readCommitted(checkpoints._task);
+    synchronized (checkpoints) {
+      if (checkpoints._committed == null) {
+        checkpoints._committed = committed;
+      }
+    }
+  }
+
+  /**
+   * Read the checkpoints of the task from ZooKeeper
+   */
+  Map<Integer, String> readCommitted(DatastreamTask task) {
+    String checkpoint = _zkAdapter.getDatastreamTaskStateForKey(task, ZookeeperCheckpointProvider.CHECKPOINT_KEY_NAME);
+    if (StringUtils.isNotBlank(checkpoint)) {
+      return _codec.decode(checkpoint);
+    } else {
+      LOG.info("Checkpoint doesn't exist for DatastreamTask " + task.toString());
+      return new HashMap<>();
+    }
+  }
+
+  private static Exception firstNonNull(Exception first, Exception second) {
+    return first != null ? first : second;
+  }
+
+  /**
+   * In-memory checkpoint state of a task. All the fields are guarded by the object's monitor.
+   */
+  private static final class TaskCheckpoints {
+    private final DatastreamTask _task;
+    // checkpoints last committed to ZooKeeper, or null until they are first needed
+    private Map<Integer, String> _committed;
+    // checkpoints updated since they were last committed
+    private final Map<Integer, String> _pending = new HashMap<>();
+    private long _dirtySinceMs;
+    private boolean _committedOnce = false;
+    private long _lastCommitNanos;
+    private boolean _stateNodeCreated = false;
+    // the queue entry that will commit the pending checkpoints, or null if the task is not queued
+    private DirtyTask _queued;
+
+    TaskCheckpoints(DatastreamTask task) {
+      _task = task;
+    }
+  }
+
+  /**
+   * Snapshot of the checkpoints of a task to write to ZooKeeper
+   */
+  private static final class CheckpointWrite {
+    private final TaskCheckpoints _checkpoints;
+    private final Map<Integer, String> _written;
+    private final String _data;
+    private final long _dirtySinceMs;
+
+    CheckpointWrite(TaskCheckpoints checkpoints, CheckpointCodec codec) {
+      _checkpoints = checkpoints;
+      Map<Integer, String> merged;
+      synchronized (checkpoints) {
+        _written = new HashMap<>(checkpoints._pending);
+        _dirtySinceMs = checkpoints._dirtySinceMs;
+        // It is possible that the pending checkpoints contain only a subset of partitions.
+        // So they are merged with the checkpoints already committed.
+        merged = new HashMap<>(checkpoints._committed);
+      }
+      merged.putAll(_written);
+      _data = codec.encode(merged);
+    }
+  }
+
+  /**
+   * Entry of the queue of tasks to commit, which becomes available once the task is due
+   */
+  private static final class DirtyTask implements Delayed {
+    private final TaskCheckpoints _checkpoints;
+    private final long _dueNanos;
+
+    DirtyTask(TaskCheckpoints checkpoints, long dueNanos) {
+      _checkpoints = checkpoints;
+      _dueNanos = dueNanos;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(_dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+      return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+    }
+  }
+}
@@ -0,0 +1,163 @@
+/**
+ *  Copyright 2021 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.server.providers;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang.NotImplementedException;
+import org.apache.commons.lang.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.datastream.common.JsonUtils;
+import com.linkedin.datastream.common.zk.ZkClient;
+import com.linkedin.datastream.server.ClusterThroughputInfo;
+import com.linkedin.datastream.server.DatastreamGroup;
+import com.linkedin.datastream.server.PartitionThroughputInfo;
+import com.linkedin.datastream.server.PartitionThroughputReport;
+import com.linkedin.datastream.server.zk.KeyBuilder;
+
+
+/**
+ * A {@link PartitionThroughputProvider} which serves the throughput measured by the connector tasks themselves. The
+ * tasks periodically save a {@link PartitionThroughputReport} with the rates of their partitions in their task state
+ * in ZooKeeper. This provider reads the reports of all the tasks of a datastream group, and smooths the rates of each
+ * partition with an exponentially decaying average, so that a single busy or idle window does not move partitions
+ * around. Partitions which have not been reported for a while are dropped, and the result is cached for a while, so
+ * that assignments in quick succession do not read all the task states again.
+ */
+public class ZookeeperPartitionThroughputProvider implements PartitionThroughputProvider {
+  private static final Logger LOG = LoggerFactory.getLogger(ZookeeperPartitionThroughputProvider.class.getName());
+
+  private final ZkClient _zkClient;
+  private final String _cluster;
+  private final long _cacheTtlMs;
+  private final long _decayHalfLifeMs;
+  private final long _maxReportAgeMs;
+
+  // aggregated throughput by datastream group (task prefix)
+  private final Map<String, GroupThroughput> _groupThroughputs = new HashMap<>();
+
+  /**
+   * Creates an instance of {@link ZookeeperPartitionThroughputProvider}
+   * @param zkClient ZooKeeper client
+   * @param cluster Brooklin cluster name
+   * @param cacheTtlMs how long the throughput of a datastream group is served before the reports are read again
+   * @param decayHalfLifeMs time after which the weight of a reported rate in the average of its partition halves
+   * @param maxReportAgeMs age after which the rates of a partition which is no longer reported are dropped
+   */
+  public ZookeeperPartitionThroughputProvider(ZkClient zkClient, String cluster, long cacheTtlMs, long decayHalfLifeMs,
+      long maxReportAgeMs) {
+    Validate.notNull(zkClient, "null zkClient");
+    Validate.notEmpty(cluster, "empty cluster");
+    Validate.isTrue(decayHalfLifeMs > 0, "decayHalfLifeMs must be positive");
+    _zkClient = zkClient;
+    _cluster = cluster;
+    _cacheTtlMs = cacheTtlMs;
+    _decayHalfLifeMs = decayHalfLifeMs;
+    _maxReportAgeMs = maxReportAgeMs;
+  }
+
+  /**
+   * Not supported, the reports are organized by datastream group rather than by source cluster
+   */
+  @Override
+  public ClusterThroughputInfo getThroughputInfo(String clusterName) {
+    throw new NotImplementedException();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized ClusterThroughputInfo getThroughputInfo(DatastreamGroup datastreamGroup) {
+    long now = System.currentTimeMillis();
+    GroupThroughput groupThroughput =
+        _groupThroughputs.computeIfAbsent(datastreamGroup.getTaskPrefix(), k -> new GroupThroughput());
+    if (groupThroughput._info == null || now - groupThroughput._refreshTimeMs >= _cacheTtlMs) {
+      refresh(datastreamGroup, groupThroughput, now);
+      // forget the groups which are no longer assigned
+      _groupThroughputs.values().removeIf(throughput -> now - throughput._refreshTimeMs > _maxReportAgeMs);
+    }
+    return groupThroughput._info;
+  }
+
+  /**
+   * Not supported, the reports are organized by datastream group rather than by source cluster
+   */
+  @Override
+  public Map<String, ClusterThroughputInfo> getThroughputInfo() {
+    throw new NotImplementedException();
+  }
+
+  private void refresh(DatastreamGroup datastreamGroup, GroupThroughput groupThroughput, long now) {
+    String connectorType = datastreamGroup.getConnectorName();
+    String connectorPath = KeyBuilder.connector(_cluster, connectorType);
+    if (_zkClient.exists(connectorPath, false)) {
+      String taskNamePrefix = datastreamGroup.getTaskPrefix() + "_";
+      for (String taskName : _zkClient.getChildren(connectorPath, false)) {
+        if (!taskName.startsWith(taskNamePrefix)) {
+          continue;
+        }
+        String path = KeyBuilder.datastreamTaskStateKey(_cluster, connectorType, taskName,
+            PartitionThroughputReport.STATE_KEY);
+        try {
+          String json = _zkClient.readData(path, true);
+          if (json != null) {
+            groupThroughput.update(JsonUtils.fromJson(json, PartitionThroughputReport.class));
+          }
+        } catch (Exception e) {
+          LOG.warn(String.format("Failed to read the partition throughput report of task %s", taskName), e);
+        }
+      }
+    }
+    groupThroughput._rates.values().removeIf(rate -> now - rate._reportTimeMs > _maxReportAgeMs);
+
+    Map<String, PartitionThroughputInfo> partitionInfoMap = new HashMap<>();
+    groupThroughput._rates.forEach((partition, rate) -> partitionInfoMap.put(partition,
+        new PartitionThroughputInfo((int) Math.round(rate._bytesInKBRate), (int) Math.round(rate._messagesInRate),
+            partition)));
+    groupThroughput._info = new ClusterThroughputInfo(datastreamGroup.getName(), partitionInfoMap);
+    groupThroughput._refreshTimeMs = now;
+    LOG.debug("Refreshed the throughput of {} partitions of datastream group {}", partitionInfoMap.size(),
+        datastreamGroup.getName());
+  }
+
+  private class GroupThroughput {
+    private final Map<String, DecayedRate> _rates = new HashMap<>();
+    private ClusterThroughputInfo _info;
+    private long _refreshTimeMs;
+
+    void update(PartitionThroughputReport report) {
+      report.getBytesInKBRates().forEach((partition, bytesInKBRate) -> {
+        double messagesInRate = report.getMessagesInRates().getOrDefault(partition, 0.0);
+        DecayedRate rate = _rates.get(partition);
+        if (rate == null) {
+          _rates.put(partition, new DecayedRate(bytesInKBRate, messagesInRate, report.getTimeStamp()));
+        } else if (report.getTimeStamp() > rate._reportTimeMs) {
+          // a report which was already applied, or a stale one from a previous owner of the partition, is skipped
+          double weight = 1 - Math.pow(0.5, (double) (report.getTimeStamp() - rate._reportTimeMs) / _decayHalfLifeMs);
+          rate._bytesInKBRate += weight * (bytesInKBRate - rate._bytesInKBRate);
+          rate._messagesInRate += weight * (messagesInRate - rate._messagesInRate);
+          rate._reportTimeMs = report.getTimeStamp();
+        }
+      });
+    }
+  }
+
+  private static class DecayedRate {
+    private double _bytesInKBRate;
+    private double _messagesInRate;
+    private long _reportTimeMs;
+
+    DecayedRate(double bytesInKBRate, double messagesInRate, long reportTimeMs) {
+      _bytesInKBRate = bytesInKBRate;
+      _messagesInRate = messagesInRate;
+      _reportTimeMs = reportTimeMs;
+    }
+  }
+}
@@ -19,10 +19,15 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -37,7 +42,9 @@ import org.apache.helix.zookeeper.zkclient.IZkStateListener;
 import org.apache.helix.zookeeper.zkclient.exception.ZkException;
 import org.apache.helix.zookeeper.zkclient.exception.ZkNoNodeException;
 import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.Op;
 import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooDefs;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,9 +53,14 @@ import com.google.common.base.Strings;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import com.linkedin.datastream.common.Datastream;
+import com.linkedin.datastream.common.DatastreamThreadFactory;
 import com.linkedin.datastream.common.DatastreamUtils;
 import com.linkedin.datastream.common.ErrorLogger;
 import com.linkedin.datastream.common.zk.ZkClient;
+import com.linkedin.datastream.metrics.BrooklinHistogramInfo;
+import com.linkedin.datastream.metrics.BrooklinMetricInfo;
+import com.linkedin.datastream.metrics.DynamicMetricsManager;
+import com.linkedin.datastream.metrics.MetricsAware;
 import com.linkedin.datastream.server.AssignmentTaskMapLogger;
 import com.linkedin.datastream.server.AssignmentToken;
 import com.linkedin.datastream.server.DatastreamGroup;
@@ -120,8 +132,17 @@ import static java.util.stream.Collectors.toSet;
  * @see com.linkedin.datastream.server.Coordinator
  * @see ZkClient
  */
-public class ZkAdapter {
+public class ZkAdapter implements MetricsAware {
   private static final Logger LOG = LoggerFactory.getLogger(ZkAdapter.class);
+  private static final String CLASS_NAME = ZkAdapter.class.getSimpleName();
+
+  // Latencies of the phases of publishing an assignment
+  private static final String ASSIGNMENT_DIFF_LATENCY_MS = "assignmentDiffLatencyMs";
+  private static final String ASSIGNMENT_ADD_LATENCY_MS = "assignmentAddLatencyMs";
+  private static final String ASSIGNMENT_REMOVE_LATENCY_MS = "assignmentRemoveLatencyMs";
+
+  // Bound of the request size of a multi() transaction, well below ZooKeeper's default jute.maxbuffer of 1MB
+  private static final int MAX_MULTI_REQUEST_BYTES = 512 * 1024;
 
   private final String _defaultTransportProviderName;
 
@@ -134,6 +155,9 @@ public class ZkAdapter {
   private final int _operationRetryTimeoutMs;
   private final long _debounceTimerMs;
   private final double _logSizeLimitInBytes;
+  private final int _assignmentBatchSize;
+  // runs the multi() transactions of the assignment publication, null if the assignment is not written in batches
+  private final ExecutorService _assignmentWriterExecutor;
 
   private ZkClient _zkclient;
   private String _instanceName;
@@ -157,6 +181,10 @@ public class ZkAdapter {
   // Cache all live DatastreamTasks per instance for assignment strategy
   private Map<String, Set<DatastreamTask>> _liveTaskMap = new HashMap<>();
 
+  // State of the tasks locked by this instance, by task name and state key. The owner of the lock of a task is the
+  // only writer of its state, so the state it writes or reads once can be served from memory until it releases it.
+  private final Map<String, Map<String, String>> _lockedTaskStateCache = new ConcurrentHashMap<>();
+
   // cleanup orphan lock in separate thread.
   private final ScheduledExecutorService _scheduledExecutorServiceOrphanLockCleanup = Executors.newScheduledThreadPool(1,
       new ThreadFactoryBuilder().setDaemon(true).setNameFormat("OrphanLockCleanupThread-%d").build());
@@ -184,6 +212,31 @@ public class ZkAdapter {
   public ZkAdapter(String zkServers, String cluster, String defaultTransportProviderName, int sessionTimeoutMs,
       int connectionTimeoutMs, int operationRetryTimeoutMs, long debounceTimerMs, double logSizeLimitInBytes,
       ZkAdapterListener listener) {
+    this(zkServers, cluster, defaultTransportProviderName, sessionTimeoutMs, connectionTimeoutMs,
+        operationRetryTimeoutMs, debounceTimerMs, logSizeLimitInBytes, 0, 1, listener);
+  }
+
+  /**
+   * Constructor
+   * @param zkServers ZooKeeper server address to connect to
+   * @param cluster Brooklin cluster this instance belongs to
+   * @param defaultTransportProviderName Default transport provider to use for a newly created task
+   * @param sessionTimeoutMs Session timeout to use for the connection with the ZooKeeper server
+   * @param connectionTimeoutMs Connection timeout to use for the connection with the ZooKeeper server
+   * @param operationRetryTimeoutMs Timeout to use for retrying failed retriable operations. A value lesser than 0 is
+   *                         considered as retry forever until a connection has been reestablished.
+   * @param debounceTimerMs debounce timer to be used to delay the lock clean up.
+   * @param logSizeLimitInBytes size limit of log messages in bytes
+   * @param assignmentBatchSize max number of znode operations per multi() transaction when publishing the
+   *                            assignment; 0 writes the znodes one at a time
+   * @param assignmentParallelism max number of multi() transactions in flight when publishing the assignment
+   * @param listener ZKAdapterListener implementation to receive callbacks based on various znode changes
+   */
+  public ZkAdapter(String zkServers, String cluster, String defaultTransportProviderName, int sessionTimeoutMs,
+      int connectionTimeoutMs, int operationRetryTimeoutMs, long debounceTimerMs, double logSizeLimitInBytes,
+      int assignmentBatchSize, int assignmentParallelism, ZkAdapterListener listener) {
+    Validate.isTrue(assignmentBatchSize >= 0, "assignmentBatchSize must not be negative");
+    Validate.isTrue(assignmentParallelism > 0, "assignmentParallelism must be positive");
     _zkServers = zkServers;
     _cluster = cluster;
     _sessionTimeoutMs = sessionTimeoutMs;
@@ -193,6 +246,16 @@ public class ZkAdapter {
     _logSizeLimitInBytes = logSizeLimitInBytes;
     _listener = listener;
     _defaultTransportProviderName = defaultTransportProviderName;
+    _assignmentBatchSize = assignmentBatchSize;
+    if (assignmentBatchSize > 0) {
+      // the threads are only kept while an assignment is being published
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(assignmentParallelism, assignmentParallelism, 1,
+          TimeUnit.MINUTES, new LinkedBlockingQueue<>(), DatastreamThreadFactory.daemon("ZkAssignmentWriter-%d"));
+      executor.allowCoreThreadTimeOut(true);
+      _assignmentWriterExecutor = executor;
+    } else {
+      _assignmentWriterExecutor = null;
+    }
   }
 
   /**
@@ -219,6 +282,18 @@ public class ZkAdapter {
     return _isLeader;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public List<BrooklinMetricInfo> getMetricInfos() {
+    List<BrooklinMetricInfo> metrics = new ArrayList<>();
+    metrics.add(new BrooklinHistogramInfo(buildMetricName(CLASS_NAME, ASSIGNMENT_DIFF_LATENCY_MS)));
+    metrics.add(new BrooklinHistogramInfo(buildMetricName(CLASS_NAME, ASSIGNMENT_ADD_LATENCY_MS)));
+    metrics.add(new BrooklinHistogramInfo(buildMetricName(CLASS_NAME, ASSIGNMENT_REMOVE_LATENCY_MS)));
+    return Collections.unmodifiableList(metrics);
+  }
+
   public String getInstanceName() {
     return _instanceName;
   }
@@ -354,6 +429,7 @@ public class ZkAdapter {
         _assignmentListProvider.close();
         _assignmentListProvider = null;
       }
+      _lockedTaskStateCache.clear();
 
       if (_currentSubscription != null) {
         _zkclient.unsubscribeDataChanges(KeyBuilder.liveInstance(_cluster, _currentSubscription), _leaderElectionListener);
@@ -583,6 +659,16 @@ public class ZkAdapter {
     return _zkclient.getChildren(path);
   }
 
+  /**
+   * Get the names of the tasks assigned to this instance. Unlike {@link #getInstanceAssignment(String)}, this is
+   * served from the watched assignment of this instance, and only reads ZooKeeper if it is not watched.
+   */
+  public List<String> getAssignedTaskNames() {
+    ZkBackedTaskListProvider assignmentListProvider = _assignmentListProvider;
+    List<String> assignment = assignmentListProvider == null ? null : assignmentListProvider.getAssignment();
+    return assignment != null ? assignment : getInstanceAssignment(_instanceName);
+  }
+
   /**
    * When the previous leader dies, we lose all the cached tasks.
    * As the current leader, we should try to load tasks from ZK.
@@ -668,13 +754,17 @@ public class ZkAdapter {
    */
   private void addTaskNodes(String instance, DatastreamTaskImpl task) {
     LOG.info("Adding Task Node: " + instance + ", task: " + task);
-    String name = task.getDatastreamTaskName();
 
     // Must add task node under connector first because as soon as we update the
     // instance assignment node, ZkBackTaskListProvider will be notified and the
     // connector will receive onAssignmentChange() with the new task. If it tries
     // to acquire the task before the connector task node is created, this will
     // fail with NoNodeException since lock node hangs off of connector task node.
+    addConnectorTaskNodes(instance, task);
+    addInstanceAssignmentNode(instance, task);
+  }
+
+  private void addConnectorTaskNodes(String instance, DatastreamTaskImpl task) {
     String taskPath =
         KeyBuilder.connectorTask(_cluster, task.getConnectorType(), task.getDatastreamTaskName());
     _zkclient.ensurePath(taskPath);
@@ -694,16 +784,11 @@ public class ZkAdapter {
     if (!StringUtils.isEmpty(task.getStats())) {
       task.saveState("stats", task.getStats());
     }
+  }
 
-    String instancePath = KeyBuilder.instanceAssignment(_cluster, instance, name);
-    String json = "";
-    try {
-      json = task.toJson();
-    } catch (IOException e) {
-      // This should never happen
-      String errorMessage = "Failed to serialize task into JSON.";
-      ErrorLogger.logAndThrowDatastreamRuntimeException(LOG, errorMessage, e);
-    }
+  private void addInstanceAssignmentNode(String instance, DatastreamTaskImpl task) {
+    String instancePath = KeyBuilder.instanceAssignment(_cluster, instance, task.getDatastreamTaskName());
+    String json = getTaskJson(task);
 
     // Ensure that the instance and instance/Assignment paths are ready before writing the task
     _zkclient.ensurePath(KeyBuilder.instance(_cluster, instance));
@@ -719,6 +804,153 @@ public class ZkAdapter {
     }
   }
 
+  private static String getTaskJson(DatastreamTaskImpl task) {
+    String json = "";
+    try {
+      json = task.toJson();
+    } catch (IOException e) {
+      // This should never happen
+      String errorMessage = "Failed to serialize task into JSON.";
+      ErrorLogger.logAndThrowDatastreamRuntimeException(LOG, errorMessage, e);
+    }
+    return json;
+  }
+
+  /**
+   * Batched version of {@link #addTaskNodes} for all the added tasks. The connector task nodes of all the tasks are
+   * written first, and only then their instance assignment nodes, for the reason explained in addTaskNodes. The
+   * nodes of each phase are written with multi() transactions of up to {@code _assignmentBatchSize} operations,
+   * several of them in flight at a time. The nodes of a task are always written by the same transaction, and the
+   * tasks of a failed transaction are written one at a time instead.
+   */
+  private void addTaskNodesInBatches(Map<String, Set<String>> nodesToAdd, Map<String, DatastreamTask> assignmentsMap) {
+    Map<String, Set<String>> connectorTaskNodes = new HashMap<>();
+    List<ZkOpGroup> connectorOpGroups = new ArrayList<>();
+    List<ZkOpGroup> instanceOpGroups = new ArrayList<>();
+    List<DatastreamTaskImpl> tasksWithStats = new ArrayList<>();
+
+    for (String instance : nodesToAdd.keySet()) {
+      Set<String> added = nodesToAdd.get(instance);
+      if (added.isEmpty()) {
+        continue;
+      }
+      LOG.info("Instance: {}, adding assignments: {}", instance, added);
+      _zkclient.ensurePath(KeyBuilder.instanceAssignments(_cluster, instance));
+      byte[] instanceData = _zkclient.serialize(instance);
+
+      for (String name : added) {
+        DatastreamTaskImpl task = (DatastreamTaskImpl) assignmentsMap.get(name);
+        String connectorType = task.getConnectorType();
+        Set<String> taskNodes = connectorTaskNodes.computeIfAbsent(connectorType, type -> {
+          _zkclient.ensurePath(KeyBuilder.connector(_cluster, type));
+          return getConnectorTasks(type);
+        });
+
+        // For debugging partition assignment issues, adding hostnames to zk task nodes.
+        ZkOpGroup connectorOps = new ZkOpGroup(() -> addConnectorTaskNodes(instance, task));
+        String taskPath = KeyBuilder.connectorTask(_cluster, connectorType, name);
+        if (taskNodes.contains(name)) {
+          // the task moves from another instance, its config and state nodes already exist
+          connectorOps.add(Op.setData(taskPath, instanceData, -1), instanceData);
+          if (!StringUtils.isEmpty(task.getStats())) {
+            tasksWithStats.add(task);
+          }
+        } else {
+          connectorOps.add(Op.create(taskPath, instanceData, ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT),
+              instanceData);
+          connectorOps.add(Op.create(KeyBuilder.datastreamTaskConfig(_cluster, connectorType, name), null,
+              ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT), null);
+          connectorOps.add(Op.create(KeyBuilder.datastreamTaskState(_cluster, connectorType, name), null,
+              ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT), null);
+          if (!StringUtils.isEmpty(task.getStats())) {
+            byte[] stats = _zkclient.serialize(task.getStats());
+            connectorOps.add(Op.create(KeyBuilder.datastreamTaskStateKey(_cluster, connectorType, name, "stats"),
+                stats, ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT), stats);
+          }
+        }
+        connectorOpGroups.add(connectorOps);
+
+        ZkOpGroup instanceOps = new ZkOpGroup(() -> addInstanceAssignmentNode(instance, task));
+        byte[] json = _zkclient.serialize(getTaskJson(task));
+        instanceOps.add(Op.create(KeyBuilder.instanceAssignment(_cluster, instance, name), json,
+            ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT), json);
+        instanceOpGroups.add(instanceOps);
+      }
+    }
+
+    executeInBatches(connectorOpGroups);
+    tasksWithStats.forEach(task -> task.saveState("stats", task.getStats()));
+    executeInBatches(instanceOpGroups);
+  }
+
+  /**
+   * Batched version of {@link #removeTaskNode} for all the removed tasks
+   */
+  private void removeTaskNodesInBatches(Map<String, Set<String>> nodesToRemove) {
+    List<ZkOpGroup> opGroups = new ArrayList<>();
+    for (String instance : nodesToRemove.keySet()) {
+      Set<String> removed = nodesToRemove.get(instance);
+      if (removed.isEmpty()) {
+        continue;
+      }
+      LOG.info("Instance: {}, removing assignments: {}", instance, removed);
+      for (String name : removed) {
+        ZkOpGroup ops = new ZkOpGroup(() -> removeTaskNode(instance, name));
+        ops.add(Op.delete(KeyBuilder.instanceAssignment(_cluster, instance, name), -1), null);
+        opGroups.add(ops);
+      }
+    }
+    executeInBatches(opGroups);
+  }
+
+  /**
+   * Execute the given operations with multi() transactions of up to {@code _assignmentBatchSize} operations or
+   * {@link #MAX_MULTI_REQUEST_BYTES} bytes, and wait for all of them to complete. The operations of a group are always
+   * executed by the same transaction, and the groups of a failed transaction fall back to their one at a time version.
+   */
+  private void executeInBatches(List<ZkOpGroup> opGroups) {
+    List<List<ZkOpGroup>> batches = new ArrayList<>();
+    List<ZkOpGroup> batch = new ArrayList<>();
+    int numOps = 0;
+    int numBytes = 0;
+    for (ZkOpGroup opGroup : opGroups) {
+      if (!batch.isEmpty() && (numOps + opGroup._ops.size() > _assignmentBatchSize
+          || numBytes + opGroup._numBytes > MAX_MULTI_REQUEST_BYTES)) {
+        batches.add(batch);
+        batch = new ArrayList<>();
+        numOps = 0;
+        numBytes = 0;
+      }
+      batch.add(opGroup);
+      numOps += opGroup._ops.size();
+      numBytes += opGroup._numBytes;
+    }
+    if (!batch.isEmpty()) {
+      batches.add(batch);
+    }
+
+    ZkClient zkClient = _zkclient;
+    List<Future<?>> futures = new ArrayList<>(batches.size());
+    for (List<ZkOpGroup> opGroupBatch : batches) {
+      List<Op> ops = opGroupBatch.stream().flatMap(opGroup -> opGroup._ops.stream()).collect(Collectors.toList());
+      futures.add(_assignmentWriterExecutor.submit(() -> zkClient.multi(ops)));
+    }
+
+    for (int i = 0; i < batches.size(); i++) {
+      try {
+        futures.get(i).get();
+      } catch (ExecutionException e) {
+        List<ZkOpGroup> failedBatch = batches.get(i);
+        LOG.warn(String.format("multi() transaction of %d znode operations failed, retrying them one at a time",
+            failedBatch.stream().mapToInt(opGroup -> opGroup._ops.size()).sum()), e.getCause());
+        failedBatch.forEach(opGroup -> opGroup._fallback.run());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        ErrorLogger.logAndThrowDatastreamRuntimeException(LOG, "Interrupted while writing the assignment", e);
+      }
+    }
+  }
+
   /**
    * Two nodes need to be removed for a removed task:
    * <ol>
@@ -895,6 +1127,7 @@ public class ZkAdapter {
    * </ol>
    */
   public void updateAllAssignments(Map<String, List<DatastreamTask>> assignmentsByInstance) {
+    long startTime = System.currentTimeMillis();
     // map of task name to DatastreamTask for future reference
     Map<String, DatastreamTask> assignmentsMap = assignmentsByInstance.values()
         .stream()
@@ -905,30 +1138,50 @@ public class ZkAdapter {
     Map<String, Set<String>> nodesToRemove = new HashMap<>();
     Map<String, Set<String>> nodesToAdd = new HashMap<>();
     diffAssignmentNodes(assignmentsByInstance, nodesToRemove, nodesToAdd);
+    long diffEndTime = System.currentTimeMillis();
 
     // Add the new tasks znodes.
     // We need to add the nodes BEFORE removing the old ones, to avoid tasks loss in case of server crash.
     // In case of crash, the new leader will remove duplicate tasks when updating the assignments.
-    for (String instance : nodesToAdd.keySet()) {
-      Set<String> added = nodesToAdd.get(instance);
-      if (added.size() > 0) {
-        LOG.info("Instance: {}, adding assignments: {}", instance, added);
-        for (String name : added) {
-          addTaskNodes(instance, (DatastreamTaskImpl) assignmentsMap.get(name));
+    if (_assignmentWriterExecutor != null) {
+      addTaskNodesInBatches(nodesToAdd, assignmentsMap);
+    } else {
+      for (String instance : nodesToAdd.keySet()) {
+        Set<String> added = nodesToAdd.get(instance);
+        if (added.size() > 0) {
+          LOG.info("Instance: {}, adding assignments: {}", instance, added);
+          for (String name : added) {
+            addTaskNodes(instance, (DatastreamTaskImpl) assignmentsMap.get(name));
+          }
         }
       }
     }
+    long addEndTime = System.currentTimeMillis();
 
     // Second remove the old tasks znodes.
-    for (String instance : nodesToRemove.keySet()) {
-      Set<String> removed = nodesToRemove.get(instance);
-      if (removed.size() > 0) {
-        LOG.info("Instance: {}, removing assignments: {}", instance, removed);
-        for (String name : removed) {
-          removeTaskNode(instance, name);
+    if (_assignmentWriterExecutor != null) {
+      removeTaskNodesInBatches(nodesToRemove);
+    } else {
+      for (String instance : nodesToRemove.keySet()) {
+        Set<String> removed = nodesToRemove.get(instance);
+        if (removed.size() > 0) {
+          LOG.info("Instance: {}, removing assignments: {}", instance, removed);
+          for (String name : removed) {
+            removeTaskNode(instance, name);
+          }
         }
       }
     }
+    long removeEndTime = System.currentTimeMillis();
+
+    LOG.info("Updated the assignment of {} instances: added {} and removed {} task nodes. Diff took {} ms, adding {} ms,"
+        + " removing {} ms", assignmentsByInstance.size(), nodesToAdd.values().stream().mapToInt(Set::size).sum(),
+        nodesToRemove.values().stream().mapToInt(Set::size).sum(), diffEndTime - startTime, addEndTime - diffEndTime,
+        removeEndTime - addEndTime);
+    DynamicMetricsManager dynamicMetricsManager = DynamicMetricsManager.getInstance();
+    dynamicMetricsManager.createOrUpdateHistogram(CLASS_NAME, ASSIGNMENT_DIFF_LATENCY_MS, diffEndTime - startTime);
+    dynamicMetricsManager.createOrUpdateHistogram(CLASS_NAME, ASSIGNMENT_ADD_LATENCY_MS, addEndTime - diffEndTime);
+    dynamicMetricsManager.createOrUpdateHistogram(CLASS_NAME, ASSIGNMENT_REMOVE_LATENCY_MS, removeEndTime - addEndTime);
 
     // Finally, Save the new assignments in the cache.
     _liveTaskMap = new HashMap<>();
@@ -953,6 +1206,14 @@ public class ZkAdapter {
    */
   private void diffAssignmentNodes(Map<String, List<DatastreamTask>> assignmentsByInstance,
       Map<String, Set<String>> nodesToRemove, Map<String, Set<String>> nodesToAdd) {
+    // when writing the assignment in batches, also read the old assignments of the instances concurrently
+    Map<String, Future<List<String>>> oldAssignmentFutures = new HashMap<>();
+    if (_assignmentWriterExecutor != null) {
+      for (String instance : assignmentsByInstance.keySet()) {
+        oldAssignmentFutures.put(instance, _assignmentWriterExecutor.submit(() -> getInstanceAssignment(instance)));
+      }
+    }
+
     for (String instance : assignmentsByInstance.keySet()) {
       // list of new assignment, names only
       Set<String> assignmentsNames = assignmentsByInstance.get(instance)
@@ -961,7 +1222,8 @@ public class ZkAdapter {
           .collect(Collectors.toSet());
 
       // get the old assignment from ZooKeeper
-      List<String> oldAssignmentNames = getInstanceAssignment(instance);
+      List<String> oldAssignmentNames = oldAssignmentFutures.isEmpty() ? getInstanceAssignment(instance)
+          : getOldAssignment(instance, oldAssignmentFutures.get(instance));
 
       //
       // find assignments removed
@@ -979,6 +1241,19 @@ public class ZkAdapter {
     }
   }
 
+  private List<String> getOldAssignment(String instance, Future<List<String>> oldAssignmentFuture) {
+    try {
+      return oldAssignmentFuture.get();
+    } catch (ExecutionException e) {
+      LOG.warn("Failed to read the assignment of instance {}, retrying", instance, e.getCause());
+      return getInstanceAssignment(instance);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      ErrorLogger.logAndThrowDatastreamRuntimeException(LOG, "Interrupted while reading the assignment", e);
+      return Collections.emptyList();
+    }
+  }
+
   // create a live instance node, in the form of a sequence number with the znode path
   // /{cluster}/liveinstances/{sequenceNumber}
   // also write the hostname as the content of the node. This allows us to map this node back
@@ -1084,9 +1359,20 @@ public class ZkAdapter {
    * @param  key Specific category of state information to fetch
    */
   public String getDatastreamTaskStateForKey(DatastreamTask datastreamTask, String key) {
+    Map<String, String> cachedStates = _lockedTaskStateCache.get(datastreamTask.getDatastreamTaskName());
+    String value = cachedStates == null ? null : cachedStates.get(key);
+    if (value != null) {
+      return value;
+    }
+
     String path = KeyBuilder.datastreamTaskStateKey(_cluster, datastreamTask.getConnectorType(),
         datastreamTask.getDatastreamTaskName(), key);
-    return _zkclient.readData(path, true);
+    value = _zkclient.readData(path, true);
+    if (cachedStates != null && value != null) {
+      // don't overwrite a value written in the meantime
+      cachedStates.putIfAbsent(key, value);
+    }
+    return value;
   }
 
   /**
@@ -1101,8 +1387,59 @@ public class ZkAdapter {
     String taskPath = KeyBuilder.connectorTask(_cluster, datastreamTask.getConnectorType(),
         datastreamTask.getDatastreamTaskName());
     if (_zkclient.exists(taskPath)) {
-      _zkclient.ensurePath(path);
-      _zkclient.writeData(path, value);
+      Map<String, String> cachedStates = _lockedTaskStateCache.get(datastreamTask.getDatastreamTaskName());
+      try {
+        _zkclient.ensurePath(path);
+        _zkclient.writeData(path, value);
+      } catch (RuntimeException e) {
+        // the write may or may not have been applied
+        if (cachedStates != null) {
+          cachedStates.remove(key);
+        }
+        throw e;
+      }
+      if (cachedStates != null) {
+        cachedStates.put(key, value);
+      }
+    }
+  }
+
+  /**
+   * Persist a specific category of state information for several datastream tasks in ZooKeeper with a single
+   * multi() transaction. Unlike {@link #setDatastreamTaskStateForKey(DatastreamTask, String, String)}, this neither
+   * checks that the tasks exist nor creates their state nodes: either all the state nodes already exist and are
+   * written, or the transaction fails as a whole and none of them is.
+   * @param values Serialized state information to persist, by datastream task
+   * @param key Name for the category of state information to persist
+   */
+  public void setDatastreamTaskStatesForKey(Map<DatastreamTask, String> values, String key) {
+    if (values.isEmpty()) {
+      return;
+    }
+    List<Op> ops = new ArrayList<>(values.size());
+    for (Map.Entry<DatastreamTask, String> entry : values.entrySet()) {
+      DatastreamTask datastreamTask = entry.getKey();
+      String path = KeyBuilder.datastreamTaskStateKey(_cluster, datastreamTask.getConnectorType(),
+          datastreamTask.getDatastreamTaskName(), key);
+      ops.add(Op.setData(path, _zkclient.serialize(entry.getValue()), -1));
+    }
+    try {
+      _zkclient.multi(ops);
+    } catch (RuntimeException e) {
+      // the transaction may or may not have been applied
+      for (DatastreamTask task : values.keySet()) {
+        Map<String, String> cachedStates = _lockedTaskStateCache.get(task.getDatastreamTaskName());
+        if (cachedStates != null) {
+          cachedStates.remove(key);
+        }
+      }
+      throw e;
+    }
+    for (Map.Entry<DatastreamTask, String> entry : values.entrySet()) {
+      Map<String, String> cachedStates = _lockedTaskStateCache.get(entry.getKey().getDatastreamTaskName());
+      if (cachedStates != null) {
+        cachedStates.put(key, entry.getValue());
+      }
     }
   }
 
@@ -1447,6 +1784,7 @@ public class ZkAdapter {
       if (owner != null && owner.equals(_instanceName)) {
         LOG.info("{} already owns the lock on {}, with dependencies {}", _instanceName, task.getDatastreamTaskName(),
             task.getDependencies());
+        _lockedTaskStateCache.putIfAbsent(task.getDatastreamTaskName(), new ConcurrentHashMap<>());
         return;
       }
 
@@ -1457,6 +1795,7 @@ public class ZkAdapter {
       _zkclient.create(lockPath, _instanceName, CreateMode.PERSISTENT);
       LOG.info("{} successfully acquired the lock on {} with dependencies: {}", _instanceName,
           task.getDatastreamTaskName(), task.getDependencies());
+      _lockedTaskStateCache.putIfAbsent(task.getDatastreamTaskName(), new ConcurrentHashMap<>());
       return;
     }
 
@@ -1579,6 +1918,7 @@ public class ZkAdapter {
    * @see #acquireTask(DatastreamTaskImpl, Duration)
    */
   public void releaseTask(DatastreamTaskImpl task) {
+    _lockedTaskStateCache.remove(task.getDatastreamTaskName());
     String lockPath =
         KeyBuilder.datastreamTaskLock(_cluster, task.getConnectorType(), task.getTaskPrefix(), task.getDatastreamTaskName());
     if (!_zkclient.exists(lockPath)) {
@@ -1633,6 +1973,25 @@ public class ZkAdapter {
     return instance.substring(instance.lastIndexOf('-') + 1);
   }
 
+  /**
+   * The znode operations which must be executed by the same multi() transaction, and how to execute them one at a
+   * time instead if the transaction fails
+   */
+  private static class ZkOpGroup {
+    private final List<Op> _ops = new ArrayList<>();
+    private final Runnable _fallback;
+    private int _numBytes;
+
+    ZkOpGroup(Runnable fallback) {
+      _fallback = fallback;
+    }
+
+    void add(Op op, byte[] data) {
+      _ops.add(op);
+      _numBytes += op.getPath().length() + (data == null ? 0 : data.length);
+    }
+  }
+
   /**
    * ZkAdapterListener is the observer of the observer pattern. It observes the associated ZkAdapter
    * and the methods are called when the corresponding events are fired that is concerning the
@@ -1845,6 +2204,8 @@ public class ZkAdapter {
    */
   private class ZkBackedTaskListProvider implements IZkChildListener, IZkDataListener {
     private final String _path;
+    // names of the assigned tasks, as of the latest child change notification
+    private volatile List<String> _assignment;
 
     /**
      * Constructor
@@ -1855,6 +2216,24 @@ public class ZkAdapter {
       LOG.info("ZkBackedTaskListProvider::Subscribing to the changes under the path " + _path);
       _zkclient.subscribeChildChanges(_path, this);
       _zkclient.subscribeDataChanges(_path, this);
+      List<String> assignment = _zkclient.exists(_path) ? _zkclient.getChildren(_path) : null;
+      synchronized (this) {
+        // a child change notification received in the meantime is at least as recent
+        if (_assignment == null) {
+          setAssignment(assignment);
+        }
+      }
+    }
+
+    /**
+     * Get the names of the assigned tasks
+     */
+    public List<String> getAssignment() {
+      return _assignment;
+    }
+
+    private void setAssignment(List<String> assignment) {
+      _assignment = assignment == null ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(assignment));
     }
 
     /**
@@ -1871,6 +2250,7 @@ public class ZkAdapter {
       LOG.info(String.format(
           "ZkBackedTaskListProvider::Received Child change notification on the datastream task list "
               + "parentPath %s,children %s", parentPath, currentChildren));
+      setAssignment(currentChildren);
       if (_listener != null) {
         _listener.onAssignmentChange();
       }
@@ -0,0 +1,140 @@
+/**
+ *  Copyright 2021 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.server;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.zookeeper.CreateMode;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+import com.linkedin.datastream.common.Datastream;
+import com.linkedin.datastream.common.DatastreamMetadataConstants;
+import com.linkedin.datastream.common.DatastreamStatus;
+import com.linkedin.datastream.common.DatastreamUtils;
+import com.linkedin.datastream.common.PollUtils;
+import com.linkedin.datastream.common.zk.ZkClient;
+import com.linkedin.datastream.connectors.DummyConnector;
+import com.linkedin.datastream.metrics.DynamicMetricsManager;
+import com.linkedin.datastream.server.zk.KeyBuilder;
+import com.linkedin.datastream.testutil.DatastreamTestUtils;
+import com.linkedin.datastream.testutil.EmbeddedZookeeper;
+
+
+/**
+ * Tests for {@link CachedDatastreamReader}
+ */
+public class TestCachedDatastreamReader {
+  private static final String CLUSTER = "testCluster";
+  private static final long WAIT_TIMEOUT_MS = 5000;
+
+  private EmbeddedZookeeper _zookeeper;
+  private ZkClient _zkClient;
+
+  @BeforeMethod
+  public void setup() throws IOException {
+    DynamicMetricsManager.createInstance(new MetricRegistry(), "TestCachedDatastreamReader");
+    _zookeeper = new EmbeddedZookeeper();
+    _zookeeper.startup();
+    _zkClient = new ZkClient(_zookeeper.getConnection());
+    _zkClient.ensurePath(KeyBuilder.datastreams(CLUSTER));
+  }
+
+  @AfterMethod
+  public void cleanup() {
+    _zkClient.close();
+    _zookeeper.shutdown();
+  }
+
+  @Test
+  public void testRefreshesOnlyTheChangedDatastreams() {
+    Datastream[] datastreams = DatastreamTestUtils.createDatastreams(DummyConnector.CONNECTOR_TYPE, "ds1", "ds2", "ds3");
+    String taskPrefix1 = DatastreamTaskImpl.getTaskPrefix(datastreams[0]);
+    String taskPrefix2 = DatastreamTaskImpl.getTaskPrefix(datastreams[1]);
+    datastreams[0].getMetadata().put(DatastreamMetadataConstants.TASK_PREFIX, taskPrefix1);
+    datastreams[1].getMetadata().put(DatastreamMetadataConstants.TASK_PREFIX, taskPrefix2);
+    // ds3 is grouped with ds1
+    datastreams[2].getMetadata().put(DatastreamMetadataConstants.TASK_PREFIX, taskPrefix1);
+    for (Datastream datastream : datastreams) {
+      _zkClient.create(KeyBuilder.datastream(CLUSTER, datastream.getName()), DatastreamUtils.toJSON(datastream),
+          CreateMode.PERSISTENT);
+    }
+
+    CachedDatastreamReader reader = new CachedDatastreamReader(_zkClient, CLUSTER, DynamicMetricsManager.getInstance());
+    Map<String, DatastreamGroup> groups = getGroupsByTaskPrefix(reader.getDatastreamGroups());
+    Assert.assertEquals(groups.size(), 2);
+    Assert.assertEquals(groups.get(taskPrefix1).getDatastreams().size(), 2);
+    Assert.assertEquals(groups.get(taskPrefix2).getDatastreams().size(), 1);
+    Assert.assertEquals(getMeterCount(CachedDatastreamReader.CACHE_MISSES), 3);
+
+    // nothing changed, so the datastreams and their groups are served from the cache
+    Map<String, DatastreamGroup> cachedGroups = getGroupsByTaskPrefix(reader.getDatastreamGroups());
+    Assert.assertSame(cachedGroups.get(taskPrefix1), groups.get(taskPrefix1));
+    Assert.assertSame(cachedGroups.get(taskPrefix2), groups.get(taskPrefix2));
+    Assert.assertEquals(getMeterCount(CachedDatastreamReader.CACHE_HITS), 3);
+    Assert.assertEquals(getMeterCount(CachedDatastreamReader.CACHE_MISSES), 3);
+
+    // only the updated datastream is read again, and only its group is rebuilt
+    datastreams[1].getMetadata().put(DatastreamMetadataConstants.OWNER_KEY, "newOwner");
+    _zkClient.writeData(KeyBuilder.datastream(CLUSTER, "ds2"), DatastreamUtils.toJSON(datastreams[1]));
+    Assert.assertTrue(PollUtils.poll(() -> "newOwner".equals(
+        reader.getDatastream("ds2", false).getMetadata().get(DatastreamMetadataConstants.OWNER_KEY)), 100,
+        WAIT_TIMEOUT_MS));
+    cachedGroups = getGroupsByTaskPrefix(reader.getDatastreamGroups());
+    Assert.assertSame(cachedGroups.get(taskPrefix1), groups.get(taskPrefix1));
+    Assert.assertNotSame(cachedGroups.get(taskPrefix2), groups.get(taskPrefix2));
+    Assert.assertEquals(cachedGroups.get(taskPrefix2).getDatastreams().get(0).getMetadata()
+        .get(DatastreamMetadataConstants.OWNER_KEY), "newOwner");
+
+    // after an invalidation, the datastreams whose znode did not change are not regrouped
+    reader.invalidateAllCache();
+    Assert.assertSame(getGroupsByTaskPrefix(reader.getDatastreamGroups()).get(taskPrefix1),
+        groups.get(taskPrefix1));
+
+    // deleted datastreams are evicted from their group
+    _zkClient.delete(KeyBuilder.datastream(CLUSTER, "ds3"));
+    Assert.assertTrue(PollUtils.poll(() -> reader.getAllDatastreamNames().size() == 2, 100, WAIT_TIMEOUT_MS));
+    cachedGroups = getGroupsByTaskPrefix(reader.getDatastreamGroups());
+    Assert.assertEquals(cachedGroups.get(taskPrefix1).getDatastreams().size(), 1);
+    Assert.assertEquals(cachedGroups.get(taskPrefix1).getDatastreams().get(0).getName(), "ds1");
+  }
+
+  @Test
+  public void testFlushReadsDatastreamFromZk() {
+    Datastream datastream = DatastreamTestUtils.createDatastreams(DummyConnector.CONNECTOR_TYPE, "ds1")[0];
+    datastream.setStatus(DatastreamStatus.INITIALIZING);
+    _zkClient.create(KeyBuilder.datastream(CLUSTER, "ds1"), DatastreamUtils.toJSON(datastream), CreateMode.PERSISTENT);
+    CachedDatastreamReader reader = new CachedDatastreamReader(_zkClient, CLUSTER);
+
+    // a datastream modified by a caller but not written to ZK is read again from ZK on a flush
+    reader.getDatastream("ds1", false).setStatus(DatastreamStatus.READY);
+    Assert.assertEquals(reader.getDatastream("ds1", true).getStatus(), DatastreamStatus.INITIALIZING);
+    Assert.assertEquals(reader.getAllDatastreams(false).get(0).getStatus(), DatastreamStatus.INITIALIZING);
+
+    reader.getDatastream("ds1", false).setStatus(DatastreamStatus.READY);
+    Assert.assertEquals(reader.getAllDatastreams(true).get(0).getStatus(), DatastreamStatus.INITIALIZING);
+  }
+
+  private static Map<String, DatastreamGroup> getGroupsByTaskPrefix(List<DatastreamGroup> groups) {
+    Map<String, DatastreamGroup> groupsByTaskPrefix = new HashMap<>();
+    groups.forEach(group -> groupsByTaskPrefix.put(group.getTaskPrefix(), group));
+    return groupsByTaskPrefix;
+  }
+
+  private static long getMeterCount(String metricName) {
+    Meter meter = DynamicMetricsManager.getInstance()
+        .getMetric(MetricRegistry.name(CachedDatastreamReader.class.getSimpleName(), metricName));
+    return meter == null ? 0 : meter.getCount();
+  }
+}
@@ -13,6 +13,7 @@ import org.testng.annotations.Test;
 
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
 
 import com.linkedin.datastream.metrics.DynamicMetricsManager;
@@ -20,6 +21,7 @@ import com.linkedin.datastream.testutil.MetricsTestUtils;
 
 import static com.linkedin.datastream.server.CoordinatorEventBlockingQueue.COUNTER_KEY;
 import static com.linkedin.datastream.server.CoordinatorEventBlockingQueue.GAUGE_KEY;
+import static com.linkedin.datastream.server.CoordinatorEventBlockingQueue.QUEUE_WAIT_MS_KEY;
 
 
 /**
@@ -51,12 +53,13 @@ public class TestCoordinatorEventBlockingQueue {
     eventBlockingQueue.put(CoordinatorEvent.HANDLE_ASSIGNMENT_CHANGE_EVENT);
     eventBlockingQueue.put(CoordinatorEvent.HANDLE_ASSIGNMENT_CHANGE_EVENT);
     eventBlockingQueue.put(CoordinatorEvent.HANDLE_ASSIGNMENT_CHANGE_EVENT);
-    Assert.assertEquals(eventBlockingQueue.size(), 5);
+    // the leader assignment events are coalesced into the one of the newly elected leader, and the assignment change
+    // event has a higher priority than the other leader events
+    Assert.assertEquals(eventBlockingQueue.size(), 4);
     Assert.assertEquals(eventBlockingQueue.take(), CoordinatorEvent.createLeaderPartitionAssignmentEvent("test2"));
     Assert.assertEquals(eventBlockingQueue.take(), CoordinatorEvent.createLeaderDoAssignmentEvent(true));
-    Assert.assertEquals(eventBlockingQueue.take(), CoordinatorEvent.createLeaderDoAssignmentEvent(false));
-    Assert.assertEquals(eventBlockingQueue.take(), CoordinatorEvent.createLeaderPartitionAssignmentEvent("test1"));
     Assert.assertEquals(eventBlockingQueue.take(), CoordinatorEvent.HANDLE_ASSIGNMENT_CHANGE_EVENT);
+    Assert.assertEquals(eventBlockingQueue.take(), CoordinatorEvent.createLeaderPartitionAssignmentEvent("test1"));
   }
 
   @Test
@@ -67,11 +70,56 @@ public class TestCoordinatorEventBlockingQueue {
     eventBlockingQueue.putFirst(CoordinatorEvent.createLeaderPartitionAssignmentEvent("test1"));
     eventBlockingQueue.putFirst(CoordinatorEvent.HANDLE_ASSIGNMENT_CHANGE_EVENT);
     eventBlockingQueue.putFirst(CoordinatorEvent.createLeaderDoAssignmentEvent(true));
-    Assert.assertEquals(eventBlockingQueue.size(), 4);
+    Assert.assertEquals(eventBlockingQueue.size(), 3);
     Assert.assertEquals(eventBlockingQueue.take(), CoordinatorEvent.createLeaderDoAssignmentEvent(true));
     Assert.assertEquals(eventBlockingQueue.take(), CoordinatorEvent.HANDLE_ASSIGNMENT_CHANGE_EVENT);
     Assert.assertEquals(eventBlockingQueue.take(), CoordinatorEvent.createLeaderPartitionAssignmentEvent("test1"));
-    Assert.assertEquals(eventBlockingQueue.take(), CoordinatorEvent.createLeaderDoAssignmentEvent(false));
+  }
+
+  @Test
+  public void testPrioritiesAndCoalescing() throws Exception {
+    CoordinatorEventBlockingQueue eventBlockingQueue = new CoordinatorEventBlockingQueue(SIMPLE_NAME);
+    eventBlockingQueue.put(CoordinatorEvent.createLeaderDoAssignmentEvent(false));
+    eventBlockingQueue.put(CoordinatorEvent.createLeaderPartitionAssignmentEvent("test1"));
+    eventBlockingQueue.put(CoordinatorEvent.HANDLE_ASSIGNMENT_CHANGE_EVENT);
+    eventBlockingQueue.put(CoordinatorEvent.HEARTBEAT_EVENT);
+    // the datastream change event takes the place of the assignment change event
+    eventBlockingQueue.put(CoordinatorEvent.HANDLE_DATASTREAM_CHANGE_WITH_UPDATE_EVENT);
+    eventBlockingQueue.put(CoordinatorEvent.HANDLE_ASSIGNMENT_CHANGE_EVENT);
+    // the assignment of the newly elected leader takes the place of the leader assignment
+    eventBlockingQueue.put(CoordinatorEvent.createLeaderDoAssignmentEvent(true));
+    eventBlockingQueue.put(CoordinatorEvent.createLeaderDoAssignmentEvent(false));
+    Assert.assertEquals(eventBlockingQueue.size(), 4);
+    Assert.assertEquals(eventBlockingQueue.peek(), CoordinatorEvent.HEARTBEAT_EVENT);
+
+    Assert.assertEquals(eventBlockingQueue.take(), CoordinatorEvent.HEARTBEAT_EVENT);
+    Assert.assertEquals(eventBlockingQueue.take(), CoordinatorEvent.HANDLE_DATASTREAM_CHANGE_WITH_UPDATE_EVENT);
+    Assert.assertEquals(eventBlockingQueue.take(), CoordinatorEvent.createLeaderDoAssignmentEvent(true));
+    Assert.assertEquals(eventBlockingQueue.take(), CoordinatorEvent.createLeaderPartitionAssignmentEvent("test1"));
+    Assert.assertTrue(eventBlockingQueue.isEmpty());
+
+    // events which are put first are taken before the events of any priority
+    eventBlockingQueue.put(CoordinatorEvent.HEARTBEAT_EVENT);
+    eventBlockingQueue.put(CoordinatorEvent.createLeaderDoAssignmentEvent(true));
+    eventBlockingQueue.putFirst(CoordinatorEvent.createLeaderDoAssignmentEvent(false));
+    Assert.assertEquals(eventBlockingQueue.size(), 2);
+    Assert.assertEquals(eventBlockingQueue.take(), CoordinatorEvent.createLeaderDoAssignmentEvent(true));
+    Assert.assertEquals(eventBlockingQueue.take(), CoordinatorEvent.HEARTBEAT_EVENT);
+    Assert.assertNull(eventBlockingQueue.peek());
+  }
+
+  @Test
+  public void testQueueWaitMetrics() throws Exception {
+    CoordinatorEventBlockingQueue queue = new CoordinatorEventBlockingQueue(SIMPLE_NAME);
+    queue.put(CoordinatorEvent.HEARTBEAT_EVENT);
+    queue.put(CoordinatorEvent.HEARTBEAT_EVENT);
+    queue.take();
+
+    Histogram histogram = DynamicMetricsManager.getInstance().getMetric(
+        MetricRegistry.name(CoordinatorEventBlockingQueue.class.getSimpleName(), SIMPLE_NAME,
+            CoordinatorEvent.EventType.HEARTBEAT.name(), QUEUE_WAIT_MS_KEY));
+    Assert.assertNotNull(histogram);
+    Assert.assertEquals(histogram.getCount(), 1);
   }
 
   /**
@@ -119,7 +167,7 @@ public class TestCoordinatorEventBlockingQueue {
     Assert.assertEquals((int) gauge.getValue(), 0, "remove() should decrement gauge.");
 
     queue.put(CoordinatorEvent.createLeaderDoAssignmentEvent(false));
-    queue.put(CoordinatorEvent.createLeaderDoAssignmentEvent(true));
+    queue.put(CoordinatorEvent.createLeaderPartitionAssignmentEvent("test2"));
     queue.put(CoordinatorEvent.createLeaderPartitionAssignmentEvent("test1"));
     Assert.assertEquals((int) gauge.getValue(), 3);
     queue.clear();
@@ -6,8 +6,11 @@
 package com.linkedin.datastream.server;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -87,7 +90,51 @@ public class TestEventProducer {
         metrics.getMetric("EventProducer." + someTopicName + "." + EventProducer.EVENTS_SEND_LATENCY_MS_STRING));
   }
 
+  @Test
+  public void testSendBatch() {
+    Datastream datastream = DatastreamTestUtils.createDatastreams(DummyConnector.CONNECTOR_TYPE, "test-ds")[0];
+    DatastreamTaskImpl task = new DatastreamTaskImpl(Collections.singletonList(datastream));
+
+    String someTopicName = "someTopicName";
+    AtomicInteger numBatchesProduced = new AtomicInteger();
+    TransportProvider transport = new NoOpTransportProviderAdminFactory.NoOpTransportProvider() {
+      @Override
+      public void sendBatch(String destination, List<DatastreamProducerRecord> records, SendCallback onComplete) {
+        numBatchesProduced.incrementAndGet();
+        for (int i = 0; i < records.size(); i++) {
+          DatastreamProducerRecord record = records.get(i);
+          DatastreamRecordMetadata metadata = new DatastreamRecordMetadata(record.getCheckpoint(), someTopicName,
+              record.getPartition().orElse(0), 0, -1, i);
+          onComplete.onCompletion(metadata, null);
+        }
+      }
+    };
+
+    EventProducer eventProducer =
+        new EventProducer(task, transport, new NoOpCheckpointProvider(), new Properties(), false);
 
+    int eventCount = 5;
+    List<DatastreamProducerRecord> records = new ArrayList<>();
+    for (int i = 0; i < eventCount; i++) {
+      records.add(createDatastreamProducerRecord(0, String.valueOf(i), 1));
+    }
+    List<Integer> batchIndexes = new ArrayList<>();
+    eventProducer.sendBatch(records, (m, e) -> {
+      Assert.assertNull(e);
+      Assert.assertEquals(m.getCheckpoint(), records.get(m.getBatchIndex()).getCheckpoint());
+      batchIndexes.add(m.getBatchIndex());
+    });
+    Assert.assertEquals(numBatchesProduced.get(), 1);
+    Assert.assertEquals(batchIndexes, Arrays.asList(0, 1, 2, 3, 4));
+    for (DatastreamProducerRecord record : records) {
+      Assert.assertTrue(record.getEventsSendTimestamp().isPresent());
+    }
+
+    // Verify per-topic metrics exist, since they are enabled by default
+    DynamicMetricsManager metrics = DynamicMetricsManager.getInstance();
+    Assert.assertNotNull(
+        metrics.getMetric("EventProducer." + someTopicName + "." + EventProducer.EVENTS_LATENCY_MS_STRING));
+  }
 
   @Test
   public void testSendWithSerdeErrors() {
@@ -5,6 +5,7 @@
  */
 package com.linkedin.datastream.server.assignment;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -349,36 +350,100 @@ public class TestLoadBasedPartitionAssigner {
   }
 
   @Test
-  public void findTaskWithRoomForAPartitionTests() {
+  public void incrementalAssignmentTest() {
+    Map<String, PartitionThroughputInfo> throughputInfoMap = new HashMap<>();
+    for (int i = 1; i <= 8; i++) {
+      throughputInfoMap.put("P" + i, new PartitionThroughputInfo(i * 10, 5, "P" + i));
+    }
+    ClusterThroughputInfo throughputInfo = new ClusterThroughputInfo("dummy", throughputInfoMap);
+
+    Datastream ds1 = DatastreamTestUtils.createDatastreams(DummyConnector.CONNECTOR_TYPE, "ds1")[0];
+    ds1.getSource().setPartitions(0);
+    ds1.getMetadata().put(DatastreamMetadataConstants.TASK_PREFIX, DatastreamTaskImpl.getTaskPrefix(ds1));
+    DatastreamGroup datastreamGroup = new DatastreamGroup(Collections.singletonList(ds1));
+    Map<String, Set<DatastreamTask>> currentAssignment = new HashMap<>();
+    currentAssignment.put("instance1", new HashSet<>(Collections.singletonList(createTaskForDatastream(ds1))));
+    currentAssignment.put("instance2", new HashSet<>(Collections.singletonList(createTaskForDatastream(ds1))));
+
+    LoadBasedPartitionAssigner assigner = new LoadBasedPartitionAssigner(5, 10);
+    List<String> partitions = Arrays.asList("P1", "P2", "P3", "P4", "P5", "P6");
+    Map<String, Set<DatastreamTask>> assignment = assigner.assignPartitions(throughputInfo, currentAssignment,
+        new HashSet<>(partitions), new DatastreamGroupPartitionsMetadata(datastreamGroup, partitions),
+        Integer.MAX_VALUE);
+    assertPartitionsAssignedOnce(assignment, partitions);
+    // heaviest partitions first to the lightest task: 60 + 30 + 10 and 50 + 40 + 20
+    Assert.assertEquals(getTaskWithPartition(assignment, "P6").getPartitionsV2().size(), 3);
+    Assert.assertTrue(getTaskWithPartition(assignment, "P6").getPartitionsV2().containsAll(Arrays.asList("P3", "P1")));
+
+    // P1 goes away and P7 and P8 show up, which are assigned on top of the previous assignment
+    List<String> newPartitions = Arrays.asList("P2", "P3", "P4", "P5", "P6", "P7", "P8");
+    Map<String, Set<DatastreamTask>> newAssignment = assigner.assignPartitions(throughputInfo, assignment,
+        new HashSet<>(Arrays.asList("P7", "P8")), new DatastreamGroupPartitionsMetadata(datastreamGroup, newPartitions),
+        Integer.MAX_VALUE);
+    assertPartitionsAssignedOnce(newAssignment, newPartitions);
+    Assert.assertEquals(new HashSet<>(getTaskWithPartition(newAssignment, "P6").getPartitionsV2()),
+        new HashSet<>(Arrays.asList("P3", "P6", "P8")));
+    Assert.assertEquals(new HashSet<>(getTaskWithPartition(newAssignment, "P5").getPartitionsV2()),
+        new HashSet<>(Arrays.asList("P2", "P4", "P5", "P7")));
+
+    // nothing changed, so the tasks are kept as they are
+    Map<String, Set<DatastreamTask>> sameAssignment = assigner.assignPartitions(throughputInfo, newAssignment,
+        Collections.emptySet(), new DatastreamGroupPartitionsMetadata(datastreamGroup, newPartitions),
+        Integer.MAX_VALUE);
+    Assert.assertEquals(sameAssignment, newAssignment);
+
+    MetricsTestUtils.verifyMetrics(assigner, DynamicMetricsManager.getInstance());
+  }
+
+  @Test
+  public void assignmentIgnoresDiscardedAssignmentTest() {
+    ClusterThroughputInfo throughputInfo = new ClusterThroughputInfo("dummy", new HashMap<>());
+
+    Datastream ds1 = DatastreamTestUtils.createDatastreams(DummyConnector.CONNECTOR_TYPE, "ds1")[0];
+    ds1.getSource().setPartitions(0);
+    ds1.getMetadata().put(DatastreamMetadataConstants.TASK_PREFIX, DatastreamTaskImpl.getTaskPrefix(ds1));
+    DatastreamGroup datastreamGroup = new DatastreamGroup(Collections.singletonList(ds1));
+    Map<String, Set<DatastreamTask>> currentAssignment = new HashMap<>();
+    currentAssignment.put("instance1", new HashSet<>(Collections.singletonList(
+        createTaskForDatastream(ds1, Arrays.asList("P1", "P2")))));
+    currentAssignment.put("instance2", new HashSet<>(Collections.singletonList(
+        createTaskForDatastream(ds1, Collections.singletonList("P3")))));
+
     LoadBasedPartitionAssigner assigner = new LoadBasedPartitionAssigner(5, 10);
-    List<String> tasks = Arrays.asList("T1", "T2");
-    Map<String, Set<String>> partitionsMap = new HashMap<>();
-    partitionsMap.put("T1", new HashSet<>(Collections.emptySet()));
-    partitionsMap.put("T2", new HashSet<>(Collections.emptySet()));
-    int index = assigner.findTaskWithRoomForAPartition(tasks, partitionsMap, 0, 1);
-    Assert.assertEquals(index, 0);
-    partitionsMap.get("T1").add("P1");
-    index = assigner.findTaskWithRoomForAPartition(tasks, partitionsMap, 0, 1);
-    // no more room in T1, expecting 1 as index
-    Assert.assertEquals(index, 1);
-    partitionsMap.get("T2").add("P2");
-    Assert.assertThrows(DatastreamRuntimeException.class, () ->
-        assigner.findTaskWithRoomForAPartition(tasks, partitionsMap, 0, 1));
-
-    List<String> tasks2 = Arrays.asList("T1", "T2", "T3");
-    Map<String, Set<String>> partitionsMap2 = new HashMap<>();
-    partitionsMap2.put("T1", new HashSet<>(Collections.emptySet()));
-    partitionsMap2.put("T2", new HashSet<>(Collections.singletonList("P1")));
-    partitionsMap2.put("T3", new HashSet<>(Collections.emptySet()));
-    int index2 = assigner.findTaskWithRoomForAPartition(tasks2, partitionsMap2, 1, 1);
-    Assert.assertEquals(index2, 2);
-    partitionsMap2.get("T3").add("P2");
-    index2 = assigner.findTaskWithRoomForAPartition(tasks2, partitionsMap2, 1, 1);
-    Assert.assertEquals(index2, 0);
+    List<String> partitions = Arrays.asList("P1", "P2", "P3", "P4", "P5");
+    DatastreamGroupPartitionsMetadata metadata = new DatastreamGroupPartitionsMetadata(datastreamGroup, partitions);
+    assigner.assignPartitions(throughputInfo, currentAssignment, new HashSet<>(Arrays.asList("P4", "P5")), metadata,
+        Integer.MAX_VALUE);
+
+    // the first assignment never made it, and the next one starts from the same assignment again
+    Map<String, Set<DatastreamTask>> newAssignment = assigner.assignPartitions(throughputInfo, currentAssignment,
+        new HashSet<>(Arrays.asList("P4", "P5")), metadata, Integer.MAX_VALUE);
+    assertPartitionsAssignedOnce(newAssignment, partitions);
+    Assert.assertEquals(getTask(newAssignment, "instance1").getPartitionsV2().size()
+        + getTask(newAssignment, "instance2").getPartitionsV2().size(), 5);
 
     MetricsTestUtils.verifyMetrics(assigner, DynamicMetricsManager.getInstance());
   }
 
+  private DatastreamTask getTask(Map<String, Set<DatastreamTask>> assignment, String instance) {
+    return assignment.get(instance).iterator().next();
+  }
+
+  private DatastreamTask getTaskWithPartition(Map<String, Set<DatastreamTask>> assignment, String partition) {
+    return assignment.values().stream()
+        .flatMap(Set::stream)
+        .filter(task -> task.getPartitionsV2().contains(partition))
+        .findFirst()
+        .orElseThrow(() -> new AssertionError("Partition " + partition + " is not assigned"));
+  }
+
+  private void assertPartitionsAssignedOnce(Map<String, Set<DatastreamTask>> assignment, List<String> partitions) {
+    List<String> assignedPartitions = new ArrayList<>();
+    assignment.values().forEach(tasks -> tasks.forEach(task -> assignedPartitions.addAll(task.getPartitionsV2())));
+    Assert.assertEquals(assignedPartitions.size(), partitions.size());
+    Assert.assertEquals(new HashSet<>(assignedPartitions), new HashSet<>(partitions));
+  }
+
   private DatastreamTask createTaskForDatastream(Datastream datastream) {
     return createTaskForDatastream(datastream, Collections.emptyList());
   }
@@ -0,0 +1,182 @@
+/**
+ *  Copyright 2021 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.server.assignment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+import com.linkedin.datastream.common.Datastream;
+import com.linkedin.datastream.common.DatastreamMetadataConstants;
+import com.linkedin.datastream.connectors.DummyConnector;
+import com.linkedin.datastream.metrics.DynamicMetricsManager;
+import com.linkedin.datastream.server.ClusterThroughputInfo;
+import com.linkedin.datastream.server.DatastreamGroup;
+import com.linkedin.datastream.server.DatastreamGroupPartitionsMetadata;
+import com.linkedin.datastream.server.DatastreamTask;
+import com.linkedin.datastream.server.DatastreamTaskImpl;
+import com.linkedin.datastream.server.PartitionThroughputInfo;
+import com.linkedin.datastream.server.providers.PartitionThroughputProvider;
+import com.linkedin.datastream.server.zk.ZkAdapter;
+import com.linkedin.datastream.testutil.DatastreamTestUtils;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+
+
+/**
+ * Tests for {@link LoadBasedPartitionRebalancer}
+ */
+public class TestLoadBasedPartitionRebalancer {
+  private Datastream _datastream;
+  private DatastreamGroup _datastreamGroup;
+  private DatastreamGroupPartitionsMetadata _metadata;
+  private PartitionThroughputProvider _throughputProvider;
+  private final Map<String, PartitionThroughputInfo> _partitionInfoMap = new HashMap<>();
+
+  /**
+   * Test setup
+   */
+  @BeforeMethod
+  public void setup() {
+    DynamicMetricsManager.createInstance(new MetricRegistry(), "TestLoadBasedPartitionRebalancer");
+    _datastream = DatastreamTestUtils.createDatastreams(DummyConnector.CONNECTOR_TYPE, "ds1")[0];
+    _datastream.getMetadata().put(DatastreamMetadataConstants.TASK_PREFIX, DatastreamTaskImpl.getTaskPrefix(_datastream));
+    _datastreamGroup = new DatastreamGroup(Collections.singletonList(_datastream));
+    _metadata = new DatastreamGroupPartitionsMetadata(_datastreamGroup, Collections.emptyList());
+    _partitionInfoMap.clear();
+    _throughputProvider = Mockito.mock(PartitionThroughputProvider.class);
+    Mockito.when(_throughputProvider.getThroughputInfo(any(DatastreamGroup.class)))
+        .thenReturn(new ClusterThroughputInfo("ds1", _partitionInfoMap));
+  }
+
+  @Test
+  public void testMovesHotPartitionToCoolestInstance() {
+    Map<String, Set<DatastreamTask>> assignment = new HashMap<>();
+    assignment.put("instance1", createTasks(Arrays.asList("P1", "P2", "P3")));
+    assignment.put("instance2", createTasks(Collections.singletonList("P4")));
+    setLoads(100, 100, 10, 10);
+
+    LoadBasedPartitionRebalancer rebalancer = new LoadBasedPartitionRebalancer(_throughputProvider, 25, 10,
+        Long.MAX_VALUE, 5);
+    Map<String, Set<String>> targetAssignment = rebalancer.planPartitionMoves(assignment, _metadata, Integer.MAX_VALUE);
+    // moving either of the hot partitions evens out the load
+    Assert.assertEquals(targetAssignment.keySet(), Collections.singleton("instance2"));
+    Set<String> movedPartitions = targetAssignment.get("instance2");
+    Assert.assertEquals(movedPartitions.size(), 1);
+    Assert.assertTrue(movedPartitions.contains("P1") || movedPartitions.contains("P2"));
+    Assert.assertEquals(getGaugeValue("LoadBasedPartitionRebalancer.ds1.taskThroughputSkewPct"), 90);
+    Assert.assertEquals(getGaugeValue("LoadBasedPartitionRebalancer.ds1.instanceThroughputSkewPct"), 90);
+
+    // the move is only held back by the cooldown once it was applied
+    Assert.assertEquals(rebalancer.planPartitionMoves(assignment, _metadata, Integer.MAX_VALUE), targetAssignment);
+    rebalancer.recordPartitionMoves(targetAssignment, _metadata);
+    Set<String> nextMovedPartitions = rebalancer.planPartitionMoves(assignment, _metadata, Integer.MAX_VALUE)
+        .get("instance2");
+    Assert.assertEquals(nextMovedPartitions.size(), 1);
+    Assert.assertNotEquals(nextMovedPartitions, movedPartitions);
+  }
+
+  @Test
+  public void testLimitsMovesPerRebalance() {
+    List<String> partitions = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      partitions.add("P" + i);
+      _partitionInfoMap.put("P" + i, new PartitionThroughputInfo(10, 10, "P" + i));
+    }
+    Map<String, Set<DatastreamTask>> assignment = new HashMap<>();
+    assignment.put("instance1", createTasks(partitions));
+    assignment.put("instance2", createTasks(Collections.emptyList()));
+
+    // 40% of the load moves until the skew is within the threshold
+    LoadBasedPartitionRebalancer rebalancer = new LoadBasedPartitionRebalancer(_throughputProvider, 25, 10, 0, 5);
+    Assert.assertEquals(rebalancer.planPartitionMoves(assignment, _metadata, Integer.MAX_VALUE).get("instance2").size(),
+        4);
+
+    rebalancer = new LoadBasedPartitionRebalancer(_throughputProvider, 25, 2, 0, 5);
+    Assert.assertEquals(rebalancer.planPartitionMoves(assignment, _metadata, Integer.MAX_VALUE).get("instance2").size(),
+        2);
+
+    // the target task cannot take more partitions
+    Assert.assertTrue(rebalancer.planPartitionMoves(assignment, _metadata, 0).isEmpty());
+  }
+
+  @Test
+  public void testNoMovesWithinThreshold() {
+    Map<String, Set<DatastreamTask>> assignment = new HashMap<>();
+    assignment.put("instance1", createTasks(Arrays.asList("P1", "P2")));
+    assignment.put("instance2", createTasks(Arrays.asList("P3", "P4")));
+    setLoads(50, 60, 40, 40);
+
+    LoadBasedPartitionRebalancer rebalancer = new LoadBasedPartitionRebalancer(_throughputProvider, 25, 10, 0, 5);
+    Assert.assertTrue(rebalancer.planPartitionMoves(assignment, _metadata, Integer.MAX_VALUE).isEmpty());
+    Assert.assertEquals(getGaugeValue("LoadBasedPartitionRebalancer.ds1.taskThroughputSkewPct"), 15);
+
+    // no moves without throughput info
+    _partitionInfoMap.clear();
+    Assert.assertTrue(rebalancer.planPartitionMoves(assignment, _metadata, Integer.MAX_VALUE).isEmpty());
+  }
+
+  @Test
+  public void testMovesToTaskWithFewestPartitions() {
+    // instance2 has a lightly loaded task with many partitions, and an empty task which receives the moved partitions
+    Map<String, Set<DatastreamTask>> assignment = new HashMap<>();
+    assignment.put("instance1", createTasks(Arrays.asList("P1", "P2")));
+    Set<DatastreamTask> instance2Tasks = createTasks(Arrays.asList("P3", "P4", "P5"));
+    instance2Tasks.addAll(createTasks(Collections.emptyList()));
+    assignment.put("instance2", instance2Tasks);
+    setLoads(100, 100, 0, 0, 0);
+
+    LoadBasedPartitionRebalancer rebalancer = new LoadBasedPartitionRebalancer(_throughputProvider, 25, 10, 0, 5);
+    Map<String, Set<String>> targetAssignment = rebalancer.planPartitionMoves(assignment, _metadata, 2);
+    Assert.assertEquals(targetAssignment.get("instance2").size(), 1);
+
+    StickyPartitionAssignmentStrategy strategy =
+        new StickyPartitionAssignmentStrategy(Optional.of(4), 0, Integer.MAX_VALUE, "testCluster");
+    Map<String, Set<DatastreamTask>> newAssignment = strategy.movePartitions(assignment, targetAssignment, _metadata);
+    String movedPartition = targetAssignment.get("instance2").iterator().next();
+    Assert.assertTrue(newAssignment.get("instance2").stream()
+        .anyMatch(task -> task.getPartitionsV2().equals(Collections.singletonList(movedPartition))));
+  }
+
+  private void setLoads(int... loads) {
+    List<String> partitions = new ArrayList<>();
+    for (int i = 0; i < loads.length; i++) {
+      String partition = "P" + (i + 1);
+      partitions.add(partition);
+      _partitionInfoMap.put(partition, new PartitionThroughputInfo(loads[i], loads[i], partition));
+    }
+    _metadata = new DatastreamGroupPartitionsMetadata(_datastreamGroup, partitions);
+  }
+
+  private Set<DatastreamTask> createTasks(List<String> partitions) {
+    DatastreamTaskImpl task = new DatastreamTaskImpl(Collections.singletonList(_datastream));
+    task.setPartitionsV2(partitions);
+    ZkAdapter mockZkAdapter = Mockito.mock(ZkAdapter.class);
+    Mockito.when(mockZkAdapter.checkIsTaskLocked(anyString(), anyString(), anyString())).thenReturn(true);
+    task.setZkAdapter(mockZkAdapter);
+    return new HashSet<>(Collections.singletonList(task));
+  }
+
+  @SuppressWarnings("unchecked")
+  private int getGaugeValue(String name) {
+    return ((Gauge<Integer>) DynamicMetricsManager.getInstance().getMetric(name)).getValue();
+  }
+}
@@ -0,0 +1,81 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.server.providers;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.datastream.common.DatastreamRuntimeException;
+
+
+/**
+ * Tests for {@link JsonCheckpointCodec} and {@link BinaryCheckpointCodec}
+ */
+public class TestCheckpointCodec {
+
+  private static Map<Integer, String> generateCheckpoints(int numPartitions) {
+    Map<Integer, String> checkpoints = new HashMap<>();
+    for (int i = 0; i < numPartitions; i++) {
+      checkpoints.put(i, String.valueOf(1_000_000_000L + i * 37L));
+    }
+    return checkpoints;
+  }
+
+  @Test
+  public void testBinaryRoundTrip() {
+    Map<Integer, String> checkpoints = new HashMap<>();
+    checkpoints.put(0, "12345");
+    checkpoints.put(3, "12");
+    checkpoints.put(-1, "-7");
+    checkpoints.put(7, String.valueOf(Long.MAX_VALUE));
+    checkpoints.put(8, String.valueOf(Long.MIN_VALUE));
+    // non-canonical numbers and arbitrary strings must be preserved as they are
+    checkpoints.put(10, "007");
+    checkpoints.put(11, "-0");
+    checkpoints.put(12, "");
+    checkpoints.put(13, "{\"offset\":42,\"\u00e9\":\"\u2713\"}");
+    checkpoints.put(Integer.MAX_VALUE, "99999999999999999999");
+
+    BinaryCheckpointCodec codec = new BinaryCheckpointCodec();
+    Assert.assertEquals(codec.decode(codec.encode(checkpoints)), checkpoints);
+    Assert.assertEquals(codec.decode(codec.encode(new HashMap<>())), new HashMap<>());
+  }
+
+  @Test
+  public void testBinaryCompression() {
+    Map<Integer, String> checkpoints = generateCheckpoints(5000);
+    String json = new JsonCheckpointCodec().encode(checkpoints);
+    String uncompressed = new BinaryCheckpointCodec(0).encode(checkpoints);
+    String compressed = new BinaryCheckpointCodec().encode(checkpoints);
+
+    Assert.assertTrue(uncompressed.length() < json.length() / 3, uncompressed.length() + " vs " + json.length());
+    Assert.assertTrue(compressed.length() < uncompressed.length(), compressed.length() + " vs " + uncompressed.length());
+    Assert.assertEquals(new BinaryCheckpointCodec().decode(uncompressed), checkpoints);
+    Assert.assertEquals(new BinaryCheckpointCodec(0).decode(compressed), checkpoints);
+  }
+
+  @Test
+  public void testCodecsReadEachOtherFormats() {
+    Map<Integer, String> checkpoints = generateCheckpoints(100);
+    JsonCheckpointCodec jsonCodec = new JsonCheckpointCodec();
+    BinaryCheckpointCodec binaryCodec = new BinaryCheckpointCodec();
+
+    Assert.assertEquals(binaryCodec.decode(jsonCodec.encode(checkpoints)), checkpoints);
+    Assert.assertEquals(jsonCodec.decode(binaryCodec.encode(checkpoints)), checkpoints);
+    Assert.assertEquals(binaryCodec.decode("{\"0\":\"10\",\"1\":\"abc\"}").get(1), "abc");
+  }
+
+  @Test
+  public void testBinaryRejectsMalformedData() {
+    BinaryCheckpointCodec codec = new BinaryCheckpointCodec();
+    String encoded = codec.encode(generateCheckpoints(10));
+    Assert.assertThrows(DatastreamRuntimeException.class, () -> codec.decode(encoded.substring(0, encoded.length() - 8)));
+    Assert.assertThrows(DatastreamRuntimeException.class, () -> codec.decode("#cp:not base64!"));
+  }
+}
@@ -7,7 +7,10 @@ package com.linkedin.datastream.server.providers;
 
 import java.io.IOException;
 import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import org.testng.Assert;
@@ -15,6 +18,7 @@ import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
 
 import com.linkedin.data.template.StringMap;
@@ -22,6 +26,7 @@ import com.linkedin.datastream.common.Datastream;
 import com.linkedin.datastream.common.DatastreamDestination;
 import com.linkedin.datastream.common.DatastreamMetadataConstants;
 import com.linkedin.datastream.common.DatastreamSource;
+import com.linkedin.datastream.common.PollUtils;
 import com.linkedin.datastream.common.zk.ZkClient;
 import com.linkedin.datastream.connectors.DummyConnector;
 import com.linkedin.datastream.metrics.DynamicMetricsManager;
@@ -79,6 +84,7 @@ public class TestZookeeperCheckpointProvider {
 
     checkpointProvider.updateCheckpoint(datastreamTask1, 0, "checkpoint1");
     checkpointProvider.updateCheckpoint(datastreamTask2, 0, "checkpoint2");
+    checkpointProvider.flush();
 
     adapter.setDatastreamTaskStateForKey(datastreamTask1, ZookeeperCheckpointProvider.CHECKPOINT_KEY_NAME, "");
     checkpointProvider.unassignDatastreamTask(datastreamTask1);
@@ -116,6 +122,70 @@ public class TestZookeeperCheckpointProvider {
     Assert.assertEquals(committedCheckpoints2.get(0), "checkpoint2");
   }
 
+  @Test
+  public void testCheckpointsCommittedInBackground() {
+    ZkAdapter adapter = new ZkAdapter(_zookeeper.getConnection(), "testcluster", defaultTransportProviderName, ZkClient.DEFAULT_SESSION_TIMEOUT,
+        ZkClient.DEFAULT_CONNECTION_TIMEOUT, DEBOUNCE_TIMER_MS, LOG_SIZE_LIMIT_IN_BYTES, null);
+    adapter.connect();
+    ZookeeperCheckpointProvider checkpointProvider = new ZookeeperCheckpointProvider(adapter, new JsonCheckpointCodec(), Duration.ofMillis(100));
+    DatastreamTaskImpl datastreamTask = new DatastreamTaskImpl(Collections.singletonList(generateDatastream(1)));
+    datastreamTask.setId("dt1");
+    _zkClient.ensurePath(KeyBuilder.connectorTask("testcluster", datastreamTask.getConnectorType(), datastreamTask.getDatastreamTaskName()));
+
+    checkpointProvider.updateCheckpoint(datastreamTask, 0, "checkpoint1");
+    Assert.assertTrue(PollUtils.poll(() -> "checkpoint1".equals(checkpointProvider.getCommitted(datastreamTask).get(0)),
+        50, 5000));
+
+    // Later checkpoints of other partitions are merged with the committed ones
+    checkpointProvider.updateCheckpoint(datastreamTask, 1, "checkpoint2");
+    checkpointProvider.updateCheckpoint(datastreamTask, 0, "checkpoint3");
+    Assert.assertTrue(PollUtils.poll(() -> "checkpoint2".equals(checkpointProvider.getCommitted(datastreamTask).get(1)),
+        50, 5000));
+    Assert.assertEquals(checkpointProvider.getCommitted(datastreamTask).get(0), "checkpoint3");
+    checkpointProvider.shutdown();
+  }
+
+  @Test
+  public void testCheckpointsCoalescedAndBatched() {
+    ZkAdapter adapter = new ZkAdapter(_zookeeper.getConnection(), "testcluster", defaultTransportProviderName, ZkClient.DEFAULT_SESSION_TIMEOUT,
+        ZkClient.DEFAULT_CONNECTION_TIMEOUT, DEBOUNCE_TIMER_MS, LOG_SIZE_LIMIT_IN_BYTES, null);
+    adapter.connect();
+    ZookeeperCheckpointProvider checkpointProvider = new ZookeeperCheckpointProvider(adapter, new BinaryCheckpointCodec(), Duration.ofHours(1));
+    List<DatastreamTaskImpl> tasks = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      DatastreamTaskImpl task = new DatastreamTaskImpl(Collections.singletonList(generateDatastream(i)));
+      task.setId("dt" + i);
+      _zkClient.ensurePath(KeyBuilder.connectorTask("testcluster", task.getConnectorType(), task.getDatastreamTaskName()));
+      tasks.add(task);
+    }
+
+    // The first checkpoints of every task are committed individually, and the later ones coalesced until the flush
+    tasks.forEach(task -> checkpointProvider.updateCheckpoint(task, 0, "checkpoint0"));
+    checkpointProvider.flush();
+    for (int i = 1; i <= 5; i++) {
+      for (DatastreamTaskImpl task : tasks) {
+        checkpointProvider.updateCheckpoint(task, i % 2, "checkpoint" + i);
+      }
+    }
+    for (DatastreamTaskImpl task : tasks) {
+      Assert.assertEquals(checkpointProvider.getCommitted(task).get(0), "checkpoint0");
+      Assert.assertEquals(checkpointProvider.getSafeCheckpoints(task).get(0), "checkpoint4");
+      Assert.assertEquals(checkpointProvider.getSafeCheckpoints(task).get(1), "checkpoint5");
+    }
+
+    checkpointProvider.flush();
+    for (DatastreamTaskImpl task : tasks) {
+      Map<Integer, String> committed = checkpointProvider.getCommitted(task);
+      Assert.assertEquals(committed.get(0), "checkpoint4");
+      Assert.assertEquals(committed.get(1), "checkpoint5");
+    }
+
+    Histogram batchSize = DynamicMetricsManager.getInstance()
+        .getMetric(MetricRegistry.name(ZookeeperCheckpointProvider.class.getSimpleName(), "checkpointCommitBatchSize"));
+    Assert.assertEquals(batchSize.getSnapshot().getMax(), tasks.size());
+    checkpointProvider.shutdown();
+  }
+
   /**
    * Generate a datastream
    */
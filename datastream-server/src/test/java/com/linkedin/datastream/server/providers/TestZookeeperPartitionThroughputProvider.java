@@ -0,0 +1,147 @@
+/**
+ *  Copyright 2021 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.server.providers;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.linkedin.datastream.common.Datastream;
+import com.linkedin.datastream.common.DatastreamMetadataConstants;
+import com.linkedin.datastream.common.JsonUtils;
+import com.linkedin.datastream.common.zk.ZkClient;
+import com.linkedin.datastream.server.ClusterThroughputInfo;
+import com.linkedin.datastream.server.DatastreamGroup;
+import com.linkedin.datastream.server.DatastreamTaskImpl;
+import com.linkedin.datastream.server.PartitionThroughputInfo;
+import com.linkedin.datastream.server.PartitionThroughputReport;
+import com.linkedin.datastream.server.zk.KeyBuilder;
+import com.linkedin.datastream.testutil.DatastreamTestUtils;
+import com.linkedin.datastream.testutil.EmbeddedZookeeper;
+
+
+/**
+ * Tests for {@link ZookeeperPartitionThroughputProvider}
+ */
+public class TestZookeeperPartitionThroughputProvider {
+  private static final String CLUSTER = "testCluster";
+  private static final String CONNECTOR_TYPE = "testConnector";
+  private static final long HALF_LIFE_MS = Duration.ofHours(1).toMillis();
+  private static final long MAX_REPORT_AGE_MS = Duration.ofHours(3).toMillis();
+
+  private EmbeddedZookeeper _zookeeper;
+  private ZkClient _zkClient;
+
+  @BeforeMethod
+  public void setup() throws IOException {
+    _zookeeper = new EmbeddedZookeeper();
+    _zookeeper.startup();
+    _zkClient = new ZkClient(_zookeeper.getConnection());
+  }
+
+  @AfterMethod
+  public void cleanup() {
+    _zkClient.close();
+    _zookeeper.shutdown();
+  }
+
+  @Test
+  public void testAggregatesTheReportsOfTheGroupTasks() {
+    DatastreamGroup group = createDatastreamGroup("ds1");
+    DatastreamGroup otherGroup = createDatastreamGroup("ds2");
+    long now = System.currentTimeMillis();
+    saveReport(group.getTaskPrefix() + "_task1", createReport(now, "topic-0", 100.4, 10));
+    saveReport(group.getTaskPrefix() + "_task2", createReport(now, "topic-1", 200, 20.6));
+    saveReport(otherGroup.getTaskPrefix() + "_task3", createReport(now, "topic-2", 300, 30));
+
+    ZookeeperPartitionThroughputProvider provider =
+        new ZookeeperPartitionThroughputProvider(_zkClient, CLUSTER, 0, HALF_LIFE_MS, MAX_REPORT_AGE_MS);
+    ClusterThroughputInfo info = provider.getThroughputInfo(group);
+    Map<String, PartitionThroughputInfo> partitionInfoMap = info.getPartitionInfoMap();
+    Assert.assertEquals(partitionInfoMap.size(), 2);
+    Assert.assertEquals(partitionInfoMap.get("topic-0").getBytesInKBRate(), 100);
+    Assert.assertEquals(partitionInfoMap.get("topic-0").getMessagesInRate(), 10);
+    Assert.assertEquals(partitionInfoMap.get("topic-1").getBytesInKBRate(), 200);
+    Assert.assertEquals(partitionInfoMap.get("topic-1").getMessagesInRate(), 21);
+
+    Assert.assertEquals(provider.getThroughputInfo(otherGroup).getPartitionInfoMap().keySet(),
+        Collections.singleton("topic-2"));
+  }
+
+  @Test
+  public void testDecaysAndDropsStaleRates() {
+    DatastreamGroup group = createDatastreamGroup("ds1");
+    long now = System.currentTimeMillis();
+    saveReport(group.getTaskPrefix() + "_task1", createReport(now - HALF_LIFE_MS, "topic-0", 100, 100));
+
+    ZookeeperPartitionThroughputProvider provider =
+        new ZookeeperPartitionThroughputProvider(_zkClient, CLUSTER, 0, HALF_LIFE_MS, MAX_REPORT_AGE_MS);
+    Assert.assertEquals(provider.getThroughputInfo(group).getPartitionInfoMap().get("topic-0").getBytesInKBRate(), 100);
+
+    // a report one half-life later weighs as much as the rates so far
+    saveReport(group.getTaskPrefix() + "_task1", createReport(now, "topic-0", 300, 500));
+    PartitionThroughputInfo partitionInfo = provider.getThroughputInfo(group).getPartitionInfoMap().get("topic-0");
+    Assert.assertEquals(partitionInfo.getBytesInKBRate(), 200);
+    Assert.assertEquals(partitionInfo.getMessagesInRate(), 300);
+
+    // an older report of the same partition, e.g. left behind by its previous owner, is ignored
+    saveReport(group.getTaskPrefix() + "_task2", createReport(now - HALF_LIFE_MS / 2, "topic-0", 1000, 1000));
+    Assert.assertEquals(provider.getThroughputInfo(group).getPartitionInfoMap().get("topic-0").getBytesInKBRate(), 200);
+
+    // reports older than the max report age are dropped
+    saveReport(group.getTaskPrefix() + "_task3", createReport(now - MAX_REPORT_AGE_MS - 1000, "topic-1", 100, 100));
+    Assert.assertEquals(provider.getThroughputInfo(group).getPartitionInfoMap().keySet(),
+        Collections.singleton("topic-0"));
+  }
+
+  @Test
+  public void testCachesTheThroughput() {
+    DatastreamGroup group = createDatastreamGroup("ds1");
+    String taskName = group.getTaskPrefix() + "_task1";
+    long now = System.currentTimeMillis();
+    saveReport(taskName, createReport(now, "topic-0", 100, 100));
+
+    ZookeeperPartitionThroughputProvider provider = new ZookeeperPartitionThroughputProvider(_zkClient, CLUSTER,
+        Duration.ofHours(1).toMillis(), HALF_LIFE_MS, MAX_REPORT_AGE_MS);
+    ClusterThroughputInfo info = provider.getThroughputInfo(group);
+    saveReport(taskName, createReport(now + 1000, "topic-1", 100, 100));
+    Assert.assertSame(provider.getThroughputInfo(group), info);
+    Assert.assertEquals(info.getPartitionInfoMap().keySet(), Collections.singleton("topic-0"));
+  }
+
+  @Test
+  public void testNoReports() {
+    ZookeeperPartitionThroughputProvider provider =
+        new ZookeeperPartitionThroughputProvider(_zkClient, CLUSTER, 0, HALF_LIFE_MS, MAX_REPORT_AGE_MS);
+    Assert.assertTrue(provider.getThroughputInfo(createDatastreamGroup("ds1")).getPartitionInfoMap().isEmpty());
+  }
+
+  private static DatastreamGroup createDatastreamGroup(String name) {
+    Datastream datastream = DatastreamTestUtils.createDatastream(CONNECTOR_TYPE, name, "source");
+    datastream.getMetadata().put(DatastreamMetadataConstants.TASK_PREFIX, DatastreamTaskImpl.getTaskPrefix(datastream));
+    return new DatastreamGroup(Collections.singletonList(datastream));
+  }
+
+  private static PartitionThroughputReport createReport(long timeStamp, String partition, double bytesInKBRate,
+      double messagesInRate) {
+    PartitionThroughputReport report = new PartitionThroughputReport(timeStamp, Duration.ofMinutes(5).toMillis());
+    report.addPartition(partition, bytesInKBRate, messagesInRate);
+    return report;
+  }
+
+  private void saveReport(String taskName, PartitionThroughputReport report) {
+    String path = KeyBuilder.datastreamTaskStateKey(CLUSTER, CONNECTOR_TYPE, taskName,
+        PartitionThroughputReport.STATE_KEY);
+    _zkClient.ensurePath(path);
+    _zkClient.writeData(path, JsonUtils.toJson(report));
+  }
+}
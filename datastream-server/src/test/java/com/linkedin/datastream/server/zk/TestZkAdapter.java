@@ -25,12 +25,15 @@ import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.codahale.metrics.MetricRegistry;
+
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 
 import com.linkedin.datastream.common.Datastream;
 import com.linkedin.datastream.common.PollUtils;
 import com.linkedin.datastream.common.zk.ZkClient;
+import com.linkedin.datastream.metrics.DynamicMetricsManager;
 import com.linkedin.datastream.server.AssignmentToken;
 import com.linkedin.datastream.server.DatastreamGroup;
 import com.linkedin.datastream.server.DatastreamTask;
@@ -69,6 +72,7 @@ public class TestZkAdapter {
     _embeddedZookeeper = new EmbeddedZookeeper();
     _zkConnectionString = _embeddedZookeeper.getConnection();
     _embeddedZookeeper.startup();
+    DynamicMetricsManager.createInstance(new MetricRegistry(), "TestZkAdapter");
   }
 
   @AfterMethod
@@ -1292,6 +1296,111 @@ public class TestZkAdapter {
     validateConnectorTask(testCluster, connectorType, task4.getDatastreamTaskName(), adapter1.getInstanceName(), zkClient);
   }
 
+  @Test
+  public void testBatchedTaskReassignments() {
+    String testCluster = "testBatchedTaskReassignments";
+    String connectorType = "connectorType";
+    ZkClient zkClient = new ZkClient(_zkConnectionString);
+    // a batch fits the nodes of a single task
+    ZkAdapter adapter1 = new ZkAdapter(_zkConnectionString, testCluster, defaultTransportProviderName,
+        ZkClient.DEFAULT_SESSION_TIMEOUT, ZkClient.DEFAULT_CONNECTION_TIMEOUT, ZkClient.DEFAULT_OPERATION_RETRY_TIMEOUT,
+        ZK_DEBOUNCE_TIMER_MS, LOG_SIZE_LIMIT_IN_BYTES, 3, 2, null);
+    ZkAdapter adapter2 = createZkAdapter(testCluster);
+    adapter1.connect();
+    adapter2.connect();
+    String instance1 = adapter1.getInstanceName();
+    String instance2 = adapter2.getInstanceName();
+
+    List<DatastreamTaskImpl> tasks = new ArrayList<>();
+    for (int i = 1; i <= 4; i++) {
+      DatastreamTaskImpl task = new DatastreamTaskImpl();
+      task.setTaskPrefix("task" + i);
+      task.setConnectorType(connectorType);
+      tasks.add(task);
+    }
+    tasks.get(1).setStats("task2 stats");
+
+    Map<String, List<DatastreamTask>> assignmentsByInstance = new HashMap<>();
+    assignmentsByInstance.put(instance1, Collections.singletonList(tasks.get(0)));
+    assignmentsByInstance.put(instance2, Arrays.asList(tasks.get(1), tasks.get(2)));
+    adapter1.updateAllAssignments(assignmentsByInstance);
+
+    Assert.assertEquals(new HashSet<>(adapter1.getInstanceAssignment(instance1)),
+        Collections.singleton(tasks.get(0).getDatastreamTaskName()));
+    Assert.assertEquals(new HashSet<>(adapter1.getInstanceAssignment(instance2)),
+        ImmutableSet.of(tasks.get(1).getDatastreamTaskName(), tasks.get(2).getDatastreamTaskName()));
+    validateConnectorTask(testCluster, connectorType, tasks.get(0).getDatastreamTaskName(), instance1, zkClient);
+    validateConnectorTask(testCluster, connectorType, tasks.get(1).getDatastreamTaskName(), instance2, zkClient);
+    validateConnectorTask(testCluster, connectorType, tasks.get(2).getDatastreamTaskName(), instance2, zkClient);
+    Assert.assertEquals(zkClient.readData(KeyBuilder.datastreamTaskStateKey(testCluster, connectorType,
+        tasks.get(1).getDatastreamTaskName(), "stats")), "task2 stats");
+
+    // a child node makes the multi() transaction deleting the assignment node of task1 fail
+    zkClient.createPersistent(KeyBuilder.instanceAssignment(testCluster, instance1,
+        tasks.get(0).getDatastreamTaskName()) + "/child");
+
+    Map<String, List<DatastreamTask>> reassignmentsByInstance = new HashMap<>();
+    reassignmentsByInstance.put(instance1, Arrays.asList(tasks.get(2), tasks.get(3)));
+    reassignmentsByInstance.put(instance2, Arrays.asList(tasks.get(0), tasks.get(1)));
+    adapter1.updateAllAssignments(reassignmentsByInstance);
+
+    Assert.assertEquals(new HashSet<>(adapter1.getInstanceAssignment(instance1)),
+        ImmutableSet.of(tasks.get(2).getDatastreamTaskName(), tasks.get(3).getDatastreamTaskName()));
+    Assert.assertEquals(new HashSet<>(adapter1.getInstanceAssignment(instance2)),
+        ImmutableSet.of(tasks.get(0).getDatastreamTaskName(), tasks.get(1).getDatastreamTaskName()));
+    validateConnectorTask(testCluster, connectorType, tasks.get(0).getDatastreamTaskName(), instance2, zkClient);
+    validateConnectorTask(testCluster, connectorType, tasks.get(1).getDatastreamTaskName(), instance2, zkClient);
+    validateConnectorTask(testCluster, connectorType, tasks.get(2).getDatastreamTaskName(), instance1, zkClient);
+    validateConnectorTask(testCluster, connectorType, tasks.get(3).getDatastreamTaskName(), instance1, zkClient);
+
+    adapter1.disconnect();
+    adapter2.disconnect();
+    zkClient.close();
+  }
+
+  @Test
+  public void testCachedAssignmentAndTaskState() {
+    String testCluster = "testCachedAssignmentAndTaskState";
+    String connectorType = "connectorType";
+    ZkClient zkClient = new ZkClient(_zkConnectionString);
+    ZkAdapter adapter = createZkAdapter(testCluster);
+    adapter.connect();
+    String instance = adapter.getInstanceName();
+
+    DatastreamTaskImpl task1 = new DatastreamTaskImpl();
+    task1.setTaskPrefix("task1");
+    task1.setConnectorType(connectorType);
+    task1.setZkAdapter(adapter);
+    DatastreamTaskImpl task2 = new DatastreamTaskImpl();
+    task2.setTaskPrefix("task2");
+    task2.setConnectorType(connectorType);
+    String taskName1 = task1.getDatastreamTaskName();
+    String taskName2 = task2.getDatastreamTaskName();
+
+    // the assignment of this instance follows the child changes of its assignment node
+    updateInstanceAssignment(adapter, instance, Arrays.asList(task1, task2));
+    Assert.assertTrue(PollUtils.poll(() -> adapter.getAssignedTaskNames().size() == 2, 100, 5000));
+    Assert.assertEquals(new HashSet<>(adapter.getAssignedTaskNames()), ImmutableSet.of(taskName1, taskName2));
+
+    updateInstanceAssignment(adapter, instance, Collections.singletonList(task1));
+    Assert.assertTrue(PollUtils.poll(() -> adapter.getAssignedTaskNames().size() == 1, 100, 5000));
+    Assert.assertEquals(adapter.getAssignedTaskNames(), Collections.singletonList(taskName1));
+
+    // the state of a task is served from the cache while this instance holds its lock
+    String statePath = KeyBuilder.datastreamTaskStateKey(testCluster, connectorType, taskName1, "key");
+    adapter.acquireTask(task1, Duration.ofSeconds(2));
+    adapter.setDatastreamTaskStateForKey(task1, "key", "value1");
+    Assert.assertEquals(zkClient.readData(statePath), "value1");
+    zkClient.writeData(statePath, "value2");
+    Assert.assertEquals(adapter.getDatastreamTaskStateForKey(task1, "key"), "value1");
+
+    adapter.releaseTask(task1);
+    Assert.assertEquals(adapter.getDatastreamTaskStateForKey(task1, "key"), "value2");
+
+    adapter.disconnect();
+    zkClient.close();
+  }
+
   /**
    * Update all datastream task assignments of a particular Brooklin instance
    * @param adapter ZooKeeper adapter to use
@@ -0,0 +1,128 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.common;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+
+/**
+ * Creates the threads of Brooklin's connector tasks and executors, as platform threads or, on JDK 21 and later, as
+ * virtual threads, depending on the process-wide {@link ThreadMode}.
+ *
+ * Most of these threads spend their time blocked on I/O, locks or sleeps, which virtual threads do without holding
+ * on to an OS thread and its stack. A virtual thread blocking inside a {@code synchronized} block keeps its carrier
+ * thread pinned though, so code running on these threads should wait on {@link java.util.concurrent.locks.Lock}s
+ * and {@link java.util.concurrent.locks.Condition}s, or on java.util.concurrent queues, rather than on monitors.
+ *
+ * The virtual thread API is looked up by reflection, since Brooklin is built for Java 8.
+ */
+public final class DatastreamThreadFactory {
+  private static final Logger LOG = LoggerFactory.getLogger(DatastreamThreadFactory.class);
+
+  /**
+   * The kind of threads created
+   */
+  public enum ThreadMode {
+    PLATFORM,
+    VIRTUAL
+  }
+
+  private static final ThreadFactory PLATFORM_THREAD_FACTORY = Executors.defaultThreadFactory();
+  // Thread.ofVirtual() and Thread.Builder.unstarted(Runnable), or null before JDK 21
+  private static final Method OF_VIRTUAL;
+  private static final Method UNSTARTED;
+
+  static {
+    Method ofVirtual = null;
+    Method unstarted = null;
+    try {
+      ofVirtual = Thread.class.getMethod("ofVirtual");
+      unstarted = Class.forName("java.lang.Thread$Builder").getMethod("unstarted", Runnable.class);
+    } catch (ReflectiveOperationException e) {
+      LOG.debug("Virtual threads are not supported by this JVM");
+    }
+    OF_VIRTUAL = ofVirtual;
+    UNSTARTED = unstarted;
+  }
+
+  private static volatile ThreadMode _threadMode = ThreadMode.PLATFORM;
+
+  private DatastreamThreadFactory() {
+  }
+
+  /**
+   * Check if the JVM supports virtual threads
+   */
+  public static boolean isVirtualThreadSupported() {
+    return OF_VIRTUAL != null && UNSTARTED != null;
+  }
+
+  /**
+   * Set the kind of threads created from now on. Falls back to platform threads if virtual threads are requested but
+   * not supported by the JVM.
+   * @param threadMode the kind of threads to create
+   */
+  public static void setThreadMode(ThreadMode threadMode) {
+    if (threadMode == ThreadMode.VIRTUAL && !isVirtualThreadSupported()) {
+      LOG.warn("Virtual threads require JDK 21 or later, using platform threads");
+      threadMode = ThreadMode.PLATFORM;
+    }
+    LOG.info("Using {} threads", threadMode);
+    _threadMode = threadMode;
+  }
+
+  public static ThreadMode getThreadMode() {
+    return _threadMode;
+  }
+
+  /**
+   * Get a builder of thread factories creating threads of the current thread mode. Virtual threads are always
+   * daemon threads, so the builder must not set daemon to false.
+   * @param nameFormat the format of the thread names, see {@link ThreadFactoryBuilder#setNameFormat(String)}
+   */
+  public static ThreadFactoryBuilder builder(String nameFormat) {
+    return new ThreadFactoryBuilder().setNameFormat(nameFormat).setThreadFactory(DatastreamThreadFactory::newThread);
+  }
+
+  /**
+   * Create a thread factory creating daemon threads of the current thread mode
+   * @param nameFormat the format of the thread names, see {@link ThreadFactoryBuilder#setNameFormat(String)}
+   */
+  public static ThreadFactory daemon(String nameFormat) {
+    return builder(nameFormat).setDaemon(true).build();
+  }
+
+  /**
+   * Create an unstarted daemon thread of the current thread mode
+   * @param runnable the code run by the thread
+   * @param name the name of the thread
+   */
+  public static Thread newDaemonThread(Runnable runnable, String name) {
+    Thread thread = newThread(runnable);
+    thread.setName(name);
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  private static Thread newThread(Runnable runnable) {
+    if (_threadMode == ThreadMode.VIRTUAL) {
+      try {
+        return (Thread) UNSTARTED.invoke(OF_VIRTUAL.invoke(null), runnable);
+      } catch (IllegalAccessException | InvocationTargetException e) {
+        throw new DatastreamRuntimeException("Failed to create a virtual thread", e);
+      }
+    }
+    return PLATFORM_THREAD_FACTORY.newThread(runnable);
+  }
+}
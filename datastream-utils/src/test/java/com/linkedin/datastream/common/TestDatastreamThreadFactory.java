@@ -0,0 +1,56 @@
+/**
+ *  Copyright 2019 LinkedIn Corporation. All rights reserved.
+ *  Licensed under the BSD 2-Clause License. See the LICENSE file in the project root for license information.
+ *  See the NOTICE file in the project root for additional information regarding copyright ownership.
+ */
+package com.linkedin.datastream.common;
+
+import java.util.concurrent.ThreadFactory;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import com.linkedin.datastream.common.DatastreamThreadFactory.ThreadMode;
+
+
+/**
+ * Tests for {@link DatastreamThreadFactory}
+ */
+public class TestDatastreamThreadFactory {
+
+  @AfterMethod
+  public void tearDown() {
+    DatastreamThreadFactory.setThreadMode(ThreadMode.PLATFORM);
+  }
+
+  @Test
+  public void testPlatformThreads() {
+    ThreadFactory factory = DatastreamThreadFactory.daemon("TestDatastreamThreadFactory-%d");
+    Thread thread = factory.newThread(() -> { });
+    Assert.assertEquals(thread.getName(), "TestDatastreamThreadFactory-0");
+    Assert.assertTrue(thread.isDaemon());
+
+    thread = DatastreamThreadFactory.newDaemonThread(() -> { }, "TestThread");
+    Assert.assertEquals(thread.getName(), "TestThread");
+    Assert.assertTrue(thread.isDaemon());
+  }
+
+  @Test
+  public void testVirtualThreads() throws InterruptedException {
+    DatastreamThreadFactory.setThreadMode(ThreadMode.VIRTUAL);
+    if (!DatastreamThreadFactory.isVirtualThreadSupported()) {
+      // falls back to platform threads
+      Assert.assertEquals(DatastreamThreadFactory.getThreadMode(), ThreadMode.PLATFORM);
+      return;
+    }
+    Assert.assertEquals(DatastreamThreadFactory.getThreadMode(), ThreadMode.VIRTUAL);
+    boolean[] ran = {false};
+    Thread thread = DatastreamThreadFactory.builder("TestVirtualThread-%d").build().newThread(() -> ran[0] = true);
+    Assert.assertEquals(thread.getName(), "TestVirtualThread-0");
+    Assert.assertTrue(thread.isDaemon());
+    thread.start();
+    thread.join();
+    Assert.assertTrue(ran[0]);
+  }
+}